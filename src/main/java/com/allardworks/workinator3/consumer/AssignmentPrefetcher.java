@@ -0,0 +1,304 @@
+package com.allardworks.workinator3.consumer;
+
+import com.allardworks.workinator3.core.*;
+import com.allardworks.workinator3.core.commands.*;
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+import lombok.val;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Keeps a small queue of reserved assignments, so that a worker that runs out of work
+ * gets its next partition without waiting for the workinator to evaluate the rules.
+ *
+ * A background thread keeps the queue at the configured depth with Workinator.reserveAssignment.
+ * When a worker asks for an assignment and it doesn't have one, or its partition is out of work,
+ * the first reservation is claimed for it, and its current assignment is released.
+ * Otherwise, the request goes to the workinator as usual.
+ *
+ * Reservations expire, so a prefetched partition isn't kept from other consumers for long.
+ * Reservations that are close to expiring are released and replaced.
+ */
+@Slf4j
+public class AssignmentPrefetcher extends DelegatingWorkinator {
+    /**
+     * The worker number that reservations are made under.
+     */
+    public static final int PREFETCH_WORKER_NUMBER = -1;
+
+    private final int depth;
+    private final Duration expiration;
+    private final Duration delayWhenNoAssignment;
+
+    /**
+     * A reservation with less than this much time left isn't handed out.
+     */
+    private final long marginMillis;
+
+    private final LinkedBlockingDeque<Assignment> queue = new LinkedBlockingDeque<>();
+
+    /**
+     * The partitions that a worker reported are out of work.
+     */
+    private final Set<String> outOfWork = ConcurrentHashMap.newKeySet();
+
+    private final Object refillLock = new Object();
+    private volatile ConsumerRegistration registration;
+    private Thread refillThread;
+
+    private final LongAdder reserved = new LongAdder();
+    private final LongAdder claimed = new LongAdder();
+    private final LongAdder expired = new LongAdder();
+    private final LongAdder empty = new LongAdder();
+
+    public AssignmentPrefetcher(
+            @NonNull final Workinator workinator,
+            final int depth,
+            @NonNull final Duration expiration,
+            @NonNull final Duration delayWhenNoAssignment) {
+        super(workinator);
+        if (depth <= 0) {
+            throw new IllegalArgumentException("depth must be greater than 0.");
+        }
+        this.depth = depth;
+        this.expiration = expiration;
+        this.delayWhenNoAssignment = delayWhenNoAssignment;
+        this.marginMillis = expiration.toMillis() / 4;
+    }
+
+    public AssignmentPrefetcher(@NonNull final Workinator workinator, @NonNull final ConsumerConfiguration configuration) {
+        this(workinator, configuration.getPrefetchDepth(), configuration.getPrefetchExpiration(), configuration.getDelayWhenNoAssignment());
+    }
+
+    @Override
+    public ConsumerRegistration registerConsumer(@NonNull final RegisterConsumerCommand command) throws ConsumerExistsException {
+        val result = getWorkinator().registerConsumer(command);
+        registration = result;
+        wakeRefill();
+        return result;
+    }
+
+    /**
+     * Unregistering releases all of the consumer's assignments, including the reservations.
+     */
+    @Override
+    public void unregisterConsumer(@NonNull final UnregisterConsumerCommand command) {
+        registration = null;
+        queue.clear();
+        getWorkinator().unregisterConsumer(command);
+    }
+
+    @Override
+    public Assignment getAssignment(@NonNull final WorkerStatus status) {
+        val assignment = claimReservation(status);
+        return assignment == null ? getWorkinator().getAssignment(status) : assignment;
+    }
+
+    @Override
+    public Assignment getAssignment(@NonNull final WorkerStatus status, @NonNull final Duration maxWait) throws InterruptedException {
+        val assignment = claimReservation(status);
+        return assignment == null ? getWorkinator().getAssignment(status, maxWait) : assignment;
+    }
+
+    @Override
+    public void setPartitionStatus(@NonNull final SetPartitionStatusCommand command) {
+        track(command);
+        getWorkinator().setPartitionStatus(command);
+    }
+
+    @Override
+    public void setPartitionStatuses(@NonNull final List<SetPartitionStatusCommand> commands) {
+        commands.forEach(this::track);
+        getWorkinator().setPartitionStatuses(commands);
+    }
+
+    @Override
+    public void releaseAssignment(@NonNull final ReleaseAssignmentCommand command) {
+        getWorkinator().releaseAssignment(command);
+        outOfWork.remove(command.getAssignment().getPartitionKey());
+    }
+
+    private void track(final SetPartitionStatusCommand command) {
+        if (command.isHasWork()) {
+            outOfWork.remove(command.getPartitionKey());
+        } else {
+            outOfWork.add(command.getPartitionKey());
+        }
+    }
+
+    /**
+     * Gives the worker the first reservation that can still be claimed,
+     * if the worker doesn't have anything to do.
+     * @return the worker's new assignment, or null if there isn't a reservation for it.
+     */
+    private Assignment claimReservation(final WorkerStatus status) {
+        if (!getStatus().isStarted()) {
+            return null;
+        }
+
+        val current = status.getCurrentAssignment();
+        if (current != null && !outOfWork.contains(current.getPartitionKey())) {
+            return null;
+        }
+
+        Assignment reservation;
+        while ((reservation = queue.poll()) != null) {
+            wakeRefill();
+            if (isExpiring(reservation, System.currentTimeMillis())) {
+                release(reservation);
+                continue;
+            }
+
+            final Assignment assignment;
+            try {
+                assignment = getWorkinator().claimReservation(new ClaimReservationCommand(reservation, status.getWorkerId()));
+            } catch (final Exception ex) {
+                log.error("Claiming reservation: " + reservation.getPartitionKey(), ex);
+                continue;
+            }
+
+            if (assignment == null) {
+                expired.increment();
+                continue;
+            }
+
+            claimed.increment();
+            if (current != null) {
+                getWorkinator().releaseAssignment(new ReleaseAssignmentCommand(current));
+                outOfWork.remove(current.getPartitionKey());
+            }
+            return assignment;
+        }
+
+        empty.increment();
+        return null;
+    }
+
+    private boolean isExpiring(final Assignment reservation, final long now) {
+        val leaseExpiration = reservation.getLeaseExpiration();
+        return leaseExpiration != null && leaseExpiration.getTime() - now < marginMillis;
+    }
+
+    private void release(final Assignment reservation) {
+        expired.increment();
+        try {
+            getWorkinator().releaseAssignment(new ReleaseAssignmentCommand(reservation));
+        } catch (final Exception ex) {
+            log.error("Releasing reservation: " + reservation.getPartitionKey(), ex);
+        }
+    }
+
+    private void wakeRefill() {
+        synchronized (refillLock) {
+            refillLock.notifyAll();
+        }
+    }
+
+    /**
+     * Keeps the queue full: replaces the reservations that are about to expire,
+     * and reserves more until the queue is at its depth.
+     * Waits delayWhenNoAssignment when the workinator doesn't have anything to reserve.
+     */
+    private void refill() {
+        while (getStatus().isStarted()) {
+            long waitMillis = delayWhenNoAssignment.toMillis();
+            try {
+                val registration = this.registration;
+                if (registration != null) {
+                    val now = System.currentTimeMillis();
+                    for (val reservation : queue) {
+                        if (isExpiring(reservation, now) && queue.remove(reservation)) {
+                            release(reservation);
+                        }
+                    }
+
+                    if (queue.size() < depth) {
+                        val reservation = getWorkinator().reserveAssignment(ReserveAssignmentCommand
+                                .builder()
+                                .workerId(new WorkerId(registration, PREFETCH_WORKER_NUMBER))
+                                .expiration(expiration)
+                                .build());
+                        if (reservation != null) {
+                            reserved.increment();
+                            queue.add(reservation);
+                            continue;
+                        }
+                    } else {
+                        val first = queue.peek();
+                        if (first != null && first.getLeaseExpiration() != null) {
+                            waitMillis = Math.max(1, first.getLeaseExpiration().getTime() - marginMillis - now);
+                        }
+                    }
+                }
+            } catch (final Exception ex) {
+                log.error("Reserving assignment", ex);
+            }
+
+            synchronized (refillLock) {
+                try {
+                    refillLock.wait(waitMillis);
+                } catch (final InterruptedException e) {
+                    return;
+                }
+            }
+        }
+    }
+
+    @Override
+    public void start() {
+        if (!getServiceStatus().starting()) {
+            return;
+        }
+
+        refillThread = new Thread(this::refill, "workinator-prefetch");
+        refillThread.setDaemon(true);
+        getServiceStatus().started();
+        refillThread.start();
+    }
+
+    /**
+     * Stops refilling, and releases the reservations that are left.
+     */
+    @Override
+    public void stop() {
+        if (!getServiceStatus().stopping()) {
+            return;
+        }
+
+        refillThread.interrupt();
+        try {
+            refillThread.join();
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        Assignment reservation;
+        while ((reservation = queue.poll()) != null) {
+            release(reservation);
+        }
+        getServiceStatus().stopped();
+    }
+
+    @Override
+    public Map<String, Object> getInfo() {
+        val info = new HashMap<String, Object>();
+        info.put("depth", depth);
+        info.put("queued", queue.size());
+        info.put("reserved", reserved.sum());
+        info.put("claimed", claimed.sum());
+        info.put("expired", expired.sum());
+        info.put("empty", empty.sum());
+        if (getWorkinator() instanceof Service) {
+            info.put("workinator", ((Service) getWorkinator()).getInfo());
+        }
+        return info;
+    }
+}
@@ -0,0 +1,64 @@
+package com.allardworks.workinator3.consumer;
+
+import com.allardworks.workinator3.core.*;
+import lombok.NonNull;
+import lombok.val;
+
+import java.util.Map;
+
+/**
+ * Runs an AsyncExecutor per worker.
+ * The executor loops run on the threads described by ConsumerConfiguration.threadMode.
+ */
+public class AsyncConsumer extends ConsumerBase {
+    private final AsyncWorkerFactory workerFactory;
+    private ExecutorThreads threads;
+
+    public AsyncConsumer(
+            @NonNull final ConsumerId consumerId,
+            @NonNull final Workinator workinator,
+            @NonNull final ConsumerConfiguration configuration,
+            @NonNull final AsyncWorkerFactory workerFactory) {
+        this(consumerId, workinator, configuration, workerFactory, null);
+    }
+
+    /**
+     * @param lifecycleDispatcher delivers the transition events of the consumer and its executors. See ConsumerBase.
+     */
+    public AsyncConsumer(
+            @NonNull final ConsumerId consumerId,
+            @NonNull final Workinator workinator,
+            @NonNull final ConsumerConfiguration configuration,
+            @NonNull final AsyncWorkerFactory workerFactory,
+            final LifecycleDispatcher lifecycleDispatcher) {
+        super(consumerId, workinator, configuration, lifecycleDispatcher);
+        this.workerFactory = workerFactory;
+    }
+
+    @Override
+    protected void onStarting() {
+        threads = ExecutorThreads.create(getConfiguration());
+    }
+
+    /**
+     * An AsyncGroupExecutor if executors get more than one partition at a time.
+     */
+    @Override
+    protected Service createExecutor(final WorkerId workerId) {
+        return getConfiguration().getPartitionsPerExecutor() > 1
+                ? new AsyncGroupExecutor(workerId, getWorkinator(), getConfiguration(), workerFactory, threads, getWorkerMeter(), getLifecycleDispatcher())
+                : new AsyncExecutor(workerId, getWorkinator(), getConfiguration(), workerFactory, threads, getWorkerMeter(), getLifecycleDispatcher());
+    }
+
+    @Override
+    protected void onStopped() {
+        threads.close();
+    }
+
+    @Override
+    public Map<String, Object> getInfo() {
+        val info = super.getInfo();
+        info.put("threadMode", getConfiguration().getThreadMode().toString());
+        return info;
+    }
+}
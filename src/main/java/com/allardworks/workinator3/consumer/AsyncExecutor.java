@@ -0,0 +1,210 @@
+package com.allardworks.workinator3.consumer;
+
+import com.allardworks.workinator3.core.*;
+import com.allardworks.workinator3.core.commands.ReleaseAssignmentCommand;
+import com.allardworks.workinator3.core.commands.RenewLeaseCommand;
+import com.allardworks.workinator3.core.commands.SetPartitionStatusCommand;
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+import lombok.val;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Retrieves assignments from the workinator and executes the worker for them.
+ * The loop itself runs on the ExecutorThreads: either a dedicated thread,
+ * or a shared pool.
+ *
+ * Each cycle gets an assignment, executes the worker until it's out of work or
+ * the minimum work time is over, then reports the partition status.
+ * If the worker still has work, the next cycle renews the lease instead of evaluating the rules.
+ * Only one cycle runs at a time, so the cycle state isn't shared between threads.
+ */
+@Slf4j
+public class AsyncExecutor extends ServiceBase implements ExecutorLoop {
+    private final WorkerStatus status;
+    private final Workinator workinator;
+    private final ConsumerConfiguration configuration;
+    private final AsyncWorkerFactory workerFactory;
+    private final ExecutorThreads threads;
+    private final WorkerMeter meter;
+
+    private WorkerAsync worker;
+
+    /**
+     * True if the worker had more work at the end of the last cycle.
+     */
+    private boolean hadWork;
+
+    public AsyncExecutor(
+            @NonNull final WorkerId workerId,
+            @NonNull final Workinator workinator,
+            @NonNull final ConsumerConfiguration configuration,
+            @NonNull final AsyncWorkerFactory workerFactory,
+            @NonNull final ExecutorThreads threads,
+            @NonNull final WorkerMeter meter) {
+        this(workerId, workinator, configuration, workerFactory, threads, meter, null);
+    }
+
+    /**
+     * @param lifecycleDispatcher delivers the transition events. Null to deliver them on the thread that made the transition.
+     */
+    public AsyncExecutor(
+            @NonNull final WorkerId workerId,
+            @NonNull final Workinator workinator,
+            @NonNull final ConsumerConfiguration configuration,
+            @NonNull final AsyncWorkerFactory workerFactory,
+            @NonNull final ExecutorThreads threads,
+            @NonNull final WorkerMeter meter,
+            final LifecycleDispatcher lifecycleDispatcher) {
+        super(lifecycleDispatcher);
+        this.status = new WorkerStatus(workerId);
+        this.workinator = workinator;
+        this.configuration = configuration;
+        this.workerFactory = workerFactory;
+        this.threads = threads;
+        this.meter = meter;
+    }
+
+    @Override
+    public Duration getDelayWhenNoAssignment() {
+        return configuration.getDelayWhenNoAssignment();
+    }
+
+    @Override
+    public boolean isRunning() {
+        return getStatus().isStarted();
+    }
+
+    @Override
+    public CycleResult runCycle(final Duration maxWait) {
+        final Assignment assignment;
+        try {
+            assignment = getNextAssignment(maxWait);
+        } catch (final InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            return CycleResult.Failed;
+        } catch (final Exception ex) {
+            log.error("Getting assignment: " + status.getWorkerId().getAssignee(), ex);
+            return CycleResult.Failed;
+        }
+
+        meter.assignment(assignment);
+        if (assignment == null) {
+            closeWorker();
+            status.setCurrentAssignment(null);
+            return CycleResult.NoAssignment;
+        }
+
+        val current = status.getCurrentAssignment();
+        if (current == null || !current.getReceipt().equals(assignment.getReceipt())) {
+            closeWorker();
+            worker = workerFactory.createWorker(assignment);
+        }
+        status.setCurrentAssignment(assignment);
+
+        val workUntil = System.currentTimeMillis() + configuration.getMinWorkTime().toMillis();
+        val context = new WorkerContext(assignment, () -> isRunning() && System.currentTimeMillis() < workUntil);
+        try {
+            worker.work(context);
+        } catch (final Exception ex) {
+            log.error("Worker failed: " + assignment.getPartitionKey(), ex);
+        }
+
+        meter.processed(context.getProcessed());
+        hadWork = context.hasWork();
+        try {
+            workinator.setPartitionStatus(SetPartitionStatusCommand
+                    .builder()
+                    .partitionKey(assignment.getPartitionKey())
+                    .hasWork(context.hasWork())
+                    .backlog(context.getBacklog())
+                    .weight(context.getWeight())
+                    .receipt(assignment.getReceipt())
+                    .build());
+        } catch (final Exception ex) {
+            log.error("Setting partition status: " + assignment.getPartitionKey(), ex);
+        }
+        return CycleResult.Assigned;
+    }
+
+    /**
+     * If the worker still has work, tries to renew the lease on the current assignment.
+     * Otherwise, or if the lease isn't renewed, evaluates the rules with getAssignment.
+     */
+    private Assignment getNextAssignment(final Duration maxWait) throws InterruptedException {
+        val current = status.getCurrentAssignment();
+        if (current != null && hadWork) {
+            val renewed = workinator.renewLease(new RenewLeaseCommand(current));
+            if (renewed != null) {
+                return renewed;
+            }
+        }
+        return workinator.getAssignment(status.clone(), maxWait);
+    }
+
+    @Override
+    public void finish() {
+        closeWorker();
+        val current = status.getCurrentAssignment();
+        if (current != null) {
+            try {
+                workinator.releaseAssignment(new ReleaseAssignmentCommand(current));
+            } catch (final Exception ex) {
+                log.error("Releasing assignment: " + current.getPartitionKey(), ex);
+            }
+            status.setCurrentAssignment(null);
+        }
+        getServiceStatus().stopping();
+        getServiceStatus().stopped();
+    }
+
+    private void closeWorker() {
+        if (worker == null) {
+            return;
+        }
+
+        try {
+            worker.close();
+        } catch (final Exception ex) {
+            log.error("Closing worker", ex);
+        }
+        worker = null;
+    }
+
+    /**
+     * Starts the loop. The service is started once the loop is scheduled.
+     */
+    @Override
+    public void start() {
+        if (!getServiceStatus().starting()) {
+            return;
+        }
+
+        getServiceStatus().started();
+        threads.start(this);
+    }
+
+    /**
+     * Signals the loop to stop. The service is stopped once
+     * the current cycle is done and the assignment is released.
+     */
+    @Override
+    public void stop() {
+        getServiceStatus().stopping();
+    }
+
+    @Override
+    public Map<String, Object> getInfo() {
+        val current = status.getCurrentAssignment();
+        val info = new HashMap<String, Object>();
+        info.put("workerNumber", status.getWorkerId().getWorkerNumber());
+        info.put("status", getStatus().toString());
+        info.put("threads", threads.getName());
+        info.put("partitionKey", current == null ? null : current.getPartitionKey());
+        info.put("rule", current == null ? null : current.getRuleName());
+        return info;
+    }
+}
@@ -0,0 +1,235 @@
+package com.allardworks.workinator3.consumer;
+
+import com.allardworks.workinator3.core.*;
+import com.allardworks.workinator3.core.commands.ReleaseAssignmentGroupCommand;
+import com.allardworks.workinator3.core.commands.SetPartitionStatusCommand;
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+import lombok.val;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static java.util.stream.Collectors.toList;
+
+/**
+ * An async executor that works on a group of partitions at once.
+ * Each cycle gets a group of up to partitionsPerExecutor assignments in one call,
+ * executes the worker of each partition in turn, then reports the status of all
+ * of the partitions in one call.
+ *
+ * Each partition gets an equal share of the minimum work time.
+ * A worker is created per partition, and kept as long as the group keeps the partition.
+ */
+@Slf4j
+public class AsyncGroupExecutor extends ServiceBase implements ExecutorLoop {
+    private final WorkerGroupStatus status;
+    private final Workinator workinator;
+    private final ConsumerConfiguration configuration;
+    private final AsyncWorkerFactory workerFactory;
+    private final ExecutorThreads threads;
+    private final WorkerMeter meter;
+
+    /**
+     * The workers of the current group, keyed by assignment receipt.
+     */
+    private Map<String, WorkerAsync> workers = new HashMap<>();
+
+    /**
+     * Notified when the executor is asked to stop, to end the wait for an assignment.
+     */
+    private final Object stopSignal = new Object();
+
+    public AsyncGroupExecutor(
+            @NonNull final WorkerId workerId,
+            @NonNull final Workinator workinator,
+            @NonNull final ConsumerConfiguration configuration,
+            @NonNull final AsyncWorkerFactory workerFactory,
+            @NonNull final ExecutorThreads threads,
+            @NonNull final WorkerMeter meter) {
+        this(workerId, workinator, configuration, workerFactory, threads, meter, null);
+    }
+
+    /**
+     * @param lifecycleDispatcher delivers the transition events. Null to deliver them on the thread that made the transition.
+     */
+    public AsyncGroupExecutor(
+            @NonNull final WorkerId workerId,
+            @NonNull final Workinator workinator,
+            @NonNull final ConsumerConfiguration configuration,
+            @NonNull final AsyncWorkerFactory workerFactory,
+            @NonNull final ExecutorThreads threads,
+            @NonNull final WorkerMeter meter,
+            final LifecycleDispatcher lifecycleDispatcher) {
+        super(lifecycleDispatcher);
+        this.status = new WorkerGroupStatus(workerId, configuration.getPartitionsPerExecutor());
+        this.workinator = workinator;
+        this.configuration = configuration;
+        this.workerFactory = workerFactory;
+        this.threads = threads;
+        this.meter = meter;
+    }
+
+    @Override
+    public Duration getDelayWhenNoAssignment() {
+        return configuration.getDelayWhenNoAssignment();
+    }
+
+    @Override
+    public boolean isRunning() {
+        return getStatus().isStarted();
+    }
+
+    @Override
+    public CycleResult runCycle(final Duration maxWait) {
+        final AssignmentGroup group;
+        try {
+            group = workinator.getAssignmentGroup(status.clone());
+        } catch (final Exception ex) {
+            log.error("Getting assignment group: " + status.getWorkerId().getAssignee(), ex);
+            return CycleResult.Failed;
+        }
+
+        meter.assignments(group);
+        replaceWorkers(group);
+        status.setCurrentGroup(group);
+        if (group.isEmpty()) {
+            waitForAssignment(maxWait);
+            return CycleResult.NoAssignment;
+        }
+
+        val slice = configuration.getMinWorkTime().toMillis() / group.getAssignments().size();
+        val statuses = new ArrayList<SetPartitionStatusCommand>();
+        for (val assignment : group.getAssignments()) {
+            if (!isRunning()) {
+                break;
+            }
+
+            val workUntil = System.currentTimeMillis() + slice;
+            val context = new WorkerContext(assignment, () -> isRunning() && System.currentTimeMillis() < workUntil);
+            try {
+                workers.get(assignment.getReceipt()).work(context);
+            } catch (final Exception ex) {
+                log.error("Worker failed: " + assignment.getPartitionKey(), ex);
+            }
+
+            meter.processed(context.getProcessed());
+            statuses.add(SetPartitionStatusCommand
+                    .builder()
+                    .partitionKey(assignment.getPartitionKey())
+                    .hasWork(context.hasWork())
+                    .backlog(context.getBacklog())
+                    .weight(context.getWeight())
+                    .receipt(assignment.getReceipt())
+                    .build());
+        }
+
+        try {
+            workinator.setPartitionStatuses(statuses);
+        } catch (final Exception ex) {
+            log.error("Setting partition statuses: " + status.getWorkerId().getAssignee(), ex);
+        }
+        return CycleResult.Assigned;
+    }
+
+    /**
+     * Keeps the workers of the partitions that are still in the group,
+     * closes the rest, and creates workers for the new partitions.
+     */
+    private void replaceWorkers(final AssignmentGroup group) {
+        val replacement = new HashMap<String, WorkerAsync>();
+        for (val assignment : group.getAssignments()) {
+            val existing = workers.remove(assignment.getReceipt());
+            replacement.put(assignment.getReceipt(), existing == null ? workerFactory.createWorker(assignment) : existing);
+        }
+
+        closeWorkers();
+        workers = replacement;
+    }
+
+    private void closeWorkers() {
+        for (val worker : workers.values()) {
+            try {
+                worker.close();
+            } catch (final Exception ex) {
+                log.error("Closing worker", ex);
+            }
+        }
+        workers = new HashMap<>();
+    }
+
+    /**
+     * Groups don't support long polling, so wait here rather than
+     * spinning on the workinator. Stopping ends the wait.
+     */
+    private void waitForAssignment(final Duration maxWait) {
+        if (maxWait.isZero() || maxWait.isNegative()) {
+            return;
+        }
+
+        val deadline = System.nanoTime() + maxWait.toNanos();
+        synchronized (stopSignal) {
+            try {
+                while (isRunning()) {
+                    val remaining = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+                    if (remaining <= 0) {
+                        return;
+                    }
+                    stopSignal.wait(remaining);
+                }
+            } catch (final InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    @Override
+    public void finish() {
+        closeWorkers();
+        val current = status.getCurrentGroup();
+        if (current != null && !current.isEmpty()) {
+            try {
+                workinator.releaseAssignmentGroup(new ReleaseAssignmentGroupCommand(current));
+            } catch (final Exception ex) {
+                log.error("Releasing assignment group: " + status.getWorkerId().getAssignee(), ex);
+            }
+        }
+        status.setCurrentGroup(null);
+        getServiceStatus().stopping();
+        getServiceStatus().stopped();
+    }
+
+    @Override
+    public void start() {
+        if (!getServiceStatus().starting()) {
+            return;
+        }
+
+        getServiceStatus().started();
+        threads.start(this);
+    }
+
+    @Override
+    public void stop() {
+        getServiceStatus().stopping();
+        synchronized (stopSignal) {
+            stopSignal.notifyAll();
+        }
+    }
+
+    @Override
+    public Map<String, Object> getInfo() {
+        val current = status.getCurrentGroup();
+        val info = new HashMap<String, Object>();
+        info.put("workerNumber", status.getWorkerId().getWorkerNumber());
+        info.put("status", getStatus().toString());
+        info.put("threads", threads.getName());
+        info.put("partitionKeys", current == null
+                ? null
+                : current.getAssignments().stream().map(Assignment::getPartitionKey).collect(toList()));
+        return info;
+    }
+}
@@ -0,0 +1,338 @@
+package com.allardworks.workinator3.consumer;
+
+import com.allardworks.workinator3.core.*;
+import com.allardworks.workinator3.core.commands.ConsumerHeartbeatCommand;
+import com.allardworks.workinator3.core.commands.RegisterConsumerCommand;
+import com.allardworks.workinator3.core.commands.UnregisterConsumerCommand;
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+import lombok.val;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static java.util.stream.Collectors.toList;
+
+/**
+ * Registers with the workinator and runs an executor per worker.
+ * The number of executors is ConsumerConfiguration.maxWorkerCount, or, when workerCountInterval
+ * isn't zero, whatever the WorkerCountController decides. The current number is sent to the workinator
+ * with the heartbeats, or, when heartbeats aren't sent, with a ping whenever it changes.
+ * Subclasses create the executors.
+ */
+@Slf4j
+public abstract class ConsumerBase extends ServiceBase {
+    @Getter(AccessLevel.PROTECTED)
+    private final ConsumerId consumerId;
+
+    /**
+     * The workinator used by the executors.
+     * Wrapped by a WriteBehindWorkinator when partition statuses are buffered,
+     * by an AssignmentPrefetcher when assignments are prefetched,
+     * and by a ConsumerHeartbeat when heartbeats are sent.
+     */
+    @Getter(AccessLevel.PROTECTED)
+    private final Workinator workinator;
+
+    /**
+     * The decorators of the workinator, innermost first.
+     */
+    private final List<DelegatingWorkinator> decorators = new ArrayList<>();
+
+    @Getter(AccessLevel.PROTECTED)
+    private final ConsumerConfiguration configuration;
+
+    /**
+     * Also given to the executors. Null if the transition events are delivered on the thread that made the transition.
+     */
+    @Getter(AccessLevel.PROTECTED)
+    private final LifecycleDispatcher lifecycleDispatcher;
+
+    @Getter(AccessLevel.PROTECTED)
+    private ConsumerRegistration registration;
+
+    /**
+     * Shared by the executors, for the WorkerCountController.
+     */
+    @Getter(AccessLevel.PROTECTED)
+    private final WorkerMeter workerMeter = new WorkerMeter();
+
+    /**
+     * Null if the number of workers doesn't change.
+     */
+    private final WorkerCountController workerCountController;
+
+    /**
+     * Null if heartbeats aren't sent.
+     */
+    private final ConsumerHeartbeat heartbeat;
+
+    /**
+     * The number of workers the workinator knows about, when heartbeats aren't sent. Guarded by this.
+     */
+    private int publishedWorkerCount;
+
+    /**
+     * The running executors, by worker number. Guarded by this.
+     */
+    private final TreeMap<Integer, Service> executors = new TreeMap<>();
+
+    /**
+     * The worker numbers of the executors that were removed, but haven't stopped yet.
+     * They aren't reused until the executors stop. Guarded by this.
+     */
+    private final Set<Integer> retiring = new HashSet<>();
+
+    /**
+     * The executors that haven't stopped yet, plus one while the consumer is stopping them.
+     * The consumer is stopped when it gets to 0.
+     */
+    private final AtomicInteger running = new AtomicInteger();
+
+    protected ConsumerBase(
+            @NonNull final ConsumerId consumerId,
+            @NonNull final Workinator workinator,
+            @NonNull final ConsumerConfiguration configuration) {
+        this(consumerId, workinator, configuration, null);
+    }
+
+    /**
+     * @param lifecycleDispatcher delivers the transition events of the consumer and its executors on a bounded pool,
+     *                            so that stopping many executors isn't held up by slow handlers.
+     *                            One dispatcher can be shared by many consumers; the owner closes it.
+     *                            Null delivers the events on the thread that made the transition.
+     */
+    protected ConsumerBase(
+            @NonNull final ConsumerId consumerId,
+            @NonNull final Workinator workinator,
+            @NonNull final ConsumerConfiguration configuration,
+            final LifecycleDispatcher lifecycleDispatcher) {
+        super(lifecycleDispatcher);
+        this.consumerId = consumerId;
+        this.configuration = configuration;
+        this.lifecycleDispatcher = lifecycleDispatcher;
+
+        Workinator decorated = workinator;
+        val staleness = configuration.getPartitionStatusMaxStaleness();
+        if (!staleness.isZero() && !staleness.isNegative()) {
+            decorated = decorate(new WriteBehindWorkinator(decorated, configuration));
+        }
+
+        if (configuration.getPrefetchDepth() > 0) {
+            decorated = decorate(new AssignmentPrefetcher(decorated, configuration));
+        }
+
+        ConsumerHeartbeat heartbeat = null;
+        val heartbeatInterval = configuration.getHeartbeatInterval();
+        if (!heartbeatInterval.isZero() && !heartbeatInterval.isNegative()) {
+            heartbeat = new ConsumerHeartbeat(decorated, heartbeatInterval);
+            decorated = decorate(heartbeat);
+        }
+        this.heartbeat = heartbeat;
+        this.workinator = decorated;
+
+        val workerCountInterval = configuration.getWorkerCountInterval();
+        this.workerCountController = workerCountInterval.isZero() || workerCountInterval.isNegative()
+                ? null
+                : new WorkerCountController(configuration, workerMeter, this::setWorkerCount);
+    }
+
+    private DelegatingWorkinator decorate(final DelegatingWorkinator decorator) {
+        decorators.add(decorator);
+        return decorator;
+    }
+
+    /**
+     * Creates the executor for a worker.
+     * @param workerId
+     * @return
+     */
+    protected abstract Service createExecutor(WorkerId workerId);
+
+    /**
+     * Called after the consumer is registered, before the executors are created.
+     */
+    protected void onStarting() {
+    }
+
+    /**
+     * Called after all of the executors are stopped and the consumer is unregistered.
+     */
+    protected void onStopped() {
+    }
+
+    @Override
+    public void start() {
+        if (!getServiceStatus().starting()) {
+            return;
+        }
+
+        val workerCount = workerCountController == null ? configuration.getMaxWorkerCount() : workerCountController.getWorkerCount();
+        decorators.forEach(Service::start);
+        try {
+            registration = workinator.registerConsumer(RegisterConsumerCommand
+                    .builder()
+                    .id(consumerId)
+                    .maxWorkerCount(workerCount)
+                    .build());
+            synchronized (this) {
+                publishedWorkerCount = workerCount;
+            }
+        } catch (final ConsumerExistsException ex) {
+            stopDecorators();
+            throw new RuntimeException(ex);
+        }
+
+        onStarting();
+        getServiceStatus().started();
+        setWorkerCount(workerCount);
+        if (workerCountController != null) {
+            workerCountController.start();
+        }
+    }
+
+    /**
+     * Starts or stops executors until there are this many.
+     * The executors with the highest worker numbers are stopped first. They release their assignments
+     * when their current cycle is done.
+     * @param workerCount
+     */
+    public synchronized void setWorkerCount(final int workerCount) {
+        if (!getStatus().isStarted()) {
+            return;
+        }
+
+        while (executors.size() < workerCount) {
+            val workerNumber = getFreeWorkerNumber();
+            val executor = createExecutor(new WorkerId(registration, workerNumber));
+            running.incrementAndGet();
+            executor.getTransitionEventHandlers().onPostStopped(t -> executorStopped(workerNumber));
+            executors.put(workerNumber, executor);
+            executor.start();
+        }
+
+        while (executors.size() > workerCount) {
+            val last = executors.pollLastEntry();
+            retiring.add(last.getKey());
+            last.getValue().stop();
+        }
+
+        if (heartbeat != null) {
+            heartbeat.setMaxWorkerCount(workerCount);
+        } else if (workerCount != publishedWorkerCount) {
+            publishWorkerCount(workerCount);
+        }
+    }
+
+    /**
+     * Without heartbeats, nothing else tells the workinator that the number of workers changed.
+     * The ping only carries the count; the workinator doesn't track the workers of a consumer
+     * that doesn't send heartbeats.
+     */
+    private void publishWorkerCount(final int workerCount) {
+        try {
+            workinator.heartbeat(ConsumerHeartbeatCommand
+                    .builder()
+                    .registration(registration)
+                    .maxWorkerCount(workerCount)
+                    .build());
+            publishedWorkerCount = workerCount;
+        } catch (final Exception ex) {
+            log.error("Publishing the worker count. Consumer=" + consumerId.getName(), ex);
+        }
+    }
+
+    /**
+     * The lowest worker number that isn't used by a running or retiring executor.
+     */
+    private int getFreeWorkerNumber() {
+        int number = 0;
+        while (executors.containsKey(number) || retiring.contains(number)) {
+            number++;
+        }
+        return number;
+    }
+
+    private void executorStopped(final int workerNumber) {
+        synchronized (this) {
+            retiring.remove(workerNumber);
+        }
+
+        if (running.decrementAndGet() == 0 && getStatus() == Status.Stopping) {
+            stopped();
+        }
+    }
+
+    /**
+     * Stops the executors. The consumer is unregistered, and the service is stopped,
+     * once all of the executors are stopped.
+     */
+    @Override
+    public void stop() {
+        // held until the executors are told to stop, so retiring executors don't complete the stop early.
+        running.incrementAndGet();
+        if (!getServiceStatus().stopping()) {
+            running.decrementAndGet();
+            return;
+        }
+
+        if (workerCountController != null) {
+            workerCountController.stop();
+        }
+
+        final List<Service> stopping;
+        synchronized (this) {
+            stopping = new ArrayList<>(executors.values());
+            executors.clear();
+        }
+
+        stopping.forEach(Service::stop);
+        if (running.decrementAndGet() == 0) {
+            stopped();
+        }
+    }
+
+    private void stopped() {
+        try {
+            workinator.unregisterConsumer(new UnregisterConsumerCommand(registration));
+        } catch (final Exception ex) {
+            log.error("Unregistering consumer", ex);
+        }
+
+        stopDecorators();
+        onStopped();
+        getServiceStatus().stopped();
+    }
+
+    private void stopDecorators() {
+        for (int i = decorators.size() - 1; i >= 0; i--) {
+            decorators.get(i).stop();
+        }
+    }
+
+    @Override
+    public Map<String, Object> getInfo() {
+        val info = new HashMap<String, Object>();
+        info.put("consumerId", consumerId.getName());
+        info.put("status", getStatus().toString());
+        synchronized (this) {
+            info.put("executors", executors.values().stream().map(Service::getInfo).collect(toList()));
+        }
+        if (workerCountController != null) {
+            info.put("workerCount", workerCountController.getInfo());
+        }
+        if (workinator instanceof Service) {
+            // IE: a MeteredWorkinator, or the consumer's decorators
+            info.put("workinator", ((Service) workinator).getInfo());
+        }
+        return info;
+    }
+}
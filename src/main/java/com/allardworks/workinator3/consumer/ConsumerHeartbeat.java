@@ -0,0 +1,349 @@
+package com.allardworks.workinator3.consumer;
+
+import com.allardworks.workinator3.core.*;
+import com.allardworks.workinator3.core.ConsumerStatus.ConsumerWorkerStatus;
+import com.allardworks.workinator3.core.commands.*;
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+import lombok.val;
+
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Sends the consumer's heartbeats.
+ *
+ * Watches the assignments that go through it to know what each worker is doing.
+ * Every interval, sends the workers that changed since the last acknowledged version,
+ * or a ping if nothing changed. The workinator merges the changes into what it has.
+ * If the versions don't match, the workinator asks for a resync, and all of the workers are sent.
+ *
+ * A worker with a group of partitions is reported with the first assignment of the group.
+ *
+ * If the workinator no longer knows the consumer, because it expired after missing its heartbeats,
+ * the consumer registers again. Its workers keep their worker ids: the workinator finds
+ * the consumer by name, and unregistering uses the new registration.
+ */
+@Slf4j
+public class ConsumerHeartbeat extends DelegatingWorkinator {
+    private final Duration interval;
+
+    /**
+     * The current assignment of each busy worker, by worker number.
+     */
+    private final Map<Integer, Assignment> current = new ConcurrentHashMap<>();
+
+    /**
+     * What the workinator acknowledged. Only used by the heartbeat thread.
+     */
+    private Map<Integer, Assignment> acknowledged = new HashMap<>();
+    private long acknowledgedVersion;
+
+    private volatile ConsumerRegistration registration;
+
+    /**
+     * What the consumer registered with, to register again.
+     */
+    private volatile RegisterConsumerCommand registerCommand;
+    private ScheduledExecutorService timer;
+
+    /**
+     * Sent with every heartbeat. 0 until the consumer changes its number of workers.
+     */
+    private volatile int maxWorkerCount;
+
+    private final LongAdder pings = new LongAdder();
+    private final LongAdder deltas = new LongAdder();
+    private final LongAdder resyncs = new LongAdder();
+    private final LongAdder changesSent = new LongAdder();
+    private final LongAdder reregistrations = new LongAdder();
+
+    public ConsumerHeartbeat(@NonNull final Workinator workinator, @NonNull final Duration interval) {
+        super(workinator);
+        if (interval.isZero() || interval.isNegative()) {
+            throw new IllegalArgumentException("interval must be greater than 0.");
+        }
+        this.interval = interval;
+    }
+
+    @Override
+    public ConsumerRegistration registerConsumer(@NonNull final RegisterConsumerCommand command) throws ConsumerExistsException {
+        val result = getWorkinator().registerConsumer(command);
+        synchronized (this) {
+            current.clear();
+            acknowledged = new HashMap<>();
+            acknowledgedVersion = 0;
+            registration = result;
+            registerCommand = command;
+        }
+        return result;
+    }
+
+    /**
+     * If the consumer registered again, the workinator only knows the new registration.
+     */
+    @Override
+    public void unregisterConsumer(@NonNull final UnregisterConsumerCommand command) {
+        UnregisterConsumerCommand unregister = command;
+        synchronized (this) {
+            val registered = registration;
+            if (registered != null
+                    && !registered.equals(command.getRegistration())
+                    && registered.getConsumerId().equals(command.getRegistration().getConsumerId())) {
+                unregister = new UnregisterConsumerCommand(registered);
+            }
+            registration = null;
+            registerCommand = null;
+            current.clear();
+        }
+        getWorkinator().unregisterConsumer(unregister);
+    }
+
+    @Override
+    public Assignment getAssignment(@NonNull final WorkerStatus status) {
+        return track(status.getWorkerId(), getWorkinator().getAssignment(status));
+    }
+
+    @Override
+    public Assignment getAssignment(@NonNull final WorkerStatus status, @NonNull final Duration maxWait) throws InterruptedException {
+        return track(status.getWorkerId(), getWorkinator().getAssignment(status, maxWait));
+    }
+
+    @Override
+    public List<Assignment> getAssignments(@NonNull final List<WorkerStatus> workers) {
+        val assignments = getWorkinator().getAssignments(workers);
+        for (int i = 0; i < workers.size(); i++) {
+            track(workers.get(i).getWorkerId(), assignments.get(i));
+        }
+        return assignments;
+    }
+
+    @Override
+    public AssignmentGroup getAssignmentGroup(@NonNull final WorkerGroupStatus status) {
+        val group = getWorkinator().getAssignmentGroup(status);
+        track(status.getWorkerId(), group.isEmpty() ? null : group.getAssignments().get(0));
+        return group;
+    }
+
+    @Override
+    public Assignment renewLease(@NonNull final RenewLeaseCommand command) {
+        val renewed = getWorkinator().renewLease(command);
+        if (renewed != null) {
+            track(renewed.getWorkerId(), renewed);
+        }
+        return renewed;
+    }
+
+    @Override
+    public void releaseAssignment(@NonNull final ReleaseAssignmentCommand command) {
+        getWorkinator().releaseAssignment(command);
+        untrack(command.getAssignment());
+    }
+
+    @Override
+    public void releaseAssignments(@NonNull final List<ReleaseAssignmentCommand> commands) {
+        getWorkinator().releaseAssignments(commands);
+        for (val command : commands) {
+            untrack(command.getAssignment());
+        }
+    }
+
+    @Override
+    public void releaseAssignmentGroup(@NonNull final ReleaseAssignmentGroupCommand command) {
+        getWorkinator().releaseAssignmentGroup(command);
+        current.remove(command.getGroup().getWorkerId().getWorkerNumber());
+    }
+
+    private Assignment track(final WorkerId workerId, final Assignment assignment) {
+        if (assignment == null) {
+            current.remove(workerId.getWorkerNumber());
+        } else {
+            current.put(workerId.getWorkerNumber(), assignment);
+        }
+        return assignment;
+    }
+
+    private void untrack(final Assignment assignment) {
+        current.computeIfPresent(assignment.getWorkerId().getWorkerNumber(),
+                (workerNumber, tracked) -> isSameAssignment(tracked, assignment) ? null : tracked);
+    }
+
+    /**
+     * The number of workers the consumer runs now. Sent with the next heartbeat.
+     * @param maxWorkerCount
+     */
+    public void setMaxWorkerCount(final int maxWorkerCount) {
+        this.maxWorkerCount = maxWorkerCount;
+    }
+
+    /**
+     * Sends a heartbeat: the changes since the last acknowledged version, or a ping.
+     */
+    public synchronized void beat() {
+        val registration = this.registration;
+        if (registration == null) {
+            return;
+        }
+
+        val snapshot = new HashMap<Integer, Assignment>(current);
+        val changes = new ArrayList<ConsumerWorkerStatus>();
+        for (val entry : snapshot.entrySet()) {
+            if (!isSameAssignment(entry.getValue(), acknowledged.get(entry.getKey()))) {
+                changes.add(toWorkerStatus(entry.getKey(), entry.getValue()));
+            }
+        }
+        for (val workerNumber : acknowledged.keySet()) {
+            if (!snapshot.containsKey(workerNumber)) {
+                changes.add(toWorkerStatus(workerNumber, null));
+            }
+        }
+
+        val version = changes.isEmpty() ? acknowledgedVersion : acknowledgedVersion + 1;
+        HeartbeatResult result = getWorkinator().heartbeat(ConsumerHeartbeatCommand
+                .builder()
+                .registration(registration)
+                .baseVersion(acknowledgedVersion)
+                .version(version)
+                .changes(changes)
+                .maxWorkerCount(maxWorkerCount)
+                .build());
+
+        if (changes.isEmpty()) {
+            pings.increment();
+        } else {
+            deltas.increment();
+            changesSent.add(changes.size());
+        }
+
+        if (result.isResyncRequired()) {
+            resyncs.increment();
+            val full = new ArrayList<ConsumerWorkerStatus>();
+            for (val entry : snapshot.entrySet()) {
+                full.add(toWorkerStatus(entry.getKey(), entry.getValue()));
+            }
+            val fullVersion = Math.max(version, result.getVersion()) + 1;
+            result = getWorkinator().heartbeat(ConsumerHeartbeatCommand
+                    .builder()
+                    .registration(registration)
+                    .baseVersion(result.getVersion())
+                    .version(fullVersion)
+                    .full(true)
+                    .changes(full)
+                    .maxWorkerCount(maxWorkerCount)
+                    .build());
+            changesSent.add(full.size());
+        }
+
+        if (!result.isRegistered()) {
+            log.warn("The workinator doesn't know the consumer. Registering again. Consumer=" + registration.getConsumerId().getName());
+            reregister();
+            return;
+        }
+
+        if (!result.isResyncRequired()) {
+            acknowledged = snapshot;
+            acknowledgedVersion = result.getVersion();
+        }
+    }
+
+    /**
+     * The workinator unregistered the consumer and released its assignments.
+     * Registers again, with the current number of workers. The next heartbeat
+     * sends all of the workers, including the ones that still have assignments.
+     */
+    private void reregister() {
+        val command = registerCommand;
+        if (command == null) {
+            return;
+        }
+
+        try {
+            registration = getWorkinator().registerConsumer(RegisterConsumerCommand
+                    .builder()
+                    .id(command.getId())
+                    .maxWorkerCount(maxWorkerCount > 0 ? maxWorkerCount : command.getMaxWorkerCount())
+                    .build());
+        } catch (final ConsumerExistsException ex) {
+            log.error("Registering again. Consumer=" + command.getId().getName(), ex);
+            return;
+        }
+        acknowledged = new HashMap<>();
+        acknowledgedVersion = 0;
+        reregistrations.increment();
+    }
+
+    /**
+     * The workinator returns a new Assignment object every time a worker keeps its partition,
+     * so assignments are compared by receipt.
+     */
+    private static boolean isSameAssignment(final Assignment a, final Assignment b) {
+        return b != null && a.getReceipt().equals(b.getReceipt());
+    }
+
+    private static ConsumerWorkerStatus toWorkerStatus(final int workerNumber, final Assignment assignment) {
+        return ConsumerWorkerStatus
+                .builder()
+                .workerNumber(workerNumber)
+                .assignment(assignment)
+                .build();
+    }
+
+    private void beatQuietly() {
+        try {
+            beat();
+        } catch (final Exception ex) {
+            log.error("Sending heartbeat", ex);
+        }
+    }
+
+    @Override
+    public void start() {
+        if (!getServiceStatus().starting()) {
+            return;
+        }
+
+        timer = Executors.newSingleThreadScheduledExecutor(r -> {
+            val thread = new Thread(r, "workinator-heartbeat");
+            thread.setDaemon(true);
+            return thread;
+        });
+        val period = Math.max(1, interval.toMillis());
+        timer.scheduleWithFixedDelay(this::beatQuietly, period, period, TimeUnit.MILLISECONDS);
+        getServiceStatus().started();
+    }
+
+    @Override
+    public void stop() {
+        if (!getServiceStatus().stopping()) {
+            return;
+        }
+
+        timer.shutdown();
+        try {
+            timer.awaitTermination(interval.toMillis() + 1000, TimeUnit.MILLISECONDS);
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        getServiceStatus().stopped();
+    }
+
+    @Override
+    public Map<String, Object> getInfo() {
+        val info = new HashMap<String, Object>();
+        info.put("pings", pings.sum());
+        info.put("deltas", deltas.sum());
+        info.put("resyncs", resyncs.sum());
+        info.put("changesSent", changesSent.sum());
+        info.put("reregistrations", reregistrations.sum());
+        info.put("interval", interval.toString());
+        if (getWorkinator() instanceof Service) {
+            info.put("workinator", ((Service) getWorkinator()).getInfo());
+        }
+        return info;
+    }
+}
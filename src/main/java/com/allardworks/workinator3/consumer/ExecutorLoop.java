@@ -0,0 +1,37 @@
+package com.allardworks.workinator3.consumer;
+
+import java.time.Duration;
+
+/**
+ * The loop of an async executor, as seen by the ExecutorThreads that run it.
+ */
+interface ExecutorLoop {
+    enum CycleResult {
+        Assigned,
+        NoAssignment,
+
+        /**
+         * Getting the assignment failed, or was interrupted.
+         * The threads wait delayWhenNoAssignment before the next cycle,
+         * so that a store that is down isn't hit in a loop.
+         */
+        Failed
+    }
+
+    boolean isRunning();
+
+    /**
+     * Gets an assignment and executes the worker for it.
+     * @param maxWait how long to wait for an assignment if there isn't one.
+     * @return whether there was an assignment.
+     */
+    CycleResult runCycle(Duration maxWait);
+
+    /**
+     * Called when the loop is done. Releases the assignment and completes the stop,
+     * even if the executor wasn't asked to stop. IE: the thread was interrupted.
+     */
+    void finish();
+
+    Duration getDelayWhenNoAssignment();
+}
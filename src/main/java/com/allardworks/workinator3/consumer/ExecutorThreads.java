@@ -0,0 +1,230 @@
+package com.allardworks.workinator3.consumer;
+
+import com.allardworks.workinator3.consumer.ExecutorLoop.CycleResult;
+import com.allardworks.workinator3.core.ConsumerConfiguration;
+import com.allardworks.workinator3.core.ExecutorThreadMode;
+import lombok.Getter;
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+import lombok.val;
+
+import java.time.Duration;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs the loops of async executors.
+ *
+ * Dedicated: each executor gets its own thread, which loops until the executor stops.
+ *
+ * Pooled: the executors share an ExecutorService. Each cycle of the loop is a task.
+ * With virtual threads, a task may block while waiting for an assignment.
+ * With a bounded pool, a task never waits for an assignment. If there isn't one,
+ * then the next cycle is scheduled after delayWhenNoAssignment, so waiting executors
+ * don't hold pool threads.
+ *
+ * After a cycle fails, IE: the workinator is down, the next cycle waits delayWhenNoAssignment
+ * in every mode. An interrupted thread stops its executor.
+ */
+@Slf4j
+public abstract class ExecutorThreads implements AutoCloseable {
+    @Getter
+    private final String name;
+
+    private ExecutorThreads(final String name) {
+        this.name = name;
+    }
+
+    abstract void start(ExecutorLoop executor);
+
+    @Override
+    public void close() {
+    }
+
+    /**
+     * Creates the threads described by the consumer configuration.
+     * @param configuration
+     * @return
+     */
+    public static ExecutorThreads create(@NonNull final ConsumerConfiguration configuration) {
+        return configuration.getThreadMode() == ExecutorThreadMode.Pooled
+                ? pooled(configuration.getMaxPoolThreads())
+                : dedicated();
+    }
+
+    /**
+     * A thread per executor.
+     * @return
+     */
+    public static ExecutorThreads dedicated() {
+        return new Dedicated();
+    }
+
+    /**
+     * Virtual threads if the runtime supports them, otherwise a pool
+     * of at most maxThreads threads.
+     * @param maxThreads
+     * @return
+     */
+    public static ExecutorThreads pooled(final int maxThreads) {
+        val virtual = newVirtualThreadExecutor();
+        if (virtual != null) {
+            return new Pooled("pooled-virtual", virtual, true);
+        }
+
+        val counter = new AtomicInteger();
+        val pool = new ThreadPoolExecutor(maxThreads, maxThreads, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), r -> {
+            val thread = new Thread(r, "workinator-executor-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        pool.allowCoreThreadTimeOut(true);
+        return new Pooled("pooled-" + maxThreads, pool, false);
+    }
+
+    /**
+     * Shares an existing executor service. The executor service isn't shut down by close().
+     * @param executorService
+     * @param canBlock true if tasks may block while waiting for an assignment. IE: virtual threads.
+     * @return
+     */
+    public static ExecutorThreads shared(@NonNull final ExecutorService executorService, final boolean canBlock) {
+        return new Pooled("shared", executorService, canBlock) {
+            @Override
+            public void close() {
+                closeScheduler();
+            }
+        };
+    }
+
+    /**
+     * Executors.newVirtualThreadPerTaskExecutor(), if the runtime has it.
+     * Looked up reflectively so the project still builds for older runtimes.
+     */
+    private static ExecutorService newVirtualThreadExecutor() {
+        try {
+            val method = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) method.invoke(null);
+        } catch (final ReflectiveOperationException | RuntimeException ex) {
+            return null;
+        }
+    }
+
+    private static final class Dedicated extends ExecutorThreads {
+        private final AtomicInteger counter = new AtomicInteger();
+
+        private Dedicated() {
+            super("dedicated");
+        }
+
+        @Override
+        void start(final ExecutorLoop executor) {
+            val thread = new Thread(() -> {
+                try {
+                    while (executor.isRunning()) {
+                        val delay = executor.getDelayWhenNoAssignment();
+                        if (executor.runCycle(delay) == CycleResult.Failed) {
+                            Thread.sleep(delay.toMillis());
+                        }
+
+                        if (Thread.currentThread().isInterrupted()) {
+                            throw new InterruptedException();
+                        }
+                    }
+                } catch (final InterruptedException ex) {
+                    log.warn("Executor thread interrupted. Stopping executor.");
+                } finally {
+                    executor.finish();
+                }
+            }, "workinator-executor-" + counter.incrementAndGet());
+            thread.start();
+        }
+    }
+
+    private static class Pooled extends ExecutorThreads {
+        private final ExecutorService pool;
+        private final boolean canBlock;
+        private final ScheduledExecutorService scheduler;
+
+        private Pooled(final String name, final ExecutorService pool, final boolean canBlock) {
+            super(name);
+            this.pool = pool;
+            this.canBlock = canBlock;
+            this.scheduler = canBlock ? null : Executors.newSingleThreadScheduledExecutor(r -> {
+                val thread = new Thread(r, "workinator-executor-scheduler");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+
+        @Override
+        void start(final ExecutorLoop executor) {
+            submit(executor);
+        }
+
+        private void submit(final ExecutorLoop executor) {
+            try {
+                pool.execute(() -> cycle(executor));
+            } catch (final RejectedExecutionException ex) {
+                log.error("The executor pool is shut down. Stopping executor.", ex);
+                executor.finish();
+            }
+        }
+
+        private void cycle(final ExecutorLoop executor) {
+            if (!executor.isRunning()) {
+                executor.finish();
+                return;
+            }
+
+            val delay = executor.getDelayWhenNoAssignment();
+            CycleResult result;
+            try {
+                result = executor.runCycle(canBlock ? delay : Duration.ZERO);
+            } catch (final RuntimeException ex) {
+                log.error("Executor cycle failed", ex);
+                result = CycleResult.Failed;
+            }
+
+            if (Thread.interrupted()) {
+                // the pool is shutting down.
+                executor.finish();
+                return;
+            }
+
+            if (result == CycleResult.Assigned || (canBlock && result == CycleResult.NoAssignment)) {
+                submit(executor);
+                return;
+            }
+
+            if (canBlock) {
+                try {
+                    Thread.sleep(delay.toMillis());
+                } catch (final InterruptedException ex) {
+                    executor.finish();
+                    return;
+                }
+                submit(executor);
+                return;
+            }
+
+            try {
+                scheduler.schedule(() -> submit(executor), delay.toMillis(), TimeUnit.MILLISECONDS);
+            } catch (final RejectedExecutionException ex) {
+                executor.finish();
+            }
+        }
+
+        void closeScheduler() {
+            if (scheduler != null) {
+                scheduler.shutdown();
+            }
+        }
+
+        @Override
+        public void close() {
+            closeScheduler();
+            pool.shutdown();
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package com.allardworks.workinator3.consumer;
+
+import com.allardworks.workinator3.core.*;
+import lombok.NonNull;
+import lombok.val;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs a SyncExecutor per worker.
+ * All of the executors share one small scheduler; none of them hold a thread
+ * while their workers run.
+ */
+public class SyncConsumer extends ConsumerBase {
+    private final SyncWorkerFactory workerFactory;
+    private ScheduledExecutorService scheduler;
+
+    public SyncConsumer(
+            @NonNull final ConsumerId consumerId,
+            @NonNull final Workinator workinator,
+            @NonNull final ConsumerConfiguration configuration,
+            @NonNull final SyncWorkerFactory workerFactory) {
+        this(consumerId, workinator, configuration, workerFactory, null);
+    }
+
+    /**
+     * @param lifecycleDispatcher delivers the transition events of the consumer and its executors. See ConsumerBase.
+     */
+    public SyncConsumer(
+            @NonNull final ConsumerId consumerId,
+            @NonNull final Workinator workinator,
+            @NonNull final ConsumerConfiguration configuration,
+            @NonNull final SyncWorkerFactory workerFactory,
+            final LifecycleDispatcher lifecycleDispatcher) {
+        super(consumerId, workinator, configuration, lifecycleDispatcher);
+        this.workerFactory = workerFactory;
+    }
+
+    @Override
+    protected void onStarting() {
+        val counter = new AtomicInteger();
+        val threads = Math.max(1, Math.min(Runtime.getRuntime().availableProcessors(), getConfiguration().getMaxWorkerCount()));
+        scheduler = Executors.newScheduledThreadPool(threads, r -> {
+            val thread = new Thread(r, "workinator-sync-executor-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @Override
+    protected Service createExecutor(final WorkerId workerId) {
+        return new SyncExecutor(workerId, getWorkinator(), getConfiguration(), workerFactory, scheduler, getWorkerMeter(), getLifecycleDispatcher());
+    }
+
+    @Override
+    protected void onStopped() {
+        scheduler.shutdown();
+    }
+}
@@ -0,0 +1,224 @@
+package com.allardworks.workinator3.consumer;
+
+import com.allardworks.workinator3.core.*;
+import com.allardworks.workinator3.core.commands.ReleaseAssignmentCommand;
+import com.allardworks.workinator3.core.commands.RenewLeaseCommand;
+import com.allardworks.workinator3.core.commands.SetPartitionStatusCommand;
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+import lombok.val;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Executes a WorkerSync once per assignment.
+ * The executor doesn't hold a thread while the worker runs. Instead, it
+ * schedules a check on a shared scheduler:
+ * - when there isn't an assignment: after delayWhenNoAssignment
+ * - when there is an assignment: after minWorkTime, or as soon as the worker reports it's out of work
+ *
+ * Each check reports the partition status, then renews the lease if the worker still has work.
+ * Otherwise, or if the lease isn't renewed, it asks the workinator for an assignment.
+ * If the workinator returns the same assignment, then the worker keeps going.
+ * Otherwise, the worker's stop handlers fire and the worker is closed.
+ */
+@Slf4j
+public class SyncExecutor extends ServiceBase {
+    private final Object lock = new Object();
+    private final WorkerStatus status;
+    private final Workinator workinator;
+    private final ConsumerConfiguration configuration;
+    private final SyncWorkerFactory workerFactory;
+    private final ScheduledExecutorService scheduler;
+    private final WorkerMeter meter;
+
+    private WorkerSync worker;
+    private SyncWorkerContext context;
+    private ScheduledFuture<?> nextCheck;
+
+    public SyncExecutor(
+            @NonNull final WorkerId workerId,
+            @NonNull final Workinator workinator,
+            @NonNull final ConsumerConfiguration configuration,
+            @NonNull final SyncWorkerFactory workerFactory,
+            @NonNull final ScheduledExecutorService scheduler,
+            @NonNull final WorkerMeter meter) {
+        this(workerId, workinator, configuration, workerFactory, scheduler, meter, null);
+    }
+
+    /**
+     * @param lifecycleDispatcher delivers the transition events. Null to deliver them on the thread that made the transition.
+     */
+    public SyncExecutor(
+            @NonNull final WorkerId workerId,
+            @NonNull final Workinator workinator,
+            @NonNull final ConsumerConfiguration configuration,
+            @NonNull final SyncWorkerFactory workerFactory,
+            @NonNull final ScheduledExecutorService scheduler,
+            @NonNull final WorkerMeter meter,
+            final LifecycleDispatcher lifecycleDispatcher) {
+        super(lifecycleDispatcher);
+        this.status = new WorkerStatus(workerId);
+        this.workinator = workinator;
+        this.configuration = configuration;
+        this.workerFactory = workerFactory;
+        this.scheduler = scheduler;
+        this.meter = meter;
+
+        getTransitionEventHandlers().onPostStarted(t -> schedule(Duration.ZERO));
+        getTransitionEventHandlers().onPostStopping(t -> execute(this::finish));
+    }
+
+    private void execute(final Runnable runnable) {
+        try {
+            scheduler.execute(runnable);
+        } catch (final RejectedExecutionException ex) {
+            runnable.run();
+        }
+    }
+
+    private void schedule(final Duration delay) {
+        synchronized (lock) {
+            if (nextCheck != null) {
+                nextCheck.cancel(false);
+            }
+
+            try {
+                nextCheck = scheduler.schedule(this::check, delay.toMillis(), TimeUnit.MILLISECONDS);
+            } catch (final RejectedExecutionException ex) {
+                log.error("The scheduler is shut down: " + status.getWorkerId().getAssignee(), ex);
+            }
+        }
+    }
+
+    /**
+     * Reports the partition status, then gets the next assignment.
+     */
+    private void check() {
+        synchronized (lock) {
+            if (!getStatus().isStarted()) {
+                return;
+            }
+
+            val current = status.getCurrentAssignment();
+            Assignment assignment = null;
+            try {
+                if (current != null) {
+                    meter.processed(context.takeProcessed());
+                    val hasWork = context.hasWork();
+                    workinator.setPartitionStatus(SetPartitionStatusCommand
+                            .builder()
+                            .partitionKey(current.getPartitionKey())
+                            .hasWork(hasWork)
+                            .backlog(context.getBacklog())
+                            .weight(context.getWeight())
+                            .receipt(current.getReceipt())
+                            .build());
+                    if (hasWork) {
+                        assignment = workinator.renewLease(new RenewLeaseCommand(current));
+                    }
+                }
+                if (assignment == null) {
+                    assignment = workinator.getAssignment(status.clone());
+                }
+            } catch (final Exception ex) {
+                log.error("Getting assignment: " + status.getWorkerId().getAssignee(), ex);
+                schedule(configuration.getDelayWhenNoAssignment());
+                return;
+            }
+
+            meter.assignment(assignment);
+            if (current != null && assignment != null && current.getReceipt().equals(assignment.getReceipt())) {
+                // same assignment. keep going.
+                status.setCurrentAssignment(assignment);
+                schedule(configuration.getMinWorkTime());
+                return;
+            }
+
+            stopWorker();
+            status.setCurrentAssignment(assignment);
+            if (assignment == null) {
+                schedule(configuration.getDelayWhenNoAssignment());
+                return;
+            }
+
+            context = new SyncWorkerContext(assignment, () -> schedule(Duration.ZERO));
+            worker = workerFactory.createWorker(assignment);
+            try {
+                worker.start(context);
+            } catch (final Exception ex) {
+                log.error("Starting worker: " + assignment.getPartitionKey(), ex);
+                context.setHasWork(false);
+            }
+
+            // a worker that's already out of work has an immediate check scheduled. keep it.
+            if (context.hasWork()) {
+                schedule(configuration.getMinWorkTime());
+            }
+        }
+    }
+
+    private void stopWorker() {
+        if (context != null) {
+            context.stop();
+            context = null;
+        }
+
+        if (worker != null) {
+            try {
+                worker.close();
+            } catch (final Exception ex) {
+                log.error("Closing worker", ex);
+            }
+            worker = null;
+        }
+    }
+
+    /**
+     * Stops the worker, releases the assignment, and completes the stop.
+     */
+    private void finish() {
+        synchronized (lock) {
+            if (nextCheck != null) {
+                nextCheck.cancel(false);
+                nextCheck = null;
+            }
+
+            stopWorker();
+            val current = status.getCurrentAssignment();
+            if (current != null) {
+                try {
+                    workinator.releaseAssignment(new ReleaseAssignmentCommand(current));
+                } catch (final Exception ex) {
+                    log.error("Releasing assignment: " + current.getPartitionKey(), ex);
+                }
+                status.setCurrentAssignment(null);
+            }
+        }
+        getServiceStatus().stopped();
+    }
+
+    @Override
+    public void start() {
+        if (getServiceStatus().starting()) {
+            getServiceStatus().started();
+        }
+    }
+
+    @Override
+    public Map<String, Object> getInfo() {
+        val current = status.getCurrentAssignment();
+        val info = new HashMap<String, Object>();
+        info.put("workerNumber", status.getWorkerId().getWorkerNumber());
+        info.put("status", getStatus().toString());
+        info.put("partitionKey", current == null ? null : current.getPartitionKey());
+        info.put("rule", current == null ? null : current.getRuleName());
+        return info;
+    }
+}
@@ -0,0 +1,120 @@
+package com.allardworks.workinator3.consumer;
+
+import com.allardworks.workinator3.core.Assignment;
+import com.allardworks.workinator3.core.EventHandlers;
+import lombok.Getter;
+import lombok.NonNull;
+import lombok.RequiredArgsConstructor;
+import lombok.val;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Passed to a WorkerSync when it starts.
+ * The stop handlers fire when the assignment is taken away from the worker:
+ * the minimum work time is over and the workinator assigns something else,
+ * the assignment is revoked, or the executor is stopping.
+ */
+@RequiredArgsConstructor
+public class SyncWorkerContext {
+    @Getter
+    @NonNull
+    private final Assignment assignment;
+
+    /**
+     * Called when the worker reports that it's out of work,
+     * so the executor can check for a new assignment without waiting for the minimum work time.
+     */
+    @NonNull
+    private final Runnable outOfWork;
+
+    private final EventHandlers stopHandlers = new EventHandlers();
+
+    private volatile boolean hasWork = true;
+
+    private volatile long backlog;
+
+    private volatile double weight = 1;
+
+    private final AtomicLong processed = new AtomicLong();
+
+    private volatile boolean stopped;
+
+    public SyncWorkerContext onStop(@NonNull final Consumer<SyncWorkerContext> handler) {
+        stopHandlers.add(() -> handler.accept(this));
+        return this;
+    }
+
+    public boolean hasWork() {
+        return hasWork;
+    }
+
+    public boolean isStopped() {
+        return stopped;
+    }
+
+    /**
+     * Reports whether the partition has more work.
+     * This is forwarded to the workinator.
+     * @param hasWork
+     */
+    public void setHasWork(final boolean hasWork) {
+        val wasOutOfWork = !this.hasWork;
+        this.hasWork = hasWork;
+        if (!hasWork && !wasOutOfWork && !stopped) {
+            outOfWork.run();
+        }
+    }
+
+    public long getBacklog() {
+        return backlog;
+    }
+
+    /**
+     * Reports how much work is waiting in the partition, so the workinator can give
+     * partitions that are further behind more workers. See SetPartitionStatusCommand.
+     * @param backlog
+     */
+    public void setBacklog(final long backlog) {
+        this.backlog = backlog;
+    }
+
+    /**
+     * Counts items that the worker processed. Optional.
+     * The consumer uses the counts to measure its throughput when it adjusts its number of workers.
+     * @param count
+     */
+    public void addProcessed(final long count) {
+        processed.addAndGet(count);
+    }
+
+    /**
+     * The items processed since the last call.
+     */
+    long takeProcessed() {
+        return processed.getAndSet(0);
+    }
+
+    public double getWeight() {
+        return weight;
+    }
+
+    /**
+     * How much the partition's backlog counts compared to other partitions. Defaults to 1.
+     * @param weight
+     */
+    public void setWeight(final double weight) {
+        this.weight = weight;
+    }
+
+    void stop() {
+        if (stopped) {
+            return;
+        }
+
+        stopped = true;
+        stopHandlers.execute();
+        stopHandlers.clear();
+    }
+}
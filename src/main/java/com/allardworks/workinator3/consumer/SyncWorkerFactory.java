@@ -0,0 +1,10 @@
+package com.allardworks.workinator3.consumer;
+
+import com.allardworks.workinator3.core.Assignment;
+
+/**
+ * Creates a worker each time a sync executor receives an assignment for a new partition.
+ */
+public interface SyncWorkerFactory {
+    WorkerSync createWorker(Assignment assignment);
+}
@@ -0,0 +1,24 @@
+package com.allardworks.workinator3.consumer;
+
+/**
+ * Implemented by the application. Does the work for an assignment.
+ * Executed by AsyncExecutors.
+ *
+ * The worker needs to watch the context to know when to stop working.
+ * <pre>
+ * while (context.canContinue()) {
+ *    // work
+ * }
+ * </pre>
+ */
+public interface WorkerAsync extends AutoCloseable {
+    void work(WorkerContext context);
+
+    /**
+     * Called when the executor no longer has the assignment
+     * that the worker was created for.
+     */
+    @Override
+    default void close() {
+    }
+}
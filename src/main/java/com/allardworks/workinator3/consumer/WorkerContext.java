@@ -0,0 +1,93 @@
+package com.allardworks.workinator3.consumer;
+
+import com.allardworks.workinator3.core.Assignment;
+import lombok.Getter;
+import lombok.NonNull;
+import lombok.RequiredArgsConstructor;
+
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Passed to the worker each time it's executed.
+ * The worker keeps working while canContinue() is true,
+ * and reports when the partition runs out of work with setHasWork(false).
+ */
+@RequiredArgsConstructor
+public class WorkerContext {
+    @Getter
+    @NonNull
+    private final Assignment assignment;
+
+    @NonNull
+    private final BooleanSupplier executorCanContinue;
+
+    private volatile boolean hasWork = true;
+
+    private volatile long backlog;
+
+    private volatile double weight = 1;
+
+    private final LongAdder processed = new LongAdder();
+
+    /**
+     * True if the worker may keep working.
+     * False once the partition is out of work, the minimum work time is over,
+     * or the executor is stopping.
+     * @return
+     */
+    public boolean canContinue() {
+        return hasWork && executorCanContinue.getAsBoolean();
+    }
+
+    public boolean hasWork() {
+        return hasWork;
+    }
+
+    /**
+     * Reports whether the partition has more work.
+     * This is forwarded to the workinator when the worker returns.
+     * @param hasWork
+     */
+    public void setHasWork(final boolean hasWork) {
+        this.hasWork = hasWork;
+    }
+
+    public long getBacklog() {
+        return backlog;
+    }
+
+    /**
+     * Reports how much work is waiting in the partition, so the workinator can give
+     * partitions that are further behind more workers. See SetPartitionStatusCommand.
+     * @param backlog
+     */
+    public void setBacklog(final long backlog) {
+        this.backlog = backlog;
+    }
+
+    /**
+     * Counts items that the worker processed. Optional.
+     * The consumer uses the counts to measure its throughput when it adjusts its number of workers.
+     * @param count
+     */
+    public void addProcessed(final long count) {
+        processed.add(count);
+    }
+
+    long getProcessed() {
+        return processed.sum();
+    }
+
+    public double getWeight() {
+        return weight;
+    }
+
+    /**
+     * How much the partition's backlog counts compared to other partitions. Defaults to 1.
+     * @param weight
+     */
+    public void setWeight(final double weight) {
+        this.weight = weight;
+    }
+}
@@ -0,0 +1,256 @@
+package com.allardworks.workinator3.consumer;
+
+import com.allardworks.workinator3.core.ConsumerConfiguration;
+import com.allardworks.workinator3.core.ServiceBase;
+import lombok.Getter;
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+import lombok.val;
+
+import java.lang.management.ManagementFactory;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.DoubleSupplier;
+import java.util.function.IntConsumer;
+
+/**
+ * Grows and shrinks the number of workers of a consumer, between minWorkerCount and maxWorkerCount.
+ *
+ * Every interval, samples the WorkerMeter and the CPU load of the host, then, in order:
+ * - removes workers if the CPU is busier than targetCpuUtilization.
+ * - removes workers if the executors often don't get an assignment, or only keep one without work (rule 5).
+ *   There are more workers than work.
+ * - takes back the last increase if the throughput grew by less than half as much as the workers did.
+ *   IE: the per worker throughput fell, because of a bottleneck downstream.
+ * - adds workers if almost every request got an assignment, and the CPU has room.
+ * Each change is a quarter of the current count, at least 1.
+ * After the count goes down, it doesn't grow again for a few intervals.
+ *
+ * The throughput is the items that the workers report with WorkerContext.addProcessed.
+ * If they don't report any, the throughput check is skipped.
+ */
+@Slf4j
+public class WorkerCountController extends ServiceBase {
+    /**
+     * Workers are removed when more than this fraction of the requests for an assignment are idle. See WorkerMeter.
+     */
+    public static final double MAX_IDLE_RATIO = 0.2;
+
+    /**
+     * Workers are only added when less than this fraction of the requests don't get an assignment.
+     */
+    public static final double MIN_IDLE_RATIO = 0.05;
+
+    /**
+     * The number of intervals to wait before growing again, after the count goes down.
+     */
+    public static final int COOLDOWN_INTERVALS = 3;
+
+    private final int minWorkerCount;
+    private final int maxWorkerCount;
+    private final double targetCpuUtilization;
+    private final Duration interval;
+    private final WorkerMeter meter;
+    private final DoubleSupplier cpuLoad;
+    private final IntConsumer workerCountChanged;
+
+    @Getter
+    private volatile int workerCount;
+
+    /**
+     * The state of the last increase. Only used by adjust().
+     */
+    private int lastIncrease;
+    private double throughputBeforeIncrease;
+    private int cooldown;
+
+    private volatile double lastIdleRatio = -1;
+    private volatile double lastCpuLoad = -1;
+    private volatile double lastThroughput;
+    private volatile long increases;
+    private volatile long decreases;
+    private volatile long reverts;
+
+    private ScheduledExecutorService timer;
+
+    /**
+     * @param cpuLoad the CPU load of the host, between 0 and 1. Negative if it isn't known.
+     * @param workerCountChanged called with the new number of workers every time it changes.
+     */
+    public WorkerCountController(
+            final int minWorkerCount,
+            final int maxWorkerCount,
+            final double targetCpuUtilization,
+            @NonNull final Duration interval,
+            @NonNull final WorkerMeter meter,
+            @NonNull final DoubleSupplier cpuLoad,
+            @NonNull final IntConsumer workerCountChanged) {
+        if (minWorkerCount < 1 || maxWorkerCount < minWorkerCount) {
+            throw new IllegalArgumentException("minWorkerCount must be at least 1, and no more than maxWorkerCount.");
+        }
+        if (interval.isZero() || interval.isNegative()) {
+            throw new IllegalArgumentException("interval must be greater than 0.");
+        }
+        this.minWorkerCount = minWorkerCount;
+        this.maxWorkerCount = maxWorkerCount;
+        this.targetCpuUtilization = targetCpuUtilization;
+        this.interval = interval;
+        this.meter = meter;
+        this.cpuLoad = cpuLoad;
+        this.workerCountChanged = workerCountChanged;
+        this.workerCount = clamp(Runtime.getRuntime().availableProcessors());
+    }
+
+    public WorkerCountController(
+            @NonNull final ConsumerConfiguration configuration,
+            @NonNull final WorkerMeter meter,
+            @NonNull final IntConsumer workerCountChanged) {
+        this(configuration.getMinWorkerCount(), configuration.getMaxWorkerCount(), configuration.getTargetCpuUtilization(),
+                configuration.getWorkerCountInterval(), meter, WorkerCountController::getSystemCpuLoad, workerCountChanged);
+    }
+
+    /**
+     * The CPU load of the host, from the platform's OperatingSystemMXBean.
+     * @return -1 if the platform doesn't provide it.
+     */
+    public static double getSystemCpuLoad() {
+        val os = ManagementFactory.getOperatingSystemMXBean();
+        if (os instanceof com.sun.management.OperatingSystemMXBean) {
+            return ((com.sun.management.OperatingSystemMXBean) os).getSystemCpuLoad();
+        }
+        return -1;
+    }
+
+    private int clamp(final int count) {
+        return Math.max(minWorkerCount, Math.min(maxWorkerCount, count));
+    }
+
+    private static int getStep(final int count) {
+        return Math.max(1, count / 4);
+    }
+
+    /**
+     * Samples the meter and the CPU, and changes the number of workers if needed.
+     */
+    public void adjust() {
+        adjust(meter.sample(), cpuLoad.getAsDouble(), interval.toMillis() / 1000.0);
+    }
+
+    /**
+     * Decides the number of workers from a sample.
+     * @param sample what the executors did since the last adjustment.
+     * @param cpuLoad between 0 and 1. Negative if it isn't known.
+     * @param seconds the time the sample covers.
+     * @return the new number of workers.
+     */
+    synchronized int adjust(final WorkerMeter.Sample sample, final double cpuLoad, final double seconds) {
+        val current = workerCount;
+        val idleRatio = sample.getIdleRatio();
+        val throughput = seconds <= 0 ? 0 : sample.getProcessed() / seconds;
+        val cpuKnown = cpuLoad >= 0;
+        lastIdleRatio = idleRatio;
+        lastCpuLoad = cpuLoad;
+        lastThroughput = throughput;
+
+        val increase = lastIncrease;
+        lastIncrease = 0;
+        if (cooldown > 0) {
+            cooldown--;
+        }
+
+        int target = current;
+        if (cpuKnown && cpuLoad > targetCpuUtilization) {
+            target = current - getStep(current);
+        } else if (idleRatio > MAX_IDLE_RATIO) {
+            target = current - getStep(current);
+        } else if (increase > 0 && throughputBeforeIncrease > 0
+                && throughput - throughputBeforeIncrease < 0.5 * throughputBeforeIncrease * increase / (current - increase)) {
+            target = current - increase;
+            cooldown = COOLDOWN_INTERVALS;
+            reverts++;
+        } else if (idleRatio >= 0 && idleRatio < MIN_IDLE_RATIO && cooldown == 0
+                && (!cpuKnown || cpuLoad < targetCpuUtilization)) {
+            target = current + getStep(current);
+        }
+
+        target = clamp(target);
+        if (target == current) {
+            return current;
+        }
+
+        if (target > current) {
+            increases++;
+            lastIncrease = target - current;
+            throughputBeforeIncrease = throughput;
+        } else {
+            decreases++;
+            cooldown = Math.max(cooldown, COOLDOWN_INTERVALS);
+        }
+
+        log.info("Worker count " + current + " -> " + target + ". IdleRatio=" + idleRatio + ", CpuLoad=" + cpuLoad + ", Throughput=" + throughput);
+        workerCount = target;
+        workerCountChanged.accept(target);
+        return target;
+    }
+
+    private void adjustQuietly() {
+        try {
+            adjust();
+        } catch (final Exception ex) {
+            log.error("Adjusting worker count", ex);
+        }
+    }
+
+    @Override
+    public void start() {
+        if (!getServiceStatus().starting()) {
+            return;
+        }
+
+        meter.sample();
+        timer = Executors.newSingleThreadScheduledExecutor(r -> {
+            val thread = new Thread(r, "workinator-worker-count");
+            thread.setDaemon(true);
+            return thread;
+        });
+        val period = Math.max(1, interval.toMillis());
+        timer.scheduleWithFixedDelay(this::adjustQuietly, period, period, TimeUnit.MILLISECONDS);
+        getServiceStatus().started();
+    }
+
+    @Override
+    public void stop() {
+        if (!getServiceStatus().stopping()) {
+            return;
+        }
+
+        timer.shutdown();
+        try {
+            timer.awaitTermination(interval.toMillis() + 1000, TimeUnit.MILLISECONDS);
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        getServiceStatus().stopped();
+    }
+
+    @Override
+    public Map<String, Object> getInfo() {
+        val info = new HashMap<String, Object>();
+        info.put("workerCount", workerCount);
+        info.put("minWorkerCount", minWorkerCount);
+        info.put("maxWorkerCount", maxWorkerCount);
+        info.put("idleRatio", lastIdleRatio);
+        info.put("cpuLoad", lastCpuLoad);
+        info.put("throughput", lastThroughput);
+        info.put("throughputPerWorker", lastThroughput / workerCount);
+        info.put("increases", increases);
+        info.put("decreases", decreases);
+        info.put("reverts", reverts);
+        info.put("interval", interval.toString());
+        return info;
+    }
+}
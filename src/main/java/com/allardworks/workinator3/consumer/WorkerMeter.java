@@ -0,0 +1,82 @@
+package com.allardworks.workinator3.consumer;
+
+import com.allardworks.workinator3.core.Assignment;
+import com.allardworks.workinator3.core.AssignmentGroup;
+import lombok.Data;
+import lombok.val;
+
+import java.util.concurrent.atomic.LongAdder;
+
+import static com.allardworks.workinator3.core.AssignmentRules.RULE5;
+
+/**
+ * Counts what the executors of a consumer do, for the WorkerCountController.
+ * Shared by all of the consumer's executors.
+ */
+public class WorkerMeter {
+    private final LongAdder assigned = new LongAdder();
+    private final LongAdder idle = new LongAdder();
+    private final LongAdder processed = new LongAdder();
+
+    /**
+     * An executor asked for an assignment.
+     * Keeping the current assignment by rule 5 counts as idle: the partition doesn't have work,
+     * and no other partition needed the worker.
+     * @param assignment null if it didn't get one.
+     */
+    public void assignment(final Assignment assignment) {
+        count(isBusy(assignment));
+    }
+
+    /**
+     * An executor asked for a group of assignments.
+     * Idle unless at least one of the assignments is busy.
+     */
+    public void assignments(final AssignmentGroup group) {
+        count(group.getAssignments().stream().anyMatch(WorkerMeter::isBusy));
+    }
+
+    private static boolean isBusy(final Assignment assignment) {
+        return assignment != null && !RULE5.equals(assignment.getRuleName());
+    }
+
+    private void count(final boolean busy) {
+        if (busy) {
+            assigned.increment();
+        } else {
+            idle.increment();
+        }
+    }
+
+    /**
+     * Items that a worker reported with WorkerContext.addProcessed.
+     */
+    public void processed(final long count) {
+        if (count > 0) {
+            processed.add(count);
+        }
+    }
+
+    /**
+     * The counts since the last sample.
+     */
+    public Sample sample() {
+        return new Sample(assigned.sumThenReset(), idle.sumThenReset(), processed.sumThenReset());
+    }
+
+    @Data
+    public static class Sample {
+        private final long assigned;
+        private final long idle;
+        private final long processed;
+
+        /**
+         * The fraction of the requests for an assignment that were idle.
+         * @return -1 if there weren't any requests.
+         */
+        public double getIdleRatio() {
+            val requests = assigned + idle;
+            return requests == 0 ? -1 : (double) idle / requests;
+        }
+    }
+}
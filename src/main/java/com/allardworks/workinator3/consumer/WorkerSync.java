@@ -0,0 +1,30 @@
+package com.allardworks.workinator3.consumer;
+
+/**
+ * Implemented by the application. Executed by SyncExecutors.
+ *
+ * Appropriate for workers that use clients that start their own threads,
+ * such as a RabbitMq consumer or a Kafka Streams client. The worker sets them up
+ * and returns. The executor doesn't hold a thread while they run.
+ *
+ * The worker needs to catch stop events from the context so that it knows when to stop.
+ * <pre>
+ * context.onStop(c -> {
+ *   // shut 'er down
+ * });
+ * </pre>
+ */
+public interface WorkerSync extends AutoCloseable {
+    /**
+     * Called once per assignment. Should return as soon as the work is running.
+     * @param context
+     */
+    void start(SyncWorkerContext context);
+
+    /**
+     * Called after the stop handlers.
+     */
+    @Override
+    default void close() {
+    }
+}
@@ -0,0 +1,451 @@
+package com.allardworks.workinator3.consumer;
+
+import com.allardworks.workinator3.core.*;
+import com.allardworks.workinator3.core.commands.ReleaseAssignmentCommand;
+import com.allardworks.workinator3.core.commands.ReleaseAssignmentGroupCommand;
+import com.allardworks.workinator3.core.commands.RenewLeaseCommand;
+import com.allardworks.workinator3.core.commands.SetPartitionStatusCommand;
+import com.allardworks.workinator3.core.commands.UnregisterConsumerCommand;
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+import lombok.val;
+
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Client side write-behind buffer for partition statuses.
+ *
+ * Workers report hasWork after every batch of work, and almost all of those reports
+ * are the same as the last one. This only writes a status when it changes, or when
+ * the last write of the same value is older than the refresh interval.
+ * Changes to hasWork=true are written immediately because they make the partition eligible.
+ * A backlog that doubled or halved since the last write counts as a change, and is buffered.
+ * Everything else is buffered per partition, latest wins, and written in a batch
+ * at most maxStaleness later.
+ *
+ * Pending statuses are written before a partition is released or reassigned, so the
+ * workinator sees the final status when it decides what's next.
+ * Each partition has its own send lock, held while its status is written, so the writes for
+ * a partition are sent in the order they're decided without holding up other partitions.
+ * When the service isn't started, statuses are written through.
+ */
+@Slf4j
+public class WriteBehindWorkinator extends DelegatingWorkinator {
+    private final Duration maxStaleness;
+    private final long refreshIntervalNanos;
+
+    private final ConcurrentHashMap<String, PartitionState> states = new ConcurrentHashMap<>();
+    private final ConcurrentLinkedQueue<PartitionState> dirty = new ConcurrentLinkedQueue<>();
+
+    private final LongAdder received = new LongAdder();
+    private final LongAdder coalesced = new LongAdder();
+    private final LongAdder immediate = new LongAdder();
+    private final LongAdder buffered = new LongAdder();
+    private final LongAdder batches = new LongAdder();
+
+    private ScheduledExecutorService flusher;
+
+    public WriteBehindWorkinator(
+            @NonNull final Workinator workinator,
+            @NonNull final Duration maxStaleness,
+            @NonNull final Duration refreshInterval) {
+        super(workinator);
+        if (maxStaleness.isZero() || maxStaleness.isNegative()) {
+            throw new IllegalArgumentException("maxStaleness must be greater than 0.");
+        }
+        this.maxStaleness = maxStaleness;
+        this.refreshIntervalNanos = refreshInterval.toNanos();
+    }
+
+    public WriteBehindWorkinator(@NonNull final Workinator workinator, @NonNull final ConsumerConfiguration configuration) {
+        this(workinator, configuration.getPartitionStatusMaxStaleness(), configuration.getPartitionStatusRefreshInterval());
+    }
+
+    @Override
+    public void setPartitionStatus(@NonNull final SetPartitionStatusCommand command) {
+        if (!getStatus().isStarted()) {
+            flush(command.getPartitionKey());
+            getWorkinator().setPartitionStatus(command);
+            return;
+        }
+
+        received.increment();
+        val state = states.computeIfAbsent(command.getPartitionKey(), k -> new PartitionState());
+        if (command.isHasWork() && !Boolean.TRUE.equals(state.lastSent)) {
+            state.sendLock.lock();
+            try {
+                final boolean send;
+                synchronized (state) {
+                    send = !Boolean.TRUE.equals(state.lastSent);
+                    if (send) {
+                        state.pending = null;
+                        state.sent(command);
+                    }
+                }
+
+                if (send) {
+                    write(state, command);
+                    immediate.increment();
+                    return;
+                }
+            } finally {
+                state.sendLock.unlock();
+            }
+        }
+
+        synchronized (state) {
+            if (state.lastSent != null
+                    && state.lastSent == command.isHasWork()
+                    && !state.isWorkChanged(command)
+                    && System.nanoTime() - state.lastSentNanos < refreshIntervalNanos) {
+                // unchanged. this also cancels a pending change that was reverted.
+                state.pending = null;
+                coalesced.increment();
+                return;
+            }
+
+            state.pending = command;
+            buffered.increment();
+            if (!state.queued) {
+                state.queued = true;
+                dirty.add(state);
+            }
+        }
+    }
+
+    @Override
+    public void setPartitionStatuses(@NonNull final List<SetPartitionStatusCommand> commands) {
+        for (val command : commands) {
+            setPartitionStatus(command);
+        }
+    }
+
+    @Override
+    public Assignment getAssignment(@NonNull final WorkerStatus status) {
+        val current = getCurrentKey(status);
+        flush(current);
+        val assignment = getWorkinator().getAssignment(status);
+        forgetIfMoved(current, assignment);
+        return assignment;
+    }
+
+    @Override
+    public Assignment getAssignment(@NonNull final WorkerStatus status, @NonNull final Duration maxWait) throws InterruptedException {
+        val current = getCurrentKey(status);
+        flush(current);
+        val assignment = getWorkinator().getAssignment(status, maxWait);
+        forgetIfMoved(current, assignment);
+        return assignment;
+    }
+
+    @Override
+    public List<Assignment> getAssignments(@NonNull final List<WorkerStatus> workers) {
+        for (val worker : workers) {
+            flush(getCurrentKey(worker));
+        }
+        val assignments = getWorkinator().getAssignments(workers);
+        for (int i = 0; i < workers.size(); i++) {
+            forgetIfMoved(getCurrentKey(workers.get(i)), assignments.get(i));
+        }
+        return assignments;
+    }
+
+    @Override
+    public AssignmentGroup getAssignmentGroup(@NonNull final WorkerGroupStatus status) {
+        val current = status.getCurrentGroup() == null
+                ? Collections.<Assignment>emptyList()
+                : status.getCurrentGroup().getAssignments();
+        for (val assignment : current) {
+            flush(assignment.getPartitionKey());
+        }
+
+        val group = getWorkinator().getAssignmentGroup(status);
+        val keep = new HashSet<String>();
+        for (val assignment : group.getAssignments()) {
+            keep.add(assignment.getPartitionKey());
+        }
+        for (val assignment : current) {
+            if (!keep.contains(assignment.getPartitionKey())) {
+                forget(assignment.getPartitionKey());
+            }
+        }
+        return group;
+    }
+
+    /**
+     * The workinator only renews the lease if the partition has work,
+     * so a pending status is written first.
+     */
+    @Override
+    public Assignment renewLease(@NonNull final RenewLeaseCommand command) {
+        flush(command.getAssignment().getPartitionKey());
+        return getWorkinator().renewLease(command);
+    }
+
+    @Override
+    public void releaseAssignment(@NonNull final ReleaseAssignmentCommand command) {
+        val key = command.getAssignment().getPartitionKey();
+        flush(key);
+        getWorkinator().releaseAssignment(command);
+        forget(key);
+    }
+
+    @Override
+    public void releaseAssignments(@NonNull final List<ReleaseAssignmentCommand> commands) {
+        for (val command : commands) {
+            flush(command.getAssignment().getPartitionKey());
+        }
+        getWorkinator().releaseAssignments(commands);
+        for (val command : commands) {
+            forget(command.getAssignment().getPartitionKey());
+        }
+    }
+
+    @Override
+    public void releaseAssignmentGroup(@NonNull final ReleaseAssignmentGroupCommand command) {
+        val assignments = command.getGroup().getAssignments();
+        for (val assignment : assignments) {
+            flush(assignment.getPartitionKey());
+        }
+        getWorkinator().releaseAssignmentGroup(command);
+        for (val assignment : assignments) {
+            forget(assignment.getPartitionKey());
+        }
+    }
+
+    @Override
+    public void unregisterConsumer(@NonNull final UnregisterConsumerCommand command) {
+        flush();
+        getWorkinator().unregisterConsumer(command);
+    }
+
+    /**
+     * Writes all of the pending statuses in one batch.
+     * A partition that is being written by another thread stays queued for the next batch.
+     */
+    public void flush() {
+        if (dirty.isEmpty()) {
+            return;
+        }
+
+        val commands = new ArrayList<SetPartitionStatusCommand>();
+        val taken = new ArrayList<PartitionState>();
+        val busy = new ArrayList<PartitionState>();
+        try {
+            PartitionState state;
+            while ((state = dirty.poll()) != null) {
+                if (!state.sendLock.tryLock()) {
+                    busy.add(state);
+                    continue;
+                }
+
+                synchronized (state) {
+                    state.queued = false;
+                    if (state.pending == null) {
+                        state.sendLock.unlock();
+                        continue;
+                    }
+                    commands.add(state.pending);
+                    taken.add(state);
+                    state.sent(state.pending);
+                    state.pending = null;
+                }
+            }
+            dirty.addAll(busy);
+
+            if (commands.isEmpty()) {
+                return;
+            }
+
+            try {
+                getWorkinator().setPartitionStatuses(commands);
+                batches.increment();
+            } catch (final Exception ex) {
+                log.error("Writing partition statuses. They will be retried.", ex);
+                for (int i = 0; i < taken.size(); i++) {
+                    requeue(taken.get(i), commands.get(i));
+                }
+            }
+        } finally {
+            for (val state : taken) {
+                state.sendLock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Writes the pending status of one partition, if there is one.
+     */
+    private void flush(final String partitionKey) {
+        if (partitionKey == null) {
+            return;
+        }
+
+        val state = states.get(partitionKey);
+        if (state == null || state.pending == null) {
+            return;
+        }
+
+        state.sendLock.lock();
+        try {
+            final SetPartitionStatusCommand command;
+            synchronized (state) {
+                command = state.pending;
+                if (command == null) {
+                    return;
+                }
+                state.pending = null;
+                state.sent(command);
+            }
+            write(state, command);
+        } finally {
+            state.sendLock.unlock();
+        }
+    }
+
+    /**
+     * Writes one status. The caller holds the partition's send lock.
+     */
+    private void write(final PartitionState state, final SetPartitionStatusCommand command) {
+        try {
+            getWorkinator().setPartitionStatus(command);
+        } catch (final RuntimeException ex) {
+            requeue(state, command);
+            throw ex;
+        }
+    }
+
+    private void requeue(final PartitionState state, final SetPartitionStatusCommand command) {
+        synchronized (state) {
+            state.lastSent = null;
+            if (state.pending == null) {
+                state.pending = command;
+            }
+            if (!state.queued) {
+                state.queued = true;
+                dirty.add(state);
+            }
+        }
+    }
+
+    /**
+     * Stops tracking a partition that this consumer no longer has.
+     * Someone else may change its status, so the last sent value can't be trusted anymore.
+     */
+    private void forget(final String partitionKey) {
+        states.computeIfPresent(partitionKey, (key, state) -> {
+            synchronized (state) {
+                return state.pending == null ? null : state;
+            }
+        });
+    }
+
+    private void forgetIfMoved(final String current, final Assignment assignment) {
+        if (current != null && (assignment == null || !current.equals(assignment.getPartitionKey()))) {
+            forget(current);
+        }
+    }
+
+    private static String getCurrentKey(final WorkerStatus status) {
+        return status.getCurrentAssignment() == null ? null : status.getCurrentAssignment().getPartitionKey();
+    }
+
+    @Override
+    public void start() {
+        if (!getServiceStatus().starting()) {
+            return;
+        }
+
+        flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+            val thread = new Thread(r, "workinator-write-behind");
+            thread.setDaemon(true);
+            return thread;
+        });
+        val period = Math.max(1, maxStaleness.toMillis());
+        flusher.scheduleAtFixedRate(this::flushQuietly, period, period, TimeUnit.MILLISECONDS);
+        getServiceStatus().started();
+    }
+
+    @Override
+    public void stop() {
+        if (!getServiceStatus().stopping()) {
+            return;
+        }
+
+        flusher.shutdown();
+        try {
+            flusher.awaitTermination(maxStaleness.toMillis() + 1000, TimeUnit.MILLISECONDS);
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        flush();
+        states.clear();
+        getServiceStatus().stopped();
+    }
+
+    private void flushQuietly() {
+        try {
+            flush();
+        } catch (final Exception ex) {
+            log.error("Flushing partition statuses", ex);
+        }
+    }
+
+    @Override
+    public Map<String, Object> getInfo() {
+        val info = new HashMap<String, Object>();
+        info.put("received", received.sum());
+        info.put("coalesced", coalesced.sum());
+        info.put("immediate", immediate.sum());
+        info.put("buffered", buffered.sum());
+        info.put("batches", batches.sum());
+        info.put("partitions", states.size());
+        info.put("maxStaleness", maxStaleness.toString());
+        if (getWorkinator() instanceof Service) {
+            info.put("workinator", ((Service) getWorkinator()).getInfo());
+        }
+        return info;
+    }
+
+    /**
+     * What has been written for a partition, and what's waiting to be written.
+     * Guarded by its own monitor. The volatile fields are read without it for the fast paths.
+     * The monitor isn't held during remote calls; sendLock is.
+     */
+    private static class PartitionState {
+        private final ReentrantLock sendLock = new ReentrantLock();
+
+        /**
+         * Null if unknown.
+         */
+        private volatile Boolean lastSent;
+        private long lastSentNanos;
+        private volatile SetPartitionStatusCommand pending;
+        private boolean queued;
+
+        private long lastSentBacklog;
+        private double lastSentWeight;
+
+        void sent(final SetPartitionStatusCommand command) {
+            lastSent = command.isHasWork();
+            lastSentBacklog = command.getBacklog();
+            lastSentWeight = command.getWeight();
+            lastSentNanos = System.nanoTime();
+        }
+
+        /**
+         * True if the weight changed, or the backlog is at least double or at most half
+         * of what was last written. Smaller changes in the backlog wait for the refresh interval.
+         */
+        boolean isWorkChanged(final SetPartitionStatusCommand command) {
+            val backlog = command.getBacklog();
+            return command.getWeight() != lastSentWeight
+                    || backlog >= 2 * lastSentBacklog + 1
+                    || 2 * backlog + 1 <= lastSentBacklog;
+        }
+    }
+}
@@ -0,0 +1,174 @@
+package com.allardworks.workinator3.coordinator.embedded;
+
+import lombok.val;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+
+/**
+ * An append only log in memory-mapped segment files.
+ *
+ * A record is [length][crc32][payload]. The segments are allocated at their full size,
+ * so the unwritten part of a segment is zeros, and a length of 0 is the end of the segment.
+ * A record that was only partly written when the process died fails its CRC,
+ * and is the end of the segment too.
+ *
+ * Writing a record is a copy into the mapped segment. The OS writes the pages to the file,
+ * so records survive the process dying once they're appended. They survive the machine
+ * dying once they're synced.
+ */
+class AppendLog implements AutoCloseable {
+    private static final String PREFIX = "log-";
+    private static final String SUFFIX = ".wal";
+    static final int HEADER_SIZE = 8;
+
+    private final Path directory;
+    private final int segmentSize;
+
+    private long segment;
+    private FileChannel channel;
+    private MappedByteBuffer buffer;
+
+    /**
+     * Opens a new segment to append to.
+     * @param directory
+     * @param segmentSize
+     * @param segment the number of the segment. Has to be greater than the existing segments.
+     * @throws IOException
+     */
+    AppendLog(final Path directory, final int segmentSize, final long segment) throws IOException {
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        open(segment);
+    }
+
+    private void open(final long segment) throws IOException {
+        channel = FileChannel.open(getSegmentPath(directory, segment),
+                StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentSize);
+        this.segment = segment;
+    }
+
+    /**
+     * Appends a record. Starts a new segment if the record doesn't fit in the current one.
+     * @param payload from its position to its limit.
+     * @param crc the CRC32 of the payload.
+     * @throws IOException
+     */
+    synchronized void append(final ByteBuffer payload, final int crc) throws IOException {
+        val length = payload.remaining();
+        if (length + HEADER_SIZE > segmentSize) {
+            throw new IllegalArgumentException("The record is larger than a segment. Length=" + length);
+        }
+
+        if (buffer.remaining() < length + HEADER_SIZE) {
+            roll();
+        }
+
+        buffer.putInt(length);
+        buffer.putInt(crc);
+        buffer.put(payload);
+    }
+
+    /**
+     * Closes the current segment, and starts a new one.
+     * @return the number of the new segment.
+     * @throws IOException
+     */
+    synchronized long roll() throws IOException {
+        buffer.force();
+        channel.close();
+        open(segment + 1);
+        return segment;
+    }
+
+    /**
+     * Writes the appended records to the disk.
+     */
+    void sync() {
+        final MappedByteBuffer current;
+        synchronized (this) {
+            current = buffer;
+        }
+        current.force();
+    }
+
+    synchronized long getSegment() {
+        return segment;
+    }
+
+    /**
+     * The number of bytes used in the current segment.
+     */
+    synchronized int getPosition() {
+        return buffer.position();
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        buffer.force();
+        channel.close();
+    }
+
+    static Path getSegmentPath(final Path directory, final long segment) {
+        return directory.resolve(String.format("%s%019d%s", PREFIX, segment, SUFFIX));
+    }
+
+    /**
+     * The numbers of the segments in the directory, in order.
+     */
+    static List<Long> getSegments(final Path directory) throws IOException {
+        val result = new ArrayList<Long>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, PREFIX + "*" + SUFFIX)) {
+            for (val file : files) {
+                val name = file.getFileName().toString();
+                result.add(Long.parseLong(name.substring(PREFIX.length(), name.length() - SUFFIX.length())));
+            }
+        }
+        Collections.sort(result);
+        return result;
+    }
+
+    /**
+     * Passes every complete record of a segment to the consumer, in order.
+     * @return the number of records.
+     */
+    static long read(final Path file, final Consumer<ByteBuffer> consumer) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            val buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            val crc = new CRC32();
+            long count = 0;
+            while (buffer.remaining() >= HEADER_SIZE) {
+                val length = buffer.getInt();
+                val expected = buffer.getInt();
+                if (length <= 0 || length > buffer.remaining()) {
+                    break;
+                }
+
+                val payload = buffer.slice();
+                payload.limit(length);
+                crc.reset();
+                crc.update(payload.duplicate());
+                if ((int) crc.getValue() != expected) {
+                    break;
+                }
+
+                consumer.accept(payload);
+                buffer.position(buffer.position() + length);
+                count++;
+            }
+            return count;
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package com.allardworks.workinator3.coordinator.embedded;
+
+import com.allardworks.workinator3.coordinator.memory.MemoryWorkinator;
+import lombok.Data;
+import lombok.NonNull;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+@Data
+@Configuration
+@ConfigurationProperties("embedded")
+public class EmbeddedConfiguration {
+    /**
+     * The directory for the log segments and the snapshots.
+     * Only one workinator can use a directory at a time.
+     */
+    @NonNull
+    private String directory = "workinator-data";
+
+    /**
+     * The size of each log segment file.
+     */
+    private int segmentSize = 64 * 1024 * 1024;
+
+    /**
+     * How often the log is written to the disk.
+     * The log survives the process dying regardless; this is how much is lost
+     * if the machine dies. Zero writes every record to the disk before returning, which is slow.
+     */
+    @NonNull
+    private Duration syncInterval = Duration.ofMillis(100);
+
+    /**
+     * A snapshot is taken once this many bytes have been appended to the log since the last one.
+     * Recovery replays the log from the last snapshot, so this bounds the restart time.
+     */
+    private long snapshotThreshold = 256L * 1024 * 1024;
+
+    /**
+     * How often to check if a snapshot is needed.
+     */
+    @NonNull
+    private Duration snapshotCheckInterval = Duration.ofSeconds(5);
+
+    /**
+     * How long an assignment lasts without being renewed.
+     */
+    @NonNull
+    private Duration leaseDuration = MemoryWorkinator.DEFAULT_LEASE_DURATION;
+
+    /**
+     * How long a consumer can go without a heartbeat before its assignments are released.
+     * A few of the consumers' heartbeat intervals. Zero if consumers don't expire.
+     */
+    @NonNull
+    private Duration consumerTimeout = Duration.ZERO;
+}
@@ -0,0 +1,545 @@
+package com.allardworks.workinator3.coordinator.embedded;
+
+import com.allardworks.workinator3.coordinator.memory.MemoryJournal;
+import com.allardworks.workinator3.coordinator.memory.MemoryWorkinator;
+import com.allardworks.workinator3.coordinator.memory.PartitionSnapshot;
+import com.allardworks.workinator3.core.*;
+import lombok.extern.slf4j.Slf4j;
+import lombok.val;
+
+import java.io.*;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Writes the changes of a MemoryWorkinator to an AppendLog, and takes snapshots.
+ *
+ * A snapshot starts a new log segment, then writes every partition to a file.
+ * Changes keep being made while it's written, so the snapshot is fuzzy: recovery loads it,
+ * then replays the log from the segment it started. The changes are idempotent,
+ * so replaying changes that the snapshot already has doesn't matter.
+ * Once the snapshot is complete, the older segments and snapshots are deleted.
+ *
+ * If the log can't be written, the call that made the change fails,
+ * but the change has already been made in memory.
+ */
+@Slf4j
+class EmbeddedJournal implements MemoryJournal {
+    private static final int SNAPSHOT_MAGIC = 0x574b5233;
+    private static final int SNAPSHOT_VERSION = 2;
+    private static final String SNAPSHOT_PREFIX = "snapshot-";
+    private static final String SNAPSHOT_SUFFIX = ".dat";
+    private static final String TEMP_SUFFIX = ".tmp";
+
+    private static final byte PARTITION_CREATED = 1;
+    private static final byte ASSIGNED = 3;
+    private static final byte RENEWED = 4;
+    private static final byte RELEASED = 5;
+    private static final byte PARTITION_CONFIGURED = 6;
+    private static final byte PARTITION_DELETED = 7;
+    private static final byte PARTITION_WORK = 8;
+
+    private final Path directory;
+    private final int segmentSize;
+    private final boolean syncEveryRecord;
+    private volatile AppendLog appendLog;
+
+    private final ThreadLocal<Encoder> encoders = ThreadLocal.withInitial(Encoder::new);
+    private final Object snapshotLock = new Object();
+
+    private final LongAdder records = new LongAdder();
+    private final LongAdder bytesSinceSnapshot = new LongAdder();
+    private volatile long recoveredRecords;
+    private volatile long recoveryMillis;
+    private volatile long snapshots;
+    private volatile long lastSnapshotMillis;
+    private volatile long lastSnapshotPartitions;
+
+    EmbeddedJournal(final EmbeddedConfiguration configuration) {
+        this.directory = Paths.get(configuration.getDirectory());
+        this.segmentSize = configuration.getSegmentSize();
+        this.syncEveryRecord = configuration.getSyncInterval().isZero();
+    }
+
+    @Override
+    public void partitionCreated(final PartitionConfiguration configuration, final long now) {
+        append(buffer -> {
+            buffer.put(PARTITION_CREATED);
+            putString(buffer, configuration.getPartitionKey());
+            buffer.putInt(configuration.getMaxIdleTimeSeconds());
+            buffer.putInt(configuration.getMaxWorkerCount());
+            buffer.putLong(now);
+        });
+    }
+
+    @Override
+    public void partitionConfigured(final PartitionConfiguration configuration) {
+        append(buffer -> {
+            buffer.put(PARTITION_CONFIGURED);
+            putString(buffer, configuration.getPartitionKey());
+            buffer.putInt(configuration.getMaxIdleTimeSeconds());
+            buffer.putInt(configuration.getMaxWorkerCount());
+        });
+    }
+
+    @Override
+    public void partitionDeleted(final String partitionKey) {
+        append(buffer -> {
+            buffer.put(PARTITION_DELETED);
+            putString(buffer, partitionKey);
+        });
+    }
+
+    @Override
+    public void partitionStatusChanged(final String partitionKey, final boolean hasMoreWork, final long backlog, final double weight, final long now) {
+        append(buffer -> {
+            buffer.put(PARTITION_WORK);
+            putString(buffer, partitionKey);
+            buffer.put((byte) (hasMoreWork ? 1 : 0));
+            buffer.putLong(backlog);
+            buffer.putDouble(weight);
+            buffer.putLong(now);
+        });
+    }
+
+    @Override
+    public void assigned(final Assignment assignment) {
+        append(buffer -> {
+            buffer.put(ASSIGNED);
+            putString(buffer, assignment.getPartitionKey());
+            putString(buffer, assignment.getReceipt());
+            putString(buffer, assignment.getWorkerId().getConsumer().getConsumerId().getName());
+            putString(buffer, assignment.getWorkerId().getConsumer().getReceipt());
+            buffer.putInt(assignment.getWorkerId().getWorkerNumber());
+            putString(buffer, assignment.getRuleName());
+            buffer.putLong(assignment.getAssignmentDate().getTime());
+            buffer.putLong(assignment.getLeaseExpiration() == null ? -1 : assignment.getLeaseExpiration().getTime());
+        });
+    }
+
+    @Override
+    public void renewed(final String partitionKey, final String receipt, final Date leaseExpiration) {
+        append(buffer -> {
+            buffer.put(RENEWED);
+            putString(buffer, partitionKey);
+            putString(buffer, receipt);
+            buffer.putLong(leaseExpiration.getTime());
+        });
+    }
+
+    @Override
+    public void released(final String partitionKey, final String receipt, final long now) {
+        append(buffer -> {
+            buffer.put(RELEASED);
+            putString(buffer, partitionKey);
+            putString(buffer, receipt);
+            buffer.putLong(now);
+        });
+    }
+
+    private void append(final Consumer<ByteBuffer> write) {
+        val appendLog = this.appendLog;
+        if (appendLog == null) {
+            throw new IllegalStateException("The journal isn't open.");
+        }
+
+        val encoder = encoders.get();
+        val payload = encoder.encode(write);
+        val length = payload.remaining();
+        try {
+            appendLog.append(payload, encoder.crc(payload));
+        } catch (final IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+
+        if (syncEveryRecord) {
+            appendLog.sync();
+        }
+        records.increment();
+        bytesSinceSnapshot.add(length + AppendLog.HEADER_SIZE);
+    }
+
+    /**
+     * Loads the last snapshot, replays the log after it, and starts a new log segment.
+     * @param target an empty workinator.
+     * @throws IOException
+     */
+    void open(final MemoryWorkinator target) throws IOException {
+        val start = System.currentTimeMillis();
+        Files.createDirectories(directory);
+        deleteFiles(TEMP_SUFFIX, Long.MAX_VALUE);
+
+        long firstSegment = 0;
+        val snapshots = getSnapshots();
+        if (!snapshots.isEmpty()) {
+            firstSegment = snapshots.get(snapshots.size() - 1);
+            readSnapshot(getSnapshotPath(firstSegment), target);
+        }
+
+        long nextSegment = firstSegment;
+        long count = 0;
+        for (val segment : AppendLog.getSegments(directory)) {
+            val path = AppendLog.getSegmentPath(directory, segment);
+            if (segment < firstSegment) {
+                // left by a snapshot that didn't finish cleaning up.
+                Files.deleteIfExists(path);
+                continue;
+            }
+
+            count += AppendLog.read(path, payload -> apply(payload, target));
+            nextSegment = segment + 1;
+        }
+
+        appendLog = new AppendLog(directory, segmentSize, nextSegment);
+        recoveredRecords = count;
+        recoveryMillis = System.currentTimeMillis() - start;
+        log.info("Recovered. Directory=" + directory + ", Records=" + count + ", Millis=" + recoveryMillis);
+    }
+
+    private static void apply(final ByteBuffer payload, final MemoryWorkinator target) {
+        val type = payload.get();
+        switch (type) {
+            case PARTITION_CREATED: {
+                val key = getString(payload);
+                val maxIdleTimeSeconds = payload.getInt();
+                val maxWorkerCount = payload.getInt();
+                val now = payload.getLong();
+                target.restorePartition(PartitionSnapshot
+                        .builder()
+                        .configuration(PartitionConfiguration
+                                .builder()
+                                .partitionKey(key)
+                                .maxIdleTimeSeconds(maxIdleTimeSeconds)
+                                .maxWorkerCount(maxWorkerCount)
+                                .build())
+                        .lastChecked(now)
+                        .build());
+                break;
+            }
+            case PARTITION_WORK: {
+                val key = getString(payload);
+                val hasMoreWork = payload.get() != 0;
+                val backlog = payload.getLong();
+                val weight = payload.getDouble();
+                target.restorePartitionStatus(key, hasMoreWork, backlog, weight, payload.getLong());
+                break;
+            }
+            case ASSIGNED:
+                target.restoreAssignment(getAssignment(payload));
+                break;
+            case RENEWED: {
+                val key = getString(payload);
+                val receipt = getString(payload);
+                target.restoreRenewal(key, receipt, new Date(payload.getLong()));
+                break;
+            }
+            case RELEASED: {
+                val key = getString(payload);
+                val receipt = getString(payload);
+                target.restoreRelease(key, receipt, payload.getLong());
+                break;
+            }
+            case PARTITION_CONFIGURED:
+                target.restorePartitionConfiguration(PartitionConfiguration
+                        .builder()
+                        .partitionKey(getString(payload))
+                        .maxIdleTimeSeconds(payload.getInt())
+                        .maxWorkerCount(payload.getInt())
+                        .build());
+                break;
+            case PARTITION_DELETED:
+                target.restorePartitionDeleted(getString(payload));
+                break;
+            default:
+                throw new IllegalStateException("Unknown record type: " + type);
+        }
+    }
+
+    /**
+     * Takes a snapshot. Only one snapshot is taken at a time.
+     * @param target
+     * @throws IOException
+     */
+    void snapshot(final MemoryWorkinator target) throws IOException {
+        synchronized (snapshotLock) {
+            val start = System.currentTimeMillis();
+            val segment = appendLog.roll();
+            bytesSinceSnapshot.reset();
+
+            val temp = directory.resolve(SNAPSHOT_PREFIX + String.format("%019d", segment) + TEMP_SUFFIX);
+            final long[] partitions = {0};
+            try (FileOutputStream file = new FileOutputStream(temp.toFile());
+                 DataOutputStream out = new DataOutputStream(new BufferedOutputStream(file, 1 << 16))) {
+                out.writeInt(SNAPSHOT_MAGIC);
+                out.writeInt(SNAPSHOT_VERSION);
+                out.writeLong(segment);
+                try {
+                    target.snapshot(partition -> {
+                        try {
+                            out.writeBoolean(true);
+                            writePartition(out, partition);
+                            partitions[0]++;
+                        } catch (final IOException ex) {
+                            throw new UncheckedIOException(ex);
+                        }
+                    });
+                } catch (final UncheckedIOException ex) {
+                    throw ex.getCause();
+                }
+                out.writeBoolean(false);
+                out.flush();
+                file.getFD().sync();
+            }
+
+            Files.move(temp, getSnapshotPath(segment), StandardCopyOption.ATOMIC_MOVE);
+            deleteFiles(SNAPSHOT_SUFFIX, segment);
+            for (val old : AppendLog.getSegments(directory)) {
+                if (old < segment) {
+                    Files.deleteIfExists(AppendLog.getSegmentPath(directory, old));
+                }
+            }
+
+            snapshots++;
+            lastSnapshotPartitions = partitions[0];
+            lastSnapshotMillis = System.currentTimeMillis() - start;
+            log.info("Snapshot. Partitions=" + partitions[0] + ", Millis=" + lastSnapshotMillis);
+        }
+    }
+
+    private static void readSnapshot(final Path path, final MemoryWorkinator target) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path), 1 << 16))) {
+            if (in.readInt() != SNAPSHOT_MAGIC) {
+                throw new IOException("Not a snapshot: " + path);
+            }
+
+            val version = in.readInt();
+            if (version != SNAPSHOT_VERSION) {
+                throw new IOException("Unsupported snapshot version " + version + ": " + path);
+            }
+
+            in.readLong();
+            while (in.readBoolean()) {
+                target.restorePartition(readPartition(in));
+            }
+        }
+    }
+
+    private static void writePartition(final DataOutputStream out, final PartitionSnapshot partition) throws IOException {
+        val configuration = partition.getConfiguration();
+        writeString(out, configuration.getPartitionKey());
+        out.writeInt(configuration.getMaxIdleTimeSeconds());
+        out.writeInt(configuration.getMaxWorkerCount());
+        out.writeBoolean(partition.isHasMoreWork());
+        out.writeLong(partition.getBacklog());
+        out.writeDouble(partition.getWeight());
+        out.writeLong(partition.getLastChecked());
+        out.writeInt(partition.getWorkers().size());
+        for (val assignment : partition.getWorkers()) {
+            writeString(out, assignment.getReceipt());
+            writeString(out, assignment.getWorkerId().getConsumer().getConsumerId().getName());
+            writeString(out, assignment.getWorkerId().getConsumer().getReceipt());
+            out.writeInt(assignment.getWorkerId().getWorkerNumber());
+            writeString(out, assignment.getRuleName());
+            out.writeLong(assignment.getAssignmentDate().getTime());
+            out.writeLong(assignment.getLeaseExpiration() == null ? -1 : assignment.getLeaseExpiration().getTime());
+        }
+    }
+
+    private static PartitionSnapshot readPartition(final DataInputStream in) throws IOException {
+        val key = readString(in);
+        val configuration = PartitionConfiguration
+                .builder()
+                .partitionKey(key)
+                .maxIdleTimeSeconds(in.readInt())
+                .maxWorkerCount(in.readInt())
+                .build();
+        val hasMoreWork = in.readBoolean();
+        val backlog = in.readLong();
+        val weight = in.readDouble();
+        val lastChecked = in.readLong();
+        val count = in.readInt();
+        val workers = new ArrayList<Assignment>(count);
+        for (int i = 0; i < count; i++) {
+            val receipt = readString(in);
+            val consumerName = readString(in);
+            val consumerReceipt = readString(in);
+            val workerNumber = in.readInt();
+            val rule = readString(in);
+            val assignmentDate = in.readLong();
+            val leaseExpiration = in.readLong();
+            workers.add(toAssignment(key, receipt, consumerName, consumerReceipt, workerNumber, rule, assignmentDate, leaseExpiration));
+        }
+
+        return PartitionSnapshot
+                .builder()
+                .configuration(configuration)
+                .hasMoreWork(hasMoreWork)
+                .backlog(backlog)
+                .weight(weight)
+                .lastChecked(lastChecked)
+                .workers(workers)
+                .build();
+    }
+
+    private static Assignment getAssignment(final ByteBuffer payload) {
+        val key = getString(payload);
+        val receipt = getString(payload);
+        val consumerName = getString(payload);
+        val consumerReceipt = getString(payload);
+        val workerNumber = payload.getInt();
+        val rule = getString(payload);
+        val assignmentDate = payload.getLong();
+        val leaseExpiration = payload.getLong();
+        return toAssignment(key, receipt, consumerName, consumerReceipt, workerNumber, rule, assignmentDate, leaseExpiration);
+    }
+
+    private static Assignment toAssignment(
+            final String partitionKey,
+            final String receipt,
+            final String consumerName,
+            final String consumerReceipt,
+            final int workerNumber,
+            final String rule,
+            final long assignmentDate,
+            final long leaseExpiration) {
+        val workerId = new WorkerId(new ConsumerRegistration(new ConsumerId(consumerName), consumerReceipt), workerNumber);
+        return new Assignment(workerId, partitionKey, receipt, rule, new Date(assignmentDate),
+                leaseExpiration < 0 ? null : new Date(leaseExpiration));
+    }
+
+    private static void putString(final ByteBuffer buffer, final String value) {
+        val bytes = value.getBytes(UTF_8);
+        buffer.putInt(bytes.length);
+        buffer.put(bytes);
+    }
+
+    private static String getString(final ByteBuffer buffer) {
+        val bytes = new byte[buffer.getInt()];
+        buffer.get(bytes);
+        return new String(bytes, UTF_8);
+    }
+
+    private static void writeString(final DataOutputStream out, final String value) throws IOException {
+        val bytes = value.getBytes(UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(final DataInputStream in) throws IOException {
+        val bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        return new String(bytes, UTF_8);
+    }
+
+    private Path getSnapshotPath(final long segment) {
+        return directory.resolve(SNAPSHOT_PREFIX + String.format("%019d", segment) + SNAPSHOT_SUFFIX);
+    }
+
+    /**
+     * The starting segments of the snapshots in the directory, in order.
+     */
+    private List<Long> getSnapshots() throws IOException {
+        val result = new ArrayList<Long>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, SNAPSHOT_PREFIX + "*" + SNAPSHOT_SUFFIX)) {
+            for (val file : files) {
+                val name = file.getFileName().toString();
+                result.add(Long.parseLong(name.substring(SNAPSHOT_PREFIX.length(), name.length() - SNAPSHOT_SUFFIX.length())));
+            }
+        }
+        result.sort(Long::compare);
+        return result;
+    }
+
+    /**
+     * Deletes the snapshot files with the suffix that are older than the segment.
+     */
+    private void deleteFiles(final String suffix, final long beforeSegment) throws IOException {
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, SNAPSHOT_PREFIX + "*" + suffix)) {
+            for (val file : files) {
+                val name = file.getFileName().toString();
+                val segment = Long.parseLong(name.substring(SNAPSHOT_PREFIX.length(), name.length() - suffix.length()));
+                if (segment < beforeSegment) {
+                    Files.deleteIfExists(file);
+                }
+            }
+        }
+    }
+
+    void sync() {
+        val appendLog = this.appendLog;
+        if (appendLog != null) {
+            appendLog.sync();
+        }
+    }
+
+    long getBytesSinceSnapshot() {
+        return bytesSinceSnapshot.sum();
+    }
+
+    void close() throws IOException {
+        val appendLog = this.appendLog;
+        this.appendLog = null;
+        if (appendLog != null) {
+            appendLog.close();
+        }
+    }
+
+    Map<String, Object> getInfo() {
+        val info = new HashMap<String, Object>();
+        info.put("directory", directory.toString());
+        info.put("records", records.sum());
+        info.put("bytesSinceSnapshot", bytesSinceSnapshot.sum());
+        info.put("recoveredRecords", recoveredRecords);
+        info.put("recoveryMillis", recoveryMillis);
+        info.put("snapshots", snapshots);
+        info.put("lastSnapshotMillis", lastSnapshotMillis);
+        info.put("lastSnapshotPartitions", lastSnapshotPartitions);
+        val appendLog = this.appendLog;
+        if (appendLog != null) {
+            info.put("segment", appendLog.getSegment());
+        }
+        return info;
+    }
+
+    /**
+     * Per thread buffer and CRC, so records are encoded outside of the log's lock.
+     */
+    private static class Encoder {
+        private ByteBuffer buffer = ByteBuffer.allocate(1024);
+        private final CRC32 crc = new CRC32();
+
+        ByteBuffer encode(final Consumer<ByteBuffer> write) {
+            while (true) {
+                buffer.clear();
+                try {
+                    write.accept(buffer);
+                    buffer.flip();
+                    return buffer;
+                } catch (final BufferOverflowException ex) {
+                    buffer = ByteBuffer.allocate(buffer.capacity() * 2);
+                }
+            }
+        }
+
+        int crc(final ByteBuffer payload) {
+            crc.reset();
+            crc.update(payload.duplicate());
+            return (int) crc.getValue();
+        }
+    }
+}
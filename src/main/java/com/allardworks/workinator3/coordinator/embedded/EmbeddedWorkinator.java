@@ -0,0 +1,157 @@
+package com.allardworks.workinator3.coordinator.embedded;
+
+import com.allardworks.workinator3.coordinator.memory.MemoryWorkinator;
+import com.allardworks.workinator3.coordinator.strategy.WhatsNextAssignmentStrategy;
+import com.allardworks.workinator3.core.BulkPartitionAdmin;
+import com.allardworks.workinator3.core.BulkPartitionResult;
+import com.allardworks.workinator3.core.DelegatingWorkinator;
+import com.allardworks.workinator3.core.commands.CreatePartitionCommand;
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+import lombok.val;
+
+import java.io.IOException;
+import java.time.Clock;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * A durable workinator that runs in the consumer's process, without a database.
+ *
+ * The state is a MemoryWorkinator, so assignments take as long as they do in memory.
+ * Partition creation, statuses, assignments, renewals and releases are appended to
+ * a memory-mapped log, with periodic snapshots. Constructing the workinator recovers
+ * the state from the last snapshot and the log after it.
+ *
+ * Consumers aren't durable; they register again after a restart. The recovered assignments
+ * keep their partitions until their leases expire, unless their workers renew them.
+ *
+ * Starting the service starts syncing the log and taking snapshots. Closing takes a
+ * last snapshot, so the next restart doesn't have any log to replay.
+ */
+@Slf4j
+public class EmbeddedWorkinator extends DelegatingWorkinator implements BulkPartitionAdmin {
+    private final EmbeddedConfiguration configuration;
+    private final EmbeddedJournal journal;
+    private final MemoryWorkinator memory;
+    private ScheduledExecutorService timer;
+    private boolean closed;
+
+    public EmbeddedWorkinator(@NonNull final EmbeddedConfiguration configuration) throws IOException {
+        this(configuration, Clock.systemUTC());
+    }
+
+    public EmbeddedWorkinator(@NonNull final EmbeddedConfiguration configuration, @NonNull final Clock clock) throws IOException {
+        this(configuration, clock, new EmbeddedJournal(configuration));
+    }
+
+    private EmbeddedWorkinator(final EmbeddedConfiguration configuration, final Clock clock, final EmbeddedJournal journal) throws IOException {
+        super(new MemoryWorkinator(clock, configuration.getLeaseDuration(), journal, new WhatsNextAssignmentStrategy(), configuration.getConsumerTimeout()));
+        this.configuration = configuration;
+        this.journal = journal;
+        this.memory = (MemoryWorkinator) getWorkinator();
+        journal.open(memory);
+    }
+
+    /**
+     * Takes a snapshot now. The log before it is deleted.
+     * @throws IOException
+     */
+    public void snapshot() throws IOException {
+        journal.snapshot(memory);
+    }
+
+    @Override
+    public BulkPartitionResult upsertPartitions(@NonNull final Stream<CreatePartitionCommand> partitions) {
+        return memory.upsertPartitions(partitions);
+    }
+
+    @Override
+    public BulkPartitionResult reconfigurePartitions(@NonNull final Stream<CreatePartitionCommand> partitions) {
+        return memory.reconfigurePartitions(partitions);
+    }
+
+    @Override
+    public BulkPartitionResult deletePartitions(@NonNull final Stream<String> partitionKeys) {
+        return memory.deletePartitions(partitionKeys);
+    }
+
+    private void snapshotIfNeeded() {
+        try {
+            if (journal.getBytesSinceSnapshot() >= configuration.getSnapshotThreshold()) {
+                snapshot();
+            }
+        } catch (final Exception ex) {
+            log.error("Taking snapshot", ex);
+        }
+    }
+
+    @Override
+    public void start() {
+        if (!getServiceStatus().starting()) {
+            return;
+        }
+
+        timer = Executors.newScheduledThreadPool(2, r -> {
+            val thread = new Thread(r, "workinator-embedded");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        val syncMillis = configuration.getSyncInterval().toMillis();
+        if (syncMillis > 0) {
+            timer.scheduleAtFixedRate(journal::sync, syncMillis, syncMillis, TimeUnit.MILLISECONDS);
+        }
+
+        val checkMillis = Math.max(1, configuration.getSnapshotCheckInterval().toMillis());
+        timer.scheduleWithFixedDelay(this::snapshotIfNeeded, checkMillis, checkMillis, TimeUnit.MILLISECONDS);
+        getServiceStatus().started();
+    }
+
+    @Override
+    public void stop() {
+        if (!getServiceStatus().stopping()) {
+            return;
+        }
+
+        timer.shutdown();
+        try {
+            timer.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        journal.sync();
+        getServiceStatus().stopped();
+    }
+
+    /**
+     * Stops, takes a last snapshot, and closes the log.
+     * The workinator can't be used after it's closed.
+     * @throws Exception
+     */
+    @Override
+    public synchronized void close() throws Exception {
+        if (closed) {
+            return;
+        }
+
+        closed = true;
+        stop();
+        try {
+            snapshot();
+        } finally {
+            journal.close();
+            memory.close();
+        }
+    }
+
+    @Override
+    public Map<String, Object> getInfo() {
+        val info = journal.getInfo();
+        info.put("reclaims", memory.getReclaimMetrics().getInfo());
+        return info;
+    }
+}
@@ -0,0 +1,70 @@
+package com.allardworks.workinator3.coordinator.memory;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Wakes up workers that are waiting for an assignment when
+ * something happens that may make a partition eligible.
+ * IE: a partition has work, an assignment is released, a partition is created.
+ *
+ * Signalling is lock free when nobody is waiting, so it's cheap on the hot path.
+ */
+class AssignmentSignal {
+    private final AtomicLong version = new AtomicLong();
+    private final AtomicInteger waiting = new AtomicInteger();
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition changed = lock.newCondition();
+
+    /**
+     * The current version. Pass it to await() to wait for the next signal.
+     * Get the version before checking for an assignment so that a signal
+     * between the check and the wait isn't missed.
+     * @return
+     */
+    long getVersion() {
+        return version.get();
+    }
+
+    void signal() {
+        version.incrementAndGet();
+        if (waiting.get() == 0) {
+            return;
+        }
+
+        lock.lock();
+        try {
+            changed.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Waits until there's a signal after the given version, or until the timeout.
+     * @param observedVersion
+     * @param timeoutMillis
+     * @return true if there was a signal.
+     * @throws InterruptedException
+     */
+    boolean await(final long observedVersion, final long timeoutMillis) throws InterruptedException {
+        waiting.incrementAndGet();
+        lock.lock();
+        try {
+            long remaining = TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+            while (version.get() == observedVersion) {
+                if (remaining <= 0) {
+                    return false;
+                }
+                remaining = changed.awaitNanos(remaining);
+            }
+            return true;
+        } finally {
+            lock.unlock();
+            waiting.decrementAndGet();
+        }
+    }
+}
@@ -0,0 +1,131 @@
+package com.allardworks.workinator3.coordinator.memory;
+
+import lombok.Data;
+import lombok.val;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * The partitions that rule 3 can give another worker: they have work, at least one worker,
+ * and capacity. Ordered by weighted backlog per worker, highest first, so the next worker
+ * goes to the partition that is furthest behind. Handing out slots this way gives each
+ * partition a share of the workers in proportion to its backlog, up to its maxWorkerCount.
+ *
+ * Maintained the same way as the DueDateIndex: call update() every time a partition's
+ * status or worker count changes.
+ */
+class BacklogIndex {
+    /**
+     * Ordered by priority, highest first, then by partition handle and generation.
+     */
+    @Data
+    static class BacklogKey implements Comparable<BacklogKey> {
+        private final double priority;
+        private final int handle;
+        private final int generation;
+
+        @Override
+        public int compareTo(final BacklogKey other) {
+            if (priority != other.priority) {
+                return Double.compare(other.priority, priority);
+            }
+            return handle != other.handle
+                    ? Integer.compare(handle, other.handle)
+                    : Integer.compare(generation, other.generation);
+        }
+    }
+
+    private final ConcurrentNavigableMap<BacklogKey, MemoryPartition> index = new ConcurrentSkipListMap<>();
+
+    /**
+     * The weighted backlog that the next worker would get.
+     */
+    private static double getPriority(final MemoryPartition partition) {
+        return partition.getDemand() / (partition.getWorkerCount() + 1);
+    }
+
+    private static boolean isEligible(final MemoryPartition partition) {
+        return partition.isHasMoreWork()
+                && !partition.isDeleted()
+                && partition.getWorkerCount() > 0
+                && partition.hasCapacity();
+    }
+
+    /**
+     * Puts the partition in the right place in the index, or removes it
+     * if rule 3 can't give it another worker.
+     * @param partition
+     */
+    void update(final MemoryPartition partition) {
+        synchronized (partition) {
+            val current = partition.backlogKey;
+            if (!isEligible(partition)) {
+                if (current != null) {
+                    index.remove(current);
+                    partition.backlogKey = null;
+                }
+                return;
+            }
+
+            val priority = getPriority(partition);
+            if (current != null) {
+                if (current.getPriority() == priority) {
+                    return;
+                }
+                index.remove(current);
+            }
+
+            partition.backlogKey = new BacklogKey(priority, partition.getHandle(), partition.getGeneration());
+            index.put(partition.backlogKey, partition);
+        }
+    }
+
+    void remove(final MemoryPartition partition) {
+        synchronized (partition) {
+            if (partition.backlogKey != null) {
+                index.remove(partition.backlogKey);
+                partition.backlogKey = null;
+            }
+        }
+    }
+
+    /**
+     * Claims another slot of the partition with the highest priority.
+     * @param exclude a partition to skip. May be null.
+     * @param excludedKeys the keys of more partitions to skip.
+     * @return the partition, or null if there isn't one.
+     */
+    MemoryPartition reserve(final MemoryPartition exclude, final Set<String> excludedKeys) {
+        for (val partition : index.values()) {
+            if (partition == exclude || !partition.isHasMoreWork() || excludedKeys.contains(partition.getPartitionKey())) {
+                continue;
+            }
+
+            val count = partition.getWorkerCount();
+            if (count > 0 && partition.tryReserve(count)) {
+                return partition;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * The highest priority in the index.
+     * @param exclude a partition to skip. May be null.
+     * @return the priority, or 0 if the index is empty.
+     */
+    double getTopPriority(final MemoryPartition exclude) {
+        for (val entry : index.entrySet()) {
+            if (entry.getValue() != exclude) {
+                return entry.getKey().getPriority();
+            }
+        }
+        return 0;
+    }
+
+    int size() {
+        return index.size();
+    }
+}
@@ -0,0 +1,116 @@
+package com.allardworks.workinator3.coordinator.memory;
+
+import lombok.Data;
+import lombok.val;
+
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * The partitions that don't have any workers, ordered by due date.
+ * Rule 1 takes the first partition of the index, so finding the most overdue
+ * idle partition is O(log n) regardless of the number of partitions.
+ *
+ * The index is maintained incrementally: every time a partition's worker count
+ * or last checked date changes, call update(). The partition is locked while it's
+ * re-keyed, so it's never in the index under two keys.
+ */
+class DueDateIndex {
+    /**
+     * Ordered by due date, then by partition handle and generation, which are cheaper to compare than the key.
+     */
+    @Data
+    static class DueKey implements Comparable<DueKey> {
+        private final long dueDate;
+        private final int handle;
+        private final int generation;
+
+        @Override
+        public int compareTo(final DueKey other) {
+            if (dueDate != other.dueDate) {
+                return Long.compare(dueDate, other.dueDate);
+            }
+            return handle != other.handle
+                    ? Integer.compare(handle, other.handle)
+                    : Integer.compare(generation, other.generation);
+        }
+    }
+
+    private final ConcurrentNavigableMap<DueKey, MemoryPartition> index = new ConcurrentSkipListMap<>();
+
+    /**
+     * Puts the partition in the right place in the index, or removes it
+     * if it has workers or was deleted.
+     * @param partition
+     */
+    void update(final MemoryPartition partition) {
+        synchronized (partition) {
+            if (partition.indexKey != null) {
+                index.remove(partition.indexKey);
+                partition.indexKey = null;
+            }
+
+            if (partition.getWorkerCount() == 0 && !partition.isDeleted()) {
+                partition.indexKey = new DueKey(partition.getDueDate(), partition.getHandle(), partition.getGeneration());
+                index.put(partition.indexKey, partition);
+            }
+        }
+    }
+
+    void remove(final MemoryPartition partition) {
+        synchronized (partition) {
+            if (partition.indexKey != null) {
+                index.remove(partition.indexKey);
+                partition.indexKey = null;
+            }
+        }
+    }
+
+    /**
+     * Claims a slot of the most overdue partition that doesn't have any workers.
+     * Only looks at the partitions that are due.
+     * @param now
+     * @return the partition, or null if none are due.
+     */
+    MemoryPartition reserveDue(final long now) {
+        for (val entry : index.entrySet()) {
+            if (entry.getKey().getDueDate() >= now) {
+                // the rest of the partitions are due later.
+                return null;
+            }
+
+            val partition = entry.getValue();
+            if (partition.isDue(now) && partition.tryReserve(0)) {
+                return partition;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Claims a slot of any partition that doesn't have any workers,
+     * most overdue first.
+     * @return the partition, or null if all partitions have workers.
+     */
+    MemoryPartition reserveIdle() {
+        for (val partition : index.values()) {
+            if (partition.tryReserve(0)) {
+                return partition;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * The due date of the most overdue idle partition.
+     * @return the due date, or Long.MAX_VALUE if there aren't any idle partitions.
+     */
+    long getNextDueDate() {
+        val first = index.firstEntry();
+        return first == null ? Long.MAX_VALUE : first.getKey().getDueDate();
+    }
+
+    int size() {
+        return index.size();
+    }
+}
@@ -0,0 +1,85 @@
+package com.allardworks.workinator3.coordinator.memory;
+
+import lombok.Data;
+import lombok.val;
+
+import java.util.Comparator;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.function.Function;
+
+/**
+ * Items ordered by the time they expire: assignments by receipt, or consumers by registration.
+ * Finding the expired items is O(log n) per expired item,
+ * regardless of the number of items in the index.
+ *
+ * Taking an item out of the index, with remove() or pollExpired(), is how
+ * a caller claims it: only one caller gets it.
+ * @param <T>
+ */
+class ExpirationIndex<T> {
+    @Data
+    static class ExpirationKey {
+        private final long expiration;
+        private final String id;
+    }
+
+    private final ConcurrentNavigableMap<ExpirationKey, T> index = new ConcurrentSkipListMap<>(
+            Comparator
+                    .comparingLong(ExpirationKey::getExpiration)
+                    .thenComparing(ExpirationKey::getId));
+
+    private final Function<T, String> idOf;
+
+    /**
+     * @param idOf a unique id of each item. Items with the same expiration are ordered by it.
+     */
+    ExpirationIndex(final Function<T, String> idOf) {
+        this.idOf = idOf;
+    }
+
+    void add(final long expiration, final T item) {
+        index.put(new ExpirationKey(expiration, idOf.apply(item)), item);
+    }
+
+    /**
+     * @return the item, or null if it isn't in the index.
+     */
+    T remove(final long expiration, final String id) {
+        return index.remove(new ExpirationKey(expiration, id));
+    }
+
+    /**
+     * Takes the first item that expired before now.
+     * @param now
+     * @return the item, or null if nothing has expired.
+     */
+    T pollExpired(final long now) {
+        while (true) {
+            val first = index.firstEntry();
+            if (first == null || first.getKey().getExpiration() >= now) {
+                return null;
+            }
+
+            if (index.remove(first.getKey(), first.getValue())) {
+                return first.getValue();
+            }
+        }
+    }
+
+    /**
+     * @return the time the first item expires, or Long.MAX_VALUE if the index is empty.
+     */
+    long getNextExpiration() {
+        val first = index.firstEntry();
+        return first == null ? Long.MAX_VALUE : first.getKey().getExpiration();
+    }
+
+    boolean isEmpty() {
+        return index.isEmpty();
+    }
+
+    int size() {
+        return index.size();
+    }
+}
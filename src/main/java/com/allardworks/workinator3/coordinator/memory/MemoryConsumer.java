@@ -0,0 +1,200 @@
+package com.allardworks.workinator3.coordinator.memory;
+
+import com.allardworks.workinator3.core.Assignment;
+import com.allardworks.workinator3.core.ConsumerInfo;
+import com.allardworks.workinator3.core.ConsumerRegistration;
+import com.allardworks.workinator3.core.ConsumerStatus;
+import com.allardworks.workinator3.core.ConsumerStatus.ConsumerWorkerStatus;
+import com.allardworks.workinator3.core.ConsumerWorkerInfo;
+import com.allardworks.workinator3.core.HeartbeatResult;
+import com.allardworks.workinator3.core.commands.ConsumerHeartbeatCommand;
+import lombok.Getter;
+import lombok.val;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static java.util.stream.Collectors.toList;
+
+/**
+ * The state of a registered consumer.
+ */
+class MemoryConsumer {
+    @Getter
+    private final ConsumerRegistration registration;
+
+    @Getter
+    private final Date connectedDate;
+
+    /**
+     * From the registration, then from the heartbeats of a consumer that adjusts its number of workers.
+     */
+    @Getter
+    private volatile int maxWorkerCount;
+
+    /**
+     * The assignments held by the consumer's workers, keyed by receipt.
+     */
+    private final Map<String, Assignment> assignments = new ConcurrentHashMap<>();
+
+    /**
+     * The workers as reported by the consumer, keyed by worker number.
+     * Guarded by this.
+     */
+    private final Map<Integer, ConsumerWorkerStatus> workers = new HashMap<>();
+
+    /**
+     * The version of the reported workers. Guarded by this.
+     */
+    private long statusVersion;
+
+    @Getter
+    private volatile long lastHeartbeat;
+
+    /**
+     * Set when the consumer is unregistered or expires. It doesn't take assignments after that.
+     */
+    private volatile boolean closed;
+
+    MemoryConsumer(final ConsumerRegistration registration, final Date connectedDate, final int maxWorkerCount) {
+        this.registration = registration;
+        this.connectedDate = connectedDate;
+        this.maxWorkerCount = maxWorkerCount;
+        this.lastHeartbeat = connectedDate.getTime();
+    }
+
+    /**
+     * Replaces the reported workers.
+     * The version changes, so a consumer sending deltas will have to resync.
+     * @param status
+     * @param now
+     */
+    synchronized void setStatus(final ConsumerStatus status, final long now) {
+        replaceWorkers(status.getWorkers());
+        statusVersion++;
+        lastHeartbeat = now;
+    }
+
+    synchronized ConsumerStatus getStatus() {
+        return ConsumerStatus.builder().workers(new ArrayList<>(workers.values())).build();
+    }
+
+    /**
+     * Merges a heartbeat into the reported workers.
+     * A delta or ping that doesn't match the current version requires a resync.
+     * @param command
+     * @param now
+     * @return
+     */
+    synchronized HeartbeatResult heartbeat(final ConsumerHeartbeatCommand command, final long now) {
+        // the consumer is alive, even if it has to resync.
+        lastHeartbeat = now;
+        if (command.getMaxWorkerCount() > 0) {
+            maxWorkerCount = command.getMaxWorkerCount();
+        }
+
+        if (command.isFull()) {
+            replaceWorkers(command.getChanges());
+        } else if (command.isPing()) {
+            if (command.getVersion() != statusVersion) {
+                return HeartbeatResult.resync(statusVersion);
+            }
+        } else {
+            if (command.getBaseVersion() != statusVersion) {
+                return HeartbeatResult.resync(statusVersion);
+            }
+            for (val change : command.getChanges()) {
+                if (change.getAssignment() == null) {
+                    workers.remove(change.getWorkerNumber());
+                } else {
+                    workers.put(change.getWorkerNumber(), change);
+                }
+            }
+        }
+
+        statusVersion = command.getVersion();
+        return HeartbeatResult.acknowledged(statusVersion);
+    }
+
+    private void replaceWorkers(final List<ConsumerWorkerStatus> statuses) {
+        workers.clear();
+        if (statuses == null) {
+            return;
+        }
+        for (val worker : statuses) {
+            if (worker.getAssignment() != null) {
+                workers.put(worker.getWorkerNumber(), worker);
+            }
+        }
+    }
+
+    /**
+     * Adds the assignment, unless the consumer is closed.
+     * The check is after the add, so either close() returns the assignment or this returns false.
+     * @return false if the consumer is closed. The caller releases the assignment.
+     */
+    boolean addAssignment(final Assignment assignment) {
+        assignments.put(assignment.getReceipt(), assignment);
+        if (closed) {
+            assignments.remove(assignment.getReceipt());
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Stops taking assignments.
+     * @return the assignments that the consumer has, to release.
+     */
+    List<Assignment> close() {
+        closed = true;
+        return new ArrayList<>(assignments.values());
+    }
+
+    /**
+     * Extends the lease of an assignment, if the consumer still has it.
+     */
+    void renewAssignment(final String receipt, final Date leaseExpiration) {
+        assignments.computeIfPresent(receipt, (r, a) -> Assignment.renew(a, a.getRuleName(), leaseExpiration));
+    }
+
+    void removeAssignment(final Assignment assignment) {
+        assignments.remove(assignment.getReceipt());
+    }
+
+    synchronized long getStatusVersion() {
+        return statusVersion;
+    }
+
+    int getAssignmentCount() {
+        return assignments.size();
+    }
+
+    ConsumerInfo toInfo() {
+        return toInfo(true);
+    }
+
+    ConsumerInfo toInfo(final boolean includeWorkers) {
+        return ConsumerInfo
+                .builder()
+                .name(registration.getConsumerId().getName())
+                .connectedDate(connectedDate)
+                .maxWorkerCount(maxWorkerCount)
+                .lastHeartbeatDate(new Date(lastHeartbeat))
+                .statusVersion(getStatusVersion())
+                .currentWorkerCount(assignments.size())
+                .workers(!includeWorkers ? null : assignments
+                        .values()
+                        .stream()
+                        .sorted(Comparator.comparingInt(a -> a.getWorkerId().getWorkerNumber()))
+                        .map(a -> ConsumerWorkerInfo
+                                .builder()
+                                .workerNumber(a.getWorkerId().getWorkerNumber())
+                                .assignmentDate(a.getAssignmentDate())
+                                .partitionKey(a.getPartitionKey())
+                                .rule(a.getRuleName())
+                                .build())
+                        .collect(toList()))
+                .build();
+    }
+}
@@ -0,0 +1,49 @@
+package com.allardworks.workinator3.coordinator.memory;
+
+import com.allardworks.workinator3.core.Assignment;
+import com.allardworks.workinator3.core.PartitionConfiguration;
+
+import java.util.Date;
+
+/**
+ * Receives the changes that a MemoryWorkinator makes to its partitions, so they can be made durable.
+ * Each change is reported after it's applied, before the call that made it returns.
+ *
+ * Every change can be applied more than once with the same result,
+ * so they can be replayed over a snapshot that was taken while changes were being made.
+ * Consumers aren't journaled: they register again when they reconnect.
+ */
+public interface MemoryJournal {
+    MemoryJournal NONE = new MemoryJournal() {
+    };
+
+    default void partitionCreated(final PartitionConfiguration configuration, final long now) {
+    }
+
+    /**
+     * The partition's settings changed.
+     */
+    default void partitionConfigured(final PartitionConfiguration configuration) {
+    }
+
+    default void partitionDeleted(final String partitionKey) {
+    }
+
+    /**
+     * A status from a worker. The backlog is 0 when the partition doesn't have work.
+     */
+    default void partitionStatusChanged(final String partitionKey, final boolean hasMoreWork, final long backlog, final double weight, final long now) {
+    }
+
+    /**
+     * A new assignment, or an assignment that moved to another worker with the same receipt.
+     */
+    default void assigned(final Assignment assignment) {
+    }
+
+    default void renewed(final String partitionKey, final String receipt, final Date leaseExpiration) {
+    }
+
+    default void released(final String partitionKey, final String receipt, final long now) {
+    }
+}
@@ -0,0 +1,359 @@
+package com.allardworks.workinator3.coordinator.memory;
+
+import com.allardworks.workinator3.core.Assignment;
+import com.allardworks.workinator3.core.PartitionConfiguration;
+import com.allardworks.workinator3.core.PartitionInfo;
+import com.allardworks.workinator3.core.PartitionWorkerInfo;
+import lombok.Getter;
+import lombok.val;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+
+/**
+ * The state of a single partition.
+ * Worker slots are claimed with compare-and-set on the worker count,
+ * so the number of workers never exceeds maxWorkerCount.
+ *
+ * There are millions of these, and most have zero or one worker, so the state is kept compact:
+ * the worker count is a plain field updated with a field updater, and the assignments
+ * are a small copy-on-write array instead of a map.
+ */
+class MemoryPartition {
+    private static final Assignment[] NO_WORKERS = new Assignment[0];
+    private static final AtomicIntegerFieldUpdater<MemoryPartition> WORKER_COUNT =
+            AtomicIntegerFieldUpdater.newUpdater(MemoryPartition.class, "workerCount");
+
+    /**
+     * The handle of the partition key in the PartitionTable.
+     */
+    @Getter
+    private final int handle;
+
+    /**
+     * The generation of the handle. A handle is reused after its partition is deleted;
+     * the generation tells this partition apart from the ones that had the handle before.
+     */
+    @Getter
+    private final int generation;
+
+    @Getter
+    private volatile PartitionConfiguration configuration;
+
+    /**
+     * Set when the partition is deleted, so no more slots are claimed.
+     */
+    @Getter
+    private volatile boolean deleted;
+
+    /**
+     * The number of claimed worker slots.
+     */
+    private volatile int workerCount;
+
+    /**
+     * The assignments for the partition. Read without locking.
+     * Changes replace the array while holding the partition's lock.
+     */
+    private volatile Assignment[] workers = NO_WORKERS;
+
+    @Getter
+    private volatile boolean hasMoreWork;
+
+    @Getter
+    private volatile long lastChecked;
+
+    /**
+     * The backlog and weight of the last status. See SetPartitionStatusCommand.
+     */
+    @Getter
+    private volatile long backlog;
+
+    @Getter
+    private volatile double weight = 1;
+
+    /**
+     * The key the partition is filed under in the DueDateIndex.
+     * Null if it isn't in the index. Only changed by the index.
+     */
+    DueDateIndex.DueKey indexKey;
+
+    /**
+     * The key the partition is filed under in the BacklogIndex.
+     * Null if it isn't in the index. Only changed by the index.
+     */
+    BacklogIndex.BacklogKey backlogKey;
+
+    MemoryPartition(final int handle, final int generation, final PartitionConfiguration configuration, final long now) {
+        this.handle = handle;
+        this.generation = generation;
+        this.configuration = configuration;
+        this.lastChecked = now;
+    }
+
+    String getPartitionKey() {
+        return configuration.getPartitionKey();
+    }
+
+    int getWorkerCount() {
+        return workerCount;
+    }
+
+    /**
+     * The time at which the partition needs to be checked again.
+     * @return
+     */
+    long getDueDate() {
+        return lastChecked + configuration.getMaxIdleTimeSeconds() * 1000L;
+    }
+
+    boolean isDue(final long now) {
+        return getDueDate() < now;
+    }
+
+    boolean hasCapacity() {
+        return workerCount < configuration.getMaxWorkerCount();
+    }
+
+    /**
+     * Changes the settings. The key doesn't change.
+     * The due date index has to be updated, because the due date depends on maxIdleTimeSeconds.
+     */
+    void setConfiguration(final PartitionConfiguration configuration) {
+        this.configuration = configuration;
+    }
+
+    void delete() {
+        deleted = true;
+    }
+
+    void setWork(final boolean hasMoreWork, final long backlog, final double weight, final long now) {
+        this.backlog = hasMoreWork ? backlog : 0;
+        this.weight = weight;
+        this.hasMoreWork = hasMoreWork;
+        this.lastChecked = now;
+    }
+
+    /**
+     * The weighted backlog. A partition that has work, but didn't say how much, counts as 1.
+     * @return 0 if the partition doesn't have work.
+     */
+    double getDemand() {
+        return hasMoreWork ? Math.max(1, backlog) * weight : 0;
+    }
+
+    /**
+     * Claims a worker slot.
+     * @param expectedWorkerCount Only claim the slot if the current worker count is this value.
+     *                            -1 to claim any available slot.
+     * @return true if a slot was claimed.
+     */
+    boolean tryReserve(final int expectedWorkerCount) {
+        if (deleted) {
+            return false;
+        }
+
+        while (true) {
+            val count = workerCount;
+            if (count >= configuration.getMaxWorkerCount()) {
+                return false;
+            }
+
+            if (expectedWorkerCount >= 0 && count != expectedWorkerCount) {
+                return false;
+            }
+
+            if (WORKER_COUNT.compareAndSet(this, count, count + 1)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Records the assignment for a slot that was claimed by tryReserve.
+     * @param assignment
+     */
+    void addWorker(final Assignment assignment, final long now) {
+        synchronized (this) {
+            val current = workers;
+            val added = Arrays.copyOf(current, current.length + 1);
+            added[current.length] = assignment;
+            workers = added;
+        }
+        lastChecked = now;
+    }
+
+    /**
+     * Removes the assignment and frees its slot.
+     * @param receipt
+     * @return the removed assignment, or null if the receipt isn't assigned to the partition.
+     */
+    Assignment removeWorker(final String receipt, final long now) {
+        return removeWorker(receipt, now, false);
+    }
+
+    /**
+     * Removes the assignment and frees its slot if its lease expired before now.
+     * @return the removed assignment, or null if the receipt isn't assigned to the partition,
+     * or its lease was renewed.
+     */
+    Assignment expireWorker(final String receipt, final long now) {
+        return removeWorker(receipt, now, true);
+    }
+
+    private Assignment removeWorker(final String receipt, final long now, final boolean onlyExpired) {
+        final Assignment removed;
+        synchronized (this) {
+            val current = workers;
+            val index = indexOf(current, receipt);
+            if (index < 0 || (onlyExpired && !isExpired(current[index], now))) {
+                return null;
+            }
+
+            removed = current[index];
+            if (current.length == 1) {
+                workers = NO_WORKERS;
+            } else {
+                val remaining = new Assignment[current.length - 1];
+                System.arraycopy(current, 0, remaining, 0, index);
+                System.arraycopy(current, index + 1, remaining, index, current.length - index - 1);
+                workers = remaining;
+            }
+        }
+
+        WORKER_COUNT.decrementAndGet(this);
+        lastChecked = now;
+        return removed;
+    }
+
+    /**
+     * Extends the lease of an assignment, if the receipt is still assigned to the partition,
+     * and its lease didn't expire before now.
+     * @param receipt
+     * @param leaseExpiration
+     * @param now
+     * @return the assignment before it was renewed, or null if the receipt isn't assigned
+     * to the partition anymore, or its lease expired.
+     */
+    Assignment renewWorker(final String receipt, final Date leaseExpiration, final long now) {
+        synchronized (this) {
+            val current = workers;
+            val index = indexOf(current, receipt);
+            if (index < 0 || isExpired(current[index], now)) {
+                return null;
+            }
+
+            val renewed = current.clone();
+            renewed[index] = Assignment.renew(current[index], current[index].getRuleName(), leaseExpiration);
+            workers = renewed;
+            return current[index];
+        }
+    }
+
+    /**
+     * Replaces an assignment with one for the same receipt, if the receipt is still assigned to the partition.
+     * @return the replaced assignment, or null if the receipt isn't assigned to the partition anymore.
+     */
+    Assignment replaceWorker(final Assignment assignment) {
+        synchronized (this) {
+            val current = workers;
+            val index = indexOf(current, assignment.getReceipt());
+            if (index < 0) {
+                return null;
+            }
+
+            val replaced = current.clone();
+            replaced[index] = assignment;
+            workers = replaced;
+            return current[index];
+        }
+    }
+
+    private static boolean isExpired(final Assignment assignment, final long now) {
+        return assignment.getLeaseExpiration() != null && assignment.getLeaseExpiration().getTime() < now;
+    }
+
+    /**
+     * Puts back an assignment that was journaled. Used during recovery, so the slot
+     * is taken even if the partition is already at its maxWorkerCount.
+     * @return false if the receipt was already assigned to the partition.
+     */
+    boolean restoreWorker(final Assignment assignment) {
+        synchronized (this) {
+            if (indexOf(workers, assignment.getReceipt()) >= 0) {
+                return false;
+            }
+            WORKER_COUNT.incrementAndGet(this);
+            addWorker(assignment, assignment.getAssignmentDate().getTime());
+            return true;
+        }
+    }
+
+    Assignment getWorker(final String receipt) {
+        val current = workers;
+        val index = indexOf(current, receipt);
+        return index < 0 ? null : current[index];
+    }
+
+    boolean hasWorker(final String receipt) {
+        return receipt != null && indexOf(workers, receipt) >= 0;
+    }
+
+    private static int indexOf(final Assignment[] workers, final String receipt) {
+        for (int i = 0; i < workers.length; i++) {
+            if (workers[i].getReceipt().equals(receipt)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    PartitionSnapshot toSnapshot() {
+        return PartitionSnapshot
+                .builder()
+                .configuration(configuration)
+                .hasMoreWork(hasMoreWork)
+                .backlog(backlog)
+                .weight(weight)
+                .lastChecked(lastChecked)
+                .workers(new ArrayList<>(Arrays.asList(workers)))
+                .build();
+    }
+
+    PartitionInfo toInfo() {
+        return toInfo(true);
+    }
+
+    PartitionInfo toInfo(final boolean includeWorkers) {
+        val configuration = this.configuration;
+        return PartitionInfo
+                .builder()
+                .partitionKey(configuration.getPartitionKey())
+                .maxIdleTimeSeconds(configuration.getMaxIdleTimeSeconds())
+                .maxWorkerCount(configuration.getMaxWorkerCount())
+                .hasMoreWork(hasMoreWork)
+                .backlog(backlog)
+                .weight(weight)
+                .lastChecked(new Date(lastChecked))
+                .currentWorkerCount(workerCount)
+                .workers(!includeWorkers ? null : toWorkerInfos(workers))
+                .build();
+    }
+
+    private static List<PartitionWorkerInfo> toWorkerInfos(final Assignment[] workers) {
+        val result = new ArrayList<PartitionWorkerInfo>(workers.length);
+        for (val a : workers) {
+            result.add(PartitionWorkerInfo
+                    .builder()
+                    .assignee(a.getWorkerId().getAssignee())
+                    .createDate(a.getAssignmentDate())
+                    .rule(a.getRuleName())
+                    .leaseExpiration(a.getLeaseExpiration())
+                    .build());
+        }
+        return result;
+    }
+}
@@ -0,0 +1,1166 @@
+package com.allardworks.workinator3.coordinator.memory;
+
+import com.allardworks.workinator3.coordinator.strategy.WhatsNextAssignmentStrategy;
+import com.allardworks.workinator3.core.*;
+import com.allardworks.workinator3.core.BulkPartitionResult.Outcome;
+import com.allardworks.workinator3.core.commands.*;
+import com.allardworks.workinator3.metrics.ReclaimMetrics;
+import lombok.Getter;
+import lombok.NonNull;
+import lombok.val;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.NavigableMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+import static com.allardworks.workinator3.core.AssignmentRules.*;
+import static java.util.stream.Collectors.toList;
+
+/**
+ * A workinator that keeps all of its state in memory.
+ * Implements the "What's Next" strategy without any global locks:
+ * partition and consumer state are in concurrent maps, and worker slots
+ * are claimed per partition with compare-and-set.
+ * Another AssignmentStrategy can be passed to the constructor.
+ * An assignment whose lease expires without being renewed is released, and can't be renewed anymore.
+ * With a consumer timeout, a consumer that stops sending heartbeats is unregistered,
+ * and its assignments are released, the next time a worker asks for an assignment
+ * or another consumer sends a heartbeat.
+ * Appropriate for single-node deployments and for testing.
+ */
+public class MemoryWorkinator implements Workinator, BulkPartitionAdmin {
+    public static final Duration DEFAULT_LEASE_DURATION = Duration.ofMinutes(2);
+
+    /**
+     * A worker leaves a partition that has work when another partition's weighted backlog
+     * per worker is more than this many times its own. Keeps workers from moving back and forth.
+     */
+    public static final double REBALANCE_FACTOR = 2;
+
+    /**
+     * The partitions by the handles of their keys.
+     * Keys are only looked up at the API boundary.
+     */
+    private final PartitionTable partitions = new PartitionTable();
+
+    /**
+     * The partitions in key order, for queries.
+     */
+    private final ConcurrentNavigableMap<String, MemoryPartition> orderedPartitions = new ConcurrentSkipListMap<>();
+
+    private final ConcurrentNavigableMap<String, MemoryConsumer> consumers = new ConcurrentSkipListMap<>();
+    private final DueDateIndex dueDateIndex = new DueDateIndex();
+    private final BacklogIndex backlogIndex = new BacklogIndex();
+
+    /**
+     * Reservations that haven't been claimed yet.
+     */
+    private final ExpirationIndex<Assignment> reservations = new ExpirationIndex<>(Assignment::getReceipt);
+
+    /**
+     * Every assignment, by the time its lease expires. Renewals move the assignment
+     * to its new expiration. An assignment whose lease expires is released.
+     */
+    private final ExpirationIndex<Assignment> leases = new ExpirationIndex<>(Assignment::getReceipt);
+
+    /**
+     * The consumers, by the time they expire unless they send another heartbeat.
+     * Heartbeats don't touch the index: an expired consumer that sent one in the meantime
+     * goes back in with its new expiration.
+     */
+    private final ExpirationIndex<MemoryConsumer> consumerExpirations = new ExpirationIndex<>(c -> c.getRegistration().getReceipt());
+    private final AssignmentSignal assignmentSignal = new AssignmentSignal();
+    private final Clock clock;
+
+    /**
+     * How long an assignment lasts without being renewed.
+     */
+    private final long leaseMillis;
+
+    private final MemoryJournal journal;
+    private final AssignmentStrategy strategy;
+
+    /**
+     * How long a consumer can go without a heartbeat. 0 if consumers don't expire.
+     */
+    private final long consumerTimeoutMillis;
+
+    @Getter
+    private final ReclaimMetrics reclaimMetrics = new ReclaimMetrics();
+
+    /**
+     * Receipts are a random prefix and a sequence number. The prefix is new for every instance,
+     * so receipts stay unique across restarts. Cheaper than a random UUID per assignment.
+     */
+    private final String receiptPrefix = UUID.randomUUID().toString() + "-";
+    private final AtomicLong receiptSequence = new AtomicLong();
+
+    public MemoryWorkinator() {
+        this(Clock.systemUTC());
+    }
+
+    public MemoryWorkinator(@NonNull final Clock clock) {
+        this(clock, DEFAULT_LEASE_DURATION);
+    }
+
+    /**
+     * @param clock
+     * @param leaseDuration how long an assignment lasts without being renewed.
+     *                      Should be longer than the consumers' minWorkTime.
+     */
+    public MemoryWorkinator(@NonNull final Clock clock, @NonNull final Duration leaseDuration) {
+        this(clock, leaseDuration, MemoryJournal.NONE);
+    }
+
+    /**
+     * @param clock
+     * @param leaseDuration
+     * @param journal receives every change to the partitions.
+     */
+    public MemoryWorkinator(@NonNull final Clock clock, @NonNull final Duration leaseDuration, @NonNull final MemoryJournal journal) {
+        this(clock, leaseDuration, journal, new WhatsNextAssignmentStrategy());
+    }
+
+    /**
+     * @param clock
+     * @param leaseDuration
+     * @param journal
+     * @param strategy decides which partition each worker gets. Not shared with other workinators.
+     */
+    public MemoryWorkinator(@NonNull final Clock clock, @NonNull final Duration leaseDuration, @NonNull final MemoryJournal journal, @NonNull final AssignmentStrategy strategy) {
+        this(clock, leaseDuration, journal, strategy, Duration.ZERO);
+    }
+
+    /**
+     * @param clock
+     * @param leaseDuration
+     * @param journal
+     * @param strategy
+     * @param consumerTimeout how long a consumer can go without a heartbeat before it's unregistered
+     *                        and its assignments are released. A few of the consumers' heartbeat intervals.
+     *                        Zero if consumers don't expire.
+     */
+    public MemoryWorkinator(@NonNull final Clock clock, @NonNull final Duration leaseDuration, @NonNull final MemoryJournal journal, @NonNull final AssignmentStrategy strategy, @NonNull final Duration consumerTimeout) {
+        this.clock = clock;
+        this.leaseMillis = leaseDuration.toMillis();
+        this.journal = journal;
+        this.strategy = strategy;
+        this.consumerTimeoutMillis = consumerTimeout.isNegative() ? 0 : consumerTimeout.toMillis();
+    }
+
+    private static String getConsumerName(final WorkerId workerId) {
+        return workerId.getConsumer().getConsumerId().getName();
+    }
+
+    /**
+     * Asks the strategy for an assignment. The "What's Next" strategy evaluates the rules,
+     * in order, until one of them results in an assignment.
+     * If the worker ends up with a different partition than it currently has,
+     * then the current assignment is released.
+     * @param status
+     * @return the assignment, or null if there isn't anything to do.
+     */
+    @Override
+    public Assignment getAssignment(@NonNull final WorkerStatus status) {
+        return getAssignment(status, clock.millis());
+    }
+
+    /**
+     * Long poll. If there isn't an assignment, the worker waits until a partition
+     * may have become eligible: a partition has work, an assignment is released,
+     * a partition is created, or the next idle partition becomes due.
+     * maxWait is measured with the workinator's clock, the same as the due dates.
+     * @param status
+     * @param maxWait
+     * @return the assignment, or null if there still isn't one after maxWait.
+     * @throws InterruptedException
+     */
+    @Override
+    public Assignment getAssignment(@NonNull final WorkerStatus status, @NonNull final Duration maxWait) throws InterruptedException {
+        val deadline = clock.millis() + maxWait.toMillis();
+        while (true) {
+            val version = assignmentSignal.getVersion();
+            val assignment = getAssignment(status, clock.millis());
+            if (assignment != null) {
+                return assignment;
+            }
+
+            val now = clock.millis();
+            val remaining = deadline - now;
+            if (remaining <= 0) {
+                return null;
+            }
+
+            // wake up when the next idle partition is due, or the next consumer or lease expires, even if nothing else happens.
+            val nextExpiration = Math.min(consumerExpirations.getNextExpiration(), leases.getNextExpiration());
+            val untilDue = Math.min(dueDateIndex.getNextDueDate(), nextExpiration) - now + 1;
+            assignmentSignal.await(version, Math.max(1, Math.min(remaining, untilDue)));
+        }
+    }
+
+    private Assignment getAssignment(final WorkerStatus status, final long now) {
+        return getAssignment(status, now, Collections.emptySet());
+    }
+
+    /**
+     * @param heldPartitionKeys partitions that the worker already has through other assignments.
+     *                          Rule 3 won't give the worker another slot of these.
+     */
+    private Assignment getAssignment(final WorkerStatus status, final long now, final Set<String> heldPartitionKeys) {
+        return getAssignment(status, heldPartitionKeys, new Store(now, false));
+    }
+
+    private Assignment getAssignment(final WorkerStatus status, final Set<String> heldPartitionKeys, final Store store) {
+        expireReservations(store.now);
+        expireLeases(store.now);
+        expireConsumers(store.now);
+        if (!consumers.containsKey(getConsumerName(status.getWorkerId()))) {
+            // unregistered or expired. its assignments were released, and it can't take new ones.
+            return null;
+        }
+        return strategy.getAssignment(status, heldPartitionKeys, store);
+    }
+
+    /**
+     * Evaluates the rules, in order, until one of them results in an assignment.
+     * @param busyRule1 false if a worker whose partition has work skips rule 1.
+     */
+    private Assignment getWhatsNextAssignment(final WorkerStatus status, final long now, final Set<String> heldPartitionKeys, final boolean busyRule1) {
+        val current = status.getCurrentAssignment();
+        val currentPartition = current == null ? null : partitions.get(current.getPartitionKey());
+        val holdsCurrent = currentPartition != null && currentPartition.hasWorker(current.getReceipt());
+
+        // rule 1: not being worked on and is due
+        val rule1 = busyRule1 || !holdsCurrent || !currentPartition.isHasMoreWork() ? getRule1(status, now) : null;
+        if (rule1 != null) {
+            releaseCurrent(current, now);
+            return rule1;
+        }
+
+        // rule 2: the current assignment has work, so keep going.
+        // unless another partition is much further behind; then rule 3 moves the worker there.
+        val currentHasWork = holdsCurrent && currentPartition.isHasMoreWork();
+        val rebalance = currentHasWork && shouldRebalance(currentPartition);
+        if (currentHasWork && !rebalance) {
+            val kept = renew(currentPartition, current, RULE2, now);
+            if (kept != null) {
+                return kept;
+            }
+        }
+
+        // rule 3: has work and capacity
+        val rule3 = getRule3(status, currentPartition, heldPartitionKeys, now);
+        if (rule3 != null) {
+            releaseCurrent(current, now);
+            return rule3;
+        }
+
+        // the partition to move to was taken. stay.
+        if (rebalance) {
+            val kept = renew(currentPartition, current, RULE2, now);
+            if (kept != null) {
+                return kept;
+            }
+        }
+
+        // rule 4: any partition without a worker
+        val rule4 = getRule4(status, now);
+        if (rule4 != null) {
+            releaseCurrent(current, now);
+            return rule4;
+        }
+
+        // rule 5: already has an assignment, so keep going
+        if (holdsCurrent) {
+            return renew(currentPartition, current, RULE5, now);
+        }
+
+        return null;
+    }
+
+    /**
+     * The most overdue partition that doesn't have any workers.
+     * The due date index is ordered most overdue first, so this only looks at
+     * the partitions that are due.
+     */
+    private Assignment getRule1(final WorkerStatus status, final long now) {
+        val partition = dueDateIndex.reserveDue(now);
+        return partition == null ? null : assign(partition, status, RULE1, now);
+    }
+
+    /**
+     * The partition with the most weighted backlog per worker that has work and capacity.
+     */
+    private Assignment getRule3(final WorkerStatus status, final MemoryPartition currentPartition, final Set<String> heldPartitionKeys, final long now) {
+        val partition = backlogIndex.reserve(currentPartition, heldPartitionKeys);
+        return partition == null ? null : assign(partition, status, RULE3, now);
+    }
+
+    /**
+     * True if rule 3 has a partition whose weighted backlog per worker, with one more worker,
+     * is more than REBALANCE_FACTOR times the current partition's.
+     * Partitions that don't report a backlog count as 1, so they never trigger this among themselves.
+     */
+    private boolean shouldRebalance(final MemoryPartition partition) {
+        val count = partition.getWorkerCount();
+        return count > 0 && backlogIndex.getTopPriority(partition) > REBALANCE_FACTOR * partition.getDemand() / count;
+    }
+
+    /**
+     * Updates the indexes after a change to the partition's status or worker count.
+     */
+    private void reindex(final MemoryPartition partition) {
+        dueDateIndex.update(partition);
+        backlogIndex.update(partition);
+    }
+
+    /**
+     * Every partition in the due date index is a partition without a worker.
+     */
+    private Assignment getRule4(final WorkerStatus status, final long now) {
+        val partition = dueDateIndex.reserveIdle();
+        return partition == null ? null : assign(partition, status, RULE4, now);
+    }
+
+    /**
+     * Creates the assignment for a slot that has already been reserved.
+     * @return null if the worker's consumer was unregistered in the meantime. The slot is released.
+     */
+    private Assignment assign(final MemoryPartition partition, final WorkerStatus status, final String rule, final long now) {
+        val assignment = new Assignment(status.getWorkerId(), partition.getPartitionKey(), receiptPrefix + receiptSequence.incrementAndGet(), rule, new Date(now), new Date(now + leaseMillis));
+        partition.addWorker(assignment, now);
+        leases.add(assignment.getLeaseExpiration().getTime(), assignment);
+        reindex(partition);
+        journal.assigned(assignment);
+        return attach(assignment, now);
+    }
+
+    /**
+     * Adds the assignment to its consumer.
+     * @return the assignment, or null if the consumer is gone. The assignment is released.
+     */
+    private Assignment attach(final Assignment assignment, final long now) {
+        val consumer = consumers.get(getConsumerName(assignment.getWorkerId()));
+        if (consumer == null || !consumer.addAssignment(assignment)) {
+            release(assignment, now);
+            return null;
+        }
+        return assignment;
+    }
+
+    /**
+     * Extends the lease of an assignment that the worker keeps.
+     * @return the renewed assignment, or null if the worker doesn't hold it anymore, or its lease expired.
+     */
+    private Assignment renew(final MemoryPartition partition, final Assignment current, final String rule, final long now) {
+        return renew(partition, current, rule, new Date(now + leaseMillis), now);
+    }
+
+    private Assignment renew(final MemoryPartition partition, final Assignment current, final String rule, final Date leaseExpiration, final long now) {
+        val previous = partition.renewWorker(current.getReceipt(), leaseExpiration, now);
+        if (previous == null) {
+            return null;
+        }
+        moveLease(previous, Assignment.renew(previous, previous.getRuleName(), leaseExpiration));
+        journal.renewed(partition.getPartitionKey(), current.getReceipt(), leaseExpiration);
+
+        val consumer = consumers.get(getConsumerName(current.getWorkerId()));
+        if (consumer != null) {
+            consumer.renewAssignment(current.getReceipt(), leaseExpiration);
+        }
+        return Assignment.renew(current, rule, leaseExpiration);
+    }
+
+    /**
+     * Asks the strategy whether the worker can keep its assignment.
+     * @param command
+     * @return
+     */
+    @Override
+    public Assignment renewLease(@NonNull final RenewLeaseCommand command) {
+        return strategy.renewLease(command.getAssignment(), new Store(clock.millis(), false));
+    }
+
+    /**
+     * The same as rule 2, without evaluating the other rules.
+     * Rule 1 is the only rule ahead of rule 2, so the lease isn't renewed if any partition is due,
+     * or if the worker should move to a partition that is further behind.
+     * The worker has to go through all of the rules instead.
+     */
+    private Assignment renewWhatsNextLease(final Assignment current, final long now) {
+        val partition = partitions.get(current.getPartitionKey());
+        if (partition == null || !partition.isHasMoreWork() || dueDateIndex.getNextDueDate() < now || shouldRebalance(partition)) {
+            return null;
+        }
+        return renew(partition, current, RULE2, now);
+    }
+
+    /**
+     * An assignment, through the rules, whose lease is the reservation's expiration.
+     * @param command
+     * @return
+     */
+    @Override
+    public Assignment reserveAssignment(@NonNull final ReserveAssignmentCommand command) {
+        val now = clock.millis();
+        val assignment = getAssignment(new WorkerStatus(command.getWorkerId()), now);
+        if (assignment == null) {
+            return null;
+        }
+
+        val expiration = now + command.getExpiration().toMillis();
+        val reservation = renew(partitions.get(assignment.getPartitionKey()), assignment, assignment.getRuleName(), new Date(expiration), now);
+        if (reservation != null) {
+            reservations.add(expiration, reservation);
+        }
+        return reservation;
+    }
+
+    /**
+     * Moves the reservation to the worker, with a full lease.
+     * The receipt doesn't change.
+     * @param command
+     * @return
+     */
+    @Override
+    public Assignment claimReservation(@NonNull final ClaimReservationCommand command) {
+        val now = clock.millis();
+        val reservation = command.getReservation();
+        if (reservations.remove(reservation.getLeaseExpiration().getTime(), reservation.getReceipt()) == null) {
+            // expired, or already claimed.
+            return null;
+        }
+
+        if (reservation.getLeaseExpiration().getTime() < now) {
+            release(reservation, now);
+            return null;
+        }
+
+        val partition = partitions.get(reservation.getPartitionKey());
+        val claimed = new Assignment(command.getWorkerId(), reservation.getPartitionKey(), reservation.getReceipt(),
+                reservation.getRuleName(), new Date(now), new Date(now + leaseMillis));
+        val previous = partition == null ? null : partition.replaceWorker(claimed);
+        if (previous == null) {
+            return null;
+        }
+        moveLease(previous, claimed);
+        journal.assigned(claimed);
+
+        // the reservation belongs to the consumer that reserved it, which may not be the one that claims it.
+        removeFromConsumer(reservation);
+        return attach(claimed, now);
+    }
+
+    /**
+     * Releases the reservations that weren't claimed in time.
+     */
+    private void expireReservations(final long now) {
+        if (reservations.isEmpty()) {
+            return;
+        }
+
+        Assignment expired;
+        while ((expired = reservations.pollExpired(now)) != null) {
+            release(expired, now);
+        }
+    }
+
+    /**
+     * Moves an assignment to its new lease expiration in the lease index.
+     */
+    private void moveLease(final Assignment previous, final Assignment current) {
+        leases.remove(previous.getLeaseExpiration().getTime(), previous.getReceipt());
+        leases.add(current.getLeaseExpiration().getTime(), current);
+    }
+
+    /**
+     * Releases the assignments whose leases expired.
+     * A partition only gives up the worker if the lease is still expired, so a renewal that
+     * got in first keeps it. The renewal put the assignment back in the index with its new lease.
+     */
+    private void expireLeases(final long now) {
+        Assignment expired;
+        while ((expired = leases.pollExpired(now)) != null) {
+            val partition = partitions.get(expired.getPartitionKey());
+            if (partition == null) {
+                removeFromConsumer(expired);
+                continue;
+            }
+
+            val removed = partition.expireWorker(expired.getReceipt(), now);
+            if (removed != null) {
+                released(partition, removed, now);
+            }
+        }
+    }
+
+    /**
+     * Unregisters the consumers that didn't send a heartbeat within the timeout,
+     * and releases their assignments. The partitions are reindexed right away,
+     * so rule 1 or rule 3 gives them to the next worker that asks.
+     */
+    private void expireConsumers(final long now) {
+        MemoryConsumer expired;
+        while ((expired = consumerExpirations.pollExpired(now)) != null) {
+            val name = expired.getRegistration().getConsumerId().getName();
+            if (consumers.get(name) != expired) {
+                // unregistered already.
+                continue;
+            }
+
+            val expiration = expired.getLastHeartbeat() + consumerTimeoutMillis;
+            if (expiration >= now) {
+                consumerExpirations.add(expiration, expired);
+                continue;
+            }
+
+            if (consumers.remove(name, expired)) {
+                consumersChanged();
+                val assignments = expired.close();
+                for (val assignment : assignments) {
+                    release(assignment, now);
+                }
+                reclaimMetrics.recordReclaim(assignments.size(), now - expiration);
+            }
+        }
+    }
+
+    private void releaseCurrent(final Assignment current, final long now) {
+        if (current != null) {
+            release(current, now);
+        }
+    }
+
+    private void release(final Assignment assignment, final long now) {
+        val partition = partitions.get(assignment.getPartitionKey());
+        val removed = partition == null ? null : partition.removeWorker(assignment.getReceipt(), now);
+        if (removed == null) {
+            removeFromConsumer(assignment);
+        } else {
+            leases.remove(removed.getLeaseExpiration().getTime(), removed.getReceipt());
+            released(partition, removed, now);
+        }
+    }
+
+    /**
+     * Called after the partition gave up the worker's slot.
+     */
+    private void released(final MemoryPartition partition, final Assignment removed, final long now) {
+        reindex(partition);
+        journal.released(partition.getPartitionKey(), removed.getReceipt(), now);
+        assignmentSignal.signal();
+        removeFromConsumer(removed);
+    }
+
+    private void removeFromConsumer(final Assignment assignment) {
+        val consumer = consumers.get(getConsumerName(assignment.getWorkerId()));
+        if (consumer != null) {
+            consumer.removeAssignment(assignment);
+        }
+    }
+
+    /**
+     * Evaluates the workers one after the other against the same point in time.
+     * Each worker's slot is claimed before the next worker is evaluated,
+     * so workers in the batch never compete for the same slot.
+     * @param workers
+     * @return
+     */
+    @Override
+    public List<Assignment> getAssignments(@NonNull final List<WorkerStatus> workers) {
+        val now = clock.millis();
+        val result = new ArrayList<Assignment>(workers.size());
+        for (val worker : workers) {
+            result.add(getAssignment(worker, now));
+        }
+        return result;
+    }
+
+    /**
+     * Same as the default implementation, but evaluated against a single point in time,
+     * and rule 3 never gives the group a second slot of a partition it already has.
+     * At most one of the group's partitions that still have work is traded for a due partition
+     * per call, so the group doesn't move every time partitions are due.
+     * The group's free slots, and its partitions without work, go through all of the rules.
+     * @param status
+     * @return
+     */
+    @Override
+    public AssignmentGroup getAssignmentGroup(@NonNull final WorkerGroupStatus status) {
+        val store = new Store(clock.millis(), true);
+        val assignments = new ArrayList<Assignment>();
+        val held = new HashSet<String>();
+        val current = status.getCurrentGroup();
+        if (current != null) {
+            current.getAssignments().forEach(a -> held.add(a.getPartitionKey()));
+            for (val currentAssignment : current.getAssignments()) {
+                val worker = new WorkerStatus(status.getWorkerId());
+                worker.setCurrentAssignment(currentAssignment);
+                val assignment = getAssignment(worker, held, store);
+                if (assignment != null) {
+                    held.add(assignment.getPartitionKey());
+                    assignments.add(assignment);
+                }
+            }
+        }
+
+        while (assignments.size() < status.getMaxPartitions()) {
+            val assignment = getAssignment(new WorkerStatus(status.getWorkerId()), held, store);
+            if (assignment == null) {
+                break;
+            }
+
+            held.add(assignment.getPartitionKey());
+            assignments.add(assignment);
+        }
+        return new AssignmentGroup(status.getWorkerId(), assignments);
+    }
+
+    @Override
+    public void releaseAssignment(@NonNull final ReleaseAssignmentCommand command) {
+        release(command.getAssignment(), clock.millis());
+    }
+
+    @Override
+    public void releaseAssignments(@NonNull final List<ReleaseAssignmentCommand> commands) {
+        val now = clock.millis();
+        for (val command : commands) {
+            release(command.getAssignment(), now);
+        }
+    }
+
+    @Override
+    public ConsumerRegistration registerConsumer(@NonNull final RegisterConsumerCommand command) throws ConsumerExistsException {
+        val name = command.getId().getName();
+        val registration = new ConsumerRegistration(command.getId(), UUID.randomUUID().toString());
+        val consumer = new MemoryConsumer(registration, new Date(clock.millis()), command.getMaxWorkerCount());
+        if (consumers.putIfAbsent(name, consumer) != null) {
+            throw new ConsumerExistsException(name);
+        }
+        if (consumerTimeoutMillis > 0) {
+            consumerExpirations.add(consumer.getLastHeartbeat() + consumerTimeoutMillis, consumer);
+        }
+        consumersChanged();
+        return registration;
+    }
+
+    /**
+     * Removes the consumer and releases all of its assignments.
+     * @param command
+     */
+    @Override
+    public void unregisterConsumer(@NonNull final UnregisterConsumerCommand command) {
+        val name = command.getRegistration().getConsumerId().getName();
+        val consumer = consumers.get(name);
+        if (consumer == null || !consumer.getRegistration().equals(command.getRegistration())) {
+            return;
+        }
+
+        if (!consumers.remove(name, consumer)) {
+            return;
+        }
+
+        consumersChanged();
+        val now = clock.millis();
+        for (val assignment : consumer.close()) {
+            release(assignment, now);
+        }
+    }
+
+    @Override
+    public void createPartition(@NonNull final CreatePartitionCommand command) throws PartitionExistsException {
+        if (!tryCreatePartition(toConfiguration(command), clock.millis())) {
+            throw new PartitionExistsException(command.getPartitionKey());
+        }
+        assignmentSignal.signal();
+    }
+
+    private static PartitionConfiguration toConfiguration(final CreatePartitionCommand command) {
+        return PartitionConfiguration
+                .builder()
+                .partitionKey(command.getPartitionKey())
+                .maxIdleTimeSeconds(command.getMaxIdleTimeSeconds())
+                .maxWorkerCount(command.getMaxWorkerCount())
+                .build();
+    }
+
+    /**
+     * @return false if the partition already exists.
+     */
+    private boolean tryCreatePartition(final PartitionConfiguration configuration, final long now) {
+        val key = configuration.getPartitionKey();
+        val partition = partitions.add(key, (handle, generation) -> new MemoryPartition(handle, generation, configuration, now));
+        if (partition == null) {
+            return false;
+        }
+
+        // journaled before the partition can be assigned, so its assignments are never ahead of it in the journal.
+        journal.partitionCreated(configuration, now);
+        orderedPartitions.put(key, partition);
+        if (partition.isDeleted()) {
+            // deleted before it was in the ordered map. the delete may be ahead of the create in the journal.
+            orderedPartitions.remove(key, partition);
+            journal.partitionDeleted(key);
+            return true;
+        }
+        reindex(partition);
+        strategy.partitionCreated(key);
+        if (partition.isDeleted()) {
+            // deleted while the strategy was told about it. the delete may have reached the strategy first.
+            strategy.partitionDeleted(key);
+        }
+        return true;
+    }
+
+    /**
+     * Creates the partitions one after the other, and wakes up the waiting workers once at the end.
+     * @param partitions
+     * @return
+     */
+    @Override
+    public BulkPartitionResult createPartitions(@NonNull final Stream<CreatePartitionCommand> partitions) {
+        return writePartitions(partitions, true, false);
+    }
+
+    @Override
+    public BulkPartitionResult upsertPartitions(@NonNull final Stream<CreatePartitionCommand> partitions) {
+        return writePartitions(partitions, true, true);
+    }
+
+    @Override
+    public BulkPartitionResult reconfigurePartitions(@NonNull final Stream<CreatePartitionCommand> partitions) {
+        return writePartitions(partitions, false, true);
+    }
+
+    private BulkPartitionResult writePartitions(final Stream<CreatePartitionCommand> partitions, final boolean create, final boolean update) {
+        val now = clock.millis();
+        val result = new BulkPartitionResult();
+        partitions.sequential().forEach(command -> result.add(writePartition(command, create, update, now), command.getPartitionKey()));
+        if (result.getCount(Outcome.Created) > 0 || result.getCount(Outcome.Updated) > 0) {
+            assignmentSignal.signal();
+        }
+        return result;
+    }
+
+    private Outcome writePartition(final CreatePartitionCommand command, final boolean create, final boolean update, final long now) {
+        val invalid = BulkPartitionResult.validate(command.getPartitionKey(), command.getMaxIdleTimeSeconds(), command.getMaxWorkerCount());
+        if (invalid != null) {
+            return invalid;
+        }
+
+        val configuration = toConfiguration(command);
+        if (create) {
+            if (tryCreatePartition(configuration, now)) {
+                return Outcome.Created;
+            }
+
+            if (!update) {
+                return Outcome.Exists;
+            }
+        }
+
+        val partition = partitions.get(command.getPartitionKey());
+        if (partition == null) {
+            return Outcome.NotFound;
+        }
+
+        if (partition.getConfiguration().equals(configuration)) {
+            return Outcome.Unchanged;
+        }
+
+        partition.setConfiguration(configuration);
+        reindex(partition);
+        journal.partitionConfigured(configuration);
+        return Outcome.Updated;
+    }
+
+    /**
+     * Deletes the partitions. Their workers keep them until their next assignment.
+     * @param partitionKeys
+     * @return
+     */
+    @Override
+    public BulkPartitionResult deletePartitions(@NonNull final Stream<String> partitionKeys) {
+        val result = new BulkPartitionResult();
+        partitionKeys.sequential().forEach(key -> result.add(deletePartition(key), key));
+        return result;
+    }
+
+    private Outcome deletePartition(final String partitionKey) {
+        if (partitionKey == null) {
+            return Outcome.Invalid;
+        }
+
+        if (!removePartition(partitionKey)) {
+            return Outcome.NotFound;
+        }
+
+        journal.partitionDeleted(partitionKey);
+        return Outcome.Deleted;
+    }
+
+    private boolean removePartition(final String partitionKey) {
+        val partition = partitions.remove(partitionKey);
+        if (partition == null) {
+            return false;
+        }
+
+        partition.delete();
+        orderedPartitions.remove(partitionKey, partition);
+        dueDateIndex.remove(partition);
+        backlogIndex.remove(partition);
+        strategy.partitionDeleted(partitionKey);
+        return true;
+    }
+
+    /**
+     * A status with a receipt is ignored if the partition doesn't have that assignment anymore:
+     * the worker lost it, and the partition may have moved on.
+     * @param command
+     */
+    @Override
+    public void setPartitionStatus(@NonNull final SetPartitionStatusCommand command) {
+        val partition = partitions.get(command.getPartitionKey());
+        if (isCurrent(partition, command)) {
+            val now = clock.millis();
+            setWork(partition, command, now);
+            if (command.isHasWork()) {
+                assignmentSignal.signal();
+            }
+        }
+    }
+
+    @Override
+    public void setPartitionStatuses(@NonNull final List<SetPartitionStatusCommand> commands) {
+        val now = clock.millis();
+        boolean hasWork = false;
+        for (val command : commands) {
+            val partition = partitions.get(command.getPartitionKey());
+            if (isCurrent(partition, command)) {
+                setWork(partition, command, now);
+                hasWork |= command.isHasWork();
+            }
+        }
+
+        if (hasWork) {
+            assignmentSignal.signal();
+        }
+    }
+
+    private static boolean isCurrent(final MemoryPartition partition, final SetPartitionStatusCommand command) {
+        return partition != null && (command.getReceipt() == null || partition.hasWorker(command.getReceipt()));
+    }
+
+    private void setWork(final MemoryPartition partition, final SetPartitionStatusCommand command, final long now) {
+        val backlog = Math.max(0, command.getBacklog());
+        val weight = command.getWeight() > 0 ? command.getWeight() : 1;
+        partition.setWork(command.isHasWork(), backlog, weight, now);
+        reindex(partition);
+        journal.partitionStatusChanged(command.getPartitionKey(), command.isHasWork(), backlog, weight, now);
+    }
+
+    @Override
+    public void updateConsumerStatus(@NonNull final UpdateConsumerStatusCommand command) {
+        val consumer = consumers.get(command.getRegistration().getConsumerId().getName());
+        if (consumer != null && consumer.getRegistration().equals(command.getRegistration())) {
+            consumer.setStatus(command.getStatus(), clock.millis());
+        }
+    }
+
+    /**
+     * Also unregisters the other consumers that stopped sending heartbeats.
+     * @param command
+     * @return
+     */
+    @Override
+    public HeartbeatResult heartbeat(@NonNull final ConsumerHeartbeatCommand command) {
+        expireConsumers(clock.millis());
+        val consumer = consumers.get(command.getRegistration().getConsumerId().getName());
+        if (consumer == null || !consumer.getRegistration().equals(command.getRegistration())) {
+            return HeartbeatResult.unregistered();
+        }
+
+        val maxWorkerCount = consumer.getMaxWorkerCount();
+        val result = consumer.heartbeat(command, clock.millis());
+        if (consumer.getMaxWorkerCount() != maxWorkerCount) {
+            consumersChanged();
+        }
+        return result;
+    }
+
+    /**
+     * Tells the strategy, and wakes up the waiting workers. Their assignments may have moved.
+     */
+    private void consumersChanged() {
+        strategy.consumersChanged();
+        assignmentSignal.signal();
+    }
+
+    @Override
+    public List<PartitionInfo> getPartitions() {
+        return orderedPartitions
+                .values()
+                .stream()
+                .map(MemoryPartition::toInfo)
+                .collect(toList());
+    }
+
+    /**
+     * Walks the partitions in key order, starting at the prefix or the cursor,
+     * and stops once the page is full. The PartitionInfo is only created for the
+     * partitions in the page.
+     * @param query
+     * @return
+     */
+    @Override
+    public Page<PartitionInfo> getPartitions(@NonNull final PartitionQuery query) {
+        val now = clock.millis();
+        return Pages.take(range(orderedPartitions, query.getKeyPrefix(), query.getCursor())
+                        .values()
+                        .stream()
+                        .filter(p -> query.matches(p.isHasMoreWork(), p.getWorkerCount(), p.isDue(now)))
+                        .map(p -> p.toInfo(query.isIncludeWorkers()))
+                        .iterator(),
+                query.getLimit(),
+                PartitionInfo::getPartitionKey);
+    }
+
+    @Override
+    public List<ConsumerInfo> getConsumers() {
+        return consumers
+                .values()
+                .stream()
+                .map(MemoryConsumer::toInfo)
+                .collect(toList());
+    }
+
+    @Override
+    public Page<ConsumerInfo> getConsumers(@NonNull final ConsumerQuery query) {
+        return Pages.take(range(consumers, query.getNamePrefix(), query.getCursor())
+                        .values()
+                        .stream()
+                        .filter(c -> query.matches(c.getAssignmentCount()))
+                        .map(c -> c.toInfo(query.isIncludeWorkers()))
+                        .iterator(),
+                query.getLimit(),
+                ConsumerInfo::getName);
+    }
+
+    /**
+     * The keys that start with the prefix, and are after the cursor.
+     */
+    private static <T> NavigableMap<String, T> range(final NavigableMap<String, T> map, final String prefix, final String cursor) {
+        NavigableMap<String, T> result = map;
+        if (prefix != null && !prefix.isEmpty()) {
+            result = result.subMap(prefix, true, prefix + Character.MAX_VALUE, false);
+        }
+        if (cursor != null) {
+            result = result.tailMap(cursor, false);
+        }
+        return result;
+    }
+
+    @Override
+    public PartitionConfiguration getPartitionConfiguration(final String partitionKey) {
+        val partition = partitions.get(partitionKey);
+        return partition == null ? null : partition.getConfiguration();
+    }
+
+    /**
+     * Passes the state of every partition to the consumer.
+     * Changes that are made while this runs may or may not be included,
+     * so a journal has to replay the changes that were made from the time it started.
+     * Walks the partition table rather than the ordered map: a partition is in the table
+     * before its creation is journaled, so a partition that the snapshot misses was
+     * journaled after the snapshot started.
+     * @param consumer
+     */
+    public void snapshot(@NonNull final Consumer<PartitionSnapshot> consumer) {
+        partitions.forEach(partition -> {
+            if (!partition.isDeleted()) {
+                consumer.accept(partition.toSnapshot());
+            }
+        });
+    }
+
+    /**
+     * Restores a partition from a snapshot or a journal.
+     * Recovery methods don't go to the journal, and don't check capacity.
+     * Does nothing if the partition already exists.
+     * @param snapshot
+     */
+    public void restorePartition(@NonNull final PartitionSnapshot snapshot) {
+        val key = snapshot.getConfiguration().getPartitionKey();
+        val partition = partitions.add(key, (handle, generation) -> new MemoryPartition(handle, generation, snapshot.getConfiguration(), snapshot.getLastChecked()));
+        if (partition == null) {
+            return;
+        }
+
+        if (snapshot.getWorkers() != null) {
+            for (val assignment : snapshot.getWorkers()) {
+                restoreAssignment(partition, assignment);
+            }
+        }
+        partition.setWork(snapshot.isHasMoreWork(), snapshot.getBacklog(), snapshot.getWeight(), snapshot.getLastChecked());
+
+        orderedPartitions.put(key, partition);
+        reindex(partition);
+        strategy.partitionCreated(key);
+    }
+
+    public void restorePartitionConfiguration(@NonNull final PartitionConfiguration configuration) {
+        val partition = partitions.get(configuration.getPartitionKey());
+        if (partition != null) {
+            partition.setConfiguration(configuration);
+            reindex(partition);
+        }
+    }
+
+    public void restorePartitionDeleted(@NonNull final String partitionKey) {
+        removePartition(partitionKey);
+    }
+
+    public void restorePartitionStatus(@NonNull final String partitionKey, final boolean hasMoreWork, final long backlog, final double weight, final long lastChecked) {
+        val partition = partitions.get(partitionKey);
+        if (partition != null) {
+            partition.setWork(hasMoreWork, backlog, weight, lastChecked);
+            reindex(partition);
+        }
+    }
+
+    /**
+     * Restores an assignment, or replaces the one with the same receipt.
+     * The assignment is released if its lease expires without being renewed.
+     * @param assignment
+     */
+    public void restoreAssignment(@NonNull final Assignment assignment) {
+        val partition = partitions.get(assignment.getPartitionKey());
+        if (partition != null) {
+            restoreAssignment(partition, assignment);
+            reindex(partition);
+        }
+    }
+
+    private void restoreAssignment(final MemoryPartition partition, final Assignment assignment) {
+        val leased = assignment.getLeaseExpiration() == null
+                ? Assignment.renew(assignment, assignment.getRuleName(), new Date(clock.millis() + leaseMillis))
+                : assignment;
+        if (partition.restoreWorker(leased)) {
+            leases.add(leased.getLeaseExpiration().getTime(), leased);
+            return;
+        }
+
+        val previous = partition.replaceWorker(leased);
+        if (previous != null) {
+            moveLease(previous, leased);
+        }
+    }
+
+    /**
+     * Recovery doesn't check whether the lease expired; the lease index releases it if it did.
+     */
+    public void restoreRenewal(@NonNull final String partitionKey, @NonNull final String receipt, @NonNull final Date leaseExpiration) {
+        val partition = partitions.get(partitionKey);
+        if (partition == null) {
+            return;
+        }
+
+        val previous = partition.renewWorker(receipt, leaseExpiration, Long.MIN_VALUE);
+        if (previous != null) {
+            moveLease(previous, Assignment.renew(previous, previous.getRuleName(), leaseExpiration));
+        }
+    }
+
+    public void restoreRelease(@NonNull final String partitionKey, @NonNull final String receipt, final long now) {
+        val partition = partitions.get(partitionKey);
+        val removed = partition == null ? null : partition.removeWorker(receipt, now);
+        if (removed != null) {
+            leases.remove(removed.getLeaseExpiration().getTime(), receipt);
+            reindex(partition);
+        }
+    }
+
+    @Override
+    public void close() {
+    }
+
+    /**
+     * The workinator's storage, as the strategy sees it, at one point in time.
+     */
+    private class Store implements AssignmentStore {
+        private final long now;
+
+        /**
+         * True if the store serves the members of one group. Only one member
+         * that has work moves to a due partition.
+         */
+        private final boolean group;
+        private boolean busyRule1Used;
+
+        Store(final long now, final boolean group) {
+            this.now = now;
+            this.group = group;
+        }
+
+        @Override
+        public Assignment getWhatsNextAssignment(final WorkerStatus status, final Set<String> heldPartitionKeys) {
+            val current = status.getCurrentAssignment();
+            val assignment = MemoryWorkinator.this.getWhatsNextAssignment(status, now, heldPartitionKeys, !group || !busyRule1Used);
+            if (group && current != null && assignment != null && RULE1.equals(assignment.getRuleName())) {
+                busyRule1Used = true;
+            }
+            return assignment;
+        }
+
+        @Override
+        public Assignment renewWhatsNextLease(final Assignment current) {
+            return MemoryWorkinator.this.renewWhatsNextLease(current, now);
+        }
+
+        @Override
+        public Assignment assign(final String partitionKey, final WorkerStatus status, final String ruleName, final boolean idleOnly) {
+            val partition = partitions.get(partitionKey);
+            if (partition == null || !partition.tryReserve(idleOnly ? 0 : -1)) {
+                return null;
+            }
+            return MemoryWorkinator.this.assign(partition, status, ruleName, now);
+        }
+
+        @Override
+        public Assignment renew(final Assignment current, final String ruleName) {
+            val partition = partitions.get(current.getPartitionKey());
+            return partition == null ? null : MemoryWorkinator.this.renew(partition, current, ruleName, now);
+        }
+
+        @Override
+        public void release(final Assignment assignment) {
+            MemoryWorkinator.this.release(assignment, now);
+        }
+
+        @Override
+        public void forEachPartitionKey(final Consumer<String> consumer) {
+            orderedPartitions.keySet().forEach(consumer);
+        }
+
+        @Override
+        public Map<String, Integer> getConsumerCapacities() {
+            val result = new TreeMap<String, Integer>();
+            consumers.forEach((name, consumer) -> result.put(name, consumer.getMaxWorkerCount()));
+            return result;
+        }
+    }
+}
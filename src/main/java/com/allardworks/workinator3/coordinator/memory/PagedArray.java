@@ -0,0 +1,64 @@
+package com.allardworks.workinator3.coordinator.memory;
+
+import lombok.val;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * An array indexed by handle that grows a page at a time.
+ * Reads don't lock. The existing pages never move, so growing doesn't copy the elements.
+ */
+class PagedArray<T> {
+    private static final int PAGE_BITS = 12;
+    private static final int PAGE_SIZE = 1 << PAGE_BITS;
+    private static final int PAGE_MASK = PAGE_SIZE - 1;
+
+    @SuppressWarnings("unchecked")
+    private volatile AtomicReferenceArray<T>[] pages = (AtomicReferenceArray<T>[]) new AtomicReferenceArray<?>[0];
+
+    /**
+     * @return the element, or null if it was never set.
+     */
+    T get(final int index) {
+        val pages = this.pages;
+        val page = index >>> PAGE_BITS;
+        return page < pages.length ? pages[page].get(index & PAGE_MASK) : null;
+    }
+
+    void set(final int index, final T value) {
+        getPage(index).set(index & PAGE_MASK, value);
+    }
+
+    boolean compareAndSet(final int index, final T expected, final T value) {
+        return getPage(index).compareAndSet(index & PAGE_MASK, expected, value);
+    }
+
+    /**
+     * Every index below this is readable.
+     */
+    int capacity() {
+        return pages.length << PAGE_BITS;
+    }
+
+    private AtomicReferenceArray<T> getPage(final int index) {
+        val page = index >>> PAGE_BITS;
+        val pages = this.pages;
+        if (page < pages.length) {
+            return pages[page];
+        }
+
+        synchronized (this) {
+            AtomicReferenceArray<T>[] grown = this.pages;
+            if (page >= grown.length) {
+                val from = grown.length;
+                grown = Arrays.copyOf(grown, page + 1);
+                for (int i = from; i < grown.length; i++) {
+                    grown[i] = new AtomicReferenceArray<>(PAGE_SIZE);
+                }
+                this.pages = grown;
+            }
+            return grown[page];
+        }
+    }
+}
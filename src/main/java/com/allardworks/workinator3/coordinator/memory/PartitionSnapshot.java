@@ -0,0 +1,26 @@
+package com.allardworks.workinator3.coordinator.memory;
+
+import com.allardworks.workinator3.core.Assignment;
+import com.allardworks.workinator3.core.PartitionConfiguration;
+import lombok.Builder;
+import lombok.Data;
+
+import java.util.List;
+
+/**
+ * The state of a partition, as saved and restored by a MemoryJournal.
+ */
+@Data
+@Builder
+public class PartitionSnapshot {
+    private final PartitionConfiguration configuration;
+    private final boolean hasMoreWork;
+    private final long backlog;
+    private final double weight;
+    private final long lastChecked;
+    private final List<Assignment> workers;
+
+    public static class PartitionSnapshotBuilder {
+        private double weight = 1;
+    }
+}
@@ -0,0 +1,90 @@
+package com.allardworks.workinator3.coordinator.memory;
+
+import lombok.val;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * The partitions, indexed by the handles of their keys.
+ * Walking the partitions is a walk of an array, without the entry objects of a map.
+ * Reads don't lock. Adds and removes do, so a key has a handle only while it has a partition.
+ */
+class PartitionTable {
+    /**
+     * Creates the partition for the handle that the table gives its key.
+     */
+    interface PartitionFactory {
+        MemoryPartition create(int handle, int generation);
+    }
+
+    private final SymbolTable keys = new SymbolTable();
+    private final PagedArray<MemoryPartition> partitions = new PagedArray<>();
+    private final AtomicInteger count = new AtomicInteger();
+
+    MemoryPartition get(final String partitionKey) {
+        val handle = keys.getHandle(partitionKey);
+        if (handle < 0) {
+            return null;
+        }
+
+        // the handle may have been released, and given to another key, since it was looked up.
+        val partition = partitions.get(handle);
+        return partition != null && partition.getPartitionKey().equals(partitionKey) ? partition : null;
+    }
+
+    MemoryPartition get(final int handle) {
+        return partitions.get(handle);
+    }
+
+    /**
+     * Adds a partition for the key. The key only gets a handle if the partition is added.
+     * @return the added partition, or null if the key already has one.
+     */
+    synchronized MemoryPartition add(final String partitionKey, final PartitionFactory factory) {
+        if (keys.getHandle(partitionKey) >= 0) {
+            return null;
+        }
+
+        val handle = keys.intern(partitionKey);
+        val partition = factory.create(handle, keys.getGeneration(handle));
+        partitions.set(handle, partition);
+        count.incrementAndGet();
+        return partition;
+    }
+
+    /**
+     * Removes the partition, and releases the handle of its key.
+     * @return the removed partition, or null if there isn't one.
+     */
+    synchronized MemoryPartition remove(final String partitionKey) {
+        val handle = keys.getHandle(partitionKey);
+        if (handle < 0) {
+            return null;
+        }
+
+        val existing = partitions.get(handle);
+        partitions.set(handle, null);
+        keys.release(partitionKey);
+        count.decrementAndGet();
+        return existing;
+    }
+
+    int size() {
+        return count.get();
+    }
+
+    /**
+     * Passes every partition to the consumer, in handle order.
+     * Partitions added or removed while this runs may or may not be passed.
+     */
+    void forEach(final Consumer<MemoryPartition> consumer) {
+        val capacity = partitions.capacity();
+        for (int handle = 0; handle < capacity; handle++) {
+            val partition = partitions.get(handle);
+            if (partition != null) {
+                consumer.accept(partition);
+            }
+        }
+    }
+}
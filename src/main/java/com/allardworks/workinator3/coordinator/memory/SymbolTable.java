@@ -0,0 +1,96 @@
+package com.allardworks.workinator3.coordinator.memory;
+
+import lombok.val;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Maps strings to dense int handles, and back.
+ * The strings are only looked up at the API boundary; the state behind it is indexed by handle.
+ * A released handle is given to the next new string. Its generation goes up every time it's
+ * released, so the handle and generation together never name two different things.
+ */
+class SymbolTable {
+    private final Map<String, Integer> handles = new ConcurrentHashMap<>();
+    private final PagedArray<String> symbols = new PagedArray<>();
+
+    /**
+     * The released handles, reused before the table grows. Guarded by this.
+     */
+    private final ArrayDeque<Integer> free = new ArrayDeque<>();
+
+    /**
+     * The generation of each handle. Guarded by this.
+     */
+    private int[] generations = new int[16];
+    private int next;
+
+    /**
+     * @return the handle of the string. The string gets a released handle, or the next one, if it doesn't have one.
+     */
+    int intern(final String symbol) {
+        val handle = handles.get(symbol);
+        if (handle != null) {
+            return handle;
+        }
+
+        synchronized (this) {
+            val existing = handles.get(symbol);
+            if (existing != null) {
+                return existing;
+            }
+
+            val allocated = free.isEmpty() ? grow() : free.pop();
+            symbols.set(allocated, symbol);
+            handles.put(symbol, allocated);
+            return allocated;
+        }
+    }
+
+    /**
+     * Frees the handle of the string, if it has one, for the next new string.
+     */
+    synchronized void release(final String symbol) {
+        val handle = handles.remove(symbol);
+        if (handle == null) {
+            return;
+        }
+
+        symbols.set(handle, null);
+        generations[handle]++;
+        free.push(handle);
+    }
+
+    /**
+     * @return the handle, or -1 if the string doesn't have one.
+     */
+    int getHandle(final String symbol) {
+        val handle = handles.get(symbol);
+        return handle == null ? -1 : handle;
+    }
+
+    /**
+     * @return the number of times the handle has been released.
+     */
+    synchronized int getGeneration(final int handle) {
+        return generations[handle];
+    }
+
+    String getSymbol(final int handle) {
+        return symbols.get(handle);
+    }
+
+    int size() {
+        return handles.size();
+    }
+
+    private int grow() {
+        if (next == generations.length) {
+            generations = Arrays.copyOf(generations, next * 2);
+        }
+        return next++;
+    }
+}
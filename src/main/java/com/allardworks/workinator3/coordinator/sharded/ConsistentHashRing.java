@@ -0,0 +1,70 @@
+package com.allardworks.workinator3.coordinator.sharded;
+
+import lombok.val;
+
+import java.util.Arrays;
+
+import static com.allardworks.workinator3.core.HashUtility.hash;
+
+/**
+ * Maps keys to shards by consistent hashing.
+ * Each shard has a number of virtual nodes on the ring. A key belongs to the shard
+ * of the first virtual node at or after the key's hash. Adding a shard only moves
+ * about 1/n of the keys.
+ * The ring is immutable, and lookups are a binary search of a sorted array.
+ */
+public class ConsistentHashRing {
+    public static final int DEFAULT_VIRTUAL_NODES = 160;
+
+    private final long[] hashes;
+    private final int[] shards;
+    private final int shardCount;
+
+    public ConsistentHashRing(final int shardCount) {
+        this(shardCount, DEFAULT_VIRTUAL_NODES);
+    }
+
+    public ConsistentHashRing(final int shardCount, final int virtualNodes) {
+        if (shardCount <= 0 || virtualNodes <= 0) {
+            throw new IllegalArgumentException("shardCount and virtualNodes must be greater than 0.");
+        }
+
+        this.shardCount = shardCount;
+        val nodes = new long[shardCount * virtualNodes][];
+        for (int shard = 0; shard < shardCount; shard++) {
+            for (int node = 0; node < virtualNodes; node++) {
+                nodes[shard * virtualNodes + node] = new long[]{hash("shard-" + shard + "-" + node), shard};
+            }
+        }
+        Arrays.sort(nodes, (a, b) -> Long.compare(a[0], b[0]));
+
+        hashes = new long[nodes.length];
+        shards = new int[nodes.length];
+        for (int i = 0; i < nodes.length; i++) {
+            hashes[i] = nodes[i][0];
+            shards[i] = (int) nodes[i][1];
+        }
+    }
+
+    public int getShardCount() {
+        return shardCount;
+    }
+
+    /**
+     * The shard that the key belongs to.
+     * @param key
+     * @return
+     */
+    public int getShard(final String key) {
+        if (shardCount == 1) {
+            return 0;
+        }
+
+        val hash = hash(key);
+        int index = Arrays.binarySearch(hashes, hash);
+        if (index < 0) {
+            index = -index - 1;
+        }
+        return shards[index == hashes.length ? 0 : index];
+    }
+}
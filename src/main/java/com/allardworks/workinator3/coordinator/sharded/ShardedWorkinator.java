@@ -0,0 +1,566 @@
+package com.allardworks.workinator3.coordinator.sharded;
+
+import com.allardworks.workinator3.core.*;
+import com.allardworks.workinator3.core.ConsumerStatus.ConsumerWorkerStatus;
+import com.allardworks.workinator3.core.commands.*;
+import lombok.Data;
+import lombok.NonNull;
+import lombok.val;
+
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+import static com.allardworks.workinator3.core.AssignmentRules.RULE5;
+import static java.util.stream.Collectors.toList;
+
+/**
+ * Spreads the partitions over several workinators, by consistent hashing of the partition key.
+ * Each shard is a complete workinator with its own store, so the write load of
+ * the partitions is split between the stores.
+ *
+ * Every consumer is registered with every shard. The shards give out their own
+ * consumer registrations; this maps them to and from the registration it gives the consumer.
+ *
+ * A worker without an assignment searches the shards in a random order, starting with
+ * the shards that had something to assign the last time they were asked, and takes the first
+ * assignment it finds. A worker with an assignment asks the shard of its partition first. If that
+ * shard can only offer to keep the current assignment (rule 5), the other shards are searched
+ * for something better before the worker keeps it.
+ * The rules are evaluated per shard, so a due partition in one shard doesn't take priority
+ * over a partition with work in another.
+ *
+ * The consumer status and heartbeats are kept by one shard per consumer, picked by the consumer name.
+ * The bulk upsert, reconfigure and delete operations are passed to the shards that are a BulkPartitionAdmin.
+ * The partitions of the other shards are reported as Unsupported.
+ */
+public class ShardedWorkinator implements Workinator, BulkPartitionAdmin {
+    /**
+     * How long a shard that had nothing to assign is searched last.
+     */
+    private static final long EMPTY_BACKOFF_NANOS = TimeUnit.MILLISECONDS.toNanos(20);
+
+    /**
+     * The number of partitions that bulk operations read from the stream before writing them to the shards.
+     */
+    private static final int BULK_BATCH_SIZE = 10_000;
+
+    private final List<Workinator> shards;
+
+    /**
+     * Per shard: the shard as a BulkPartitionAdmin, or null if it isn't one.
+     */
+    private final BulkPartitionAdmin[] admins;
+    private final ConsistentHashRing ring;
+    private final Map<String, ShardedConsumer> consumers = new ConcurrentHashMap<>();
+
+    /**
+     * Per shard: until when (System.nanoTime) it's searched last.
+     */
+    private final AtomicLongArray emptyUntil;
+
+    public ShardedWorkinator(@NonNull final List<Workinator> shards) {
+        if (shards.isEmpty()) {
+            throw new IllegalArgumentException("There has to be at least one shard.");
+        }
+        this.shards = new ArrayList<>(shards);
+        this.admins = new BulkPartitionAdmin[shards.size()];
+        for (int i = 0; i < shards.size(); i++) {
+            if (shards.get(i) instanceof BulkPartitionAdmin) {
+                admins[i] = (BulkPartitionAdmin) shards.get(i);
+            }
+        }
+        this.ring = new ConsistentHashRing(shards.size());
+        this.emptyUntil = new AtomicLongArray(shards.size());
+    }
+
+    @Data
+    private static class ShardedConsumer {
+        private final ConsumerRegistration registration;
+        private final ConsumerRegistration[] shardRegistrations;
+    }
+
+    private int getShard(final String partitionKey) {
+        return ring.getShard(partitionKey);
+    }
+
+    /**
+     * The shard that keeps the consumer's status.
+     */
+    private int getHomeShard(final ConsumerRegistration registration) {
+        return ring.getShard(registration.getConsumerId().getName());
+    }
+
+    private ShardedConsumer getConsumer(final ConsumerRegistration registration) {
+        val consumer = consumers.get(registration.getConsumerId().getName());
+        return consumer == null || !consumer.getRegistration().equals(registration) ? null : consumer;
+    }
+
+    private ConsumerRegistration toShard(final ConsumerRegistration registration, final int shard) {
+        val consumer = getConsumer(registration);
+        return consumer == null ? registration : consumer.getShardRegistrations()[shard];
+    }
+
+    private WorkerId toShard(final WorkerId workerId, final int shard) {
+        return new WorkerId(toShard(workerId.getConsumer(), shard), workerId.getWorkerNumber());
+    }
+
+    private Assignment toShard(final Assignment assignment, final int shard) {
+        return Assignment.setWorkerId(assignment, toShard(assignment.getWorkerId(), shard));
+    }
+
+    private WorkerStatus toShard(final WorkerStatus status, final int shard) {
+        val result = new WorkerStatus(toShard(status.getWorkerId(), shard));
+        if (status.getCurrentAssignment() != null) {
+            result.setCurrentAssignment(toShard(status.getCurrentAssignment(), shard));
+        }
+        return result;
+    }
+
+    private static Assignment fromShard(final Assignment assignment, final WorkerId workerId) {
+        return assignment == null ? null : Assignment.setWorkerId(assignment, workerId);
+    }
+
+    /**
+     * The order to search the shards in: random, but the shards that recently
+     * didn't have anything to assign go last.
+     */
+    private int[] getSearchOrder() {
+        val count = shards.size();
+        val order = new int[count];
+        val start = ThreadLocalRandom.current().nextInt(count);
+        val now = System.nanoTime();
+        int front = 0;
+        int back = count - 1;
+        for (int i = 0; i < count; i++) {
+            val shard = (start + i) % count;
+            if (emptyUntil.get(shard) - now > 0) {
+                order[back--] = shard;
+            } else {
+                order[front++] = shard;
+            }
+        }
+        return order;
+    }
+
+    private Assignment record(final int shard, final Assignment assignment) {
+        if (assignment == null) {
+            emptyUntil.set(shard, System.nanoTime() + EMPTY_BACKOFF_NANOS);
+        } else if (emptyUntil.get(shard) != 0) {
+            emptyUntil.set(shard, 0);
+        }
+        return assignment;
+    }
+
+    /**
+     * Takes the first new assignment of any shard, except the one to skip.
+     */
+    private Assignment search(final WorkerId workerId, final int skip) {
+        for (val shard : getSearchOrder()) {
+            if (shard == skip) {
+                continue;
+            }
+
+            val assignment = record(shard, shards.get(shard).getAssignment(new WorkerStatus(toShard(workerId, shard))));
+            if (assignment != null) {
+                return fromShard(assignment, workerId);
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public Assignment getAssignment(@NonNull final WorkerStatus status) {
+        val current = status.getCurrentAssignment();
+        if (current == null) {
+            return search(status.getWorkerId(), -1);
+        }
+
+        val shard = getShard(current.getPartitionKey());
+        val assignment = fromShard(shards.get(shard).getAssignment(toShard(status, shard)), status.getWorkerId());
+        if (assignment != null && !RULE5.equals(assignment.getRuleName())) {
+            return assignment;
+        }
+
+        // the shard can only keep the current assignment, or has nothing.
+        val other = search(status.getWorkerId(), shard);
+        if (other == null) {
+            return assignment;
+        }
+
+        if (assignment != null) {
+            shards.get(shard).releaseAssignment(new ReleaseAssignmentCommand(toShard(assignment, shard)));
+        }
+        return other;
+    }
+
+    /**
+     * Searches all of the shards. If none of them has an assignment, long polls one of them.
+     * The others are searched again by the next request.
+     */
+    @Override
+    public Assignment getAssignment(@NonNull final WorkerStatus status, @NonNull final Duration maxWait) throws InterruptedException {
+        val assignment = getAssignment(status);
+        if (assignment != null || maxWait.isZero() || maxWait.isNegative()) {
+            return assignment;
+        }
+
+        val shard = getSearchOrder()[0];
+        val waited = shards.get(shard).getAssignment(new WorkerStatus(toShard(status.getWorkerId(), shard)), maxWait);
+        return fromShard(record(shard, waited), status.getWorkerId());
+    }
+
+    @Override
+    public Assignment renewLease(@NonNull final RenewLeaseCommand command) {
+        val assignment = command.getAssignment();
+        val shard = getShard(assignment.getPartitionKey());
+        return fromShard(shards.get(shard).renewLease(new RenewLeaseCommand(toShard(assignment, shard))), assignment.getWorkerId());
+    }
+
+    @Override
+    public Assignment reserveAssignment(@NonNull final ReserveAssignmentCommand command) {
+        for (val shard : getSearchOrder()) {
+            val reservation = record(shard, shards.get(shard).reserveAssignment(ReserveAssignmentCommand
+                    .builder()
+                    .workerId(toShard(command.getWorkerId(), shard))
+                    .expiration(command.getExpiration())
+                    .build()));
+            if (reservation != null) {
+                return fromShard(reservation, command.getWorkerId());
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public Assignment claimReservation(@NonNull final ClaimReservationCommand command) {
+        val reservation = command.getReservation();
+        val shard = getShard(reservation.getPartitionKey());
+        val claimed = shards.get(shard).claimReservation(new ClaimReservationCommand(
+                toShard(reservation, shard),
+                toShard(command.getWorkerId(), shard)));
+        return fromShard(claimed, command.getWorkerId());
+    }
+
+    @Override
+    public void releaseAssignment(@NonNull final ReleaseAssignmentCommand command) {
+        val shard = getShard(command.getAssignment().getPartitionKey());
+        shards.get(shard).releaseAssignment(new ReleaseAssignmentCommand(toShard(command.getAssignment(), shard)));
+    }
+
+    @Override
+    public void releaseAssignments(@NonNull final List<ReleaseAssignmentCommand> commands) {
+        val byShard = new HashMap<Integer, List<ReleaseAssignmentCommand>>();
+        for (val command : commands) {
+            val shard = getShard(command.getAssignment().getPartitionKey());
+            byShard
+                    .computeIfAbsent(shard, s -> new ArrayList<>())
+                    .add(new ReleaseAssignmentCommand(toShard(command.getAssignment(), shard)));
+        }
+        byShard.forEach((shard, releases) -> shards.get(shard).releaseAssignments(releases));
+    }
+
+    /**
+     * Registers the consumer with every shard.
+     * If any of them fails, the consumer is unregistered from the others.
+     */
+    @Override
+    public ConsumerRegistration registerConsumer(@NonNull final RegisterConsumerCommand command) throws ConsumerExistsException {
+        val name = command.getId().getName();
+        val shardRegistrations = new ConsumerRegistration[shards.size()];
+        try {
+            for (int i = 0; i < shards.size(); i++) {
+                shardRegistrations[i] = shards.get(i).registerConsumer(command);
+            }
+        } catch (final ConsumerExistsException | RuntimeException ex) {
+            unregister(shardRegistrations);
+            throw ex;
+        }
+
+        val registration = new ConsumerRegistration(command.getId(), UUID.randomUUID().toString());
+        if (consumers.putIfAbsent(name, new ShardedConsumer(registration, shardRegistrations)) != null) {
+            unregister(shardRegistrations);
+            throw new ConsumerExistsException(name);
+        }
+        return registration;
+    }
+
+    @Override
+    public void unregisterConsumer(@NonNull final UnregisterConsumerCommand command) {
+        val consumer = getConsumer(command.getRegistration());
+        if (consumer == null) {
+            return;
+        }
+
+        consumers.remove(command.getRegistration().getConsumerId().getName(), consumer);
+        unregister(consumer.getShardRegistrations());
+    }
+
+    private void unregister(final ConsumerRegistration[] shardRegistrations) {
+        for (int i = 0; i < shardRegistrations.length; i++) {
+            if (shardRegistrations[i] != null) {
+                shards.get(i).unregisterConsumer(new UnregisterConsumerCommand(shardRegistrations[i]));
+            }
+        }
+    }
+
+    @Override
+    public void createPartition(@NonNull final CreatePartitionCommand command) throws PartitionExistsException {
+        shards.get(getShard(command.getPartitionKey())).createPartition(command);
+    }
+
+    @Override
+    public BulkPartitionResult createPartitions(@NonNull final Stream<CreatePartitionCommand> partitions) {
+        return writeInBatches(partitions, CreatePartitionCommand::getPartitionKey, false, (shard, batch) -> shards.get(shard).createPartitions(batch));
+    }
+
+    @Override
+    public BulkPartitionResult upsertPartitions(@NonNull final Stream<CreatePartitionCommand> partitions) {
+        return writeInBatches(partitions, CreatePartitionCommand::getPartitionKey, true, (shard, batch) -> admins[shard].upsertPartitions(batch));
+    }
+
+    @Override
+    public BulkPartitionResult reconfigurePartitions(@NonNull final Stream<CreatePartitionCommand> partitions) {
+        return writeInBatches(partitions, CreatePartitionCommand::getPartitionKey, true, (shard, batch) -> admins[shard].reconfigurePartitions(batch));
+    }
+
+    @Override
+    public BulkPartitionResult deletePartitions(@NonNull final Stream<String> partitionKeys) {
+        return writeInBatches(partitionKeys, Function.identity(), true, (shard, batch) -> admins[shard].deletePartitions(batch));
+    }
+
+    /**
+     * Reads the stream in batches, and writes each batch with one call per shard.
+     * @param adminOnly true if only the shards that are a BulkPartitionAdmin can write the items.
+     *                  The items of the other shards are reported as Unsupported.
+     */
+    private <T> BulkPartitionResult writeInBatches(
+            final Stream<T> items,
+            final Function<T, String> getKey,
+            final boolean adminOnly,
+            final BiFunction<Integer, Stream<T>, BulkPartitionResult> write) {
+        final BulkPartitionResult result = new BulkPartitionResult();
+        final List<List<T>> batches = new ArrayList<>();
+        for (int i = 0; i < shards.size(); i++) {
+            batches.add(new ArrayList<>());
+        }
+
+        int count = 0;
+        final Iterator<T> iterator = items.iterator();
+        while (iterator.hasNext()) {
+            final T item = iterator.next();
+            final String key = getKey.apply(item);
+            if (key == null) {
+                result.add(BulkPartitionResult.Outcome.Invalid, null);
+                continue;
+            }
+
+            final int shard = getShard(key);
+            if (adminOnly && admins[shard] == null) {
+                result.add(BulkPartitionResult.Outcome.Unsupported, key);
+                continue;
+            }
+
+            batches.get(shard).add(item);
+            if (++count == BULK_BATCH_SIZE) {
+                writeBatches(batches, write, result);
+                count = 0;
+            }
+        }
+        writeBatches(batches, write, result);
+        return result;
+    }
+
+    private <T> void writeBatches(
+            final List<List<T>> batches,
+            final BiFunction<Integer, Stream<T>, BulkPartitionResult> write,
+            final BulkPartitionResult result) {
+        for (int shard = 0; shard < batches.size(); shard++) {
+            final List<T> batch = batches.get(shard);
+            if (!batch.isEmpty()) {
+                result.merge(write.apply(shard, batch.stream()));
+                batch.clear();
+            }
+        }
+    }
+
+    @Override
+    public void setPartitionStatus(@NonNull final SetPartitionStatusCommand command) {
+        shards.get(getShard(command.getPartitionKey())).setPartitionStatus(command);
+    }
+
+    @Override
+    public void setPartitionStatuses(@NonNull final List<SetPartitionStatusCommand> commands) {
+        val byShard = new HashMap<Integer, List<SetPartitionStatusCommand>>();
+        for (val command : commands) {
+            byShard.computeIfAbsent(getShard(command.getPartitionKey()), s -> new ArrayList<>()).add(command);
+        }
+        byShard.forEach((shard, statuses) -> shards.get(shard).setPartitionStatuses(statuses));
+    }
+
+    @Override
+    public void updateConsumerStatus(@NonNull final UpdateConsumerStatusCommand command) {
+        val home = getHomeShard(command.getRegistration());
+        val workers = command.getStatus() == null || command.getStatus().getWorkers() == null
+                ? Collections.<ConsumerWorkerStatus>emptyList()
+                : command.getStatus().getWorkers();
+        shards.get(home).updateConsumerStatus(UpdateConsumerStatusCommand
+                .builder()
+                .registration(toShard(command.getRegistration(), home))
+                .status(ConsumerStatus.builder().workers(toShard(workers, home)).build())
+                .build());
+    }
+
+    /**
+     * Sends the heartbeat to the consumer's home shard, and a ping to the others
+     * so that they don't expire the consumer.
+     * If any shard expired the consumer, it's unregistered from all of them,
+     * so that it can register again.
+     */
+    @Override
+    public HeartbeatResult heartbeat(@NonNull final ConsumerHeartbeatCommand command) {
+        val home = getHomeShard(command.getRegistration());
+        val consumer = getConsumer(command.getRegistration());
+        if (consumer == null) {
+            return HeartbeatResult.unregistered();
+        }
+
+        val result = shards.get(home).heartbeat(ConsumerHeartbeatCommand
+                .builder()
+                .registration(toShard(command.getRegistration(), home))
+                .baseVersion(command.getBaseVersion())
+                .version(command.getVersion())
+                .full(command.isFull())
+                .changes(toShard(command.getChanges(), home))
+                .maxWorkerCount(command.getMaxWorkerCount())
+                .build());
+
+        boolean registered = result.isRegistered();
+        for (int i = 0; i < shards.size(); i++) {
+            if (i == home) {
+                continue;
+            }
+
+            // the other shards never get the workers, so their version stays 0.
+            val ping = shards.get(i).heartbeat(ConsumerHeartbeatCommand
+                    .builder()
+                    .registration(consumer.getShardRegistrations()[i])
+                    .maxWorkerCount(command.getMaxWorkerCount())
+                    .build());
+            registered &= ping.isRegistered();
+        }
+
+        if (!registered) {
+            consumers.remove(command.getRegistration().getConsumerId().getName(), consumer);
+            unregister(consumer.getShardRegistrations());
+            return HeartbeatResult.unregistered();
+        }
+        return result;
+    }
+
+    private List<ConsumerWorkerStatus> toShard(final List<ConsumerWorkerStatus> workers, final int shard) {
+        return workers
+                .stream()
+                .map(w -> ConsumerWorkerStatus
+                        .builder()
+                        .workerNumber(w.getWorkerNumber())
+                        .assignment(w.getAssignment() == null ? null : toShard(w.getAssignment(), shard))
+                        .build())
+                .collect(toList());
+    }
+
+    @Override
+    public List<PartitionInfo> getPartitions() {
+        val result = new ArrayList<PartitionInfo>();
+        shards.forEach(s -> result.addAll(s.getPartitions()));
+        result.sort(Comparator.comparing(PartitionInfo::getPartitionKey));
+        return result;
+    }
+
+    /**
+     * Gets a page from every shard, and merges them.
+     * The page has the first limit partitions of the merged pages. None of the shards
+     * has a partition before the last of those that isn't in its page, so the last key
+     * is the cursor for the next page.
+     * @param query
+     * @return
+     */
+    @Override
+    public Page<PartitionInfo> getPartitions(@NonNull final PartitionQuery query) {
+        val merged = new ArrayList<PartitionInfo>();
+        boolean hasMore = false;
+        for (val shard : shards) {
+            val page = shard.getPartitions(query);
+            merged.addAll(page.getItems());
+            hasMore |= page.hasMore();
+        }
+
+        merged.sort(Comparator.comparing(PartitionInfo::getPartitionKey));
+        if (merged.size() <= query.getLimit() && !hasMore) {
+            return new Page<>(merged, null);
+        }
+
+        val items = new ArrayList<PartitionInfo>(merged.subList(0, Math.min(query.getLimit(), merged.size())));
+        return new Page<>(items, items.isEmpty() ? null : items.get(items.size() - 1).getPartitionKey());
+    }
+
+    /**
+     * Every shard knows every consumer, but only has the workers that are assigned to its partitions.
+     * This combines them. The home shard has the heartbeat information.
+     * @return
+     */
+    @Override
+    public List<ConsumerInfo> getConsumers() {
+        val byName = new TreeMap<String, ConsumerInfo[]>();
+        for (int i = 0; i < shards.size(); i++) {
+            for (val info : shards.get(i).getConsumers()) {
+                byName.computeIfAbsent(info.getName(), n -> new ConsumerInfo[shards.size()])[i] = info;
+            }
+        }
+
+        val result = new ArrayList<ConsumerInfo>(byName.size());
+        for (val infos : byName.values()) {
+            val workers = new ArrayList<ConsumerWorkerInfo>();
+            int workerCount = 0;
+            ConsumerInfo first = null;
+            for (val info : infos) {
+                if (info == null) {
+                    continue;
+                }
+                first = first == null ? info : first;
+                workerCount += info.getCurrentWorkerCount();
+                if (info.getWorkers() != null) {
+                    workers.addAll(info.getWorkers());
+                }
+            }
+
+            val sharded = consumers.get(first.getName());
+            val home = sharded == null ? null : infos[getHomeShard(sharded.getRegistration())];
+            workers.sort(Comparator.comparingInt(ConsumerWorkerInfo::getWorkerNumber));
+            result.add((home == null ? first : home)
+                    .toBuilder()
+                    .currentWorkerCount(workerCount)
+                    .workers(workers)
+                    .build());
+        }
+        return result;
+    }
+
+    @Override
+    public PartitionConfiguration getPartitionConfiguration(final String partitionKey) {
+        return shards.get(getShard(partitionKey)).getPartitionConfiguration(partitionKey);
+    }
+
+    @Override
+    public void close() throws Exception {
+        for (val shard : shards) {
+            shard.close();
+        }
+    }
+}
@@ -0,0 +1,320 @@
+package com.allardworks.workinator3.coordinator.strategy;
+
+import com.allardworks.workinator3.core.Assignment;
+import com.allardworks.workinator3.core.AssignmentStore;
+import com.allardworks.workinator3.core.AssignmentStrategy;
+import com.allardworks.workinator3.core.WorkerStatus;
+import lombok.Getter;
+import lombok.val;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static com.allardworks.workinator3.core.AssignmentRules.ASSIGNED;
+import static com.allardworks.workinator3.core.HashUtility.hash;
+import static com.allardworks.workinator3.core.HashUtility.mix;
+
+/**
+ * The "Assignment" strategy: the partitions are divided among the registered consumers,
+ * and a consumer's workers only work on the partitions that belong to it.
+ * A worker keeps its partition, with or without work, until the partition moves to another consumer.
+ * There's no poll loop over the rules; an assignment is a lease renewal.
+ *
+ * The partitions are divided by rendezvous hashing: a partition belongs to the consumer
+ * with the highest hash of (partition key, consumer name). When a consumer joins, only the
+ * partitions that now hash highest to it move to it; when it leaves, only its own partitions move.
+ *
+ * A consumer owns at most maxWorkerCount partitions, so each of its partitions can have a worker.
+ * The partitions are visited in key order; one whose consumer is full goes to the next highest
+ * consumer that isn't. That can move a few more partitions, but only when consumers are full.
+ * If the consumers don't have enough capacity, then the last partitions don't belong to anyone,
+ * and aren't worked on.
+ *
+ * The division is computed again on the next request after the consumers change.
+ * It costs one hash per partition per consumer. A created partition goes to its highest
+ * consumer that has room, and a deleted one frees its consumer's slot for the first partition
+ * that didn't have one, which costs one hash per consumer.
+ */
+public class RendezvousAssignmentStrategy implements AssignmentStrategy {
+    /**
+     * Which partitions belong to which consumers.
+     * Changed while holding the strategy's lock. Read without locking: the maps are concurrent,
+     * and a consumer's list of partitions is replaced rather than changed.
+     */
+    private static class Ownership {
+        private final Map<String, String> owners = new ConcurrentHashMap<>();
+        private final Map<String, List<String>> partitions = new ConcurrentHashMap<>();
+
+        /**
+         * The consumers as of the last division, with the seeds of their hashes, their capacities,
+         * and the number of partitions they have.
+         */
+        private final String[] names;
+        private final long[] seeds;
+        private final int[] capacities;
+        private final int[] counts;
+
+        /**
+         * The partitions that don't belong to any consumer, in key order.
+         */
+        private final NavigableSet<String> unassigned = new TreeSet<>();
+
+        private Ownership(final Map<String, Integer> consumerCapacities) {
+            names = consumerCapacities.keySet().toArray(new String[0]);
+            seeds = new long[names.length];
+            capacities = new int[names.length];
+            counts = new int[names.length];
+            for (int i = 0; i < names.length; i++) {
+                seeds[i] = hash(names[i]);
+                capacities[i] = Math.max(0, consumerCapacities.get(names[i]));
+            }
+        }
+
+        String getOwner(final String partitionKey) {
+            return owners.get(partitionKey);
+        }
+
+        List<String> getPartitions(final String consumerName) {
+            return partitions.getOrDefault(consumerName, Collections.emptyList());
+        }
+
+        /**
+         * @return the consumer with the highest hash for the partition that has room for it, or -1 if none do.
+         */
+        int choose(final String partitionKey) {
+            val partitionHash = hash(partitionKey);
+            int best = -1;
+            long bestScore = 0;
+            for (int i = 0; i < seeds.length; i++) {
+                if (counts[i] >= capacities[i]) {
+                    continue;
+                }
+
+                val score = mix(partitionHash ^ seeds[i]);
+                if (best < 0 || Long.compareUnsigned(score, bestScore) > 0) {
+                    best = i;
+                    bestScore = score;
+                }
+            }
+            return best;
+        }
+
+        void add(final String partitionKey, final int consumer) {
+            val list = new ArrayList<String>(getPartitions(names[consumer]));
+            list.add(partitionKey);
+            partitions.put(names[consumer], list);
+            owners.put(partitionKey, names[consumer]);
+            counts[consumer]++;
+        }
+
+        /**
+         * @return the consumer that had the partition, or -1 if it didn't belong to one.
+         */
+        int remove(final String partitionKey) {
+            val owner = owners.remove(partitionKey);
+            if (owner == null) {
+                unassigned.remove(partitionKey);
+                return -1;
+            }
+
+            val list = new ArrayList<String>(getPartitions(owner));
+            list.remove(partitionKey);
+            partitions.put(owner, list);
+            for (int i = 0; i < names.length; i++) {
+                if (names[i].equals(owner)) {
+                    counts[i]--;
+                    return i;
+                }
+            }
+            return -1;
+        }
+    }
+
+    private volatile Ownership ownership = new Ownership(Collections.emptyMap());
+    private volatile boolean stale = true;
+
+    /**
+     * The number of times the partitions were divided.
+     */
+    @Getter
+    private volatile long rebalances;
+
+    /**
+     * The total number of partitions that changed consumers.
+     */
+    @Getter
+    private volatile long movedPartitions;
+
+    /**
+     * The number of partitions that don't belong to any consumer.
+     */
+    @Getter
+    private volatile int unassignedPartitions;
+
+    private static String getConsumerName(final WorkerStatus status) {
+        return status.getWorkerId().getConsumer().getConsumerId().getName();
+    }
+    /**
+     * Keeps the worker on its partition if it still belongs to the consumer.
+     * Otherwise, gives the worker a partition of the consumer that doesn't have a worker,
+     * then one that has capacity for another worker.
+     * @param status
+     * @param heldPartitionKeys
+     * @param store
+     * @return
+     */
+    @Override
+    public Assignment getAssignment(final WorkerStatus status, final Set<String> heldPartitionKeys, final AssignmentStore store) {
+        val consumerName = getConsumerName(status);
+        val ownership = getOwnership(store);
+        val current = status.getCurrentAssignment();
+        if (current != null) {
+            if (consumerName.equals(ownership.getOwner(current.getPartitionKey()))) {
+                val renewed = store.renew(current, ASSIGNED);
+                if (renewed != null) {
+                    return renewed;
+                }
+            } else {
+                store.release(current);
+            }
+        }
+
+        val owned = ownership.getPartitions(consumerName);
+        if (owned.isEmpty()) {
+            return null;
+        }
+
+        // start somewhere different for each worker, so they don't all compete for the same slot.
+        // by name rather than registration, so the same workers make the same choices every time.
+        val start = Math.floorMod(31 * consumerName.hashCode() + status.getWorkerId().getWorkerNumber(), owned.size());
+        for (val idleOnly : new boolean[]{true, false}) {
+            for (int i = 0; i < owned.size(); i++) {
+                val partitionKey = owned.get((start + i) % owned.size());
+                if (heldPartitionKeys.contains(partitionKey)) {
+                    continue;
+                }
+
+                val assignment = store.assign(partitionKey, status, ASSIGNED, idleOnly);
+                if (assignment != null) {
+                    return assignment;
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Renews the lease as long as the partition still belongs to the worker's consumer.
+     * @param current
+     * @param store
+     * @return
+     */
+    @Override
+    public Assignment renewLease(final Assignment current, final AssignmentStore store) {
+        val consumerName = current.getWorkerId().getConsumer().getConsumerId().getName();
+        return consumerName.equals(getOwnership(store).getOwner(current.getPartitionKey()))
+                ? store.renew(current, ASSIGNED)
+                : null;
+    }
+
+    @Override
+    public void consumersChanged() {
+        stale = true;
+    }
+
+    /**
+     * Gives the partition to its highest consumer that has room.
+     * If the partitions are going to be divided again anyway, then the division picks it up.
+     * @param partitionKey
+     */
+    @Override
+    public synchronized void partitionCreated(final String partitionKey) {
+        val ownership = this.ownership;
+        if (stale || ownership.getOwner(partitionKey) != null || ownership.unassigned.contains(partitionKey)) {
+            return;
+        }
+
+        val consumer = ownership.choose(partitionKey);
+        if (consumer < 0) {
+            ownership.unassigned.add(partitionKey);
+        } else {
+            ownership.add(partitionKey, consumer);
+        }
+        unassignedPartitions = ownership.unassigned.size();
+    }
+
+    /**
+     * Takes the partition from its consumer. The consumer was the only one with room, if any
+     * partition didn't have a consumer, so the first of those takes the slot.
+     * @param partitionKey
+     */
+    @Override
+    public synchronized void partitionDeleted(final String partitionKey) {
+        val ownership = this.ownership;
+        if (stale) {
+            return;
+        }
+
+        val consumer = ownership.remove(partitionKey);
+        if (consumer >= 0 && !ownership.unassigned.isEmpty()) {
+            ownership.add(ownership.unassigned.pollFirst(), consumer);
+        }
+        unassignedPartitions = ownership.unassigned.size();
+    }
+
+    /**
+     * Divides the partitions again if anything changed since the last time.
+     * A change made while dividing marks it stale again.
+     */
+    private Ownership getOwnership(final AssignmentStore store) {
+        if (stale) {
+            synchronized (this) {
+                if (stale) {
+                    stale = false;
+                    ownership = divide(store, ownership);
+                }
+            }
+        }
+        return ownership;
+    }
+
+    private Ownership divide(final AssignmentStore store, final Ownership previous) {
+        val next = new Ownership(store.getConsumerCapacities());
+        val partitions = new ArrayList<List<String>>(next.names.length);
+        for (int i = 0; i < next.names.length; i++) {
+            partitions.add(new ArrayList<>());
+        }
+
+        val moved = new int[1];
+        store.forEachPartitionKey(partitionKey -> {
+            val best = next.choose(partitionKey);
+            if (best < 0) {
+                next.unassigned.add(partitionKey);
+                return;
+            }
+
+            next.counts[best]++;
+            val owner = next.names[best];
+            next.owners.put(partitionKey, owner);
+            partitions.get(best).add(partitionKey);
+            if (!owner.equals(previous.getOwner(partitionKey))) {
+                moved[0]++;
+            }
+        });
+
+        for (int i = 0; i < next.names.length; i++) {
+            next.partitions.put(next.names[i], partitions.get(i));
+        }
+
+        rebalances++;
+        movedPartitions += moved[0];
+        unassignedPartitions = next.unassigned.size();
+        return next;
+    }
+}
@@ -0,0 +1,24 @@
+package com.allardworks.workinator3.coordinator.strategy;
+
+import com.allardworks.workinator3.core.Assignment;
+import com.allardworks.workinator3.core.AssignmentStore;
+import com.allardworks.workinator3.core.AssignmentStrategy;
+import com.allardworks.workinator3.core.WorkerStatus;
+
+import java.util.Set;
+
+/**
+ * The "What's Next" strategy: every worker goes through the rules every time it asks for an assignment.
+ * The default. The rules are evaluated by the store.
+ */
+public class WhatsNextAssignmentStrategy implements AssignmentStrategy {
+    @Override
+    public Assignment getAssignment(final WorkerStatus status, final Set<String> heldPartitionKeys, final AssignmentStore store) {
+        return store.getWhatsNextAssignment(status, heldPartitionKeys);
+    }
+
+    @Override
+    public Assignment renewLease(final Assignment current, final AssignmentStore store) {
+        return store.renewWhatsNextLease(current);
+    }
+}
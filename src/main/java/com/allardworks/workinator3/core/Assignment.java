@@ -11,10 +11,25 @@ import java.util.Date;
 public class Assignment {
     private final WorkerId workerId;
     private final String partitionKey;
+
+    /**
+     * Identifies the assignment. Also a fencing token: once the assignment is released
+     * or reclaimed, nothing done with the receipt is applied.
+     */
     private final String receipt;
     private final String ruleName;
     private final Date assignmentDate;
 
+    /**
+     * When the lease on the partition ends, unless it's renewed.
+     * Null if the workinator doesn't use leases.
+     */
+    private final Date leaseExpiration;
+
+    public Assignment(final WorkerId workerId, final String partitionKey, final String receipt, final String ruleName, final Date assignmentDate) {
+        this(workerId, partitionKey, receipt, ruleName, assignmentDate, null);
+    }
+
     /**
      * Returns a new assignment object with all of the same information
      * except for rule name.
@@ -22,10 +37,18 @@ public class Assignment {
      * @return
      */
     public static Assignment setRule(final Assignment source, final String newRuleName) {
-        return new Assignment(source.getWorkerId(), source.getPartitionKey(), source.getReceipt(), newRuleName, source.getAssignmentDate());
+        return new Assignment(source.getWorkerId(), source.getPartitionKey(), source.getReceipt(), newRuleName, source.getAssignmentDate(), source.getLeaseExpiration());
     }
 
     public static Assignment setWorkerId(final Assignment source, final WorkerId workerId) {
-        return new Assignment(workerId, source.getPartitionKey(), source.getReceipt(), source.getRuleName(), source.getAssignmentDate());
+        return new Assignment(workerId, source.getPartitionKey(), source.getReceipt(), source.getRuleName(), source.getAssignmentDate(), source.getLeaseExpiration());
+    }
+
+    /**
+     * Returns a new assignment object with all of the same information
+     * except for the rule name and the lease expiration.
+     */
+    public static Assignment renew(final Assignment source, final String newRuleName, final Date leaseExpiration) {
+        return new Assignment(source.getWorkerId(), source.getPartitionKey(), source.getReceipt(), newRuleName, source.getAssignmentDate(), leaseExpiration);
     }
 }
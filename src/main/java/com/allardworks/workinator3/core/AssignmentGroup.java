@@ -0,0 +1,20 @@
+package com.allardworks.workinator3.core;
+
+import lombok.Data;
+
+import java.util.List;
+
+/**
+ * Multiple partitions assigned to one executor.
+ * Each partition has its own assignment, so the partitions can be
+ * released and re-evaluated individually.
+ */
+@Data
+public class AssignmentGroup {
+    private final WorkerId workerId;
+    private final List<Assignment> assignments;
+
+    public boolean isEmpty() {
+        return assignments.isEmpty();
+    }
+}
@@ -0,0 +1,45 @@
+package com.allardworks.workinator3.core;
+
+/**
+ * The rule names of the assignment strategies.
+ * Every implementation sets Assignment.ruleName to one of these
+ * so that assignments look the same regardless of where they came from.
+ */
+public final class AssignmentRules {
+    private AssignmentRules() {
+    }
+
+    /**
+     * Not being worked on and is due.
+     * workerCount = 0 and dueDate < now
+     */
+    public final static String RULE1 = "Rule 1";
+
+    /**
+     * The current assignment exists and has work.
+     */
+    public final static String RULE2 = "Rule 2";
+
+    /**
+     * Has work and capacity.
+     * hasWork = true and workerCount > 0 and workerCount < maxWorkerCount
+     */
+    public final static String RULE3 = "Rule 3";
+
+    /**
+     * Any partition that doesn't have a worker.
+     * workerCount = 0
+     */
+    public final static String RULE4 = "Rule 4";
+
+    /**
+     * Already has an assignment, so keep going.
+     * Like rule 2, but without the has work requirement.
+     */
+    public final static String RULE5 = "Rule 5";
+
+    /**
+     * The "Assignment" strategy: the partition belongs to the worker's consumer.
+     */
+    public final static String ASSIGNED = "Assigned";
+}
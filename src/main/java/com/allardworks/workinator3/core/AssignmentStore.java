@@ -0,0 +1,59 @@
+package com.allardworks.workinator3.core;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+
+/**
+ * The storage operations that an AssignmentStrategy works with.
+ * Implemented by the workinator. The operations are evaluated against
+ * a single point in time, so a strategy that makes several of them
+ * for one worker sees consistent leases.
+ */
+public interface AssignmentStore {
+    /**
+     * Evaluates the store's own "What's Next" rules.
+     * The rules depend on the store's indexes, so the store implements them.
+     * @param status
+     * @param heldPartitionKeys partitions that the worker already has through other assignments.
+     * @return the assignment, or null if there isn't anything to do.
+     */
+    Assignment getWhatsNextAssignment(WorkerStatus status, Set<String> heldPartitionKeys);
+
+    /**
+     * Renews the lease if the "What's Next" rules would keep the worker where it is.
+     * @param current
+     * @return the renewed assignment, or null if the worker has to go through the rules.
+     */
+    Assignment renewWhatsNextLease(Assignment current);
+
+    /**
+     * Claims a slot of the partition for the worker.
+     * @param partitionKey
+     * @param status
+     * @param ruleName the value of Assignment.ruleName.
+     * @param idleOnly only claim the slot if the partition doesn't have any workers.
+     * @return the assignment, or null if the partition doesn't exist or doesn't have capacity.
+     */
+    Assignment assign(String partitionKey, WorkerStatus status, String ruleName, boolean idleOnly);
+
+    /**
+     * Extends the lease of an assignment.
+     * @param current
+     * @param ruleName
+     * @return the renewed assignment, or null if the worker doesn't hold it anymore.
+     */
+    Assignment renew(Assignment current, String ruleName);
+
+    void release(Assignment assignment);
+
+    /**
+     * Visits the key of every partition, in key order.
+     */
+    void forEachPartitionKey(Consumer<String> consumer);
+
+    /**
+     * The maxWorkerCount of every registered consumer, by name.
+     */
+    Map<String, Integer> getConsumerCapacities();
+}
@@ -0,0 +1,48 @@
+package com.allardworks.workinator3.core;
+
+import java.util.Set;
+
+/**
+ * Decides which partition a worker gets.
+ * The workinator keeps the partitions, the consumers and the assignments,
+ * and passes itself to the strategy as an AssignmentStore.
+ * A workinator has its own instance of a strategy.
+ */
+public interface AssignmentStrategy {
+    /**
+     * The assignment for the worker.
+     * If the worker ends up with a different partition than it currently has,
+     * then the strategy releases the current assignment.
+     * @param status
+     * @param heldPartitionKeys partitions that the worker already has through other assignments.
+     * @param store
+     * @return the assignment, or null if there isn't anything to do.
+     */
+    Assignment getAssignment(WorkerStatus status, Set<String> heldPartitionKeys, AssignmentStore store);
+
+    /**
+     * Renews the lease without going through getAssignment.
+     * @param current
+     * @param store
+     * @return the renewed assignment, or null if the worker has to call getAssignment.
+     */
+    Assignment renewLease(Assignment current, AssignmentStore store);
+
+    /**
+     * A consumer registered, unregistered, or changed its maxWorkerCount.
+     */
+    default void consumersChanged() {
+    }
+
+    /**
+     * A partition was created, or restored from a snapshot or a journal.
+     */
+    default void partitionCreated(final String partitionKey) {
+    }
+
+    /**
+     * A partition was deleted.
+     */
+    default void partitionDeleted(final String partitionKey) {
+    }
+}
@@ -0,0 +1,50 @@
+package com.allardworks.workinator3.core;
+
+import com.allardworks.workinator3.core.commands.CreatePartitionCommand;
+
+import java.util.stream.Stream;
+
+/**
+ * Reconfigures and deletes partitions in bulk.
+ * Only implemented by the workinators whose store can change or remove a partition.
+ * Decorators that pass these through, like ShardedWorkinator and CachedConfigurationWorkinator,
+ * need the workinators they wrap to implement it too.
+ */
+public interface BulkPartitionAdmin {
+    /**
+     * Creates the partitions that don't exist, and reconfigures the ones that do.
+     * @param partitions
+     * @return the outcome of every partition.
+     */
+    BulkPartitionResult upsertPartitions(Stream<CreatePartitionCommand> partitions);
+
+    /**
+     * Changes maxIdleTimeSeconds and maxWorkerCount of existing partitions.
+     * A partition that doesn't exist is reported as NotFound.
+     * Lowering maxWorkerCount doesn't take assignments away; it applies to the next ones.
+     * @param partitions
+     * @return the outcome of every partition.
+     */
+    BulkPartitionResult reconfigurePartitions(Stream<CreatePartitionCommand> partitions);
+
+    /**
+     * Deletes partitions. Workers that have a deleted partition move on at their next assignment.
+     * A partition that doesn't exist is reported as NotFound.
+     * @param partitionKeys
+     * @return the outcome of every partition.
+     */
+    BulkPartitionResult deletePartitions(Stream<String> partitionKeys);
+
+    /**
+     * For decorators that pass the bulk operations through.
+     * @param workinator the wrapped workinator.
+     * @return the workinator as a BulkPartitionAdmin.
+     * @throws UnsupportedOperationException if the workinator doesn't implement it.
+     */
+    static BulkPartitionAdmin of(final Workinator workinator) {
+        if (!(workinator instanceof BulkPartitionAdmin)) {
+            throw new UnsupportedOperationException("This workinator can't reconfigure or delete partitions: " + workinator.getClass().getSimpleName());
+        }
+        return (BulkPartitionAdmin) workinator;
+    }
+}
@@ -0,0 +1,107 @@
+package com.allardworks.workinator3.core;
+
+import lombok.NonNull;
+import lombok.ToString;
+import lombok.val;
+
+import java.util.*;
+
+/**
+ * What a bulk partition operation did.
+ * Every outcome is counted. The keys are only kept for the outcomes that
+ * weren't applied (Exists, NotFound, Invalid and Unsupported), so the result stays small
+ * when most of the partitions succeed.
+ */
+@ToString
+public class BulkPartitionResult {
+    public enum Outcome {
+        Created,
+        Updated,
+        Unchanged,
+        Deleted,
+
+        /**
+         * Create only: the partition already exists. It wasn't changed.
+         */
+        Exists,
+
+        /**
+         * Reconfigure or delete: the partition doesn't exist.
+         */
+        NotFound,
+
+        /**
+         * The definition is missing its key, or its settings are out of range.
+         */
+        Invalid,
+
+        /**
+         * Upsert, reconfigure or delete: the partition's shard isn't a BulkPartitionAdmin. It wasn't changed.
+         */
+        Unsupported;
+
+        public boolean isRejected() {
+            return this == Exists || this == NotFound || this == Invalid || this == Unsupported;
+        }
+    }
+
+    private final long[] counts = new long[Outcome.values().length];
+    private final Map<Outcome, List<String>> rejectedKeys = new EnumMap<>(Outcome.class);
+
+    public void add(@NonNull final Outcome outcome, final String partitionKey) {
+        counts[outcome.ordinal()]++;
+        if (outcome.isRejected()) {
+            rejectedKeys.computeIfAbsent(outcome, o -> new ArrayList<>()).add(partitionKey);
+        }
+    }
+
+    /**
+     * Adds the outcomes of another result to this one.
+     * @param other
+     * @return this.
+     */
+    public BulkPartitionResult merge(@NonNull final BulkPartitionResult other) {
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] += other.counts[i];
+        }
+        other.rejectedKeys.forEach((outcome, keys) -> rejectedKeys.computeIfAbsent(outcome, o -> new ArrayList<>()).addAll(keys));
+        return this;
+    }
+
+    public long getCount(@NonNull final Outcome outcome) {
+        return counts[outcome.ordinal()];
+    }
+
+    /**
+     * The number of partition definitions or keys that were processed.
+     */
+    public long getTotal() {
+        long total = 0;
+        for (val count : counts) {
+            total += count;
+        }
+        return total;
+    }
+
+    /**
+     * The keys with the outcome. Always empty for the outcomes that were applied.
+     */
+    public List<String> getKeys(@NonNull final Outcome outcome) {
+        return Collections.unmodifiableList(rejectedKeys.getOrDefault(outcome, Collections.emptyList()));
+    }
+
+    public boolean hasRejections() {
+        return !rejectedKeys.isEmpty();
+    }
+
+    /**
+     * Validates a partition definition.
+     * @return Invalid, or null if the definition is valid.
+     */
+    public static Outcome validate(final String partitionKey, final int maxIdleTimeSeconds, final int maxWorkerCount) {
+        if (partitionKey == null || partitionKey.isEmpty() || maxIdleTimeSeconds < 0 || maxWorkerCount < 1) {
+            return Outcome.Invalid;
+        }
+        return null;
+    }
+}
@@ -0,0 +1,98 @@
+package com.allardworks.workinator3.core;
+
+import com.allardworks.workinator3.core.commands.CreatePartitionCommand;
+import lombok.NonNull;
+import lombok.val;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+/**
+ * Caches getPartitionConfiguration in a ConfigurationCache.
+ *
+ * Partitions that are reconfigured or deleted through this workinator are invalidated
+ * one by one once the write is done, so the rest of the cache stays warm.
+ * Changes made through other workinators are seen when the items expire.
+ * The bulk operations need the wrapped workinator to be a BulkPartitionAdmin.
+ */
+public class CachedConfigurationWorkinator extends DelegatingWorkinator implements BulkPartitionAdmin {
+    private final ConfigurationCache<String, PartitionConfiguration> cache;
+
+    public CachedConfigurationWorkinator(@NonNull final Workinator workinator, @NonNull final Duration ttl, final int maximumSize) {
+        super(workinator);
+        cache = new ConfigurationCache<>(workinator::getPartitionConfiguration, ttl, maximumSize);
+    }
+
+    public CachedConfigurationWorkinator(@NonNull final Workinator workinator) {
+        this(workinator, Duration.ofMinutes(5), 10_000);
+    }
+
+    @Override
+    public PartitionConfiguration getPartitionConfiguration(@NonNull final String partitionKey) {
+        return cache.getItem(partitionKey);
+    }
+
+    @Override
+    public BulkPartitionResult upsertPartitions(@NonNull final Stream<CreatePartitionCommand> partitions) {
+        final List<String> keys = new ArrayList<>();
+        try {
+            return BulkPartitionAdmin.of(getWorkinator()).upsertPartitions(partitions.peek(p -> keys.add(p.getPartitionKey())));
+        } finally {
+            cache.invalidate(keys);
+        }
+    }
+
+    @Override
+    public BulkPartitionResult reconfigurePartitions(@NonNull final Stream<CreatePartitionCommand> partitions) {
+        final List<String> keys = new ArrayList<>();
+        try {
+            return BulkPartitionAdmin.of(getWorkinator()).reconfigurePartitions(partitions.peek(p -> keys.add(p.getPartitionKey())));
+        } finally {
+            cache.invalidate(keys);
+        }
+    }
+
+    @Override
+    public BulkPartitionResult deletePartitions(@NonNull final Stream<String> partitionKeys) {
+        final List<String> keys = new ArrayList<>();
+        try {
+            return BulkPartitionAdmin.of(getWorkinator()).deletePartitions(partitionKeys.peek(keys::add));
+        } finally {
+            cache.invalidate(keys);
+        }
+    }
+
+    @Override
+    public void start() {
+        if (!getServiceStatus().starting()) {
+            return;
+        }
+
+        cache.start();
+        getServiceStatus().started();
+    }
+
+    @Override
+    public void stop() {
+        if (!getServiceStatus().stopping()) {
+            return;
+        }
+
+        cache.stop();
+        getServiceStatus().stopped();
+    }
+
+    @Override
+    public Map<String, Object> getInfo() {
+        val info = new HashMap<String, Object>();
+        info.put("cache", cache.getInfo());
+        if (getWorkinator() instanceof Service) {
+            info.put("workinator", ((Service) getWorkinator()).getInfo());
+        }
+        return info;
+    }
+}
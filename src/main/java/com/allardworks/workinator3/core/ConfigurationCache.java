@@ -0,0 +1,376 @@
+package com.allardworks.workinator3.core;
+
+import lombok.NonNull;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import lombok.val;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * A thread safe cache of configuration objects, such as partition configuration.
+ * The workinator needs configuration for things such as
+ * - set due date when partition is released (needs maxIdleTime)
+ * - consumer needs to know the max number of workers (maxWorkerCount)
+ *
+ * Refresh ahead: an item that is read during the last fifth of its TTL is reloaded in the background,
+ * and the reader gets the current value. An item that is read often is reloaded before it expires,
+ * so its readers never wait. The TTL is a hard limit: an item that wasn't read until after the TTL
+ * is loaded again by its reader, like a missing item.
+ * Reloads are only done in the background while the service is started. When it isn't started,
+ * they're done by the reader that finds the item past the refresh point, and it waits for them.
+ *
+ * A missing item is loaded once: the first reader does the lookup, outside of any lock,
+ * and the other readers of the same key wait for it. Readers of other keys don't wait.
+ *
+ * The cache holds at most maximumSize items. When it's full, the least recently read
+ * of a sample of items is evicted. The samples are taken in turn from a cursor that goes around
+ * the whole cache, starting each pass at a random offset, so every item is sampled as often as the others.
+ */
+@Slf4j
+public class ConfigurationCache<TInput, TOutput> extends ServiceBase {
+    private final static int EVICTION_SAMPLE_SIZE = 16;
+
+    /**
+     * Items are reloaded once they're this fraction of the TTL old.
+     */
+    private final static double REFRESH_AHEAD = 0.8;
+
+    private final Function<TInput, TOutput> lookup;
+    private final long ttlNanos;
+    private final long refreshNanos;
+    private final int maximumSize;
+    private final Map<TInput, CacheItem<TOutput>> cache = new ConcurrentHashMap<>();
+
+    private final LongAdder hitCount = new LongAdder();
+    private final LongAdder missCount = new LongAdder();
+    private final LongAdder loadCount = new LongAdder();
+    private final LongAdder loadFailureCount = new LongAdder();
+    private final LongAdder loadTimeNanos = new LongAdder();
+    private final LongAdder refreshCount = new LongAdder();
+    private final LongAdder evictionCount = new LongAdder();
+
+    private volatile ExecutorService refreshExecutor;
+
+    /**
+     * Where the next eviction sample starts. Guarded by itself.
+     */
+    private final Object evictionLock = new Object();
+    private Iterator<Map.Entry<TInput, CacheItem<TOutput>>> evictionCursor;
+
+    public ConfigurationCache(@NonNull final Function<TInput, TOutput> lookup) {
+        this(lookup, Duration.ofMinutes(5), 10_000);
+    }
+
+    public ConfigurationCache(@NonNull final Function<TInput, TOutput> lookup, @NonNull final Duration ttl, final int maximumSize) {
+        if (maximumSize < 1) {
+            throw new IllegalArgumentException("maximumSize must be greater than 0.");
+        }
+
+        this.lookup = lookup;
+        this.ttlNanos = ttl.toNanos();
+        this.refreshNanos = (long) (ttlNanos * REFRESH_AHEAD);
+        this.maximumSize = maximumSize;
+    }
+
+    /**
+     * A loaded item, or an item that is being loaded for the first time.
+     */
+    @RequiredArgsConstructor
+    private final static class CacheItem<T> {
+        private final CompletableFuture<T> item;
+        private final long loaded;
+        private final AtomicBoolean refreshing = new AtomicBoolean();
+        private volatile long lastRead;
+
+        CacheItem(final T item, final long loaded) {
+            this(CompletableFuture.completedFuture(item), loaded);
+        }
+    }
+
+    /**
+     * Gets the item from the cache.
+     * If the item isn't in the cache, it will execute the lookup method.
+     * If the item is past the refresh point, but not the TTL, the current item is returned and the item
+     * is reloaded in the background. If the service isn't started, the reload is done on this thread
+     * before the current item is returned.
+     * If the item is past the TTL, it isn't served stale: this thread reloads it, like a missing item,
+     * and the other readers of the key wait for it.
+     * @param key
+     * @return the item, or null if the lookup didn't find it. Nulls aren't cached.
+     */
+    public TOutput getItem(@NonNull final TInput key) {
+        val now = System.nanoTime();
+        val item = cache.get(key);
+        if (item == null) {
+            missCount.increment();
+            return loadMissing(key, null, now);
+        }
+
+        if (!item.item.isDone()) {
+            // someone else is loading it.
+            missCount.increment();
+            return join(item);
+        }
+
+        val age = now - item.loaded;
+        if (age > ttlNanos) {
+            missCount.increment();
+            return loadMissing(key, item, now);
+        }
+
+        hitCount.increment();
+        item.lastRead = now;
+        if (age > refreshNanos) {
+            refresh(key, item);
+        }
+        return join(item);
+    }
+
+    /**
+     * Removes an item from the cache. It will be reloaded the next time it's read.
+     * @param key
+     */
+    public void invalidate(@NonNull final TInput key) {
+        cache.remove(key);
+    }
+
+    /**
+     * Removes the items of the keys. The rest of the cache is kept.
+     * @param keys
+     */
+    public void invalidate(@NonNull final Iterable<TInput> keys) {
+        for (val key : keys) {
+            cache.remove(key);
+        }
+    }
+
+    public void invalidateAll() {
+        cache.clear();
+    }
+
+    public int size() {
+        return cache.size();
+    }
+
+    /**
+     * Puts a placeholder in the cache, and does the lookup without holding any lock.
+     * Readers that find the placeholder wait for its lookup.
+     * @param expired the expired item to replace, or null if the key is missing.
+     */
+    private TOutput loadMissing(final TInput key, final CacheItem<TOutput> expired, final long now) {
+        val loading = new CacheItem<TOutput>(new CompletableFuture<>(), now);
+        loading.lastRead = now;
+        if (expired == null) {
+            val existing = cache.putIfAbsent(key, loading);
+            if (existing != null) {
+                return join(existing);
+            }
+        } else if (!cache.replace(key, expired, loading)) {
+            return getItem(key);
+        }
+
+        final TOutput value;
+        try {
+            value = load(key);
+        } catch (final RuntimeException ex) {
+            cache.remove(key, loading);
+            loading.item.completeExceptionally(ex);
+            throw ex;
+        }
+
+        if (value == null) {
+            // nulls aren't cached.
+            cache.remove(key, loading);
+            loading.item.complete(null);
+            return null;
+        }
+
+        // the age starts when the lookup is done.
+        val loaded = new CacheItem<TOutput>(value, System.nanoTime());
+        loaded.lastRead = now;
+        cache.replace(key, loading, loaded);
+        loading.item.complete(value);
+        evictIfFull();
+        return value;
+    }
+
+    private static <T> T join(final CacheItem<T> item) {
+        try {
+            return item.item.join();
+        } catch (final CompletionException ex) {
+            if (ex.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) ex.getCause();
+            }
+            throw ex;
+        }
+    }
+
+    private void refresh(final TInput key, final CacheItem<TOutput> item) {
+        if (!item.refreshing.compareAndSet(false, true)) {
+            // another reader already started the refresh.
+            return;
+        }
+
+        refreshCount.increment();
+        val executor = refreshExecutor;
+        if (executor != null) {
+            try {
+                executor.execute(() -> reload(key, item));
+                return;
+            } catch (final RejectedExecutionException ex) {
+                // stopping. reload on this thread.
+            }
+        }
+        reload(key, item);
+    }
+
+    private void reload(final TInput key, final CacheItem<TOutput> item) {
+        try {
+            val value = load(key);
+            if (value == null) {
+                cache.remove(key, item);
+                return;
+            }
+
+            val replacement = new CacheItem<TOutput>(value, System.nanoTime());
+            replacement.lastRead = item.lastRead;
+            cache.replace(key, item, replacement);
+        } catch (final Exception ex) {
+            // keep serving the current item. try again on the next read.
+            log.error("Reloading cache item: " + key, ex);
+            item.refreshing.set(false);
+        }
+    }
+
+    private TOutput load(final TInput key) {
+        val start = System.nanoTime();
+        try {
+            val value = lookup.apply(key);
+            loadCount.increment();
+            return value;
+        } catch (final RuntimeException ex) {
+            loadFailureCount.increment();
+            throw ex;
+        } finally {
+            loadTimeNanos.add(System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Evicts the least recently read of a sample of items until the cache isn't over its limit.
+     * Sampling keeps eviction cheap; it doesn't need to track the order of every read.
+     * Items that are still loading aren't evicted.
+     */
+    private void evictIfFull() {
+        if (cache.size() <= maximumSize) {
+            return;
+        }
+
+        synchronized (evictionLock) {
+            while (cache.size() > maximumSize) {
+                TInput oldestKey = null;
+                CacheItem<TOutput> oldest = null;
+                for (int sampled = 0; sampled < EVICTION_SAMPLE_SIZE; sampled++) {
+                    val entry = nextEvictionCandidate();
+                    if (entry == null) {
+                        break;
+                    }
+
+                    val item = entry.getValue();
+                    if (item.item.isDone() && (oldest == null || item.lastRead < oldest.lastRead)) {
+                        oldestKey = entry.getKey();
+                        oldest = item;
+                    }
+                }
+
+                if (oldest == null) {
+                    return;
+                }
+
+                if (cache.remove(oldestKey, oldest)) {
+                    evictionCount.increment();
+                }
+            }
+        }
+    }
+
+    /**
+     * The next entry of the eviction cursor. A new pass skips a random number of entries,
+     * so the samples don't line up with the previous pass.
+     * @return null if the cache is empty.
+     */
+    private Map.Entry<TInput, CacheItem<TOutput>> nextEvictionCandidate() {
+        if (evictionCursor == null || !evictionCursor.hasNext()) {
+            evictionCursor = cache.entrySet().iterator();
+            val skip = ThreadLocalRandom.current().nextInt(EVICTION_SAMPLE_SIZE);
+            for (int i = 0; i < skip && evictionCursor.hasNext(); i++) {
+                evictionCursor.next();
+            }
+            if (!evictionCursor.hasNext()) {
+                evictionCursor = cache.entrySet().iterator();
+            }
+        }
+        return evictionCursor.hasNext() ? evictionCursor.next() : null;
+    }
+
+    @Override
+    public void start() {
+        if (!getServiceStatus().starting()) {
+            return;
+        }
+
+        refreshExecutor = Executors.newSingleThreadExecutor(r -> {
+            val thread = new Thread(r, "configuration-cache-refresh");
+            thread.setDaemon(true);
+            return thread;
+        });
+        getServiceStatus().started();
+    }
+
+    @Override
+    public void stop() {
+        if (!getServiceStatus().stopping()) {
+            return;
+        }
+
+        val executor = refreshExecutor;
+        refreshExecutor = null;
+        if (executor != null) {
+            executor.shutdown();
+        }
+        getServiceStatus().stopped();
+    }
+
+    @Override
+    public Map<String, Object> getInfo() {
+        val loads = loadCount.sum() + loadFailureCount.sum();
+        val info = new HashMap<String, Object>();
+        info.put("size", cache.size());
+        info.put("maximumSize", maximumSize);
+        info.put("ttl", Duration.ofNanos(ttlNanos).toString());
+        info.put("refreshAfter", Duration.ofNanos(refreshNanos).toString());
+        info.put("hitCount", hitCount.sum());
+        info.put("missCount", missCount.sum());
+        info.put("loadCount", loadCount.sum());
+        info.put("loadFailureCount", loadFailureCount.sum());
+        info.put("refreshCount", refreshCount.sum());
+        info.put("evictionCount", evictionCount.sum());
+        info.put("totalLoadTimeMillis", loadTimeNanos.sum() / 1_000_000);
+        info.put("averageLoadTimeMicros", loads == 0 ? 0 : loadTimeNanos.sum() / loads / 1000);
+        return info;
+    }
+}
@@ -29,6 +29,8 @@ public class ConsumerConfiguration {
     /**
      * If there isn't an assignment for a worker,
      * then delay before checking agian.
+     * This is the max wait passed to Workinator.getAssignment(status, maxWait),
+     * so workinators that support long polling return as soon as an assignment is available.
      */
     @NonNull
     private Duration delayWhenNoAssignment = Duration.ofSeconds(5);
@@ -38,4 +40,79 @@ public class ConsumerConfiguration {
      * can process at once.
      */
     private int maxWorkerCount = 1;
-}
\ No newline at end of file
+
+    /**
+     * The fewest workers the consumer runs when workerCountInterval isn't zero.
+     */
+    private int minWorkerCount = 1;
+
+    /**
+     * How often the consumer adjusts its number of workers, between minWorkerCount and maxWorkerCount,
+     * based on throughput, how often workers don't get an assignment, and CPU load.
+     * See WorkerCountController. Zero always runs maxWorkerCount workers.
+     */
+    @NonNull
+    private Duration workerCountInterval = Duration.ZERO;
+
+    /**
+     * Workers are removed when the host's CPU load is above this, and only added when it's below.
+     * Between 0 and 1.
+     */
+    private double targetCpuUtilization = 0.8;
+
+    /**
+     * The number of partitions assigned to each executor at once.
+     * When greater than 1, each executor works through a group of partitions
+     * per assignment, which amortizes the coordination cost for small partitions.
+     */
+    private int partitionsPerExecutor = 1;
+
+    /**
+     * How the executors run the worker loops:
+     * a dedicated thread per worker, or a shared pool.
+     */
+    @NonNull
+    private ExecutorThreadMode threadMode = ExecutorThreadMode.Dedicated;
+
+    /**
+     * The maximum number of threads in the pool when the thread mode is Pooled
+     * and virtual threads aren't available.
+     */
+    private int maxPoolThreads = 200;
+
+    /**
+     * Partition statuses are buffered, and written at most this long after they're reported.
+     * Statuses are only written when they change, or when they're older than
+     * partitionStatusRefreshInterval. A change to hasWork=true is written immediately.
+     * Zero, the default, writes every status through.
+     */
+    @NonNull
+    private Duration partitionStatusMaxStaleness = Duration.ZERO;
+
+    /**
+     * An unchanged partition status is written again once the last write is this old.
+     */
+    @NonNull
+    private Duration partitionStatusRefreshInterval = Duration.ofSeconds(30);
+
+    /**
+     * How often the consumer sends a heartbeat.
+     * A heartbeat has the workers that changed since the last one, or is just a ping.
+     * Zero, the default, doesn't send heartbeats.
+     */
+    @NonNull
+    private Duration heartbeatInterval = Duration.ZERO;
+
+    /**
+     * The number of assignments the consumer reserves ahead of time, so that a worker
+     * that runs out of work can switch partitions without waiting for the workinator.
+     * Zero doesn't prefetch.
+     */
+    private int prefetchDepth = 0;
+
+    /**
+     * A reservation is released if it isn't given to a worker within this time.
+     */
+    @NonNull
+    private Duration prefetchExpiration = Duration.ofSeconds(10);
+}
@@ -6,11 +6,18 @@ import lombok.Data;
 import java.util.Date;
 import java.util.List;
 
-@Builder
+@Builder(toBuilder = true)
 @Data
 public class ConsumerInfo {
     private final String name;
     private final Date connectedDate;
     private final int maxWorkerCount;
+    private final Date lastHeartbeatDate;
+    private final long statusVersion;
+    private final int currentWorkerCount;
+
+    /**
+     * Null if the query left the workers out.
+     */
     private final List<ConsumerWorkerInfo> workers;
 }
@@ -0,0 +1,54 @@
+package com.allardworks.workinator3.core;
+
+import lombok.Builder;
+import lombok.Data;
+
+/**
+ * Selects a page of consumers, in name order.
+ * Null filters match everything.
+ */
+@Data
+@Builder(toBuilder = true)
+public class ConsumerQuery {
+    /**
+     * Only consumers whose names start with this.
+     */
+    private final String namePrefix;
+
+    /**
+     * True for consumers that have at least one assignment, false for consumers that don't have any.
+     */
+    private final Boolean busy;
+
+    /**
+     * If false, ConsumerInfo.workers is null.
+     */
+    private final boolean includeWorkers;
+
+    /**
+     * The nextCursor of the previous page. Null for the first page.
+     */
+    private final String cursor;
+
+    /**
+     * The maximum number of consumers in the page.
+     */
+    private final int limit;
+
+    public static class ConsumerQueryBuilder {
+        private int limit = 100;
+    }
+
+    public boolean matches(final ConsumerInfo info) {
+        return isInRange(info.getName()) && matches(info.getCurrentWorkerCount());
+    }
+
+    public boolean matches(final int currentWorkerCount) {
+        return busy == null || busy == currentWorkerCount > 0;
+    }
+
+    public boolean isInRange(final String name) {
+        return (namePrefix == null || name.startsWith(namePrefix))
+                && (cursor == null || name.compareTo(cursor) > 0);
+    }
+}
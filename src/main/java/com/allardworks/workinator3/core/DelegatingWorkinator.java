@@ -0,0 +1,177 @@
+package com.allardworks.workinator3.core;
+
+import com.allardworks.workinator3.core.commands.*;
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.NonNull;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+/**
+ * Base class for decorators of a workinator.
+ * Forwards every call, including the ones with default implementations,
+ * so the decorated workinator's own implementations are used.
+ * Subclasses override what they decorate.
+ */
+public abstract class DelegatingWorkinator extends ServiceBase implements Workinator {
+    @Getter(AccessLevel.PROTECTED)
+    private final Workinator workinator;
+
+    protected DelegatingWorkinator(@NonNull final Workinator workinator) {
+        this.workinator = workinator;
+    }
+
+    @Override
+    public Assignment getAssignment(final WorkerStatus status) {
+        return workinator.getAssignment(status);
+    }
+
+    @Override
+    public Assignment getAssignment(final WorkerStatus status, final Duration maxWait) throws InterruptedException {
+        return workinator.getAssignment(status, maxWait);
+    }
+
+    @Override
+    public List<Assignment> getAssignments(final List<WorkerStatus> workers) {
+        return workinator.getAssignments(workers);
+    }
+
+    @Override
+    public AssignmentGroup getAssignmentGroup(final WorkerGroupStatus status) {
+        return workinator.getAssignmentGroup(status);
+    }
+
+    @Override
+    public Assignment renewLease(final RenewLeaseCommand command) {
+        return workinator.renewLease(command);
+    }
+
+    @Override
+    public Assignment reserveAssignment(final ReserveAssignmentCommand command) {
+        return workinator.reserveAssignment(command);
+    }
+
+    @Override
+    public Assignment claimReservation(final ClaimReservationCommand command) {
+        return workinator.claimReservation(command);
+    }
+
+    @Override
+    public void releaseAssignment(final ReleaseAssignmentCommand command) {
+        workinator.releaseAssignment(command);
+    }
+
+    @Override
+    public void releaseAssignments(final List<ReleaseAssignmentCommand> commands) {
+        workinator.releaseAssignments(commands);
+    }
+
+    @Override
+    public void releaseAssignmentGroup(final ReleaseAssignmentGroupCommand command) {
+        workinator.releaseAssignmentGroup(command);
+    }
+
+    @Override
+    public ConsumerRegistration registerConsumer(final RegisterConsumerCommand command) throws ConsumerExistsException {
+        return workinator.registerConsumer(command);
+    }
+
+    @Override
+    public void unregisterConsumer(final UnregisterConsumerCommand command) {
+        workinator.unregisterConsumer(command);
+    }
+
+    @Override
+    public void createPartition(final CreatePartitionCommand command) throws PartitionExistsException {
+        workinator.createPartition(command);
+    }
+
+    @Override
+    public BulkPartitionResult createPartitions(final Stream<CreatePartitionCommand> partitions) {
+        return workinator.createPartitions(partitions);
+    }
+
+    @Override
+    public void setPartitionStatus(final SetPartitionStatusCommand command) {
+        workinator.setPartitionStatus(command);
+    }
+
+    @Override
+    public void setPartitionStatuses(final List<SetPartitionStatusCommand> commands) {
+        workinator.setPartitionStatuses(commands);
+    }
+
+    @Override
+    public void updateConsumerStatus(final UpdateConsumerStatusCommand command) {
+        workinator.updateConsumerStatus(command);
+    }
+
+    @Override
+    public HeartbeatResult heartbeat(final ConsumerHeartbeatCommand command) {
+        return workinator.heartbeat(command);
+    }
+
+    @Override
+    public List<PartitionInfo> getPartitions() {
+        return workinator.getPartitions();
+    }
+
+    @Override
+    public List<ConsumerInfo> getConsumers() {
+        return workinator.getConsumers();
+    }
+
+    @Override
+    public Page<PartitionInfo> getPartitions(final PartitionQuery query) {
+        return workinator.getPartitions(query);
+    }
+
+    @Override
+    public Stream<PartitionInfo> streamPartitions(final PartitionQuery query) {
+        return workinator.streamPartitions(query);
+    }
+
+    @Override
+    public Page<ConsumerInfo> getConsumers(final ConsumerQuery query) {
+        return workinator.getConsumers(query);
+    }
+
+    @Override
+    public Stream<ConsumerInfo> streamConsumers(final ConsumerQuery query) {
+        return workinator.streamConsumers(query);
+    }
+
+    @Override
+    public PartitionConfiguration getPartitionConfiguration(final String partitionKey) {
+        return workinator.getPartitionConfiguration(partitionKey);
+    }
+
+    @Override
+    public void start() {
+        if (getServiceStatus().starting()) {
+            getServiceStatus().started();
+        }
+    }
+
+    @Override
+    public void stop() {
+        if (getServiceStatus().stopping()) {
+            getServiceStatus().stopped();
+        }
+    }
+
+    @Override
+    public Map<String, Object> getInfo() {
+        return new HashMap<>();
+    }
+
+    @Override
+    public void close() throws Exception {
+        stop();
+        workinator.close();
+    }
+}
@@ -2,42 +2,57 @@ package com.allardworks.workinator3.core;
 
 import lombok.NonNull;
 import lombok.extern.slf4j.Slf4j;
-import lombok.val;
 
-import java.util.HashSet;
 import java.util.List;
-
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A set of handlers that are executed together.
+ * Backed by a LifecycleEventBus, so handlers can be added or removed
+ * while they're executing, and they run in the order they were added.
+ */
 @Slf4j
 public class EventHandlers {
-    private final HashSet<Runnable> handlers = new HashSet<>();
+    private final LifecycleEventBus<EventHandlers> bus;
+    private final Map<Runnable, LifecycleEventBus.Subscription<EventHandlers>> handlers = new ConcurrentHashMap<>();
+
+    public EventHandlers() {
+        this(null);
+    }
+
+    /**
+     * @param dispatcher executes the handlers asynchronously. Null to execute them on the caller's thread.
+     */
+    public EventHandlers(final LifecycleDispatcher dispatcher) {
+        this.bus = new LifecycleEventBus<>(dispatcher);
+    }
 
     public EventHandlers add(@NonNull Runnable eventHandler) {
-        handlers.add(eventHandler);
+        handlers.computeIfAbsent(eventHandler, h -> bus.subscribe(e -> h.run()));
         return this;
     }
 
     public EventHandlers addAll(@NonNull List<Runnable> eventHandlers) {
-        handlers.addAll(eventHandlers);
+        eventHandlers.forEach(this::add);
         return this;
     }
 
     public EventHandlers clear() {
         handlers.clear();
+        bus.clear();
         return this;
     }
 
     public EventHandlers remove(@NonNull Runnable runnable) {
-        handlers.remove(runnable);
+        final LifecycleEventBus.Subscription<EventHandlers> subscription = handlers.remove(runnable);
+        if (subscription != null) {
+            bus.unsubscribe(subscription);
+        }
         return this;
     }
 
     public void execute() {
-        for (val r : handlers) {
-            try {
-                r.run();
-            } catch (final Exception ex) {
-                log.error("Firing event handler", ex);
-            }
-        }
+        bus.publish(this);
     }
 }
@@ -0,0 +1,18 @@
+package com.allardworks.workinator3.core;
+
+/**
+ * How executors run their worker loops.
+ */
+public enum ExecutorThreadMode {
+    /**
+     * Each executor creates its own thread.
+     */
+    Dedicated,
+
+    /**
+     * Executors share an executor service.
+     * Uses virtual threads when the runtime supports them,
+     * otherwise a bounded thread pool.
+     */
+    Pooled
+}
@@ -0,0 +1,34 @@
+package com.allardworks.workinator3.core;
+
+/**
+ * The hashes that place keys: partitions on shards, and partitions on consumers.
+ * Every node has to compute the same hash for the same key, so these can't change.
+ */
+public final class HashUtility {
+    private HashUtility() {
+    }
+
+    /**
+     * 64 bit FNV-1a of the characters, followed by the murmur3 finalizer to spread the bits.
+     */
+    public static long hash(final String key) {
+        long h = 0xcbf29ce484222325L;
+        for (int i = 0; i < key.length(); i++) {
+            h ^= key.charAt(i);
+            h *= 0x100000001b3L;
+        }
+        return mix(h);
+    }
+
+    /**
+     * The murmur3 finalizer.
+     */
+    public static long mix(long h) {
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
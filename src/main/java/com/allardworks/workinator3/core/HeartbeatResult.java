@@ -0,0 +1,37 @@
+package com.allardworks.workinator3.core;
+
+import lombok.Data;
+
+/**
+ * The workinator's reply to a heartbeat.
+ */
+@Data
+public class HeartbeatResult {
+    /**
+     * False if the workinator doesn't know the consumer. IE: it was unregistered.
+     */
+    private final boolean registered;
+
+    /**
+     * True if the heartbeat didn't apply to the version the workinator has.
+     * The consumer has to send a full heartbeat.
+     */
+    private final boolean resyncRequired;
+
+    /**
+     * The version the workinator has.
+     */
+    private final long version;
+
+    public static HeartbeatResult acknowledged(final long version) {
+        return new HeartbeatResult(true, false, version);
+    }
+
+    public static HeartbeatResult resync(final long version) {
+        return new HeartbeatResult(true, true, version);
+    }
+
+    public static HeartbeatResult unregistered() {
+        return new HeartbeatResult(false, false, -1);
+    }
+}
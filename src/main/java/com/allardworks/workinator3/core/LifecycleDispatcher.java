@@ -0,0 +1,122 @@
+package com.allardworks.workinator3.core;
+
+import lombok.Getter;
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+import lombok.val;
+
+import java.time.Duration;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The threads that asynchronous LifecycleEventBuses deliver events on.
+ * One dispatcher is meant to be shared by many services.
+ *
+ * - The pool and its queue are bounded. When the queue is full, the publisher waits
+ *   up to the handler timeout for room, then delivers the events itself. This slows down
+ *   publishers rather than queueing without limit.
+ * - A handler that runs longer than the handler timeout is left running, and the rest of
+ *   the bus's handlers continue on another thread. So a slow handler delays the others
+ *   by at most the timeout. The pool gets an extra thread for as long as the slow handler
+ *   runs, so slow handlers can't starve the pool.
+ */
+@Slf4j
+public class LifecycleDispatcher implements AutoCloseable {
+    private final int threads;
+    private final ThreadPoolExecutor pool;
+    private final ScheduledExecutorService watchdog;
+    private final AtomicInteger threadCounter = new AtomicInteger();
+    private int slowHandlers;
+
+    @Getter
+    private final Duration handlerTimeout;
+
+    public LifecycleDispatcher(final int threads, final int queueCapacity, @NonNull final Duration handlerTimeout) {
+        this.threads = threads;
+        this.handlerTimeout = handlerTimeout;
+        this.pool = new ThreadPoolExecutor(
+                threads,
+                threads,
+                60,
+                TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                this::newThread,
+                (r, executor) -> waitForRoom(r));
+        this.pool.allowCoreThreadTimeOut(true);
+        this.watchdog = Executors.newSingleThreadScheduledExecutor(r -> {
+            val thread = new Thread(r, "workinator-lifecycle-watchdog");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    private Thread newThread(final Runnable runnable) {
+        val thread = new Thread(runnable, "workinator-lifecycle-" + threadCounter.incrementAndGet());
+        thread.setDaemon(true);
+        return thread;
+    }
+
+    /**
+     * Back pressure: wait for room in the queue, then run on the caller's thread.
+     */
+    private void waitForRoom(final Runnable runnable) {
+        if (pool.isShutdown()) {
+            runnable.run();
+            return;
+        }
+
+        try {
+            if (pool.getQueue().offer(runnable, handlerTimeout.toMillis(), TimeUnit.MILLISECONDS)) {
+                return;
+            }
+        } catch (final InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+        runnable.run();
+    }
+
+    void execute(final Runnable runnable) {
+        pool.execute(runnable);
+    }
+
+    /**
+     * Runs onTimeout if the returned future isn't cancelled within the handler timeout.
+     */
+    ScheduledFuture<?> watch(final Runnable onTimeout) {
+        return watchdog.schedule(onTimeout, handlerTimeout.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Continues delivering while a handler is stuck.
+     * Adds a thread to the pool until slowHandlerDone() is called.
+     * Never waits; if the queue is full, the runnable gets its own thread.
+     */
+    void executeForSlowHandler(final Runnable runnable) {
+        synchronized (this) {
+            slowHandlers++;
+            pool.setMaximumPoolSize(threads + slowHandlers);
+            pool.setCorePoolSize(threads + slowHandlers);
+        }
+
+        if (!pool.getQueue().offer(runnable)) {
+            newThread(runnable).start();
+        } else {
+            pool.prestartCoreThread();
+        }
+    }
+
+    void slowHandlerDone() {
+        synchronized (this) {
+            slowHandlers--;
+            pool.setCorePoolSize(threads + slowHandlers);
+            pool.setMaximumPoolSize(threads + slowHandlers);
+        }
+    }
+
+    @Override
+    public void close() {
+        watchdog.shutdown();
+        pool.shutdown();
+    }
+}
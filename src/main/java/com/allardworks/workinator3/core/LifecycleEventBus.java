@@ -0,0 +1,268 @@
+package com.allardworks.workinator3.core;
+
+import lombok.NonNull;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import lombok.val;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+
+/**
+ * Delivers events to handlers, such as service status transitions.
+ *
+ * Subscribing is lock free and copy-on-write: each publish delivers to the handlers
+ * that were subscribed when it was published, so handlers can be added or removed at any time,
+ * including from within a handler.
+ *
+ * Handlers run in order: lowest order first, then in the order they subscribed.
+ * Events are delivered one at a time, in the order they were published.
+ *
+ * Without a dispatcher, publish() returns after the event is delivered. It's delivered by
+ * the publishing thread, or, if another thread is already delivering, by that thread while
+ * the publisher waits. An event published by a handler is delivered after that handler returns.
+ * With a dispatcher, events are delivered on the dispatcher's threads, and publish() doesn't wait.
+ *
+ * @param <T> the event type
+ */
+@Slf4j
+public class LifecycleEventBus<T> {
+    @RequiredArgsConstructor
+    public final static class Subscription<T> {
+        private final int order;
+        private final long sequence;
+        private final Consumer<T> handler;
+    }
+
+    @RequiredArgsConstructor
+    final static class Pending<T> {
+        private final T event;
+        private final Subscription<T>[] subscriptions;
+        private final AtomicInteger next = new AtomicInteger();
+        private final CountDownLatch delivered = new CountDownLatch(1);
+    }
+
+    private final static Comparator<Subscription<?>> ORDER = Comparator
+            .<Subscription<?>>comparingInt(s -> s.order)
+            .thenComparingLong(s -> s.sequence);
+
+    private final AtomicReference<Subscription<T>[]> subscriptions = new AtomicReference<>(newSubscriptions(0));
+    private final AtomicLong sequence = new AtomicLong();
+    private final Queue<Pending<T>> pending = new ConcurrentLinkedQueue<>();
+
+    /**
+     * The token of the thread that is delivering events. 0 if none.
+     */
+    private final AtomicLong owner = new AtomicLong();
+    private final AtomicLong tokens = new AtomicLong();
+
+    /**
+     * The thread that is delivering events, so that a handler that publishes doesn't wait for itself.
+     */
+    private volatile Thread deliveringThread;
+
+    private final LifecycleDispatcher dispatcher;
+
+    /**
+     * Events are delivered by the publishing thread.
+     */
+    public LifecycleEventBus() {
+        this(null);
+    }
+
+    /**
+     * @param dispatcher delivers the events. Null to deliver on the publishing thread.
+     */
+    public LifecycleEventBus(final LifecycleDispatcher dispatcher) {
+        this.dispatcher = dispatcher;
+    }
+
+    public Subscription<T> subscribe(@NonNull final Consumer<T> handler) {
+        return subscribe(0, handler);
+    }
+
+    /**
+     * @param order handlers with a lower order run first.
+     * @param handler
+     * @return the subscription, to pass to unsubscribe.
+     */
+    public Subscription<T> subscribe(final int order, @NonNull final Consumer<T> handler) {
+        val subscription = new Subscription<T>(order, sequence.incrementAndGet(), handler);
+        while (true) {
+            val current = subscriptions.get();
+            val updated = Arrays.copyOf(current, current.length + 1);
+            updated[current.length] = subscription;
+            Arrays.sort(updated, ORDER);
+            if (subscriptions.compareAndSet(current, updated)) {
+                return subscription;
+            }
+        }
+    }
+
+    public boolean unsubscribe(@NonNull final Subscription<T> subscription) {
+        while (true) {
+            val current = subscriptions.get();
+            val index = Arrays.asList(current).indexOf(subscription);
+            if (index < 0) {
+                return false;
+            }
+
+            final Subscription<T>[] updated = newSubscriptions(current.length - 1);
+            System.arraycopy(current, 0, updated, 0, index);
+            System.arraycopy(current, index + 1, updated, index, current.length - index - 1);
+            if (subscriptions.compareAndSet(current, updated)) {
+                return true;
+            }
+        }
+    }
+
+    public void clear() {
+        subscriptions.set(newSubscriptions(0));
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> Subscription<T>[] newSubscriptions(final int length) {
+        return (Subscription<T>[]) new Subscription<?>[length];
+    }
+
+    public int size() {
+        return subscriptions.get().length;
+    }
+
+    /**
+     * Delivers the event to the current handlers, on this thread, before returning.
+     * Doesn't wait for, or go through, the queue of published events.
+     * @param event
+     */
+    public void publishNow(@NonNull final T event) {
+        for (val subscription : subscriptions.get()) {
+            run(subscription, event);
+        }
+    }
+
+    /**
+     * Queues the event for delivery to the current handlers.
+     * Without a dispatcher, returns after the event is delivered.
+     * @param event
+     */
+    public void publish(@NonNull final T event) {
+        val queued = enqueue(event);
+        if (queued != null) {
+            startDelivering();
+            awaitDelivery(queued);
+        }
+    }
+
+    /**
+     * Queues the event without delivering it. Call startDelivering() to deliver it.
+     * Lets a publisher queue events while holding a lock, and deliver them after releasing it.
+     * @return the queued event, for awaitDelivery(). Null if there aren't any handlers.
+     */
+    Pending<T> enqueue(final T event) {
+        val current = subscriptions.get();
+        if (current.length == 0) {
+            return null;
+        }
+
+        val queued = new Pending<T>(event, current);
+        pending.add(queued);
+        return queued;
+    }
+
+    /**
+     * Without a dispatcher, waits until another thread finishes delivering the event.
+     * Doesn't wait when called by a handler, because the event is delivered after the handler returns.
+     */
+    void awaitDelivery(@NonNull final Pending<T> queued) {
+        if (dispatcher != null || deliveringThread == Thread.currentThread()) {
+            return;
+        }
+
+        try {
+            queued.delivered.await();
+        } catch (final InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    void startDelivering() {
+        val token = tokens.incrementAndGet();
+        if (!owner.compareAndSet(0, token)) {
+            // another thread is delivering. it will pick up the event.
+            return;
+        }
+
+        if (dispatcher == null) {
+            deliver(token);
+        } else {
+            dispatcher.execute(() -> deliver(token));
+        }
+    }
+
+    /**
+     * Delivers the queued events, as long as this thread is the owner.
+     */
+    private void deliver(final long token) {
+        if (dispatcher == null) {
+            deliveringThread = Thread.currentThread();
+        }
+
+        while (owner.get() == token) {
+            val next = pending.peek();
+            if (next == null) {
+                deliveringThread = null;
+                owner.compareAndSet(token, 0);
+                if (!pending.isEmpty()) {
+                    // published after the peek, but before the owner was cleared.
+                    startDelivering();
+                }
+                return;
+            }
+
+            int index;
+            while ((index = next.next.getAndIncrement()) < next.subscriptions.length) {
+                val subscription = next.subscriptions[index];
+                val watch = dispatcher == null ? null : dispatcher.watch(() -> takeOver(token));
+                run(subscription, next.event);
+                if (watch != null) {
+                    watch.cancel(false);
+                }
+
+                if (owner.get() != token) {
+                    // this handler was too slow. another thread took over.
+                    dispatcher.slowHandlerDone();
+                    return;
+                }
+            }
+            pending.remove(next);
+            next.delivered.countDown();
+        }
+    }
+
+    /**
+     * Called when a handler exceeds the timeout.
+     * Leaves the handler running, and continues delivering on another thread.
+     */
+    private void takeOver(final long staleToken) {
+        val token = tokens.incrementAndGet();
+        if (owner.compareAndSet(staleToken, token)) {
+            log.warn("Lifecycle event handler exceeded " + dispatcher.getHandlerTimeout() + ". Continuing without it.");
+            dispatcher.executeForSlowHandler(() -> deliver(token));
+        }
+    }
+
+    private void run(final Subscription<T> subscription, final T event) {
+        try {
+            subscription.handler.accept(event);
+        } catch (final Exception ex) {
+            log.error("Error in lifecycle event handler", ex);
+        }
+    }
+}
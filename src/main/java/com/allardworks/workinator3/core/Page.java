@@ -0,0 +1,24 @@
+package com.allardworks.workinator3.core;
+
+import lombok.Data;
+
+import java.util.List;
+
+/**
+ * One page of the results of a query.
+ * @param <T>
+ */
+@Data
+public class Page<T> {
+    private final List<T> items;
+
+    /**
+     * Pass this as the query's cursor to get the next page.
+     * Null if this is the last page.
+     */
+    private final String nextCursor;
+
+    public boolean hasMore() {
+        return nextCursor != null;
+    }
+}
@@ -0,0 +1,76 @@
+package com.allardworks.workinator3.core;
+
+import lombok.NonNull;
+import lombok.val;
+
+import java.util.*;
+import java.util.function.Function;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Helpers for paged queries.
+ */
+public class Pages {
+    private Pages() {
+    }
+
+    /**
+     * Streams all of the results of a query, one page at a time.
+     * A page is only requested when the stream gets to it.
+     * @param fetch gets the page that starts after the cursor. The cursor is null for the first page.
+     * @param <T>
+     * @return
+     */
+    public static <T> Stream<T> stream(@NonNull final Function<String, Page<T>> fetch) {
+        val iterator = new Iterator<T>() {
+            private Iterator<T> current = Collections.emptyIterator();
+            private String cursor;
+            private boolean last;
+
+            @Override
+            public boolean hasNext() {
+                while (!current.hasNext() && !last) {
+                    val page = fetch.apply(cursor);
+                    current = page.getItems().iterator();
+                    cursor = page.getNextCursor();
+                    last = cursor == null;
+                }
+                return current.hasNext();
+            }
+
+            @Override
+            public T next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return current.next();
+            }
+        };
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(iterator, Spliterator.ORDERED | Spliterator.NONNULL), false);
+    }
+
+    /**
+     * Takes a page from items that are already in order and filtered.
+     * @param items
+     * @param limit
+     * @param getCursor the cursor of an item. IE: its key.
+     * @param <T>
+     * @return
+     */
+    public static <T> Page<T> take(@NonNull final Iterator<T> items, final int limit, @NonNull final Function<T, String> getCursor) {
+        if (limit <= 0) {
+            throw new IllegalArgumentException("limit must be greater than 0.");
+        }
+
+        val page = new ArrayList<T>(Math.min(limit, 1024));
+        while (items.hasNext()) {
+            val item = items.next();
+            if (page.size() == limit) {
+                return new Page<>(page, getCursor.apply(page.get(limit - 1)));
+            }
+            page.add(item);
+        }
+        return new Page<>(page, null);
+    }
+}
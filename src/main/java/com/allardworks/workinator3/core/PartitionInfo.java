@@ -6,14 +6,24 @@ import lombok.Data;
 import java.util.Date;
 import java.util.List;
 
-@Builder
+@Builder(toBuilder = true)
 @Data
 public class PartitionInfo {
     private final String partitionKey;
     private final int maxWorkerCount;
     private final int maxIdleTimeSeconds;
     private final boolean hasMoreWork;
+
+    /**
+     * The backlog and weight of the last status. See SetPartitionStatusCommand.
+     */
+    private final long backlog;
+    private final double weight;
     private final Date lastChecked;
     private final int currentWorkerCount;
+
+    /**
+     * Null if the query left the workers out.
+     */
     private final List<PartitionWorkerInfo> workers;
 }
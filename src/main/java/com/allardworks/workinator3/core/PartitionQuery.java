@@ -0,0 +1,76 @@
+package com.allardworks.workinator3.core;
+
+import lombok.Builder;
+import lombok.Data;
+
+/**
+ * Selects a page of partitions, in partition key order.
+ * Null filters match everything.
+ */
+@Data
+@Builder(toBuilder = true)
+public class PartitionQuery {
+    /**
+     * Only partitions whose keys start with this.
+     */
+    private final String keyPrefix;
+
+    /**
+     * Only partitions whose hasMoreWork is this.
+     */
+    private final Boolean hasMoreWork;
+
+    /**
+     * True for partitions that have at least one worker, false for partitions that don't have any.
+     */
+    private final Boolean busy;
+
+    /**
+     * True for partitions that have gone longer than maxIdleTimeSeconds without being checked.
+     */
+    private final Boolean overdue;
+
+    /**
+     * If false, PartitionInfo.workers is null.
+     */
+    private final boolean includeWorkers;
+
+    /**
+     * The nextCursor of the previous page. Null for the first page.
+     */
+    private final String cursor;
+
+    /**
+     * The maximum number of partitions in the page.
+     */
+    private final int limit;
+
+    public static class PartitionQueryBuilder {
+        private int limit = 100;
+    }
+
+    /**
+     * True if the partition is in the key range and matches the filters.
+     * For workinators that filter PartitionInfo. Others can filter their own state
+     * before creating the PartitionInfo.
+     * @param info
+     * @param now
+     * @return
+     */
+    public boolean matches(final PartitionInfo info, final long now) {
+        return isInRange(info.getPartitionKey())
+                && matches(info.isHasMoreWork(), info.getCurrentWorkerCount(),
+                info.getLastChecked().getTime() + info.getMaxIdleTimeSeconds() * 1000L < now);
+    }
+
+    public boolean matches(final boolean hasMoreWork, final int currentWorkerCount, final boolean overdue) {
+        return (this.hasMoreWork == null || this.hasMoreWork == hasMoreWork)
+                && (busy == null || busy == currentWorkerCount > 0)
+                && (this.overdue == null || this.overdue == overdue);
+    }
+
+    public boolean isInRange(final String partitionKey) {
+        return (keyPrefix == null || partitionKey.startsWith(keyPrefix))
+                && (cursor == null || partitionKey.compareTo(cursor) > 0);
+    }
+}
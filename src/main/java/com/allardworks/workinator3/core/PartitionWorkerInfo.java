@@ -11,4 +11,5 @@ public class PartitionWorkerInfo {
     private final String assignee;
     private final Date createDate;
     private final String rule;
+    private final Date leaseExpiration;
 }
@@ -1,7 +1,18 @@
 package com.allardworks.workinator3.core;
 
 public abstract class ServiceBase implements Service {
-    private final ServiceStatus serviceStatus = new ServiceStatus();
+    private final ServiceStatus serviceStatus;
+
+    protected ServiceBase() {
+        this(null);
+    }
+
+    /**
+     * @param dispatcher delivers the transition events asynchronously. Null to deliver them on the thread that made the transition.
+     */
+    protected ServiceBase(final LifecycleDispatcher dispatcher) {
+        serviceStatus = new ServiceStatus(dispatcher);
+    }
 
     public Status getStatus() {
         return serviceStatus.getStatus();
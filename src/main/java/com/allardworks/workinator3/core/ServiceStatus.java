@@ -5,25 +5,55 @@ import lombok.NonNull;
 import lombok.extern.slf4j.Slf4j;
 import lombok.val;
 
-import java.util.HashSet;
-import java.util.Set;
 import java.util.function.Consumer;
 
 import static com.allardworks.workinator3.core.Status.*;
 
+/**
+ * The status of a service, and the handlers of its transitions.
+ *
+ * BeforeTransition events are delivered while the transition is in progress,
+ * before the status changes.
+ * AfterTransition events are delivered by the LifecycleEventBus after the lock is released,
+ * so a slow handler doesn't hold up other transitions. They're delivered in the order
+ * the transitions happened. Without a LifecycleDispatcher, the transition returns after its
+ * AfterTransition handlers have run, unless it was made by one of those handlers.
+ * With a LifecycleDispatcher, they're delivered asynchronously.
+ */
 @Slf4j
 public class ServiceStatus {
     private final Object syncroot = new Object();
 
-    private final Set<Consumer<Transition>> transitionEventHandlers = new HashSet<>();
+    private final LifecycleEventBus<Transition> transitionEventHandlers;
 
     private boolean initialized;
 
     @Getter
     private final TransitionEvents eventHandlers = new TransitionEvents(this);
 
+    public ServiceStatus() {
+        this(null);
+    }
+
+    /**
+     * @param dispatcher delivers the AfterTransition events. Null to deliver them on the thread that made the transition.
+     */
+    public ServiceStatus(final LifecycleDispatcher dispatcher) {
+        this.transitionEventHandlers = new LifecycleEventBus<>(dispatcher);
+    }
+
     public ServiceStatus onTransition(@NonNull final Consumer<Transition> transitionHandler) {
-        transitionEventHandlers.add(transitionHandler);
+        transitionEventHandlers.subscribe(transitionHandler);
+        return this;
+    }
+
+    /**
+     * @param order handlers with a lower order run first. Handlers with the same order run in the order they were added.
+     * @param transitionHandler
+     * @return
+     */
+    public ServiceStatus onTransition(final int order, @NonNull final Consumer<Transition> transitionHandler) {
+        transitionEventHandlers.subscribe(order, transitionHandler);
         return this;
     }
 
@@ -33,7 +63,7 @@ public class ServiceStatus {
     }
 
     @Getter
-    private Status status = Status.Stopped;
+    private volatile Status status = Status.Stopped;
 
 
     /**
@@ -71,28 +101,26 @@ public class ServiceStatus {
         return transition(Stopping, Stopped);
     }
 
-    private void executeHandlers(final Transition transition) {
-        for (val h : transitionEventHandlers) {
-            try {
-                h.accept(transition);
-            } catch (final Exception e) {
-                log.error("error in transition handlers", e);
-            }
-        }
-    }
-
     private boolean transition(final Status allowedOldStatus, final Status newStatus) {
+        final LifecycleEventBus.Pending<Transition> queued;
         synchronized (syncroot) {
             if (!status.equals(allowedOldStatus)) {
                 return false;
             }
 
             val before = new Transition(TransitionStage.BeforeTransition, allowedOldStatus, newStatus);
-            executeHandlers(before);
+            transitionEventHandlers.publishNow(before);
             status = newStatus;
+
+            // queued while still holding the lock so that the events are in transition order.
             val after = new Transition(TransitionStage.AfterTransition, allowedOldStatus, newStatus);
-            executeHandlers(after);
-            return true;
+            queued = transitionEventHandlers.enqueue(after);
+        }
+
+        if (queued != null) {
+            transitionEventHandlers.startDelivering();
+            transitionEventHandlers.awaitDelivery(queued);
         }
+        return true;
     }
 }
@@ -0,0 +1,25 @@
+package com.allardworks.workinator3.core;
+
+import lombok.Data;
+import lombok.val;
+
+/**
+ * The status of an executor that works on multiple partitions at once.
+ */
+@Data
+public class WorkerGroupStatus {
+    private final WorkerId workerId;
+
+    /**
+     * The maximum number of partitions the executor will work on at once.
+     */
+    private final int maxPartitions;
+
+    private AssignmentGroup currentGroup;
+
+    public WorkerGroupStatus clone() {
+        val copy = new WorkerGroupStatus(workerId, maxPartitions);
+        copy.currentGroup = currentGroup;
+        return copy;
+    }
+}
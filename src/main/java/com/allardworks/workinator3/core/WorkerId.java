@@ -1,15 +1,61 @@
 package com.allardworks.workinator3.core;
 
-import lombok.Data;
-import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
 
-@EqualsAndHashCode
-@Data
+import java.util.Objects;
+
+/**
+ * Identifies a worker of a consumer.
+ * Worker ids are used as map keys and compared on every assignment,
+ * so the hash code and the assignee are computed once.
+ */
+@RequiredArgsConstructor
 public class WorkerId {
+    @Getter
     private final ConsumerRegistration consumer;
+
+    @Getter
     private final int workerNumber;
 
+    private String assignee;
+    private int hash;
+
     public String getAssignee() {
-        return consumer.getConsumerId().getName() + ", #" + workerNumber;
+        String result = assignee;
+        if (result == null) {
+            result = consumer.getConsumerId().getName() + ", #" + workerNumber;
+            assignee = result;
+        }
+        return result;
+    }
+
+    @Override
+    public boolean equals(final Object o) {
+        if (this == o) {
+            return true;
+        }
+
+        if (!(o instanceof WorkerId)) {
+            return false;
+        }
+
+        final WorkerId other = (WorkerId) o;
+        return workerNumber == other.workerNumber && Objects.equals(consumer, other.consumer);
+    }
+
+    @Override
+    public int hashCode() {
+        int result = hash;
+        if (result == 0) {
+            result = 31 * Objects.hashCode(consumer) + workerNumber;
+            hash = result;
+        }
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        return "WorkerId(consumer=" + consumer + ", workerNumber=" + workerNumber + ")";
     }
 }
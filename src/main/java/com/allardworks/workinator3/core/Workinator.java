@@ -2,26 +2,281 @@ package com.allardworks.workinator3.core;
 
 import com.allardworks.workinator3.core.commands.*;
 
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
+import java.util.stream.Stream;
 
 public interface Workinator extends AutoCloseable {
     Assignment getAssignment(WorkerStatus executorId);
 
+    /**
+     * Gets an assignment. If there isn't one, waits up to maxWait for one to become available.
+     * Implementations that can tell when a partition becomes eligible return as soon as it does.
+     * Otherwise, this checks, sleeps for maxWait, then checks once more.
+     * @param executorId
+     * @param maxWait
+     * @return the assignment, or null if there still isn't one after maxWait.
+     * @throws InterruptedException
+     */
+    default Assignment getAssignment(final WorkerStatus executorId, final Duration maxWait) throws InterruptedException {
+        final Assignment assignment = getAssignment(executorId);
+        if (assignment != null || maxWait.isZero() || maxWait.isNegative()) {
+            return assignment;
+        }
+
+        Thread.sleep(maxWait.toMillis());
+        return getAssignment(executorId);
+    }
+
+    /**
+     * Extends the lease on an assignment, without evaluating the rules,
+     * if the worker still holds it and the partition still has work.
+     * The renewal is conditional on the receipt, so a worker that lost the partition can't renew it.
+     * When this returns null, the worker gets its next assignment with getAssignment.
+     * This default doesn't support leases, so it always returns null.
+     * @param command
+     * @return the renewed assignment, or null if it wasn't renewed.
+     */
+    default Assignment renewLease(final RenewLeaseCommand command) {
+        return null;
+    }
+
+    /**
+     * Gets an assignment ahead of time, for a worker that will be ready soon.
+     * The reservation holds a slot of the partition until it's claimed with claimReservation,
+     * or released. The workinator releases it if it isn't claimed before it expires.
+     * This default gets an ordinary assignment, which doesn't expire.
+     * @param command
+     * @return the reservation, or null if there isn't anything to do.
+     */
+    default Assignment reserveAssignment(final ReserveAssignmentCommand command) {
+        return getAssignment(new WorkerStatus(command.getWorkerId()));
+    }
+
+    /**
+     * Gives a reservation to a worker.
+     * This default only changes the worker id of the assignment object.
+     * @param command
+     * @return the worker's assignment, or null if the reservation expired.
+     */
+    default Assignment claimReservation(final ClaimReservationCommand command) {
+        return Assignment.setWorkerId(command.getReservation(), command.getWorkerId());
+    }
+
     void releaseAssignment(ReleaseAssignmentCommand assignment);
 
+    /**
+     * Gets the assignments for multiple workers, usually all of the workers of a consumer, in one call.
+     * The workers are evaluated one after the other, so a slot claimed by one worker
+     * is never offered to another worker in the same batch.
+     * @param workers
+     * @return one entry per worker, in the same order as the workers. An entry is null if there isn't an assignment for the worker.
+     */
+    default List<Assignment> getAssignments(final List<WorkerStatus> workers) {
+        final List<Assignment> result = new ArrayList<>(workers.size());
+        for (final WorkerStatus worker : workers) {
+            result.add(getAssignment(worker));
+        }
+        return result;
+    }
+
+    /**
+     * Releases multiple assignments in one call.
+     * IE: when a consumer is stopping.
+     * @param assignments
+     */
+    default void releaseAssignments(final List<ReleaseAssignmentCommand> assignments) {
+        for (final ReleaseAssignmentCommand assignment : assignments) {
+            releaseAssignment(assignment);
+        }
+    }
+
+    /**
+     * Gets a group of assignments for an executor that works on multiple partitions at once.
+     * Each partition of the current group is re-evaluated as if it was the current assignment
+     * of a single worker, then the rest of the group is filled with new assignments.
+     * A group never contains the same partition twice.
+     * @param status
+     * @return the group. It's empty if there aren't any assignments.
+     */
+    default AssignmentGroup getAssignmentGroup(final WorkerGroupStatus status) {
+        final List<Assignment> assignments = new ArrayList<>();
+        final Set<String> partitionKeys = new HashSet<>();
+        final AssignmentGroup current = status.getCurrentGroup();
+        if (current != null) {
+            for (final Assignment currentAssignment : current.getAssignments()) {
+                final WorkerStatus worker = new WorkerStatus(status.getWorkerId());
+                worker.setCurrentAssignment(currentAssignment);
+                final Assignment assignment = getAssignment(worker);
+                if (assignment == null) {
+                    continue;
+                }
+
+                if (partitionKeys.add(assignment.getPartitionKey())) {
+                    assignments.add(assignment);
+                } else {
+                    releaseAssignment(new ReleaseAssignmentCommand(assignment));
+                }
+            }
+        }
+
+        while (assignments.size() < status.getMaxPartitions()) {
+            final Assignment assignment = getAssignment(new WorkerStatus(status.getWorkerId()));
+            if (assignment == null) {
+                break;
+            }
+
+            if (!partitionKeys.add(assignment.getPartitionKey())) {
+                // the only thing left is more slots of partitions the group already has.
+                releaseAssignment(new ReleaseAssignmentCommand(assignment));
+                break;
+            }
+            assignments.add(assignment);
+        }
+        return new AssignmentGroup(status.getWorkerId(), assignments);
+    }
+
+    /**
+     * Releases all of the assignments of a group.
+     * @param command
+     */
+    default void releaseAssignmentGroup(final ReleaseAssignmentGroupCommand command) {
+        final List<ReleaseAssignmentCommand> releases = new ArrayList<>();
+        for (final Assignment assignment : command.getGroup().getAssignments()) {
+            releases.add(new ReleaseAssignmentCommand(assignment));
+        }
+        releaseAssignments(releases);
+    }
+
     ConsumerRegistration registerConsumer(RegisterConsumerCommand command) throws ConsumerExistsException;
 
     void unregisterConsumer(UnregisterConsumerCommand command);
 
     void createPartition(CreatePartitionCommand command) throws PartitionExistsException;
 
+    /**
+     * Creates partitions in bulk. A partition that already exists isn't changed,
+     * and is reported as Exists instead of throwing.
+     * The partitions are read from the stream as they're written, and the order isn't kept.
+     * @param partitions
+     * @return the outcome of every partition.
+     */
+    default BulkPartitionResult createPartitions(final Stream<CreatePartitionCommand> partitions) {
+        final BulkPartitionResult result = new BulkPartitionResult();
+        partitions.sequential().forEach(partition -> {
+            final BulkPartitionResult.Outcome invalid = BulkPartitionResult.validate(partition.getPartitionKey(), partition.getMaxIdleTimeSeconds(), partition.getMaxWorkerCount());
+            if (invalid != null) {
+                result.add(invalid, partition.getPartitionKey());
+                return;
+            }
+
+            try {
+                createPartition(partition);
+                result.add(BulkPartitionResult.Outcome.Created, partition.getPartitionKey());
+            } catch (final PartitionExistsException ex) {
+                result.add(BulkPartitionResult.Outcome.Exists, partition.getPartitionKey());
+            }
+        });
+        return result;
+    }
+
     void setPartitionStatus(SetPartitionStatusCommand command);
 
+    /**
+     * Sets the status of multiple partitions in one call.
+     * IE: all of the partitions of a group.
+     * @param commands
+     */
+    default void setPartitionStatuses(final List<SetPartitionStatusCommand> commands) {
+        for (final SetPartitionStatusCommand command : commands) {
+            setPartitionStatus(command);
+        }
+    }
+
     void updateConsumerStatus(UpdateConsumerStatusCommand consumerStatus);
 
+    /**
+     * Applies a heartbeat from a consumer.
+     * Workinators that don't keep versions can't apply deltas or pings.
+     * This default asks for a resync instead, and stores full heartbeats with updateConsumerStatus.
+     * @param command
+     * @return
+     */
+    default HeartbeatResult heartbeat(final ConsumerHeartbeatCommand command) {
+        if (!command.isFull()) {
+            return HeartbeatResult.resync(-1);
+        }
+
+        updateConsumerStatus(UpdateConsumerStatusCommand
+                .builder()
+                .registration(command.getRegistration())
+                .status(ConsumerStatus.builder().workers(command.getChanges()).build())
+                .build());
+        return HeartbeatResult.acknowledged(command.getVersion());
+    }
+
     List<PartitionInfo> getPartitions();
 
+    /**
+     * Gets a page of the partitions that match the query, in key order.
+     * This default filters getPartitions(). Workinators that can filter and page
+     * their own state should override it.
+     * @param query
+     * @return
+     */
+    default Page<PartitionInfo> getPartitions(final PartitionQuery query) {
+        final long now = System.currentTimeMillis();
+        return Pages.take(getPartitions()
+                        .stream()
+                        .filter(p -> query.matches(p, now))
+                        .sorted(Comparator.comparing(PartitionInfo::getPartitionKey))
+                        .map(p -> query.isIncludeWorkers() ? p : p.toBuilder().workers(null).build())
+                        .iterator(),
+                query.getLimit(),
+                PartitionInfo::getPartitionKey);
+    }
+
+    /**
+     * Streams all of the partitions that match the query, a page at a time.
+     * The query's limit is the page size.
+     * @param query
+     * @return
+     */
+    default Stream<PartitionInfo> streamPartitions(final PartitionQuery query) {
+        return Pages.stream(cursor -> getPartitions(cursor == null ? query : query.toBuilder().cursor(cursor).build()));
+    }
+
     List<ConsumerInfo> getConsumers();
 
+    /**
+     * Gets a page of the consumers that match the query, in name order.
+     * This default filters getConsumers().
+     * @param query
+     * @return
+     */
+    default Page<ConsumerInfo> getConsumers(final ConsumerQuery query) {
+        return Pages.take(getConsumers()
+                        .stream()
+                        .filter(query::matches)
+                        .sorted(Comparator.comparing(ConsumerInfo::getName))
+                        .map(c -> query.isIncludeWorkers() ? c : c.toBuilder().workers(null).build())
+                        .iterator(),
+                query.getLimit(),
+                ConsumerInfo::getName);
+    }
+
+    /**
+     * Streams all of the consumers that match the query, a page at a time.
+     * @param query
+     * @return
+     */
+    default Stream<ConsumerInfo> streamConsumers(final ConsumerQuery query) {
+        return Pages.stream(cursor -> getConsumers(cursor == null ? query : query.toBuilder().cursor(cursor).build()));
+    }
+
     PartitionConfiguration getPartitionConfiguration(String partitionKey);
 }
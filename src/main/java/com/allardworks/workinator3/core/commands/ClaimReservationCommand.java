@@ -0,0 +1,14 @@
+package com.allardworks.workinator3.core.commands;
+
+import com.allardworks.workinator3.core.Assignment;
+import com.allardworks.workinator3.core.WorkerId;
+import lombok.Data;
+
+/**
+ * Turns a reservation into an assignment for a worker.
+ */
+@Data
+public class ClaimReservationCommand {
+    private final Assignment reservation;
+    private final WorkerId workerId;
+}
@@ -0,0 +1,42 @@
+package com.allardworks.workinator3.core.commands;
+
+import com.allardworks.workinator3.core.ConsumerRegistration;
+import com.allardworks.workinator3.core.ConsumerStatus.ConsumerWorkerStatus;
+import lombok.Builder;
+import lombok.Data;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A heartbeat from a consumer.
+ * Carries the workers whose assignments changed since baseVersion,
+ * which is the last version the workinator acknowledged.
+ * A worker without an assignment is idle.
+ *
+ * A ping has no changes; it only says the consumer is alive at that version.
+ * A full heartbeat has all of the workers, and replaces whatever the workinator has.
+ */
+@Data
+@Builder
+public class ConsumerHeartbeatCommand {
+    private final ConsumerRegistration registration;
+    private final long baseVersion;
+    private final long version;
+    private final boolean full;
+    private final List<ConsumerWorkerStatus> changes;
+
+    /**
+     * The number of workers the consumer runs now, when it adjusts them.
+     * 0 if it didn't change since registration.
+     */
+    private final int maxWorkerCount;
+
+    public boolean isPing() {
+        return !full && changes.isEmpty();
+    }
+
+    public static class ConsumerHeartbeatCommandBuilder {
+        private List<ConsumerWorkerStatus> changes = Collections.emptyList();
+    }
+}
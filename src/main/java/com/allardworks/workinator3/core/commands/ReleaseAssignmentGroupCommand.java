@@ -0,0 +1,9 @@
+package com.allardworks.workinator3.core.commands;
+
+import com.allardworks.workinator3.core.AssignmentGroup;
+import lombok.Data;
+
+@Data
+public class ReleaseAssignmentGroupCommand {
+    private final AssignmentGroup group;
+}
@@ -0,0 +1,9 @@
+package com.allardworks.workinator3.core.commands;
+
+import com.allardworks.workinator3.core.Assignment;
+import lombok.Data;
+
+@Data
+public class RenewLeaseCommand {
+    private final Assignment assignment;
+}
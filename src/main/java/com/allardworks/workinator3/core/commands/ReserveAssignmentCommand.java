@@ -0,0 +1,22 @@
+package com.allardworks.workinator3.core.commands;
+
+import com.allardworks.workinator3.core.WorkerId;
+import lombok.Builder;
+import lombok.Data;
+
+import java.time.Duration;
+
+/**
+ * Reserves an assignment for a worker that isn't ready for it yet.
+ * The workerId identifies the consumer; it doesn't have to be one of its workers.
+ */
+@Data
+@Builder
+public class ReserveAssignmentCommand {
+    private final WorkerId workerId;
+
+    /**
+     * The reservation is released if it isn't claimed within this time.
+     */
+    private final Duration expiration;
+}
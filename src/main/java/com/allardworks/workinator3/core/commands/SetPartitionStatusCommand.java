@@ -8,4 +8,27 @@ import lombok.Data;
 public class SetPartitionStatusCommand {
     private final boolean hasWork;
     private final String partitionKey;
+
+    /**
+     * How much work is waiting in the partition: items, bytes, or seconds of lag,
+     * as long as all of the partitions use the same unit.
+     * 0 if the worker doesn't know. Ignored when hasWork is false.
+     */
+    private final long backlog;
+
+    /**
+     * Multiplies the backlog when the workinator compares partitions.
+     * Greater than 1 for partitions that matter more. Defaults to 1.
+     */
+    private final double weight;
+
+    /**
+     * The receipt of the worker's assignment. The workinator ignores the status if the
+     * assignment was released or expired. Null to set the status regardless.
+     */
+    private final String receipt;
+
+    public static class SetPartitionStatusCommandBuilder {
+        private double weight = 1;
+    }
 }
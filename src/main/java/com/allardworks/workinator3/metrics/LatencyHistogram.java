@@ -0,0 +1,108 @@
+package com.allardworks.workinator3.metrics;
+
+import lombok.val;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A fixed size, log-linear histogram of durations in nanoseconds.
+ * Each power of 2 is split into 4 buckets, so a recorded value is within 25% of its bucket's bound.
+ * Recording doesn't allocate or lock, so it's safe to use on the hot path.
+ */
+public class LatencyHistogram {
+    private final static int SUB_BUCKET_BITS = 2;
+    private final static int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private final static int BUCKET_COUNT = 64 * SUB_BUCKETS;
+
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKET_COUNT);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder totalNanos = new LongAdder();
+    private final LongAccumulator maxNanos = new LongAccumulator(Math::max, 0);
+
+    public void record(final long nanos) {
+        val value = Math.max(0, nanos);
+        buckets.incrementAndGet(bucketOf(value));
+        count.increment();
+        totalNanos.add(value);
+        maxNanos.accumulate(value);
+    }
+
+    /**
+     * Records the time since the start, which was taken with System.nanoTime().
+     * @param startNanos
+     */
+    public void recordSince(final long startNanos) {
+        record(System.nanoTime() - startNanos);
+    }
+
+    public long getCount() {
+        return count.sum();
+    }
+
+    public long getTotalNanos() {
+        return totalNanos.sum();
+    }
+
+    public double getTotalTime(final TimeUnit unit) {
+        return (double) getTotalNanos() / unit.toNanos(1);
+    }
+
+    public long getMaxNanos() {
+        return maxNanos.get();
+    }
+
+    public double getMeanNanos() {
+        val c = getCount();
+        return c == 0 ? 0 : (double) getTotalNanos() / c;
+    }
+
+    /**
+     * The upper bound of the bucket that contains the percentile.
+     * @param percentile 0.0 to 1.0
+     * @return
+     */
+    public long getPercentileNanos(final double percentile) {
+        val total = getCount();
+        if (total == 0) {
+            return 0;
+        }
+
+        val target = (long) Math.ceil(total * percentile);
+        long seen = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            seen += buckets.get(i);
+            if (seen >= Math.max(1, target)) {
+                return Math.min(upperBoundOf(i), getMaxNanos());
+            }
+        }
+        return getMaxNanos();
+    }
+
+    /**
+     * Values below 4 each get their own bucket. Above that, the bucket
+     * is the power of 2 plus the next 2 bits.
+     */
+    private static int bucketOf(final long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+
+        val exponent = 63 - Long.numberOfLeadingZeros(value);
+        val subBucket = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + subBucket;
+    }
+
+    private static long upperBoundOf(final int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return bucket;
+        }
+
+        val exponent = bucket / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+        val subBucket = bucket % SUB_BUCKETS;
+        val lower = (1L << exponent) + ((long) subBucket << (exponent - SUB_BUCKET_BITS));
+        return lower + (1L << (exponent - SUB_BUCKET_BITS)) - 1;
+    }
+}
@@ -0,0 +1,139 @@
+package com.allardworks.workinator3.metrics;
+
+import com.allardworks.workinator3.core.*;
+import com.allardworks.workinator3.core.commands.ReleaseAssignmentCommand;
+import com.allardworks.workinator3.core.commands.ReleaseAssignmentGroupCommand;
+import com.allardworks.workinator3.core.commands.RenewLeaseCommand;
+import com.allardworks.workinator3.core.commands.ReserveAssignmentCommand;
+import com.allardworks.workinator3.core.commands.SetPartitionStatusCommand;
+import lombok.Getter;
+import lombok.NonNull;
+import lombok.val;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Decorates a workinator with metrics:
+ * latency of getAssignment, releaseAssignment, setPartitionStatus and renewLease,
+ * and of their batch and group forms,
+ * assignment counts per rule, the number of times there wasn't an assignment,
+ * and the number of assignments released and partition statuses written.
+ *
+ * The metrics are published by getInfo(), and can be bound to a Micrometer
+ * registry with WorkinatorMeterBinder.
+ */
+public class MeteredWorkinator extends DelegatingWorkinator {
+    @Getter
+    private final WorkinatorMetrics metrics = new WorkinatorMetrics();
+
+    public MeteredWorkinator(@NonNull final Workinator workinator) {
+        super(workinator);
+    }
+
+    @Override
+    public Assignment getAssignment(final WorkerStatus status) {
+        val start = System.nanoTime();
+        val assignment = getWorkinator().getAssignment(status);
+        metrics.getGetAssignmentLatency().recordSince(start);
+        metrics.recordAssignment(assignment);
+        return assignment;
+    }
+
+    /**
+     * The time spent waiting isn't recorded as latency.
+     */
+    @Override
+    public Assignment getAssignment(final WorkerStatus status, final Duration maxWait) throws InterruptedException {
+        val assignment = getWorkinator().getAssignment(status, maxWait);
+        metrics.recordAssignment(assignment);
+        return assignment;
+    }
+
+    @Override
+    public List<Assignment> getAssignments(final List<WorkerStatus> workers) {
+        val start = System.nanoTime();
+        val assignments = getWorkinator().getAssignments(workers);
+        metrics.getGetAssignmentsLatency().recordSince(start);
+        for (val assignment : assignments) {
+            metrics.recordAssignment(assignment);
+        }
+        return assignments;
+    }
+
+    @Override
+    public AssignmentGroup getAssignmentGroup(final WorkerGroupStatus status) {
+        val start = System.nanoTime();
+        val group = getWorkinator().getAssignmentGroup(status);
+        metrics.getGetAssignmentGroupLatency().recordSince(start);
+        if (group.isEmpty()) {
+            metrics.recordAssignment(null);
+        }
+        for (val assignment : group.getAssignments()) {
+            metrics.recordAssignment(assignment);
+        }
+        return group;
+    }
+
+    @Override
+    public Assignment reserveAssignment(final ReserveAssignmentCommand command) {
+        val reservation = getWorkinator().reserveAssignment(command);
+        metrics.recordAssignment(reservation);
+        return reservation;
+    }
+
+    @Override
+    public Assignment renewLease(final RenewLeaseCommand command) {
+        val start = System.nanoTime();
+        val renewed = getWorkinator().renewLease(command);
+        metrics.getRenewLeaseLatency().recordSince(start);
+        metrics.recordRenewal(renewed);
+        return renewed;
+    }
+
+    @Override
+    public void releaseAssignment(final ReleaseAssignmentCommand command) {
+        val start = System.nanoTime();
+        getWorkinator().releaseAssignment(command);
+        metrics.getReleaseAssignmentLatency().recordSince(start);
+        metrics.recordReleased(1);
+    }
+
+    @Override
+    public void releaseAssignments(final List<ReleaseAssignmentCommand> commands) {
+        val start = System.nanoTime();
+        getWorkinator().releaseAssignments(commands);
+        metrics.getReleaseAssignmentsLatency().recordSince(start);
+        metrics.recordReleased(commands.size());
+    }
+
+    @Override
+    public void releaseAssignmentGroup(final ReleaseAssignmentGroupCommand command) {
+        val start = System.nanoTime();
+        getWorkinator().releaseAssignmentGroup(command);
+        metrics.getReleaseAssignmentGroupLatency().recordSince(start);
+        metrics.recordReleased(command.getGroup().getAssignments().size());
+    }
+
+    @Override
+    public void setPartitionStatus(final SetPartitionStatusCommand command) {
+        val start = System.nanoTime();
+        getWorkinator().setPartitionStatus(command);
+        metrics.getSetPartitionStatusLatency().recordSince(start);
+        metrics.recordPartitionStatuses(1);
+    }
+
+    @Override
+    public void setPartitionStatuses(final List<SetPartitionStatusCommand> commands) {
+        val start = System.nanoTime();
+        getWorkinator().setPartitionStatuses(commands);
+        metrics.getSetPartitionStatusesLatency().recordSince(start);
+        metrics.recordPartitionStatuses(commands.size());
+    }
+
+    @Override
+    public Map<String, Object> getInfo() {
+        return metrics.getInfo();
+    }
+}
@@ -0,0 +1,43 @@
+package com.allardworks.workinator3.metrics;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.FunctionTimer;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.NonNull;
+import lombok.RequiredArgsConstructor;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Publishes ReclaimMetrics to a Micrometer registry, the same way as WorkinatorMeterBinder.
+ */
+@RequiredArgsConstructor
+public class ReclaimMeterBinder implements MeterBinder {
+    @NonNull
+    private final ReclaimMetrics metrics;
+
+    @Override
+    public void bindTo(@NonNull final MeterRegistry registry) {
+        FunctionCounter
+                .builder("workinator.reclaims.consumers", metrics, ReclaimMetrics::getConsumerCount)
+                .description("Consumers unregistered because they stopped sending heartbeats")
+                .register(registry);
+
+        FunctionCounter
+                .builder("workinator.reclaims.assignments", metrics, ReclaimMetrics::getAssignmentCount)
+                .description("Assignments released from expired consumers")
+                .register(registry);
+
+        FunctionTimer
+                .builder("workinator.reclaims.latency", metrics.getLatency(), LatencyHistogram::getCount, h -> h.getTotalNanos(), TimeUnit.NANOSECONDS)
+                .description("Time from a consumer's expiration until its assignments were released")
+                .register(registry);
+
+        Gauge
+                .builder("workinator.reclaims.latency.max", metrics.getLatency(), h -> h.getMaxNanos() / 1_000_000.0)
+                .baseUnit("milliseconds")
+                .register(registry);
+    }
+}
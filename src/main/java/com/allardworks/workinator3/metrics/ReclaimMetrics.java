@@ -0,0 +1,52 @@
+package com.allardworks.workinator3.metrics;
+
+import lombok.Getter;
+import lombok.val;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counts the consumers that the workinator unregistered because they stopped sending heartbeats,
+ * and the assignments it took back from them.
+ */
+public class ReclaimMetrics {
+    private final LongAdder consumerCount = new LongAdder();
+    private final LongAdder assignmentCount = new LongAdder();
+
+    /**
+     * The time from when the consumer expired, its last heartbeat plus the timeout,
+     * until its assignments were released.
+     */
+    @Getter
+    private final LatencyHistogram latency = new LatencyHistogram();
+
+    /**
+     * @param assignments the number of assignments released.
+     * @param latencyMillis the time since the consumer expired.
+     */
+    public void recordReclaim(final int assignments, final long latencyMillis) {
+        consumerCount.increment();
+        assignmentCount.add(assignments);
+        latency.record(TimeUnit.MILLISECONDS.toNanos(latencyMillis));
+    }
+
+    public long getConsumerCount() {
+        return consumerCount.sum();
+    }
+
+    public long getAssignmentCount() {
+        return assignmentCount.sum();
+    }
+
+    public Map<String, Object> getInfo() {
+        val info = new HashMap<String, Object>();
+        info.put("consumers", getConsumerCount());
+        info.put("assignments", getAssignmentCount());
+        info.put("meanLatencyMillis", latency.getMeanNanos() / TimeUnit.MILLISECONDS.toNanos(1));
+        info.put("maxLatencyMillis", (double) latency.getMaxNanos() / TimeUnit.MILLISECONDS.toNanos(1));
+        return info;
+    }
+}
@@ -0,0 +1,93 @@
+package com.allardworks.workinator3.metrics;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.FunctionTimer;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.NonNull;
+import lombok.RequiredArgsConstructor;
+import lombok.val;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Publishes WorkinatorMetrics to a Micrometer registry.
+ * The meters read the existing counters and histograms when the registry is
+ * scraped, so recording stays allocation free.
+ * Micrometer is an optional dependency; this class is only needed if it's on the classpath.
+ */
+@RequiredArgsConstructor
+public class WorkinatorMeterBinder implements MeterBinder {
+    @NonNull
+    private final WorkinatorMetrics metrics;
+
+    @Override
+    public void bindTo(@NonNull final MeterRegistry registry) {
+        for (val entry : metrics.getRuleCounts().entrySet()) {
+            FunctionCounter
+                    .builder("workinator.assignments", entry.getValue(), c -> c.sum())
+                    .tag("rule", entry.getKey())
+                    .description("Assignments by rule")
+                    .register(registry);
+        }
+
+        FunctionCounter
+                .builder("workinator.assignments", metrics, WorkinatorMetrics::getOtherRuleCount)
+                .tag("rule", "other")
+                .description("Assignments by rule")
+                .register(registry);
+
+        FunctionCounter
+                .builder("workinator.assignments.none", metrics, WorkinatorMetrics::getNoAssignmentCount)
+                .description("Requests for an assignment that didn't get one")
+                .register(registry);
+
+        FunctionCounter
+                .builder("workinator.leases.notRenewed", metrics, WorkinatorMetrics::getLeaseNotRenewedCount)
+                .description("Lease renewals that were refused")
+                .register(registry);
+
+        FunctionCounter
+                .builder("workinator.assignments.released", metrics, WorkinatorMetrics::getReleasedCount)
+                .description("Assignments released, one at a time or in a batch or group")
+                .register(registry);
+
+        FunctionCounter
+                .builder("workinator.partitionStatuses", metrics, WorkinatorMetrics::getPartitionStatusCount)
+                .description("Partition statuses written, one at a time or in a batch")
+                .register(registry);
+
+        bind(registry, "getAssignment", metrics.getGetAssignmentLatency());
+        bind(registry, "releaseAssignment", metrics.getReleaseAssignmentLatency());
+        bind(registry, "setPartitionStatus", metrics.getSetPartitionStatusLatency());
+        bind(registry, "renewLease", metrics.getRenewLeaseLatency());
+        bind(registry, "getAssignments", metrics.getGetAssignmentsLatency());
+        bind(registry, "getAssignmentGroup", metrics.getGetAssignmentGroupLatency());
+        bind(registry, "releaseAssignments", metrics.getReleaseAssignmentsLatency());
+        bind(registry, "releaseAssignmentGroup", metrics.getReleaseAssignmentGroupLatency());
+        bind(registry, "setPartitionStatuses", metrics.getSetPartitionStatusesLatency());
+    }
+
+    private static void bind(final MeterRegistry registry, final String operation, final LatencyHistogram histogram) {
+        FunctionTimer
+                .builder("workinator.operation", histogram, LatencyHistogram::getCount, h -> h.getTotalNanos(), TimeUnit.NANOSECONDS)
+                .tag("operation", operation)
+                .register(registry);
+
+        for (val percentile : new double[]{0.5, 0.99, 0.999}) {
+            Gauge
+                    .builder("workinator.operation.percentile", histogram, h -> h.getPercentileNanos(percentile) / 1_000_000.0)
+                    .tag("operation", operation)
+                    .tag("percentile", Double.toString(percentile))
+                    .baseUnit("milliseconds")
+                    .register(registry);
+        }
+
+        Gauge
+                .builder("workinator.operation.max", histogram, h -> h.getMaxNanos() / 1_000_000.0)
+                .tag("operation", operation)
+                .baseUnit("milliseconds")
+                .register(registry);
+    }
+}
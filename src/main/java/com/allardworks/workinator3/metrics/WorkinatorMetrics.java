@@ -0,0 +1,184 @@
+package com.allardworks.workinator3.metrics;
+
+import com.allardworks.workinator3.core.Assignment;
+import com.allardworks.workinator3.core.AssignmentRules;
+import lombok.Getter;
+import lombok.val;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counts and latencies of the workinator's hot path operations.
+ * The counters for each rule are created up front, so recording never allocates.
+ */
+public class WorkinatorMetrics {
+    @Getter
+    private final LatencyHistogram getAssignmentLatency = new LatencyHistogram();
+
+    @Getter
+    private final LatencyHistogram releaseAssignmentLatency = new LatencyHistogram();
+
+    @Getter
+    private final LatencyHistogram setPartitionStatusLatency = new LatencyHistogram();
+
+    @Getter
+    private final LatencyHistogram renewLeaseLatency = new LatencyHistogram();
+
+    @Getter
+    private final LatencyHistogram getAssignmentsLatency = new LatencyHistogram();
+
+    @Getter
+    private final LatencyHistogram getAssignmentGroupLatency = new LatencyHistogram();
+
+    @Getter
+    private final LatencyHistogram releaseAssignmentsLatency = new LatencyHistogram();
+
+    @Getter
+    private final LatencyHistogram releaseAssignmentGroupLatency = new LatencyHistogram();
+
+    @Getter
+    private final LatencyHistogram setPartitionStatusesLatency = new LatencyHistogram();
+
+    /**
+     * Assignment count per rule name.
+     */
+    private final Map<String, LongAdder> ruleCounts;
+
+    /**
+     * Assignments with a rule name that isn't one of the known rules.
+     */
+    private final LongAdder otherRuleCount = new LongAdder();
+
+    private final LongAdder noAssignmentCount = new LongAdder();
+
+    /**
+     * Lease renewals that the workinator refused, so the worker went through the rules instead.
+     */
+    private final LongAdder leaseNotRenewedCount = new LongAdder();
+
+    /**
+     * Assignments released, one at a time or in a batch or group.
+     */
+    private final LongAdder releasedCount = new LongAdder();
+
+    /**
+     * Partition statuses written, one at a time or in a batch.
+     */
+    private final LongAdder partitionStatusCount = new LongAdder();
+
+    public WorkinatorMetrics() {
+        val counts = new LinkedHashMap<String, LongAdder>();
+        counts.put(AssignmentRules.RULE1, new LongAdder());
+        counts.put(AssignmentRules.RULE2, new LongAdder());
+        counts.put(AssignmentRules.RULE3, new LongAdder());
+        counts.put(AssignmentRules.RULE4, new LongAdder());
+        counts.put(AssignmentRules.RULE5, new LongAdder());
+        ruleCounts = Collections.unmodifiableMap(counts);
+    }
+
+    /**
+     * Records the result of getAssignment.
+     * @param assignment the assignment, or null if there wasn't one.
+     */
+    public void recordAssignment(final Assignment assignment) {
+        if (assignment == null) {
+            noAssignmentCount.increment();
+            return;
+        }
+
+        val count = ruleCounts.get(assignment.getRuleName());
+        if (count == null) {
+            otherRuleCount.increment();
+        } else {
+            count.increment();
+        }
+    }
+
+    /**
+     * Records the result of renewLease.
+     * A renewal counts as an assignment for its rule.
+     * @param renewed the renewed assignment, or null if it wasn't renewed.
+     */
+    public void recordRenewal(final Assignment renewed) {
+        if (renewed == null) {
+            leaseNotRenewedCount.increment();
+        } else {
+            recordAssignment(renewed);
+        }
+    }
+
+    public void recordReleased(final int count) {
+        releasedCount.add(count);
+    }
+
+    public void recordPartitionStatuses(final int count) {
+        partitionStatusCount.add(count);
+    }
+
+    public long getReleasedCount() {
+        return releasedCount.sum();
+    }
+
+    public long getPartitionStatusCount() {
+        return partitionStatusCount.sum();
+    }
+
+    public long getLeaseNotRenewedCount() {
+        return leaseNotRenewedCount.sum();
+    }
+
+    public Map<String, LongAdder> getRuleCounts() {
+        return ruleCounts;
+    }
+
+    public long getOtherRuleCount() {
+        return otherRuleCount.sum();
+    }
+
+    public long getNoAssignmentCount() {
+        return noAssignmentCount.sum();
+    }
+
+    public Map<String, Object> getInfo() {
+        val rules = new LinkedHashMap<String, Object>();
+        ruleCounts.forEach((rule, count) -> rules.put(rule, count.sum()));
+        rules.put("other", getOtherRuleCount());
+
+        val info = new HashMap<String, Object>();
+        info.put("assignmentsByRule", rules);
+        info.put("noAssignmentCount", getNoAssignmentCount());
+        info.put("getAssignment", toInfo(getAssignmentLatency));
+        info.put("releaseAssignment", toInfo(releaseAssignmentLatency));
+        info.put("setPartitionStatus", toInfo(setPartitionStatusLatency));
+        info.put("renewLease", toInfo(renewLeaseLatency));
+        info.put("getAssignments", toInfo(getAssignmentsLatency));
+        info.put("getAssignmentGroup", toInfo(getAssignmentGroupLatency));
+        info.put("releaseAssignments", toInfo(releaseAssignmentsLatency));
+        info.put("releaseAssignmentGroup", toInfo(releaseAssignmentGroupLatency));
+        info.put("setPartitionStatuses", toInfo(setPartitionStatusesLatency));
+        info.put("releasedCount", getReleasedCount());
+        info.put("partitionStatusCount", getPartitionStatusCount());
+        info.put("leaseNotRenewedCount", getLeaseNotRenewedCount());
+        return info;
+    }
+
+    private static Map<String, Object> toInfo(final LatencyHistogram histogram) {
+        val info = new LinkedHashMap<String, Object>();
+        info.put("count", histogram.getCount());
+        info.put("meanMicros", histogram.getMeanNanos() / 1000);
+        info.put("p50Micros", toMicros(histogram.getPercentileNanos(0.5)));
+        info.put("p99Micros", toMicros(histogram.getPercentileNanos(0.99)));
+        info.put("p999Micros", toMicros(histogram.getPercentileNanos(0.999)));
+        info.put("maxMicros", toMicros(histogram.getMaxNanos()));
+        return info;
+    }
+
+    private static double toMicros(final long nanos) {
+        return (double) nanos / TimeUnit.MICROSECONDS.toNanos(1);
+    }
+}
@@ -0,0 +1,38 @@
+package com.allardworks.workinator3.consumer;
+
+import com.allardworks.workinator3.coordinator.memory.MemoryWorkinator;
+import com.allardworks.workinator3.core.ConsumerConfiguration;
+import com.allardworks.workinator3.core.ConsumerId;
+import com.allardworks.workinator3.core.WorkerId;
+import com.allardworks.workinator3.core.commands.RegisterConsumerCommand;
+import lombok.val;
+import org.junit.Test;
+
+import java.time.Duration;
+
+import static org.junit.Assert.*;
+
+public class AsyncGroupExecutorTest {
+    @Test
+    public void stoppingEndsTheWaitForAnAssignment() throws Exception {
+        val workinator = new MemoryWorkinator();
+        val consumer = workinator.registerConsumer(RegisterConsumerCommand.builder().id(new ConsumerId("consumer")).build());
+        val configuration = new ConsumerConfiguration();
+        configuration.setPartitionsPerExecutor(2);
+        configuration.setDelayWhenNoAssignment(Duration.ofSeconds(30));
+
+        val executor = new AsyncGroupExecutor(new WorkerId(consumer, 1), workinator, configuration,
+                assignment -> context -> {
+                }, ExecutorThreads.dedicated(), new WorkerMeter());
+        executor.start();
+        Thread.sleep(100);
+
+        val start = System.nanoTime();
+        executor.stop();
+        while (!executor.getStatus().isStopped() && System.nanoTime() - start < 5_000_000_000L) {
+            Thread.sleep(10);
+        }
+        assertTrue(executor.getStatus().isStopped());
+        assertTrue(System.nanoTime() - start < 2_000_000_000L);
+    }
+}
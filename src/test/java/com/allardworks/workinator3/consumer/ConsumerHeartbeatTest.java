@@ -0,0 +1,126 @@
+package com.allardworks.workinator3.consumer;
+
+import com.allardworks.workinator3.coordinator.memory.MemoryWorkinator;
+import com.allardworks.workinator3.core.*;
+import com.allardworks.workinator3.core.commands.*;
+import lombok.val;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class ConsumerHeartbeatTest {
+    /**
+     * Records the heartbeats and what the workinator replied.
+     */
+    private static class RecordingWorkinator extends DelegatingWorkinator {
+        private final List<ConsumerHeartbeatCommand> sent = new ArrayList<>();
+        private final List<HeartbeatResult> results = new ArrayList<>();
+
+        RecordingWorkinator(final Workinator workinator) {
+            super(workinator);
+        }
+
+        @Override
+        public HeartbeatResult heartbeat(final ConsumerHeartbeatCommand command) {
+            val result = super.heartbeat(command);
+            sent.add(command);
+            results.add(result);
+            return result;
+        }
+
+        ConsumerHeartbeatCommand last() {
+            return sent.get(sent.size() - 1);
+        }
+    }
+
+    private MemoryWorkinator memory;
+    private RecordingWorkinator recording;
+    private ConsumerHeartbeat heartbeat;
+    private ConsumerRegistration registration;
+
+    @Before
+    public void setUp() throws Exception {
+        memory = new MemoryWorkinator();
+        recording = new RecordingWorkinator(memory);
+        heartbeat = new ConsumerHeartbeat(recording, Duration.ofHours(1));
+        registration = heartbeat.registerConsumer(RegisterConsumerCommand.builder().id(new ConsumerId("consumer")).maxWorkerCount(2).build());
+        for (val key : new String[]{"a", "b"}) {
+            memory.createPartition(CreatePartitionCommand.builder().partitionKey(key).maxWorkerCount(1).build());
+        }
+    }
+
+    private WorkerStatus worker(final int number) {
+        return new WorkerStatus(new WorkerId(registration, number));
+    }
+
+    @Test
+    public void onlyTheChangedWorkersAreSent() {
+        val assignment = heartbeat.getAssignment(worker(0));
+        heartbeat.getAssignment(worker(1));
+        heartbeat.beat();
+        assertEquals(2, recording.last().getChanges().size());
+        assertEquals(1, recording.last().getVersion());
+
+        heartbeat.releaseAssignment(new ReleaseAssignmentCommand(assignment));
+        heartbeat.beat();
+
+        val delta = recording.last();
+        assertFalse(delta.isFull());
+        assertEquals(1, delta.getBaseVersion());
+        assertEquals(2, delta.getVersion());
+        assertEquals(1, delta.getChanges().size());
+        assertEquals(0, delta.getChanges().get(0).getWorkerNumber());
+        assertNull(delta.getChanges().get(0).getAssignment());
+    }
+
+    @Test
+    public void nothingChangedSendsAPing() {
+        heartbeat.getAssignment(worker(0));
+        heartbeat.beat();
+        heartbeat.beat();
+
+        assertTrue(recording.last().isPing());
+        assertEquals(1, recording.last().getVersion());
+        assertFalse(recording.results.get(1).isResyncRequired());
+    }
+
+    @Test
+    public void aVersionMismatchResyncsWithAllOfTheWorkers() {
+        heartbeat.getAssignment(worker(0));
+        heartbeat.getAssignment(worker(1));
+        heartbeat.beat();
+
+        // replacing the status on the workinator changes its version.
+        memory.updateConsumerStatus(UpdateConsumerStatusCommand
+                .builder()
+                .registration(registration)
+                .status(ConsumerStatus.builder().workers(Collections.emptyList()).build())
+                .build());
+        heartbeat.beat();
+
+        assertTrue(recording.results.get(1).isResyncRequired());
+        val full = recording.last();
+        assertTrue(full.isFull());
+        assertEquals(2, full.getChanges().size());
+        assertFalse(recording.results.get(2).isResyncRequired());
+
+        heartbeat.beat();
+        assertTrue(recording.last().isPing());
+        assertFalse(recording.results.get(3).isResyncRequired());
+    }
+
+    @Test
+    public void anUnknownConsumerRegistersAgain() {
+        memory.unregisterConsumer(new UnregisterConsumerCommand(registration));
+        heartbeat.beat();
+
+        assertFalse(recording.results.get(0).isRegistered());
+        assertEquals(1, memory.getConsumers().size());
+    }
+}
@@ -0,0 +1,45 @@
+package com.allardworks.workinator3.consumer;
+
+import com.allardworks.workinator3.coordinator.memory.MemoryWorkinator;
+import com.allardworks.workinator3.core.ConsumerConfiguration;
+import com.allardworks.workinator3.core.ConsumerId;
+import lombok.val;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.time.Duration;
+
+import static org.junit.Assert.assertEquals;
+
+public class ConsumerWorkerCountTest {
+    private MemoryWorkinator workinator;
+    private SyncConsumer consumer;
+
+    @Before
+    public void setUp() {
+        workinator = new MemoryWorkinator();
+        val configuration = new ConsumerConfiguration();
+        configuration.setMinWorkerCount(1);
+        configuration.setMaxWorkerCount(4);
+        configuration.setWorkerCountInterval(Duration.ofHours(1));
+        consumer = new SyncConsumer(new ConsumerId("consumer"), workinator, configuration, assignment -> context -> context.setHasWork(false));
+        consumer.start();
+    }
+
+    @After
+    public void tearDown() {
+        consumer.stop();
+    }
+
+    @Test
+    public void withoutHeartbeatsTheWorkinatorStillGetsTheWorkerCount() {
+        // the first count depends on the number of processors.
+        val changed = workinator.getConsumers().get(0).getMaxWorkerCount() == 3 ? 2 : 3;
+        consumer.setWorkerCount(changed);
+        assertEquals(changed, workinator.getConsumers().get(0).getMaxWorkerCount());
+
+        consumer.setWorkerCount(1);
+        assertEquals(1, workinator.getConsumers().get(0).getMaxWorkerCount());
+    }
+}
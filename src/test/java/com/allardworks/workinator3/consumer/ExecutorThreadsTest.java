@@ -0,0 +1,84 @@
+package com.allardworks.workinator3.consumer;
+
+import lombok.val;
+import org.junit.Test;
+
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.*;
+
+public class ExecutorThreadsTest {
+    /**
+     * A loop whose workinator is down.
+     */
+    private static class FailingLoop implements ExecutorLoop {
+        final AtomicInteger cycles = new AtomicInteger();
+        final AtomicReference<Thread> thread = new AtomicReference<>();
+        final CountDownLatch finished = new CountDownLatch(1);
+        volatile boolean running = true;
+
+        @Override
+        public boolean isRunning() {
+            return running;
+        }
+
+        @Override
+        public CycleResult runCycle(final Duration maxWait) {
+            thread.set(Thread.currentThread());
+            cycles.incrementAndGet();
+            return CycleResult.Failed;
+        }
+
+        @Override
+        public void finish() {
+            finished.countDown();
+        }
+
+        @Override
+        public Duration getDelayWhenNoAssignment() {
+            return Duration.ofMillis(100);
+        }
+    }
+
+    @Test
+    public void aDedicatedThreadWaitsAfterAFailedCycle() throws Exception {
+        val loop = new FailingLoop();
+        ExecutorThreads.dedicated().start(loop);
+        Thread.sleep(350);
+        loop.running = false;
+
+        assertTrue(loop.finished.await(5, TimeUnit.SECONDS));
+        assertTrue("cycles: " + loop.cycles.get(), loop.cycles.get() <= 5);
+    }
+
+    @Test
+    public void anInterruptedDedicatedThreadStopsTheExecutor() throws Exception {
+        val loop = new FailingLoop();
+        ExecutorThreads.dedicated().start(loop);
+        while (loop.thread.get() == null) {
+            Thread.sleep(10);
+        }
+
+        loop.thread.get().interrupt();
+        assertTrue(loop.finished.await(5, TimeUnit.SECONDS));
+        val cycles = loop.cycles.get();
+        Thread.sleep(200);
+        assertEquals(cycles, loop.cycles.get());
+    }
+
+    @Test
+    public void aPooledExecutorWaitsAfterAFailedCycle() throws Exception {
+        val loop = new FailingLoop();
+        try (val threads = ExecutorThreads.pooled(2)) {
+            threads.start(loop);
+            Thread.sleep(350);
+            loop.running = false;
+            assertTrue(loop.finished.await(5, TimeUnit.SECONDS));
+        }
+        assertTrue("cycles: " + loop.cycles.get(), loop.cycles.get() <= 5);
+    }
+}
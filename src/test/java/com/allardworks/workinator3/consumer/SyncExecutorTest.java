@@ -0,0 +1,84 @@
+package com.allardworks.workinator3.consumer;
+
+import com.allardworks.workinator3.coordinator.memory.MemoryWorkinator;
+import com.allardworks.workinator3.core.ConsumerConfiguration;
+import com.allardworks.workinator3.core.ConsumerId;
+import com.allardworks.workinator3.core.DelegatingWorkinator;
+import com.allardworks.workinator3.core.WorkerId;
+import com.allardworks.workinator3.core.commands.CreatePartitionCommand;
+import com.allardworks.workinator3.core.commands.RegisterConsumerCommand;
+import com.allardworks.workinator3.core.commands.SetPartitionStatusCommand;
+import lombok.val;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertTrue;
+
+public class SyncExecutorTest {
+    /**
+     * Counts down when a worker reports that its partition is out of work.
+     */
+    private static class RecordingWorkinator extends DelegatingWorkinator {
+        private final CountDownLatch outOfWork = new CountDownLatch(1);
+
+        RecordingWorkinator() {
+            super(new MemoryWorkinator());
+        }
+
+        @Override
+        public void setPartitionStatus(final SetPartitionStatusCommand command) {
+            super.setPartitionStatus(command);
+            if (!command.isHasWork()) {
+                outOfWork.countDown();
+            }
+        }
+    }
+
+    private RecordingWorkinator workinator;
+    private ScheduledExecutorService scheduler;
+    private SyncExecutor executor;
+
+    @Before
+    public void setUp() throws Exception {
+        workinator = new RecordingWorkinator();
+        workinator.createPartition(CreatePartitionCommand.builder().partitionKey("a").maxWorkerCount(1).build());
+        scheduler = Executors.newSingleThreadScheduledExecutor();
+    }
+
+    @After
+    public void tearDown() {
+        if (executor != null) {
+            executor.stop();
+        }
+        scheduler.shutdownNow();
+    }
+
+    private void start(final SyncWorkerFactory workerFactory) throws Exception {
+        val consumer = workinator.registerConsumer(RegisterConsumerCommand.builder().id(new ConsumerId("consumer")).build());
+        val configuration = new ConsumerConfiguration();
+        configuration.setMinWorkTime(Duration.ofHours(1));
+        executor = new SyncExecutor(new WorkerId(consumer, 1), workinator, configuration, workerFactory, scheduler, new WorkerMeter());
+        executor.start();
+    }
+
+    @Test
+    public void aWorkerThatFailsToStartIsCheckedRightAway() throws Exception {
+        start(assignment -> context -> {
+            throw new IllegalStateException("can't start");
+        });
+        assertTrue(workinator.outOfWork.await(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void aWorkerWithoutWorkIsCheckedRightAway() throws Exception {
+        start(assignment -> context -> context.setHasWork(false));
+        assertTrue(workinator.outOfWork.await(5, TimeUnit.SECONDS));
+    }
+}
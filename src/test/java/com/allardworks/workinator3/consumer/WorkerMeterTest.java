@@ -0,0 +1,53 @@
+package com.allardworks.workinator3.consumer;
+
+import com.allardworks.workinator3.coordinator.memory.MemoryWorkinator;
+import com.allardworks.workinator3.core.*;
+import com.allardworks.workinator3.core.commands.CreatePartitionCommand;
+import com.allardworks.workinator3.core.commands.RegisterConsumerCommand;
+import com.allardworks.workinator3.core.commands.SetPartitionStatusCommand;
+import lombok.val;
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static com.allardworks.workinator3.core.AssignmentRules.RULE5;
+import static org.junit.Assert.assertEquals;
+
+public class WorkerMeterTest {
+    @Test
+    public void keepingAPartitionWithoutWorkIsIdle() throws Exception {
+        val workinator = new MemoryWorkinator();
+        workinator.createPartition(CreatePartitionCommand.builder().partitionKey("a").maxWorkerCount(1).build());
+        val consumer = workinator.registerConsumer(RegisterConsumerCommand.builder().id(new ConsumerId("consumer")).maxWorkerCount(1).build());
+        val status = new WorkerStatus(new WorkerId(consumer, 0));
+        val meter = new WorkerMeter();
+
+        val first = workinator.getAssignment(status);
+        meter.assignment(first);
+        status.setCurrentAssignment(first);
+        workinator.setPartitionStatus(SetPartitionStatusCommand.builder().partitionKey("a").hasWork(false).receipt(first.getReceipt()).build());
+
+        val kept = workinator.getAssignment(status);
+        assertEquals(RULE5, kept.getRuleName());
+        meter.assignment(kept);
+        meter.assignment(null);
+
+        val sample = meter.sample();
+        assertEquals(1, sample.getAssigned());
+        assertEquals(2, sample.getIdle());
+    }
+
+    @Test
+    public void aGroupIsBusyIfAnyOfItsAssignmentsIs() {
+        val meter = new WorkerMeter();
+        val kept = new Assignment(null, "a", "1", RULE5, null);
+        val busy = new Assignment(null, "b", "2", AssignmentRules.RULE3, null);
+
+        meter.assignments(new AssignmentGroup(null, Arrays.asList(kept, kept)));
+        meter.assignments(new AssignmentGroup(null, Arrays.asList(kept, busy)));
+
+        val sample = meter.sample();
+        assertEquals(1, sample.getAssigned());
+        assertEquals(1, sample.getIdle());
+    }
+}
@@ -0,0 +1,103 @@
+package com.allardworks.workinator3.consumer;
+
+import com.allardworks.workinator3.coordinator.memory.MemoryWorkinator;
+import com.allardworks.workinator3.core.DelegatingWorkinator;
+import com.allardworks.workinator3.core.commands.CreatePartitionCommand;
+import com.allardworks.workinator3.core.commands.SetPartitionStatusCommand;
+import lombok.val;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class WriteBehindWorkinatorTest {
+    /**
+     * Blocks the writes for partition "slow" until released.
+     */
+    private static class SlowWorkinator extends DelegatingWorkinator {
+        private final CountDownLatch slowStarted = new CountDownLatch(1);
+        private final CountDownLatch releaseSlow = new CountDownLatch(1);
+        private final AtomicInteger batches = new AtomicInteger();
+
+        SlowWorkinator() {
+            super(new MemoryWorkinator());
+        }
+
+        @Override
+        public void setPartitionStatus(final SetPartitionStatusCommand command) {
+            if (command.getPartitionKey().equals("slow")) {
+                slowStarted.countDown();
+                try {
+                    releaseSlow.await();
+                } catch (final InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            super.setPartitionStatus(command);
+        }
+
+        @Override
+        public void setPartitionStatuses(final List<SetPartitionStatusCommand> commands) {
+            batches.incrementAndGet();
+            super.setPartitionStatuses(commands);
+        }
+    }
+
+    private SlowWorkinator remote;
+    private WriteBehindWorkinator workinator;
+
+    @Before
+    public void setUp() throws Exception {
+        remote = new SlowWorkinator();
+        for (val key : new String[]{"slow", "fast"}) {
+            remote.createPartition(CreatePartitionCommand.builder().partitionKey(key).maxWorkerCount(1).build());
+        }
+        workinator = new WriteBehindWorkinator(remote, Duration.ofHours(1), Duration.ofHours(1));
+        workinator.start();
+    }
+
+    @After
+    public void tearDown() {
+        remote.releaseSlow.countDown();
+        workinator.stop();
+    }
+
+    private static SetPartitionStatusCommand status(final String key, final boolean hasWork) {
+        return SetPartitionStatusCommand.builder().partitionKey(key).hasWork(hasWork).build();
+    }
+
+    @Test
+    public void aSlowWriteDoesntHoldUpOtherPartitions() throws Exception {
+        val writer = new Thread(() -> workinator.setPartitionStatus(status("slow", true)));
+        writer.start();
+        assertTrue(remote.slowStarted.await(5, TimeUnit.SECONDS));
+
+        val start = System.nanoTime();
+        workinator.setPartitionStatus(status("fast", true));
+        workinator.setPartitionStatus(status("fast", false));
+        workinator.flush();
+        assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(2));
+        assertEquals(1, remote.batches.get());
+
+        remote.releaseSlow.countDown();
+        writer.join(5000);
+    }
+
+    @Test
+    public void unchangedStatusesArentWrittenAgain() {
+        workinator.setPartitionStatus(status("fast", false));
+        workinator.setPartitionStatus(status("fast", false));
+        workinator.flush();
+        workinator.setPartitionStatus(status("fast", false));
+        workinator.flush();
+
+        assertEquals(1, remote.batches.get());
+    }
+}
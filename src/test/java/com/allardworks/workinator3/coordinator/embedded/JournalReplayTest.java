@@ -0,0 +1,129 @@
+package com.allardworks.workinator3.coordinator.embedded;
+
+import com.allardworks.workinator3.coordinator.memory.MemoryJournal;
+import com.allardworks.workinator3.coordinator.memory.MemoryWorkinator;
+import com.allardworks.workinator3.core.*;
+import com.allardworks.workinator3.core.commands.CreatePartitionCommand;
+import com.allardworks.workinator3.core.commands.RegisterConsumerCommand;
+import com.allardworks.workinator3.core.commands.ReleaseAssignmentCommand;
+import com.allardworks.workinator3.core.commands.SetPartitionStatusCommand;
+import lombok.val;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Clock;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.*;
+
+public class JournalReplayTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private EmbeddedConfiguration configuration;
+    private final List<EmbeddedWorkinator> opened = new ArrayList<>();
+
+    @Before
+    public void setUp() throws Exception {
+        configuration = new EmbeddedConfiguration();
+        configuration.setDirectory(folder.getRoot().getAbsolutePath());
+        configuration.setSegmentSize(1024 * 1024);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        for (int i = opened.size() - 1; i >= 0; i--) {
+            opened.get(i).close();
+        }
+    }
+
+    /**
+     * Opens the workinator on the directory, without closing the previous one, like after a crash.
+     */
+    private EmbeddedWorkinator open() throws Exception {
+        val workinator = new EmbeddedWorkinator(configuration);
+        opened.add(workinator);
+        return workinator;
+    }
+
+    private static void createPartition(final Workinator workinator, final String key) throws Exception {
+        workinator.createPartition(CreatePartitionCommand.builder().partitionKey(key).maxIdleTimeSeconds(60).maxWorkerCount(2).build());
+    }
+
+    private static PartitionInfo getPartition(final Workinator workinator, final String key) {
+        return workinator.getPartitions().stream().filter(p -> p.getPartitionKey().equals(key)).findFirst().orElse(null);
+    }
+
+    @Test
+    public void theLogIsReplayedAfterACrash() throws Exception {
+        val first = open();
+        createPartition(first, "a");
+        createPartition(first, "b");
+        createPartition(first, "c");
+        first.setPartitionStatus(SetPartitionStatusCommand.builder().partitionKey("b").hasWork(true).backlog(42).build());
+        first.deletePartitions(Stream.of("c"));
+
+        val consumer = first.registerConsumer(RegisterConsumerCommand.builder().id(new ConsumerId("consumer")).maxWorkerCount(2).build());
+        val kept = first.getAssignment(new WorkerStatus(new WorkerId(consumer, 1)));
+        val released = first.getAssignment(new WorkerStatus(new WorkerId(consumer, 2)));
+        first.releaseAssignment(new ReleaseAssignmentCommand(released));
+
+        val second = open();
+        assertEquals(2, second.getPartitions().size());
+        assertNull(getPartition(second, "c"));
+
+        val b = getPartition(second, "b");
+        assertTrue(b.isHasMoreWork());
+        assertEquals(42, b.getBacklog());
+
+        val held = getPartition(second, kept.getPartitionKey());
+        assertEquals(1, held.getCurrentWorkerCount());
+        assertEquals(0, getPartition(second, released.getPartitionKey()).getCurrentWorkerCount());
+    }
+
+    @Test
+    public void theLogAfterTheSnapshotIsReplayed() throws Exception {
+        val first = open();
+        createPartition(first, "a");
+        first.snapshot();
+        createPartition(first, "b");
+        first.setPartitionStatus(SetPartitionStatusCommand.builder().partitionKey("a").hasWork(true).build());
+
+        val second = open();
+        assertEquals(2, second.getPartitions().size());
+        assertTrue(getPartition(second, "a").isHasMoreWork());
+    }
+
+    /**
+     * The snapshot runs after the partition's creation is journaled, and before the create returns.
+     * The snapshot deletes the segment with the create, so the partition has to be in the snapshot.
+     */
+    @Test
+    public void aSnapshotDuringACreateKeepsThePartition() throws Exception {
+        val journal = new EmbeddedJournal(configuration);
+        val target = new MemoryWorkinator[1];
+        target[0] = new MemoryWorkinator(Clock.systemUTC(), configuration.getLeaseDuration(), new MemoryJournal() {
+            @Override
+            public void partitionCreated(final PartitionConfiguration partition, final long now) {
+                journal.partitionCreated(partition, now);
+                try {
+                    journal.snapshot(target[0]);
+                } catch (final IOException ex) {
+                    throw new UncheckedIOException(ex);
+                }
+            }
+        });
+        journal.open(target[0]);
+        createPartition(target[0], "a");
+        journal.close();
+
+        assertNotNull(getPartition(open(), "a"));
+    }
+}
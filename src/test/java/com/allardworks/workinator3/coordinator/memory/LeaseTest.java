@@ -0,0 +1,90 @@
+package com.allardworks.workinator3.coordinator.memory;
+
+import com.allardworks.workinator3.core.*;
+import com.allardworks.workinator3.core.commands.*;
+import lombok.val;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.time.Duration;
+
+import static org.junit.Assert.*;
+
+public class LeaseTest {
+    private MutableClock clock;
+    private MemoryWorkinator workinator;
+    private ConsumerRegistration consumer;
+
+    @Before
+    public void setUp() throws Exception {
+        clock = new MutableClock();
+        workinator = new MemoryWorkinator(clock, Duration.ofSeconds(60));
+        consumer = workinator.registerConsumer(RegisterConsumerCommand.builder().id(new ConsumerId("consumer")).maxWorkerCount(10).build());
+        workinator.createPartition(CreatePartitionCommand.builder().partitionKey("a").maxIdleTimeSeconds(600).maxWorkerCount(1).build());
+    }
+
+    private WorkerStatus worker(final int number) {
+        return new WorkerStatus(new WorkerId(consumer, number));
+    }
+
+    private PartitionInfo getPartition() {
+        return workinator.getPartitions().get(0);
+    }
+
+    private void setHasWork(final boolean hasWork, final String receipt) {
+        workinator.setPartitionStatus(SetPartitionStatusCommand.builder().partitionKey("a").hasWork(hasWork).receipt(receipt).build());
+    }
+
+    @Test
+    public void anExpiredLeaseIsReleased() {
+        val first = workinator.getAssignment(worker(1));
+        assertNotNull(first);
+        assertNull(workinator.getAssignment(worker(2)));
+
+        clock.advanceSeconds(61);
+        val second = workinator.getAssignment(worker(2));
+        assertNotNull(second);
+        assertNotEquals(first.getReceipt(), second.getReceipt());
+        assertEquals(1, getPartition().getCurrentWorkerCount());
+        assertEquals(1, workinator.getConsumers().get(0).getCurrentWorkerCount());
+    }
+
+    @Test
+    public void anExpiredLeaseCantBeRenewed() {
+        val assignment = workinator.getAssignment(worker(1));
+        setHasWork(true, assignment.getReceipt());
+
+        clock.advanceSeconds(30);
+        val renewed = workinator.renewLease(new RenewLeaseCommand(assignment));
+        assertNotNull(renewed);
+
+        clock.advanceSeconds(61);
+        assertNull(workinator.renewLease(new RenewLeaseCommand(renewed)));
+    }
+
+    @Test
+    public void aRenewalMovesTheLease() {
+        val assignment = workinator.getAssignment(worker(1));
+        setHasWork(true, assignment.getReceipt());
+
+        clock.advanceSeconds(50);
+        assertNotNull(workinator.renewLease(new RenewLeaseCommand(assignment)));
+
+        // past the first lease, but not the renewed one.
+        clock.advanceSeconds(20);
+        assertNull(workinator.getAssignment(worker(2)));
+        assertEquals(1, getPartition().getCurrentWorkerCount());
+    }
+
+    @Test
+    public void aStatusForAReleasedAssignmentIsIgnored() {
+        val assignment = workinator.getAssignment(worker(1));
+        workinator.releaseAssignment(new ReleaseAssignmentCommand(assignment));
+
+        setHasWork(true, assignment.getReceipt());
+        assertFalse(getPartition().isHasMoreWork());
+
+        setHasWork(true, null);
+        assertTrue(getPartition().isHasMoreWork());
+    }
+}
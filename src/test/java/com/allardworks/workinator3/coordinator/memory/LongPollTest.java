@@ -0,0 +1,44 @@
+package com.allardworks.workinator3.coordinator.memory;
+
+import com.allardworks.workinator3.core.ConsumerId;
+import com.allardworks.workinator3.core.WorkerId;
+import com.allardworks.workinator3.core.WorkerStatus;
+import com.allardworks.workinator3.core.commands.CreatePartitionCommand;
+import com.allardworks.workinator3.core.commands.RegisterConsumerCommand;
+import lombok.val;
+import org.junit.Test;
+
+import java.time.Duration;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class LongPollTest {
+    @Test
+    public void aWaitingWorkerGetsTheNewPartition() throws Exception {
+        val workinator = new MemoryWorkinator();
+        val consumer = workinator.registerConsumer(RegisterConsumerCommand.builder().id(new ConsumerId("consumer")).build());
+        val executor = Executors.newSingleThreadExecutor();
+        try {
+            val waiting = executor.submit(() -> workinator.getAssignment(new WorkerStatus(new WorkerId(consumer, 1)), Duration.ofSeconds(30)));
+            Thread.sleep(100);
+            assertFalse(waiting.isDone());
+
+            workinator.createPartition(CreatePartitionCommand.builder().partitionKey("a").build());
+            assertEquals("a", waiting.get(5, TimeUnit.SECONDS).getPartitionKey());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void theWaitEndsAfterMaxWait() throws Exception {
+        val workinator = new MemoryWorkinator();
+        val consumer = workinator.registerConsumer(RegisterConsumerCommand.builder().id(new ConsumerId("consumer")).build());
+        val start = System.nanoTime();
+        assertNull(workinator.getAssignment(new WorkerStatus(new WorkerId(consumer, 1)), Duration.ofMillis(200)));
+        val waited = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        assertTrue("waited " + waited, waited >= 150 && waited < 5000);
+    }
+}
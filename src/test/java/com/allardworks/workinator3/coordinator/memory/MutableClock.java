@@ -0,0 +1,37 @@
+package com.allardworks.workinator3.coordinator.memory;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+
+/**
+ * A clock that only moves when the test moves it.
+ */
+public class MutableClock extends Clock {
+    private volatile long millis = 1_000_000;
+
+    public void advanceSeconds(final long seconds) {
+        millis += seconds * 1000;
+    }
+
+    @Override
+    public ZoneId getZone() {
+        return ZoneOffset.UTC;
+    }
+
+    @Override
+    public Clock withZone(final ZoneId zone) {
+        return this;
+    }
+
+    @Override
+    public Instant instant() {
+        return Instant.ofEpochMilli(millis);
+    }
+
+    @Override
+    public long millis() {
+        return millis;
+    }
+}
@@ -0,0 +1,49 @@
+package com.allardworks.workinator3.coordinator.memory;
+
+import com.allardworks.workinator3.core.PartitionConfiguration;
+import lombok.val;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class PartitionTableTest {
+    private static MemoryPartition add(final PartitionTable table, final String key) {
+        val configuration = PartitionConfiguration.builder().partitionKey(key).maxWorkerCount(1).build();
+        return table.add(key, (handle, generation) -> new MemoryPartition(handle, generation, configuration, 0));
+    }
+
+    @Test
+    public void aDeletedPartitionsHandleIsReused() {
+        val table = new PartitionTable();
+        val a = add(table, "a");
+        assertNotNull(add(table, "b"));
+        assertNull(add(table, "a"));
+
+        assertSame(a, table.remove("a"));
+        assertNull(table.get("a"));
+
+        val c = add(table, "c");
+        assertEquals(a.getHandle(), c.getHandle());
+        assertEquals(a.getGeneration() + 1, c.getGeneration());
+        assertSame(c, table.get("c"));
+        assertNull(table.get("a"));
+        assertEquals(2, table.size());
+    }
+
+    @Test
+    public void creatingAndDeletingPartitionsDoesntGrowTheTable() {
+        val table = new PartitionTable();
+        for (int round = 0; round < 10; round++) {
+            for (int i = 0; i < 100; i++) {
+                assertNotNull(add(table, round + "-" + i));
+                assertNull(add(table, round + "-" + i));
+            }
+            for (int i = 0; i < 100; i++) {
+                assertNotNull(table.remove(round + "-" + i));
+            }
+        }
+
+        assertEquals(0, table.size());
+        assertTrue(add(table, "last").getHandle() < 100);
+    }
+}
@@ -0,0 +1,65 @@
+package com.allardworks.workinator3.coordinator.memory;
+
+import com.allardworks.workinator3.coordinator.strategy.WhatsNextAssignmentStrategy;
+import com.allardworks.workinator3.core.*;
+import com.allardworks.workinator3.core.commands.*;
+import lombok.val;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.time.Duration;
+import java.util.Date;
+
+import static org.junit.Assert.*;
+
+public class UnregisteredConsumerTest {
+    private MutableClock clock;
+    private MemoryWorkinator workinator;
+    private ConsumerRegistration consumer;
+
+    @Before
+    public void setUp() throws Exception {
+        clock = new MutableClock();
+        workinator = new MemoryWorkinator(clock, Duration.ofSeconds(60), MemoryJournal.NONE, new WhatsNextAssignmentStrategy(), Duration.ofSeconds(10));
+        consumer = workinator.registerConsumer(RegisterConsumerCommand.builder().id(new ConsumerId("consumer")).maxWorkerCount(2).build());
+        workinator.createPartition(CreatePartitionCommand.builder().partitionKey("a").maxIdleTimeSeconds(600).maxWorkerCount(2).build());
+    }
+
+    private int getWorkerCount() {
+        return workinator.getPartitions().get(0).getCurrentWorkerCount();
+    }
+
+    @Test
+    public void anUnregisteredConsumersWorkersDontGetAssignments() {
+        val status = new WorkerStatus(new WorkerId(consumer, 0));
+        status.setCurrentAssignment(workinator.getAssignment(status));
+        workinator.unregisterConsumer(new UnregisterConsumerCommand(consumer));
+        assertEquals(0, getWorkerCount());
+
+        assertNull(workinator.getAssignment(status));
+        assertNull(workinator.getAssignment(new WorkerStatus(new WorkerId(consumer, 1))));
+        assertEquals(0, getWorkerCount());
+    }
+
+    @Test
+    public void anExpiredConsumersWorkersDontGetAssignments() {
+        val status = new WorkerStatus(new WorkerId(consumer, 0));
+        status.setCurrentAssignment(workinator.getAssignment(status));
+
+        clock.advanceSeconds(11);
+        assertNull(workinator.getAssignment(status));
+        assertEquals(0, getWorkerCount());
+        assertTrue(workinator.getConsumers().isEmpty());
+    }
+
+    @Test
+    public void aClosedConsumerDoesntTakeAssignments() {
+        val memoryConsumer = new MemoryConsumer(consumer, new Date(), 2);
+        val kept = new Assignment(new WorkerId(consumer, 0), "a", "1", AssignmentRules.RULE1, new Date());
+        assertTrue(memoryConsumer.addAssignment(kept));
+
+        assertEquals(1, memoryConsumer.close().size());
+        assertFalse(memoryConsumer.addAssignment(new Assignment(new WorkerId(consumer, 1), "a", "2", AssignmentRules.RULE1, new Date())));
+        assertEquals(1, memoryConsumer.getAssignmentCount());
+    }
+}
@@ -0,0 +1,161 @@
+package com.allardworks.workinator3.coordinator.memory;
+
+import com.allardworks.workinator3.core.*;
+import com.allardworks.workinator3.core.commands.CreatePartitionCommand;
+import com.allardworks.workinator3.core.commands.RegisterConsumerCommand;
+import com.allardworks.workinator3.core.commands.ReleaseAssignmentCommand;
+import com.allardworks.workinator3.core.commands.SetPartitionStatusCommand;
+import lombok.val;
+import org.junit.Before;
+import org.junit.Test;
+
+import static com.allardworks.workinator3.core.AssignmentRules.*;
+import static org.junit.Assert.*;
+
+public class WhatsNextRulesTest {
+    private MutableClock clock;
+    private MemoryWorkinator workinator;
+    private ConsumerRegistration consumer;
+
+    @Before
+    public void setUp() throws Exception {
+        clock = new MutableClock();
+        workinator = new MemoryWorkinator(clock);
+        consumer = workinator.registerConsumer(RegisterConsumerCommand.builder().id(new ConsumerId("consumer")).maxWorkerCount(10).build());
+    }
+
+    private void createPartition(final String key, final int maxWorkerCount) throws Exception {
+        workinator.createPartition(CreatePartitionCommand.builder().partitionKey(key).maxIdleTimeSeconds(60).maxWorkerCount(maxWorkerCount).build());
+    }
+
+    private void setHasWork(final String key, final boolean hasWork) {
+        workinator.setPartitionStatus(SetPartitionStatusCommand.builder().partitionKey(key).hasWork(hasWork).build());
+    }
+
+    private WorkerStatus worker(final int number) {
+        return new WorkerStatus(new WorkerId(consumer, number));
+    }
+
+    private Assignment next(final WorkerStatus worker) {
+        val assignment = workinator.getAssignment(worker);
+        worker.setCurrentAssignment(assignment);
+        return assignment;
+    }
+
+    @Test
+    public void rule1GivesTheDuePartitionWithoutWorkersFirst() throws Exception {
+        createPartition("a", 1);
+        createPartition("b", 2);
+        setHasWork("b", true);
+        clock.advanceSeconds(30);
+        setHasWork("a", false);
+        clock.advanceSeconds(40);
+
+        // b was last checked 70 seconds ago, a 40.
+        val assignment = next(worker(1));
+        assertEquals("b", assignment.getPartitionKey());
+        assertEquals(RULE1, assignment.getRuleName());
+    }
+
+    @Test
+    public void rule2KeepsTheCurrentPartitionWhileItHasWork() throws Exception {
+        createPartition("a", 1);
+        createPartition("b", 1);
+        val worker = worker(1);
+        val first = next(worker);
+        setHasWork(first.getPartitionKey(), true);
+
+        val second = next(worker);
+        assertEquals(first.getPartitionKey(), second.getPartitionKey());
+        assertEquals(first.getReceipt(), second.getReceipt());
+        assertEquals(RULE2, second.getRuleName());
+    }
+
+    @Test
+    public void rule3AddsWorkersToAPartitionWithWorkAndCapacity() throws Exception {
+        createPartition("a", 2);
+        val first = next(worker(1));
+        assertEquals(RULE4, first.getRuleName());
+        setHasWork("a", true);
+        createPartition("b", 1);
+
+        val second = next(worker(2));
+        assertEquals("a", second.getPartitionKey());
+        assertEquals(RULE3, second.getRuleName());
+
+        // a is full, so the third worker goes to b.
+        val third = next(worker(3));
+        assertEquals("b", third.getPartitionKey());
+        assertEquals(RULE4, third.getRuleName());
+    }
+
+    @Test
+    public void rule4GivesAnyPartitionWithoutWorkers() throws Exception {
+        createPartition("a", 1);
+        createPartition("b", 1);
+
+        val first = next(worker(1));
+        val second = next(worker(2));
+        assertEquals(RULE4, first.getRuleName());
+        assertEquals(RULE4, second.getRuleName());
+        assertNotEquals(first.getPartitionKey(), second.getPartitionKey());
+        assertNull(next(worker(3)));
+    }
+
+    @Test
+    public void rule5KeepsTheCurrentPartitionWhenThereIsNothingElse() throws Exception {
+        createPartition("a", 1);
+        val worker = worker(1);
+        val first = next(worker);
+        setHasWork("a", false);
+
+        val second = next(worker);
+        assertEquals("a", second.getPartitionKey());
+        assertEquals(first.getReceipt(), second.getReceipt());
+        assertEquals(RULE5, second.getRuleName());
+    }
+
+    @Test
+    public void aWorkerWithoutWorkMovesToAnIdlePartition() throws Exception {
+        createPartition("a", 1);
+        val worker = worker(1);
+        next(worker);
+        setHasWork("a", false);
+        createPartition("b", 1);
+
+        val moved = next(worker);
+        assertEquals("b", moved.getPartitionKey());
+        assertEquals(RULE4, moved.getRuleName());
+        assertEquals(0, workinator.getPartitions().stream().filter(p -> p.getPartitionKey().equals("a")).findFirst().get().getCurrentWorkerCount());
+    }
+
+    @Test
+    public void aGroupTradesAtMostOneBusyPartitionForADuePartition() throws Exception {
+        createPartition("a", 1);
+        createPartition("b", 1);
+        val status = new WorkerGroupStatus(new WorkerId(consumer, 1), 2);
+        val first = workinator.getAssignmentGroup(status);
+        assertEquals(2, first.getAssignments().size());
+        status.setCurrentGroup(first);
+        setHasWork("a", true);
+        setHasWork("b", true);
+        createPartition("c", 1);
+        createPartition("d", 1);
+        clock.advanceSeconds(61);
+
+        val second = workinator.getAssignmentGroup(status);
+        assertEquals(2, second.getAssignments().size());
+        assertEquals(1, second.getAssignments().stream().filter(x -> x.getRuleName().equals(RULE1)).count());
+        assertEquals(1, second.getAssignments().stream().filter(x -> x.getRuleName().equals(RULE2)).count());
+    }
+
+    @Test
+    public void releasingFreesTheSlot() throws Exception {
+        createPartition("a", 1);
+        val first = next(worker(1));
+        assertNull(next(worker(2)));
+
+        workinator.releaseAssignment(new ReleaseAssignmentCommand(first));
+        assertEquals("a", next(worker(2)).getPartitionKey());
+    }
+}
@@ -0,0 +1,73 @@
+package com.allardworks.workinator3.coordinator.sharded;
+
+import com.allardworks.workinator3.coordinator.memory.MemoryWorkinator;
+import com.allardworks.workinator3.core.BulkPartitionResult.Outcome;
+import com.allardworks.workinator3.core.CachedConfigurationWorkinator;
+import com.allardworks.workinator3.core.DelegatingWorkinator;
+import com.allardworks.workinator3.core.Workinator;
+import com.allardworks.workinator3.core.commands.CreatePartitionCommand;
+import lombok.val;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class ShardedBulkPartitionAdminTest {
+    /**
+     * A workinator that doesn't implement BulkPartitionAdmin.
+     */
+    private static class PlainWorkinator extends DelegatingWorkinator {
+        PlainWorkinator(final Workinator workinator) {
+            super(workinator);
+        }
+    }
+
+    private static Stream<CreatePartitionCommand> partitions(final int count, final int maxWorkerCount) {
+        return IntStream.range(0, count).mapToObj(i -> CreatePartitionCommand.builder().partitionKey("p" + i).maxWorkerCount(maxWorkerCount).build());
+    }
+
+    @Test
+    public void theBulkOperationsGoToTheShards() {
+        val sharded = new ShardedWorkinator(Arrays.asList(new MemoryWorkinator(), new MemoryWorkinator(), new MemoryWorkinator()));
+        assertEquals(100, sharded.createPartitions(partitions(100, 1)).getCount(Outcome.Created));
+
+        val reconfigured = sharded.reconfigurePartitions(partitions(110, 2));
+        assertEquals(100, reconfigured.getCount(Outcome.Updated));
+        assertEquals(10, reconfigured.getCount(Outcome.NotFound));
+
+        assertEquals(10, sharded.upsertPartitions(partitions(110, 2)).getCount(Outcome.Created));
+        assertEquals(110, sharded.deletePartitions(IntStream.range(0, 110).mapToObj(i -> "p" + i)).getCount(Outcome.Deleted));
+        assertEquals(0, sharded.getPartitions().size());
+    }
+
+    @Test
+    public void thePartitionsOfAShardThatCantDeleteAreReported() {
+        val plain = new PlainWorkinator(new MemoryWorkinator());
+        val sharded = new ShardedWorkinator(Arrays.asList(new MemoryWorkinator(), plain));
+        sharded.createPartitions(partitions(100, 1));
+        val onPlain = plain.getPartitions().size();
+        assertTrue(onPlain > 0 && onPlain < 100);
+
+        val result = sharded.deletePartitions(IntStream.range(0, 100).mapToObj(i -> "p" + i));
+        assertEquals(onPlain, result.getCount(Outcome.Unsupported));
+        assertEquals(onPlain, result.getKeys(Outcome.Unsupported).size());
+        assertEquals(100 - onPlain, result.getCount(Outcome.Deleted));
+        assertEquals(onPlain, sharded.getPartitions().size());
+        assertEquals(onPlain, plain.getPartitions().size());
+    }
+
+    @Test
+    public void theCacheInvalidatesWhatItPassesThrough() throws Exception {
+        val memory = new MemoryWorkinator();
+        val cached = new CachedConfigurationWorkinator(memory);
+        memory.createPartition(CreatePartitionCommand.builder().partitionKey("a").maxWorkerCount(1).build());
+        assertEquals(1, cached.getPartitionConfiguration("a").getMaxWorkerCount());
+
+        cached.reconfigurePartitions(Stream.of(CreatePartitionCommand.builder().partitionKey("a").maxWorkerCount(3).build()));
+        assertEquals(3, cached.getPartitionConfiguration("a").getMaxWorkerCount());
+    }
+}
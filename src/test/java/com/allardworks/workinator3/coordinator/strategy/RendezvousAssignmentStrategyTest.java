@@ -0,0 +1,70 @@
+package com.allardworks.workinator3.coordinator.strategy;
+
+import com.allardworks.workinator3.coordinator.memory.MemoryJournal;
+import com.allardworks.workinator3.coordinator.memory.MemoryWorkinator;
+import com.allardworks.workinator3.core.*;
+import com.allardworks.workinator3.core.commands.CreatePartitionCommand;
+import com.allardworks.workinator3.core.commands.RegisterConsumerCommand;
+import lombok.val;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.*;
+
+public class RendezvousAssignmentStrategyTest {
+    private RendezvousAssignmentStrategy strategy;
+    private MemoryWorkinator workinator;
+
+    @Before
+    public void setUp() {
+        strategy = new RendezvousAssignmentStrategy();
+        workinator = new MemoryWorkinator(Clock.systemUTC(), Duration.ofMinutes(1), MemoryJournal.NONE, strategy);
+    }
+
+    private ConsumerRegistration register(final String name, final int maxWorkerCount) throws Exception {
+        return workinator.registerConsumer(RegisterConsumerCommand.builder().id(new ConsumerId(name)).maxWorkerCount(maxWorkerCount).build());
+    }
+
+    private void create(final String... keys) {
+        workinator.createPartitions(Stream.of(keys).map(key -> CreatePartitionCommand.builder().partitionKey(key).maxWorkerCount(1).build()));
+    }
+
+    @Test
+    public void partitionChangesDontDivideThePartitionsAgain() throws Exception {
+        val a = register("a", 2);
+        val b = register("b", 2);
+        create("p1", "p2", "p3");
+        val first = new WorkerStatus(new WorkerId(a, 0));
+        first.setCurrentAssignment(workinator.getAssignment(first));
+        assertNotNull(first.getCurrentAssignment());
+        assertEquals(1, strategy.getRebalances());
+
+        create("p4", "p5");
+        assertEquals(1, strategy.getUnassignedPartitions());
+        workinator.deletePartitions(Stream.of("p1"));
+        assertEquals(0, strategy.getUnassignedPartitions());
+
+        // every slot has a partition, and only the remaining ones.
+        val assigned = new HashSet<String>();
+        for (val consumer : new ConsumerRegistration[]{a, b}) {
+            for (int worker = 0; worker < 2; worker++) {
+                val status = consumer == a && worker == 0 ? first : new WorkerStatus(new WorkerId(consumer, worker));
+                val assignment = workinator.getAssignment(status);
+                assertNotNull(assignment);
+                assigned.add(assignment.getPartitionKey());
+            }
+        }
+        assertEquals(new HashSet<>(Arrays.asList("p2", "p3", "p4", "p5")), assigned);
+        assertEquals(1, strategy.getRebalances());
+
+        register("c", 2);
+        workinator.getAssignment(first);
+        assertEquals(2, strategy.getRebalances());
+    }
+}
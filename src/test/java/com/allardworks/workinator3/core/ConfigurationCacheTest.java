@@ -0,0 +1,125 @@
+package com.allardworks.workinator3.core;
+
+import lombok.val;
+import org.junit.Test;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class ConfigurationCacheTest {
+    private final Map<String, AtomicInteger> lookups = new ConcurrentHashMap<>();
+
+    private String lookup(final String key) {
+        return key + ":" + lookups.computeIfAbsent(key, k -> new AtomicInteger()).incrementAndGet();
+    }
+
+    private int getLookupCount(final String key) {
+        val count = lookups.get(key);
+        return count == null ? 0 : count.get();
+    }
+
+    @Test
+    public void readersOfTheSameKeyShareOneLookup() throws Exception {
+        val started = new CountDownLatch(1);
+        val release = new CountDownLatch(1);
+        val cache = new ConfigurationCache<String, String>(key -> {
+            started.countDown();
+            await(release);
+            return lookup(key);
+        });
+
+        val executor = Executors.newFixedThreadPool(2);
+        try {
+            val first = executor.submit(() -> cache.getItem("a"));
+            started.await();
+            val second = executor.submit(() -> cache.getItem("a"));
+            Thread.sleep(50);
+            release.countDown();
+
+            assertEquals("a:1", first.get(5, TimeUnit.SECONDS));
+            assertEquals("a:1", second.get(5, TimeUnit.SECONDS));
+            assertEquals(1, getLookupCount("a"));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void aSlowLookupDoesNotBlockOtherKeys() throws Exception {
+        val release = new CountDownLatch(1);
+        val cache = new ConfigurationCache<String, String>(key -> {
+            if (key.equals("slow")) {
+                await(release);
+            }
+            return lookup(key);
+        });
+
+        val executor = Executors.newSingleThreadExecutor();
+        try {
+            val slow = executor.submit(() -> cache.getItem("slow"));
+            Thread.sleep(50);
+            for (int i = 0; i < 100; i++) {
+                assertEquals("key" + i + ":1", cache.getItem("key" + i));
+            }
+            assertFalse(slow.isDone());
+            release.countDown();
+            assertEquals("slow:1", slow.get(5, TimeUnit.SECONDS));
+        } finally {
+            release.countDown();
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void anItemReadNearTheEndOfItsTtlIsReloadedBeforeItExpires() throws Exception {
+        val cache = new ConfigurationCache<String, String>(this::lookup, Duration.ofMillis(500), 100);
+        assertEquals("a:1", cache.getItem("a"));
+
+        Thread.sleep(420);
+        // refreshed, but the reader gets the current value.
+        assertEquals("a:1", cache.getItem("a"));
+        assertEquals(2, getLookupCount("a"));
+        assertEquals("a:2", cache.getItem("a"));
+    }
+
+    @Test
+    public void nullsAreNotCached() {
+        val cache = new ConfigurationCache<String, String>(key -> {
+            lookup(key);
+            return null;
+        });
+        assertNull(cache.getItem("a"));
+        assertNull(cache.getItem("a"));
+        assertEquals(2, getLookupCount("a"));
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void evictionKeepsTheItemsThatAreRead() {
+        val cache = new ConfigurationCache<String, String>(this::lookup, Duration.ofMinutes(5), 100);
+        for (int i = 0; i < 5_000; i++) {
+            cache.getItem("hot" + (i % 4));
+            cache.getItem("cold" + i);
+        }
+
+        assertTrue(cache.size() <= 100);
+        for (int i = 0; i < 4; i++) {
+            assertEquals(1, getLookupCount("hot" + i));
+        }
+    }
+
+    private static void await(final CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
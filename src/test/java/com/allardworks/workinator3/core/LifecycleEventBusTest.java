@@ -0,0 +1,98 @@
+package com.allardworks.workinator3.core;
+
+import lombok.val;
+import org.junit.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class LifecycleEventBusTest {
+    @Test
+    public void publishReturnsAfterItsEventIsDeliveredByAnotherThread() throws Exception {
+        val bus = new LifecycleEventBus<String>();
+        val delivered = new CopyOnWriteArrayList<String>();
+        val slowStarted = new CountDownLatch(1);
+        val releaseSlow = new CountDownLatch(1);
+        bus.subscribe(event -> {
+            if (event.equals("slow")) {
+                slowStarted.countDown();
+                try {
+                    releaseSlow.await();
+                } catch (final InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            delivered.add(event);
+        });
+
+        val publisher = new Thread(() -> bus.publish("slow"));
+        publisher.start();
+        assertTrue(slowStarted.await(5, TimeUnit.SECONDS));
+
+        // the other thread is delivering, so it delivers this one too.
+        val releaser = new Thread(() -> {
+            try {
+                Thread.sleep(200);
+            } catch (final InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+            releaseSlow.countDown();
+        });
+        releaser.start();
+        bus.publish("fast");
+
+        assertTrue(delivered.contains("fast"));
+        publisher.join(5000);
+        releaser.join(5000);
+    }
+
+    @Test
+    public void aTransitionMadeByAnAfterTransitionHandlerDoesntWaitForItself() {
+        val status = new ServiceStatus();
+        status.getEventHandlers().onPostStopping(t -> status.stopped());
+        status.starting();
+        status.started();
+
+        assertTrue(status.stopping());
+        assertEquals(Status.Stopped, status.getStatus());
+    }
+
+    @Test
+    public void aHandlerCanSubscribeWhileEventsAreDelivered() {
+        val bus = new LifecycleEventBus<String>();
+        final List<String> delivered = new CopyOnWriteArrayList<>();
+        bus.subscribe(event -> bus.subscribe(e -> delivered.add("added:" + e)));
+        bus.subscribe(delivered::add);
+
+        bus.publish("a");
+        assertEquals(1, delivered.size());
+        bus.publish("b");
+        assertTrue(delivered.contains("added:b"));
+    }
+
+    @Test
+    public void aSlowHandlerDelaysTheOthersByAtMostTheTimeout() throws Exception {
+        try (val dispatcher = new LifecycleDispatcher(1, 10, Duration.ofMillis(100))) {
+            val bus = new LifecycleEventBus<String>(dispatcher);
+            val releaseSlow = new CountDownLatch(1);
+            val fastDelivered = new CountDownLatch(1);
+            bus.subscribe(0, event -> {
+                try {
+                    releaseSlow.await();
+                } catch (final InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+            bus.subscribe(1, event -> fastDelivered.countDown());
+
+            bus.publish("event");
+            assertTrue(fastDelivered.await(2, TimeUnit.SECONDS));
+            releaseSlow.countDown();
+        }
+    }
+}
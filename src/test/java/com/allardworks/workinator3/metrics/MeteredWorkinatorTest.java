@@ -0,0 +1,55 @@
+package com.allardworks.workinator3.metrics;
+
+import com.allardworks.workinator3.coordinator.memory.MemoryWorkinator;
+import com.allardworks.workinator3.core.*;
+import com.allardworks.workinator3.core.commands.CreatePartitionCommand;
+import com.allardworks.workinator3.core.commands.RegisterConsumerCommand;
+import com.allardworks.workinator3.core.commands.ReleaseAssignmentGroupCommand;
+import com.allardworks.workinator3.core.commands.SetPartitionStatusCommand;
+import lombok.val;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+
+public class MeteredWorkinatorTest {
+    private MeteredWorkinator workinator;
+    private ConsumerRegistration consumer;
+
+    @Before
+    public void setUp() throws Exception {
+        workinator = new MeteredWorkinator(new MemoryWorkinator());
+        consumer = workinator.registerConsumer(RegisterConsumerCommand.builder().id(new ConsumerId("consumer")).maxWorkerCount(10).build());
+        for (val key : new String[]{"a", "b"}) {
+            workinator.createPartition(CreatePartitionCommand.builder().partitionKey(key).maxWorkerCount(1).build());
+        }
+    }
+
+    @Test
+    public void theGroupCallsAreTimedAndCounted() {
+        val status = new WorkerGroupStatus(new WorkerId(consumer, 1), 2);
+        val group = workinator.getAssignmentGroup(status);
+        assertEquals(2, group.getAssignments().size());
+
+        workinator.releaseAssignmentGroup(new ReleaseAssignmentGroupCommand(group));
+
+        val metrics = workinator.getMetrics();
+        assertEquals(1, metrics.getGetAssignmentGroupLatency().getCount());
+        assertEquals(1, metrics.getReleaseAssignmentGroupLatency().getCount());
+        assertEquals(2, metrics.getReleasedCount());
+    }
+
+    @Test
+    public void theBatchStatusWriteIsTimedAndCounted() {
+        workinator.setPartitionStatuses(Arrays.asList(
+                SetPartitionStatusCommand.builder().partitionKey("a").hasWork(true).build(),
+                SetPartitionStatusCommand.builder().partitionKey("b").hasWork(false).build()));
+
+        val metrics = workinator.getMetrics();
+        assertEquals(1, metrics.getSetPartitionStatusesLatency().getCount());
+        assertEquals(0, metrics.getSetPartitionStatusLatency().getCount());
+        assertEquals(2, metrics.getPartitionStatusCount());
+    }
+}
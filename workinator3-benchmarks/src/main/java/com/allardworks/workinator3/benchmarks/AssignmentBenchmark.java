@@ -0,0 +1,110 @@
+package com.allardworks.workinator3.benchmarks;
+
+import com.allardworks.workinator3.coordinator.memory.MemoryWorkinator;
+import com.allardworks.workinator3.core.*;
+import com.allardworks.workinator3.core.commands.CreatePartitionCommand;
+import com.allardworks.workinator3.core.commands.RegisterConsumerCommand;
+import com.allardworks.workinator3.core.commands.ReleaseAssignmentCommand;
+import com.allardworks.workinator3.core.commands.SetPartitionStatusCommand;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * getAssignment/releaseAssignment throughput and latency
+ * across partition count x consumer count x maxWorkerCount.
+ *
+ * Each benchmark thread is a worker of one of the consumers.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(4)
+public class AssignmentBenchmark {
+    @State(Scope.Benchmark)
+    public static class Coordinator {
+        @Param({"1000", "10000", "100000"})
+        public int partitionCount;
+
+        @Param({"1", "10", "100"})
+        public int consumerCount;
+
+        @Param({"1", "5"})
+        public int maxWorkerCount;
+
+        public Workinator workinator;
+        public List<ConsumerRegistration> consumers;
+        public final AtomicInteger nextWorker = new AtomicInteger();
+
+        @Setup(Level.Trial)
+        public void setup() throws Exception {
+            workinator = new MemoryWorkinator();
+            for (int i = 0; i < partitionCount; i++) {
+                final String key = "partition-" + i;
+                workinator.createPartition(CreatePartitionCommand
+                        .builder()
+                        .partitionKey(key)
+                        .maxWorkerCount(maxWorkerCount)
+                        .maxIdleTimeSeconds(1)
+                        .build());
+
+                // half of the partitions have work, so rules 2 and 3 get exercised too.
+                workinator.setPartitionStatus(SetPartitionStatusCommand.builder().partitionKey(key).hasWork(i % 2 == 0).build());
+            }
+
+            consumers = new ArrayList<>();
+            for (int i = 0; i < consumerCount; i++) {
+                consumers.add(workinator.registerConsumer(RegisterConsumerCommand
+                        .builder()
+                        .id(new ConsumerId("consumer-" + i))
+                        .maxWorkerCount(maxWorkerCount)
+                        .build()));
+            }
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() throws Exception {
+            workinator.close();
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Worker {
+        public WorkerStatus status;
+
+        @Setup(Level.Trial)
+        public void setup(final Coordinator coordinator) {
+            final int worker = coordinator.nextWorker.getAndIncrement();
+            final ConsumerRegistration consumer = coordinator.consumers.get(worker % coordinator.consumerCount);
+            status = new WorkerStatus(new WorkerId(consumer, worker));
+        }
+    }
+
+    /**
+     * A worker that keeps asking for its next assignment, the way an executor does.
+     */
+    @Benchmark
+    public Assignment getAssignment(final Coordinator coordinator, final Worker worker) {
+        final Assignment assignment = coordinator.workinator.getAssignment(worker.status);
+        worker.status.setCurrentAssignment(assignment);
+        return assignment;
+    }
+
+    /**
+     * A worker that gets an assignment and immediately releases it.
+     */
+    @Benchmark
+    public void getAndReleaseAssignment(final Coordinator coordinator, final Worker worker, final Blackhole blackhole) {
+        final Assignment assignment = coordinator.workinator.getAssignment(worker.status);
+        blackhole.consume(assignment);
+        if (assignment != null) {
+            coordinator.workinator.releaseAssignment(new ReleaseAssignmentCommand(assignment));
+        }
+    }
+}
@@ -0,0 +1,36 @@
+package com.allardworks.workinator3.benchmarks;
+
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the benchmarks and writes the results as JSON, so they can be
+ * compared between releases.
+ *
+ * Accepts the usual JMH command line options. IE: to run only the cache benchmarks:
+ * <pre>
+ * java -jar target/benchmarks.jar ConfigurationCache -rff cache.json
+ * </pre>
+ * The results go to workinator3-benchmarks.json unless -rff is given.
+ */
+public final class BenchmarkRunner {
+    private BenchmarkRunner() {
+    }
+
+    public static void main(final String[] args) throws RunnerException, CommandLineOptionException {
+        final CommandLineOptions commandLine = new CommandLineOptions(args);
+        final OptionsBuilder options = new OptionsBuilder();
+        options.parent(commandLine);
+        if (!commandLine.getResultFormat().hasValue()) {
+            options.resultFormat(ResultFormatType.JSON);
+        }
+        if (!commandLine.getResult().hasValue()) {
+            options.result("workinator3-benchmarks.json");
+        }
+        new Runner(options.build()).run();
+    }
+}
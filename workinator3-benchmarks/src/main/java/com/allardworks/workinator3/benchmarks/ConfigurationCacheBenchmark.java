@@ -0,0 +1,65 @@
+package com.allardworks.workinator3.benchmarks;
+
+import com.allardworks.workinator3.core.ConfigurationCache;
+import com.allardworks.workinator3.core.PartitionConfiguration;
+import org.openjdk.jmh.annotations.*;
+
+import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * ConfigurationCache.getItem under contention.
+ * StupidCache was replaced by ConfigurationCache, so this is the cache in front of
+ * Workinator.getPartitionConfiguration.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ConfigurationCacheBenchmark {
+    @Param({"100", "10000", "100000"})
+    public int keyCount;
+
+    /**
+     * When smaller than the key count, reads cause loads and evictions.
+     */
+    @Param({"1000", "100000"})
+    public int maximumSize;
+
+    private String[] keys;
+    private ConfigurationCache<String, PartitionConfiguration> cache;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        keys = new String[keyCount];
+        for (int i = 0; i < keyCount; i++) {
+            keys[i] = "partition-" + i;
+        }
+
+        cache = new ConfigurationCache<>(
+                key -> PartitionConfiguration.builder().partitionKey(key).maxWorkerCount(1).maxIdleTimeSeconds(5).build(),
+                Duration.ofMinutes(5),
+                maximumSize);
+        cache.start();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        cache.stop();
+    }
+
+    @Benchmark
+    @Threads(1)
+    public PartitionConfiguration getItemSingleThread() {
+        return cache.getItem(keys[ThreadLocalRandom.current().nextInt(keyCount)]);
+    }
+
+    @Benchmark
+    @Threads(8)
+    public PartitionConfiguration getItemContended() {
+        return cache.getItem(keys[ThreadLocalRandom.current().nextInt(keyCount)]);
+    }
+}
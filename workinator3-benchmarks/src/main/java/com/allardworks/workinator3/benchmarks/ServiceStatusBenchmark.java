@@ -0,0 +1,41 @@
+package com.allardworks.workinator3.benchmarks;
+
+import com.allardworks.workinator3.core.ServiceStatus;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The cost of a full start/stop cycle of a ServiceStatus
+ * (Stopped > Starting > Started > Stopping > Stopped) with many registered handlers.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ServiceStatusBenchmark {
+    @Param({"0", "10", "100", "1000"})
+    public int handlerCount;
+
+    private ServiceStatus status;
+
+    @Setup(Level.Trial)
+    public void setup(final Blackhole blackhole) {
+        status = new ServiceStatus();
+        for (int i = 0; i < handlerCount; i++) {
+            status.getEventHandlers().onPostStarted(blackhole::consume);
+        }
+    }
+
+    @Benchmark
+    @Threads(1)
+    public boolean startStopCycle() {
+        return status.starting()
+                & status.started()
+                & status.stopping()
+                & status.stopped();
+    }
+}
@@ -0,0 +1,130 @@
+package com.allardworks.workinator3.benchmarks;
+
+import com.allardworks.workinator3.coordinator.memory.MemoryWorkinator;
+import com.allardworks.workinator3.coordinator.sharded.ShardedWorkinator;
+import com.allardworks.workinator3.core.*;
+import com.allardworks.workinator3.core.commands.CreatePartitionCommand;
+import com.allardworks.workinator3.core.commands.RegisterConsumerCommand;
+import com.allardworks.workinator3.core.commands.ReleaseAssignmentCommand;
+import com.allardworks.workinator3.core.commands.SetPartitionStatusCommand;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * getAssignment/releaseAssignment throughput across shard counts.
+ *
+ * Each shard is a MemoryWorkinator behind a simulated store that can only
+ * process one write at a time, and each write waits storeMicros.
+ * With a single store, throughput is capped at 1 / storeMicros; it should grow
+ * with the number of shards.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(16)
+public class ShardedAssignmentBenchmark {
+    /**
+     * A store that serializes the writes, and waits a fixed amount of time per write, like a round trip.
+     */
+    public static class SimulatedStore extends DelegatingWorkinator {
+        private final long writeNanos;
+
+        public SimulatedStore(final Workinator workinator, final long writeMicros) {
+            super(workinator);
+            this.writeNanos = TimeUnit.MICROSECONDS.toNanos(writeMicros);
+        }
+
+        private synchronized void write() {
+            LockSupport.parkNanos(writeNanos);
+        }
+
+        @Override
+        public Assignment getAssignment(final WorkerStatus status) {
+            write();
+            return super.getAssignment(status);
+        }
+
+        @Override
+        public void releaseAssignment(final ReleaseAssignmentCommand command) {
+            write();
+            super.releaseAssignment(command);
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class Coordinator {
+        @Param({"1", "2", "4", "8"})
+        public int shardCount;
+
+        @Param({"100"})
+        public int storeMicros;
+
+        @Param({"10000"})
+        public int partitionCount;
+
+        public Workinator workinator;
+        public List<ConsumerRegistration> consumers;
+        public final AtomicInteger nextWorker = new AtomicInteger();
+
+        @Setup(Level.Trial)
+        public void setup() throws Exception {
+            final List<Workinator> shards = new ArrayList<>();
+            for (int i = 0; i < shardCount; i++) {
+                shards.add(new SimulatedStore(new MemoryWorkinator(), storeMicros));
+            }
+            workinator = new ShardedWorkinator(shards);
+
+            for (int i = 0; i < partitionCount; i++) {
+                final String key = "partition-" + i;
+                workinator.createPartition(CreatePartitionCommand
+                        .builder()
+                        .partitionKey(key)
+                        .maxIdleTimeSeconds(1)
+                        .build());
+                workinator.setPartitionStatus(SetPartitionStatusCommand.builder().partitionKey(key).hasWork(true).build());
+            }
+
+            consumers = new ArrayList<>();
+            for (int i = 0; i < 4; i++) {
+                consumers.add(workinator.registerConsumer(RegisterConsumerCommand
+                        .builder()
+                        .id(new ConsumerId("consumer-" + i))
+                        .maxWorkerCount(4)
+                        .build()));
+            }
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() throws Exception {
+            workinator.close();
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Worker {
+        public WorkerStatus status;
+
+        @Setup(Level.Trial)
+        public void setup(final Coordinator coordinator) {
+            final int worker = coordinator.nextWorker.getAndIncrement();
+            status = new WorkerStatus(new WorkerId(coordinator.consumers.get(worker % coordinator.consumers.size()), worker));
+        }
+    }
+
+    @Benchmark
+    public void getAndReleaseAssignment(final Coordinator coordinator, final Worker worker, final Blackhole blackhole) {
+        final Assignment assignment = coordinator.workinator.getAssignment(worker.status);
+        blackhole.consume(assignment);
+        if (assignment != null) {
+            coordinator.workinator.releaseAssignment(new ReleaseAssignmentCommand(assignment));
+        }
+    }
+}
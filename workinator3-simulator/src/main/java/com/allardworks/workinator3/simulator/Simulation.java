@@ -0,0 +1,399 @@
+package com.allardworks.workinator3.simulator;
+
+import com.allardworks.workinator3.core.Assignment;
+import com.allardworks.workinator3.core.ConsumerExistsException;
+import com.allardworks.workinator3.core.ConsumerId;
+import com.allardworks.workinator3.core.ConsumerRegistration;
+import com.allardworks.workinator3.core.WorkerId;
+import com.allardworks.workinator3.core.WorkerStatus;
+import com.allardworks.workinator3.core.Workinator;
+import com.allardworks.workinator3.core.commands.ConsumerHeartbeatCommand;
+import com.allardworks.workinator3.core.commands.CreatePartitionCommand;
+import com.allardworks.workinator3.core.commands.RegisterConsumerCommand;
+import com.allardworks.workinator3.core.commands.RenewLeaseCommand;
+import com.allardworks.workinator3.core.commands.SetPartitionStatusCommand;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.util.PriorityQueue;
+import java.util.Random;
+import java.util.function.Function;
+import java.util.stream.IntStream;
+
+/**
+ * Drives a workinator with virtual time, and synthetic consumers, workers and partitions.
+ *
+ * A discrete-event simulation: every worker is an event in a queue ordered by virtual time,
+ * and the clock jumps from one event to the next, so nothing waits.
+ * Each worker does what a SyncExecutor does: report the status of its partition,
+ * renew the lease if there's more work, otherwise ask for an assignment,
+ * then work until minWorkTime or until the partition is empty.
+ *
+ * Everything runs on one thread, and every random choice comes from the seed,
+ * so a run is reproducible as long as the workinator only uses the clock it's given.
+ * Items arrive in each partition as a Poisson process, drawn when a worker looks at the partition.
+ */
+public class Simulation {
+    private static final long START = Instant.parse("2020-01-01T00:00:00Z").toEpochMilli();
+    private static final String PARTITION_PREFIX = "partition-";
+
+    private static class Event implements Comparable<Event> {
+        private final long time;
+        private final long sequence;
+        private final Runnable action;
+
+        Event(final long time, final long sequence, final Runnable action) {
+            this.time = time;
+            this.sequence = sequence;
+            this.action = action;
+        }
+
+        @Override
+        public int compareTo(final Event other) {
+            return time != other.time ? Long.compare(time, other.time) : Long.compare(sequence, other.sequence);
+        }
+    }
+
+    private static class SimulatedConsumer {
+        private final int number;
+        private final int generation;
+        private final ConsumerRegistration registration;
+        private boolean alive = true;
+
+        SimulatedConsumer(final int number, final int generation, final ConsumerRegistration registration) {
+            this.number = number;
+            this.generation = generation;
+            this.registration = registration;
+        }
+    }
+
+    private static class SimulatedWorker {
+        private final SimulatedConsumer consumer;
+        private final WorkerStatus status;
+        private final int hash;
+        private int partition = -1;
+        private boolean hasWork;
+
+        SimulatedWorker(final SimulatedConsumer consumer, final WorkerStatus status) {
+            this.consumer = consumer;
+            this.status = status;
+            this.hash = status.getWorkerId().getAssignee().hashCode();
+        }
+    }
+
+    private final SimulationSettings settings;
+    private final Function<Clock, Workinator> workinatorFactory;
+
+    private final SimulationClock clock = new SimulationClock(START);
+    private final PriorityQueue<Event> events = new PriorityQueue<>();
+    private final SimulationResult result = new SimulationResult();
+    private final Random random;
+    private Workinator workinator;
+    private long sequence;
+    private long staleSum;
+    private long samples;
+
+    private final double[] rates;
+    private final long[] backlog;
+    private final long[] arrived;
+    private final long[] processed;
+    private final long[] lastArrival;
+    private final long[] lastChecked;
+    private final boolean[] checked;
+
+    /**
+     * @param settings
+     * @param workinatorFactory creates the workinator to drive, with the virtual clock.
+     */
+    public Simulation(final SimulationSettings settings, final Function<Clock, Workinator> workinatorFactory) {
+        this.settings = settings;
+        this.workinatorFactory = workinatorFactory;
+        this.random = new Random(settings.seed);
+        rates = new double[settings.partitions];
+        backlog = new long[settings.partitions];
+        arrived = new long[settings.partitions];
+        processed = new long[settings.partitions];
+        lastArrival = new long[settings.partitions];
+        lastChecked = new long[settings.partitions];
+        checked = new boolean[settings.partitions];
+    }
+
+    private static String getPartitionKey(final int partition) {
+        return PARTITION_PREFIX + partition;
+    }
+
+    private static int getPartition(final String partitionKey) {
+        return Integer.parseInt(partitionKey.substring(PARTITION_PREFIX.length()));
+    }
+
+    private static long toMillis(final double seconds) {
+        return Math.round(seconds * 1000);
+    }
+
+    /**
+     * Runs the simulation to the end. Can only be called once.
+     * @return
+     * @throws Exception
+     */
+    public SimulationResult run() throws Exception {
+        final long started = System.currentTimeMillis();
+        final long end = START + toMillis(settings.durationSeconds);
+        try (final Workinator created = workinatorFactory.apply(clock)) {
+            workinator = created;
+            createPartitions();
+            for (int i = 0; i < settings.consumers; i++) {
+                startConsumer(i, 0);
+            }
+            schedule(START + toMillis(settings.sampleSeconds), this::sample);
+
+            while (!events.isEmpty() && events.peek().time <= end) {
+                final Event event = events.poll();
+                clock.advanceTo(event.time);
+                event.action.run();
+            }
+            clock.advanceTo(end);
+            finish();
+        }
+
+        result.virtualSeconds = settings.durationSeconds;
+        result.wallMillis = System.currentTimeMillis() - started;
+        return result;
+    }
+
+    private void schedule(final long time, final Runnable action) {
+        events.add(new Event(time, sequence++, action));
+    }
+
+    /**
+     * Idle partitions never get work. Hot partitions get hotRateMultiplier times the arrival rate.
+     */
+    private void createPartitions() {
+        for (int i = 0; i < settings.partitions; i++) {
+            final double kind = random.nextDouble();
+            rates[i] = kind < settings.idlePartitionFraction
+                    ? 0
+                    : kind < settings.idlePartitionFraction + settings.hotPartitionFraction
+                    ? settings.arrivalRate * settings.hotRateMultiplier
+                    : settings.arrivalRate;
+            lastArrival[i] = START;
+            lastChecked[i] = START;
+        }
+
+        workinator.createPartitions(IntStream
+                .range(0, settings.partitions)
+                .mapToObj(i -> CreatePartitionCommand
+                        .builder()
+                        .partitionKey(getPartitionKey(i))
+                        .maxIdleTimeSeconds(settings.maxIdleTimeSeconds)
+                        .maxWorkerCount(settings.partitionMaxWorkerCount)
+                        .build()));
+    }
+
+    /**
+     * Registers a consumer and starts its workers at random times within a poll interval.
+     * A consumer that replaces a crashed one has a new name, like a new process would.
+     */
+    private void startConsumer(final int number, final int generation) {
+        final String name = generation == 0 ? "consumer-" + number : "consumer-" + number + "." + generation;
+        final ConsumerRegistration registration;
+        try {
+            registration = workinator.registerConsumer(RegisterConsumerCommand
+                    .builder()
+                    .id(new ConsumerId(name))
+                    .maxWorkerCount(settings.workersPerConsumer)
+                    .build());
+        } catch (final ConsumerExistsException e) {
+            throw new IllegalStateException(e);
+        }
+
+        final SimulatedConsumer consumer = new SimulatedConsumer(number, generation, registration);
+        final long now = clock.millis();
+        for (int i = 0; i < settings.workersPerConsumer; i++) {
+            final SimulatedWorker worker = new SimulatedWorker(consumer, new WorkerStatus(new WorkerId(registration, i)));
+            schedule(now + (long) (random.nextDouble() * settings.pollMillis), () -> step(worker));
+        }
+        result.workers += generation == 0 ? settings.workersPerConsumer : 0;
+
+        if (settings.heartbeatSeconds > 0) {
+            schedule(now + toMillis(settings.heartbeatSeconds), () -> heartbeat(consumer));
+        }
+        if (settings.crashesPerHour > 0) {
+            final double hours = -Math.log(1 - random.nextDouble()) / settings.crashesPerHour;
+            schedule(now + toMillis(hours * 3600), () -> crash(consumer));
+        }
+    }
+
+    private void heartbeat(final SimulatedConsumer consumer) {
+        if (!consumer.alive) {
+            return;
+        }
+
+        workinator.heartbeat(ConsumerHeartbeatCommand.builder().registration(consumer.registration).build());
+        schedule(clock.millis() + toMillis(settings.heartbeatSeconds), () -> heartbeat(consumer));
+    }
+
+    /**
+     * The consumer stops without releasing its assignments or unregistering.
+     */
+    private void crash(final SimulatedConsumer consumer) {
+        if (!consumer.alive) {
+            return;
+        }
+
+        consumer.alive = false;
+        result.crashes++;
+        schedule(clock.millis() + toMillis(settings.restartSeconds), () -> startConsumer(consumer.number, consumer.generation + 1));
+    }
+
+    /**
+     * One check of a SyncExecutor.
+     */
+    private void step(final SimulatedWorker worker) {
+        if (!worker.consumer.alive) {
+            return;
+        }
+
+        final long now = clock.millis();
+        final Assignment current = worker.status.getCurrentAssignment();
+        if (worker.partition >= 0) {
+            arrive(worker.partition, now);
+            worker.hasWork = backlog[worker.partition] > 0;
+            workinator.setPartitionStatus(SetPartitionStatusCommand
+                    .builder()
+                    .partitionKey(getPartitionKey(worker.partition))
+                    .hasWork(worker.hasWork)
+                    .backlog(backlog[worker.partition])
+                    .receipt(current == null ? null : current.getReceipt())
+                    .build());
+        }
+
+        Assignment assignment = null;
+        if (current != null && worker.hasWork) {
+            assignment = workinator.renewLease(new RenewLeaseCommand(current));
+            if (assignment != null) {
+                result.renewals++;
+            }
+        }
+
+        if (assignment == null) {
+            result.requests++;
+            assignment = workinator.getAssignment(worker.status);
+            if (assignment == null) {
+                result.idleRequests++;
+                worker.status.setCurrentAssignment(null);
+                worker.partition = -1;
+                schedule(now + Math.max(1, Math.round(settings.pollMillis)), () -> step(worker));
+                return;
+            }
+        }
+
+        result.rules.merge(assignment.getRuleName(), 1L, Long::sum);
+        final int partition = getPartition(assignment.getPartitionKey());
+        result.checksum = result.checksum * 0x9e3779b97f4a7c15L + (now - START) * 31 + worker.hash * 17L + partition;
+        if (worker.partition >= 0 && worker.partition != partition) {
+            result.switches++;
+        }
+        worker.status.setCurrentAssignment(assignment);
+        worker.partition = partition;
+
+        arrive(partition, now);
+        check(partition, now);
+        final long items = Math.min(backlog[partition], (long) (settings.minWorkTimeSeconds * 1000 / settings.itemMillis));
+        backlog[partition] -= items;
+        processed[partition] += items;
+        result.processed += items;
+        final long duration = Math.max(1, Math.round(Math.max(settings.checkMillis, items * settings.itemMillis)));
+        schedule(now + duration, () -> step(worker));
+    }
+
+    private void check(final int partition, final long now) {
+        final long gap = now - lastChecked[partition];
+        result.checks++;
+        if (gap > settings.maxIdleTimeSeconds * 1000L) {
+            result.overdueChecks++;
+        }
+        result.maxCheckGapSeconds = Math.max(result.maxCheckGapSeconds, gap / 1000.0);
+        lastChecked[partition] = now;
+        checked[partition] = true;
+    }
+
+    /**
+     * Adds the items that arrived since the last time the partition was looked at.
+     */
+    private void arrive(final int partition, final long now) {
+        final long elapsed = now - lastArrival[partition];
+        lastArrival[partition] = now;
+        if (elapsed <= 0 || rates[partition] == 0) {
+            return;
+        }
+
+        final long count = poisson(rates[partition] * elapsed / 1000.0);
+        backlog[partition] += count;
+        arrived[partition] += count;
+        result.arrived += count;
+    }
+
+    /**
+     * Knuth's method for small means, a normal approximation for large ones.
+     */
+    private long poisson(final double mean) {
+        if (mean > 30) {
+            return Math.max(0, Math.round(mean + Math.sqrt(mean) * random.nextGaussian()));
+        }
+
+        final double limit = Math.exp(-mean);
+        double product = random.nextDouble();
+        long count = 0;
+        while (product > limit) {
+            count++;
+            product *= random.nextDouble();
+        }
+        return count;
+    }
+
+    /**
+     * Measures the fraction of stale partitions and the total backlog.
+     */
+    private void sample() {
+        final long now = clock.millis();
+        final long maxIdle = settings.maxIdleTimeSeconds * 1000L;
+        long stale = 0;
+        long total = 0;
+        for (int i = 0; i < settings.partitions; i++) {
+            arrive(i, now);
+            total += backlog[i];
+            if (now - lastChecked[i] > maxIdle) {
+                stale++;
+            }
+        }
+
+        staleSum += stale;
+        samples++;
+        result.maxStaleFraction = Math.max(result.maxStaleFraction, settings.partitions == 0 ? 0 : (double) stale / settings.partitions);
+        result.peakBacklog = Math.max(result.peakBacklog, total);
+        schedule(now + toMillis(settings.sampleSeconds), this::sample);
+    }
+
+    private void finish() {
+        final long now = clock.millis();
+        double sum = 0;
+        double squares = 0;
+        int count = 0;
+        for (int i = 0; i < settings.partitions; i++) {
+            arrive(i, now);
+            result.finalBacklog += backlog[i];
+            if (!checked[i]) {
+                result.neverChecked++;
+            }
+            if (arrived[i] > 0) {
+                final double share = (double) processed[i] / arrived[i];
+                sum += share;
+                squares += share * share;
+                count++;
+            }
+        }
+
+        result.fairness = squares == 0 ? 1 : sum * sum / (count * squares);
+        result.meanStaleFraction = samples == 0 || settings.partitions == 0 ? 0 : (double) staleSum / samples / settings.partitions;
+    }
+}
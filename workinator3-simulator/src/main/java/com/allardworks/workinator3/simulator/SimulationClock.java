@@ -0,0 +1,46 @@
+package com.allardworks.workinator3.simulator;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+
+/**
+ * Virtual time. Only moves when the simulation moves it.
+ */
+public class SimulationClock extends Clock {
+    private long millis;
+
+    public SimulationClock(final long millis) {
+        this.millis = millis;
+    }
+
+    /**
+     * @param millis never earlier than the current time.
+     */
+    void advanceTo(final long millis) {
+        if (millis > this.millis) {
+            this.millis = millis;
+        }
+    }
+
+    @Override
+    public long millis() {
+        return millis;
+    }
+
+    @Override
+    public Instant instant() {
+        return Instant.ofEpochMilli(millis);
+    }
+
+    @Override
+    public ZoneId getZone() {
+        return ZoneOffset.UTC;
+    }
+
+    @Override
+    public Clock withZone(final ZoneId zone) {
+        return this;
+    }
+}
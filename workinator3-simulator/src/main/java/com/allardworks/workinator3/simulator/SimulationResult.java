@@ -0,0 +1,102 @@
+package com.allardworks.workinator3.simulator;
+
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * What happened during a simulation.
+ */
+public class SimulationResult {
+    public double virtualSeconds;
+    public long wallMillis;
+
+    /**
+     * Items that arrived, and items that the workers processed.
+     */
+    public long arrived;
+    public long processed;
+    public long finalBacklog;
+    public long peakBacklog;
+
+    /**
+     * A check is a worker looking at a partition. It's overdue if the partition
+     * wasn't looked at for more than maxIdleTimeSeconds before it.
+     */
+    public long checks;
+    public long overdueChecks;
+    public double maxCheckGapSeconds;
+
+    /**
+     * The fraction of the partitions that weren't looked at within maxIdleTimeSeconds,
+     * averaged over the samples, and the worst sample.
+     */
+    public double meanStaleFraction;
+    public double maxStaleFraction;
+
+    /**
+     * Partitions that no worker looked at during the whole run.
+     */
+    public long neverChecked;
+
+    /**
+     * Calls to getAssignment, the ones that didn't get anything, and the leases renewed without them.
+     */
+    public long requests;
+    public long idleRequests;
+    public long renewals;
+
+    /**
+     * Workers that went from one partition to another.
+     */
+    public long switches;
+    public int workers;
+
+    /**
+     * Jain's fairness index of processed / arrived over the partitions that got work.
+     * 1 if every partition got the same share of its work done.
+     */
+    public double fairness;
+
+    public long crashes;
+
+    /**
+     * The assignments and renewals by Assignment.ruleName.
+     */
+    public final Map<String, Long> rules = new TreeMap<>();
+
+    /**
+     * A hash of every assignment, in order. Two runs with the same settings have the same checksum.
+     */
+    public long checksum;
+
+    public double getThroughput() {
+        return virtualSeconds == 0 ? 0 : processed / virtualSeconds;
+    }
+
+    public double getChurnPerWorkerHour() {
+        return virtualSeconds == 0 || workers == 0 ? 0 : switches / (workers * virtualSeconds / 3600);
+    }
+
+    public double getSpeedup() {
+        return wallMillis == 0 ? 0 : virtualSeconds * 1000 / wallMillis;
+    }
+
+    @Override
+    public String toString() {
+        final long assignments = rules.values().stream().mapToLong(Long::longValue).sum();
+        final StringBuilder rulesText = new StringBuilder();
+        for (final Map.Entry<String, Long> rule : rules.entrySet()) {
+            rulesText.append(String.format(" %s=%d (%.1f%%)", rule.getKey(), rule.getValue(), assignments == 0 ? 0 : 100.0 * rule.getValue() / assignments));
+        }
+
+        return String.format("virtual=%.0fs wall=%dms speedup=%.0fx%n", virtualSeconds, wallMillis, getSpeedup())
+                + String.format("throughput=%.1f items/s arrived=%d processed=%d backlog=%d peakBacklog=%d%n", getThroughput(), arrived, processed, finalBacklog, peakBacklog)
+                + String.format("staleness: checks=%d overdue=%d (%.2f%%) maxGap=%.0fs meanStale=%.2f%% maxStale=%.2f%% neverChecked=%d%n",
+                checks, overdueChecks, checks == 0 ? 0 : 100.0 * overdueChecks / checks, maxCheckGapSeconds, 100 * meanStaleFraction, 100 * maxStaleFraction, neverChecked)
+                + String.format("churn: switches=%d perWorkerHour=%.2f requests=%d idle=%d renewals=%d crashes=%d%n",
+                switches, getChurnPerWorkerHour(), requests, idleRequests, renewals, crashes)
+                + String.format("fairness=%.4f%n", fairness)
+                + "rules:" + rulesText + String.format("%n")
+                + String.format("checksum=%016x", checksum);
+    }
+}
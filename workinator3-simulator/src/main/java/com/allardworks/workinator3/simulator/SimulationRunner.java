@@ -0,0 +1,48 @@
+package com.allardworks.workinator3.simulator;
+
+import com.allardworks.workinator3.coordinator.memory.MemoryJournal;
+import com.allardworks.workinator3.coordinator.memory.MemoryWorkinator;
+import com.allardworks.workinator3.coordinator.strategy.RendezvousAssignmentStrategy;
+import com.allardworks.workinator3.coordinator.strategy.WhatsNextAssignmentStrategy;
+import com.allardworks.workinator3.core.AssignmentStrategy;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Runs a simulation against a MemoryWorkinator and prints the report.
+ *
+ * Takes the settings as name=value arguments. IE:
+ * <pre>
+ * java -jar target/simulator.jar strategy=rendezvous consumers=500 partitions=1000000 seed=7
+ * </pre>
+ */
+public final class SimulationRunner {
+    private SimulationRunner() {
+    }
+
+    private static AssignmentStrategy createStrategy(final String name) {
+        switch (name) {
+            case "whatsnext":
+                return new WhatsNextAssignmentStrategy();
+            case "rendezvous":
+                return new RendezvousAssignmentStrategy();
+            default:
+                throw new IllegalArgumentException("Unknown strategy: " + name);
+        }
+    }
+
+    public static void main(final String[] args) throws Exception {
+        final SimulationSettings settings = SimulationSettings.parse(args);
+        final AssignmentStrategy strategy = createStrategy(settings.strategy);
+        final Duration lease = Duration.ofMillis(Math.round(settings.leaseSeconds * 1000));
+        final Duration consumerTimeout = Duration.ofMillis(Math.round(settings.consumerTimeoutSeconds * 1000));
+        final AtomicReference<MemoryWorkinator> workinator = new AtomicReference<>();
+        System.out.println(settings);
+        System.out.println(new Simulation(settings, clock -> {
+            workinator.set(new MemoryWorkinator(clock, lease, MemoryJournal.NONE, strategy, consumerTimeout));
+            return workinator.get();
+        }).run());
+        System.out.println("reclaims: " + workinator.get().getReclaimMetrics().getInfo());
+    }
+}
@@ -0,0 +1,146 @@
+package com.allardworks.workinator3.simulator;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+
+/**
+ * What to simulate. Every field can be set from the command line as name=value.
+ * Times are virtual.
+ */
+public class SimulationSettings {
+    /**
+     * Every random choice comes from this seed, so the same settings give the same run.
+     */
+    public long seed = 1;
+
+    /**
+     * The workinator to drive. whatsnext or rendezvous. Only used by SimulationRunner.
+     */
+    public String strategy = "whatsnext";
+
+    public int consumers = 10;
+    public int workersPerConsumer = 4;
+    public int partitions = 1000;
+    public int partitionMaxWorkerCount = 1;
+    public int maxIdleTimeSeconds = 60;
+
+    /**
+     * How long a worker stays on a partition that has work before it asks again.
+     */
+    public double minWorkTimeSeconds = 10;
+
+    /**
+     * The time to process one item.
+     */
+    public double itemMillis = 10;
+
+    /**
+     * The time to look at a partition, even if it's empty.
+     */
+    public double checkMillis = 50;
+
+    /**
+     * How long a worker without an assignment waits before it asks again.
+     */
+    public double pollMillis = 1000;
+
+    /**
+     * Items per second per partition, as a Poisson process.
+     */
+    public double arrivalRate = 0.5;
+
+    /**
+     * The fraction of the partitions that never get work.
+     */
+    public double idlePartitionFraction = 0.5;
+
+    /**
+     * The fraction of the partitions that get hotRateMultiplier times the arrival rate.
+     */
+    public double hotPartitionFraction = 0.01;
+    public double hotRateMultiplier = 50;
+
+    /**
+     * Crashes per consumer per hour. A crashed consumer doesn't release anything or unregister.
+     * It's replaced by a new consumer, with a new name, after restartSeconds.
+     */
+    public double crashesPerHour = 0;
+    public double restartSeconds = 30;
+
+    /**
+     * How often the consumers send a heartbeat. Zero doesn't send any.
+     */
+    public double heartbeatSeconds = 30;
+
+    public double leaseSeconds = 120;
+
+    /**
+     * How long a consumer can go without a heartbeat before the workinator releases its assignments.
+     * Zero if consumers don't expire. Has to be longer than heartbeatSeconds.
+     */
+    public double consumerTimeoutSeconds = 0;
+    public double durationSeconds = 3600;
+
+    /**
+     * How often the staleness and the backlog are measured.
+     */
+    public double sampleSeconds = 60;
+
+    /**
+     * Sets the fields from name=value arguments.
+     * @param args
+     * @return
+     */
+    public static SimulationSettings parse(final String[] args) {
+        final SimulationSettings settings = new SimulationSettings();
+        for (final String arg : args) {
+            final int separator = arg.indexOf('=');
+            if (separator <= 0) {
+                throw new IllegalArgumentException("Expected name=value: " + arg);
+            }
+            settings.set(arg.substring(0, separator), arg.substring(separator + 1));
+        }
+        return settings;
+    }
+
+    private void set(final String name, final String value) {
+        final Field field;
+        try {
+            field = SimulationSettings.class.getField(name);
+        } catch (final NoSuchFieldException e) {
+            throw new IllegalArgumentException("Unknown setting: " + name);
+        }
+
+        try {
+            final Class<?> type = field.getType();
+            if (type == int.class) {
+                field.setInt(this, Integer.parseInt(value));
+            } else if (type == long.class) {
+                field.setLong(this, Long.parseLong(value));
+            } else if (type == double.class) {
+                field.setDouble(this, Double.parseDouble(value));
+            } else {
+                field.set(this, value);
+            }
+        } catch (final IllegalAccessException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @Override
+    public String toString() {
+        final StringBuilder result = new StringBuilder();
+        for (final Field field : SimulationSettings.class.getFields()) {
+            if (Modifier.isStatic(field.getModifiers())) {
+                continue;
+            }
+
+            try {
+                result.append(result.length() == 0 ? "" : " ").append(field.getName()).append('=').append(field.get(this));
+            } catch (final IllegalAccessException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+        return result.toString();
+    }
+}